@@ -63,6 +63,36 @@ public class WebhooksQBitConfig implements QBitConfig
    private Integer       maxRateLimitRetries                = 3;
    private Integer       initialRateLimitBackoffMillis      = 1000;
    private Integer       httpTimeoutMillis                  = 5000;
+   private Integer       maxHttpConnectionsPerWebhook       = 10;
+   private Integer       httpIdleConnectionTimeoutSeconds   = 60;
+   private Integer       httpConnectTimeoutMillis;
+   private Integer       httpReadTimeoutMillis;
+   private Boolean       useAdaptiveHttpReadTimeouts        = false;
+   private Integer       adaptiveHttpReadTimeoutMinMillis   = 1000;
+   private Integer       adaptiveHttpReadTimeoutPercentile  = 99;
+   private Integer       adaptiveHttpReadTimeoutMultiplier  = 3;
+   private Integer       maxConcurrentSendsPerWebhook       = 1;
+   private Integer       maxSendThreads                     = 32;
+   private Boolean       useAsyncHttpSender                 = false;
+   private Integer       maxResponseBodyBytes               = 1024;
+   private Boolean       logSuccessfulResponseBodies        = false;
+   private Integer       gzipCacheMaxBytes                  = 10 * 1024 * 1024;
+   private Integer       outcomeFlushMaxRecords             = 100;
+   private Integer       outcomeFlushMaxMillis              = 5000;
+   private DispatchMode  dispatchMode                       = DispatchMode.PER_WEBHOOK_JOB;
+   private Integer       dispatcherMaxConcurrentWebhooks    = 4;
+   private Boolean       useRetryTimingWheel                = false;
+   private Integer       retryTimingWheelTickMillis         = 1000;
+   private Integer       retryTimingWheelSlots              = 512;
+   private List<Integer> nonRetryableHttpStatusCodes        = List.of(410);
+   private Integer       retryBaseSeconds                   = 60;
+   private Integer       retryMaxSeconds                    = 14400;
+   private Integer       healthWindowSize                   = 100;
+   private Integer       healthWindowMinSamples             = 20;
+   private Integer       unhealthyFailureRatePercent;
+   private Integer       unhealthyTimeoutRatePercent;
+   private Integer       unhealthyP95LatencyMillis;
+   private Integer       subscriptionVersionCheckSeconds;
 
    //////////////////////////////////////////////////////////////////////////////////////////
    // to get default values, construct one instance of this config to keep in this class - //
@@ -72,6 +102,18 @@ public class WebhooksQBitConfig implements QBitConfig
 
 
 
+   /***************************************************************************
+    ** ways that the SendWebhookEvent process can be scheduled.
+    ** @see #withDispatchMode(DispatchMode)
+    ***************************************************************************/
+   public enum DispatchMode
+   {
+      PER_WEBHOOK_JOB,
+      SINGLE_DISPATCHER
+   }
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
@@ -122,6 +164,36 @@ public class WebhooksQBitConfig implements QBitConfig
       assertCondition(maxRateLimitRetries != null && maxRateLimitRetries >= 0, "maxRateLimitRetries must be non-null and >= 0", errors);
       assertCondition(initialRateLimitBackoffMillis != null && initialRateLimitBackoffMillis > 0, "initialRateLimitBackoffMillis must be non-null and > 0", errors);
       assertCondition(httpTimeoutMillis != null && httpTimeoutMillis > 0, "httpTimeoutMillis must be non-null and > 0", errors);
+      assertCondition(maxHttpConnectionsPerWebhook != null && maxHttpConnectionsPerWebhook > 0, "maxHttpConnectionsPerWebhook must be non-null and > 0", errors);
+      assertCondition(httpIdleConnectionTimeoutSeconds != null && httpIdleConnectionTimeoutSeconds > 0, "httpIdleConnectionTimeoutSeconds must be non-null and > 0", errors);
+      assertCondition(httpConnectTimeoutMillis == null || httpConnectTimeoutMillis > 0, "If httpConnectTimeoutMillis is given, it must be > 0", errors);
+      assertCondition(httpReadTimeoutMillis == null || httpReadTimeoutMillis > 0, "If httpReadTimeoutMillis is given, it must be > 0", errors);
+      assertCondition(useAdaptiveHttpReadTimeouts != null, "useAdaptiveHttpReadTimeouts must be non-null", errors);
+      assertCondition(adaptiveHttpReadTimeoutMinMillis != null && adaptiveHttpReadTimeoutMinMillis > 0, "adaptiveHttpReadTimeoutMinMillis must be non-null and > 0", errors);
+      assertCondition(adaptiveHttpReadTimeoutPercentile != null && adaptiveHttpReadTimeoutPercentile > 0 && adaptiveHttpReadTimeoutPercentile <= 100, "adaptiveHttpReadTimeoutPercentile must be non-null and between 1 and 100", errors);
+      assertCondition(adaptiveHttpReadTimeoutMultiplier != null && adaptiveHttpReadTimeoutMultiplier >= 1, "adaptiveHttpReadTimeoutMultiplier must be non-null and >= 1", errors);
+      assertCondition(maxConcurrentSendsPerWebhook != null && maxConcurrentSendsPerWebhook > 0, "maxConcurrentSendsPerWebhook must be non-null and > 0", errors);
+      assertCondition(maxSendThreads != null && maxSendThreads > 0, "maxSendThreads must be non-null and > 0", errors);
+      assertCondition(useAsyncHttpSender != null, "useAsyncHttpSender must be non-null", errors);
+      assertCondition(maxResponseBodyBytes != null && maxResponseBodyBytes > 0, "maxResponseBodyBytes must be non-null and > 0", errors);
+      assertCondition(logSuccessfulResponseBodies != null, "logSuccessfulResponseBodies must be non-null", errors);
+      assertCondition(gzipCacheMaxBytes != null && gzipCacheMaxBytes >= 0, "gzipCacheMaxBytes must be non-null and >= 0", errors);
+      assertCondition(outcomeFlushMaxRecords != null && outcomeFlushMaxRecords > 0, "outcomeFlushMaxRecords must be non-null and > 0", errors);
+      assertCondition(outcomeFlushMaxMillis != null && outcomeFlushMaxMillis >= 0, "outcomeFlushMaxMillis must be non-null and >= 0", errors);
+      assertCondition(dispatchMode != null, "dispatchMode must be non-null", errors);
+      assertCondition(dispatcherMaxConcurrentWebhooks != null && dispatcherMaxConcurrentWebhooks > 0, "dispatcherMaxConcurrentWebhooks must be non-null and > 0", errors);
+      assertCondition(useRetryTimingWheel != null, "useRetryTimingWheel must be non-null", errors);
+      assertCondition(retryTimingWheelTickMillis != null && retryTimingWheelTickMillis > 0, "retryTimingWheelTickMillis must be non-null and > 0", errors);
+      assertCondition(retryTimingWheelSlots != null && retryTimingWheelSlots > 0, "retryTimingWheelSlots must be non-null and > 0", errors);
+      assertCondition(nonRetryableHttpStatusCodes != null, "nonRetryableHttpStatusCodes must be non-null", errors);
+      assertCondition(retryBaseSeconds != null && retryBaseSeconds > 0, "retryBaseSeconds must be non-null and > 0", errors);
+      assertCondition(retryMaxSeconds != null && retryMaxSeconds > 0, "retryMaxSeconds must be non-null and > 0", errors);
+      assertCondition(healthWindowSize != null && healthWindowSize > 0, "healthWindowSize must be non-null and > 0", errors);
+      assertCondition(healthWindowMinSamples != null && healthWindowMinSamples > 0, "healthWindowMinSamples must be non-null and > 0", errors);
+      assertCondition(unhealthyFailureRatePercent == null || (unhealthyFailureRatePercent > 0 && unhealthyFailureRatePercent <= 100), "If unhealthyFailureRatePercent is given, it must be between 1 and 100", errors);
+      assertCondition(unhealthyTimeoutRatePercent == null || (unhealthyTimeoutRatePercent > 0 && unhealthyTimeoutRatePercent <= 100), "If unhealthyTimeoutRatePercent is given, it must be between 1 and 100", errors);
+      assertCondition(unhealthyP95LatencyMillis == null || unhealthyP95LatencyMillis > 0, "If unhealthyP95LatencyMillis is given, it must be > 0", errors);
+      assertCondition(subscriptionVersionCheckSeconds == null || subscriptionVersionCheckSeconds > 0, "If subscriptionVersionCheckSeconds is given, it must be > 0", errors);
 
       if(assertCondition(CollectionUtils.nullSafeHasContents(minutesBetweenRetryAttempts), "minutesBetweenRetryAttempts must be non-null and non-empty", errors))
       {
@@ -304,7 +376,9 @@ public class WebhooksQBitConfig implements QBitConfig
     **
     ** @param memoizationTimeoutMinutes
     ** Control the timeout (in minutes) used by the memoizations in
-    ** WebhookSubscriptionsHelper.
+    ** WebhookSubscriptionsHelper.  Since changes made on other nodes are found
+    ** via subscriptionVersionCheckSeconds, this can be much longer (e.g., hours)
+    ** when those checks are on.
     **
     ** Can be set to 0 to disable memoization.  Else must not be negative (>= 0)
     *******************************************************************************/
@@ -462,10 +536,11 @@ public class WebhooksQBitConfig implements QBitConfig
     * Fluent setter for maxRateLimitRetries
     *
     * @param maxRateLimitRetries
-    * Sets the number of retries performed within a single attempt to send an event
-    * in response to http 429 (rate limit) errors.  If set to 0, no in-band retries
-    * are done in response to rate limits (they are treated the same as any other
-    * error response).  Must be non-null and >= 0.
+    * Sets the number of consecutive http 429 (rate limit) responses from a webhook
+    * that are handled by deferring the webhook (rescheduling its events, without
+    * counting them as send attempts).  Once a webhook exceeds this number, the
+    * next 429 is treated the same as any other error response.  If set to 0, no
+    * deferrals are done in response to rate limits.  Must be non-null and >= 0.
     *
     * @return this
     *******************************************************************************/
@@ -503,9 +578,10 @@ public class WebhooksQBitConfig implements QBitConfig
     * Fluent setter for initialRateLimitBackoffMillis
     *
     * @param initialRateLimitBackoffMillis
-    * this property sets the initial number of milliseconds that the webhook sender
-    * sleeps after a rate-limit error is caught.  Must be non-null and > 0.  Note
-    * that for multiple rate-limit retries, this value is doubled between each try.
+    * this property sets the initial number of milliseconds that a webhook is
+    * deferred for after a rate-limit error is caught (unless the response's
+    * Retry-After header asks for longer).  Must be non-null and > 0.  Note that
+    * for consecutive rate-limit errors, this value is doubled each time.
     *
     * @return this
     *******************************************************************************/
@@ -543,8 +619,10 @@ public class WebhooksQBitConfig implements QBitConfig
     * Fluent setter for httpTimeoutMillis
     *
     * @param httpTimeoutMillis
-    * this property sets the number of milliseconds used for all timeouts associated
-    * with the HTTP posts used to send webhooks.  Must be non-null and > 0.
+    * this property sets the number of milliseconds used for timeouts associated
+    * with the HTTP posts used to send webhooks, unless the more specific
+    * httpConnectTimeoutMillis or httpReadTimeoutMillis are given.  Must be
+    * non-null and > 0.
     *
     * @return this
     *******************************************************************************/
@@ -556,6 +634,1221 @@ public class WebhooksQBitConfig implements QBitConfig
 
 
 
+   /*******************************************************************************
+    * Getter for maxHttpConnectionsPerWebhook
+    * @see #withMaxHttpConnectionsPerWebhook(Integer)
+    *******************************************************************************/
+   public Integer getMaxHttpConnectionsPerWebhook()
+   {
+      return (this.maxHttpConnectionsPerWebhook);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxHttpConnectionsPerWebhook
+    * @see #withMaxHttpConnectionsPerWebhook(Integer)
+    *******************************************************************************/
+   public void setMaxHttpConnectionsPerWebhook(Integer maxHttpConnectionsPerWebhook)
+   {
+      this.maxHttpConnectionsPerWebhook = maxHttpConnectionsPerWebhook;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxHttpConnectionsPerWebhook
+    *
+    * @param maxHttpConnectionsPerWebhook
+    * Sets the maximum number of pooled http connections kept open to a single
+    * webhook.  Clients (and their connection pools) are kept per-webhook and
+    * reused between posts.  Must be non-null and > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withMaxHttpConnectionsPerWebhook(Integer maxHttpConnectionsPerWebhook)
+   {
+      this.maxHttpConnectionsPerWebhook = maxHttpConnectionsPerWebhook;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for httpIdleConnectionTimeoutSeconds
+    * @see #withHttpIdleConnectionTimeoutSeconds(Integer)
+    *******************************************************************************/
+   public Integer getHttpIdleConnectionTimeoutSeconds()
+   {
+      return (this.httpIdleConnectionTimeoutSeconds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for httpIdleConnectionTimeoutSeconds
+    * @see #withHttpIdleConnectionTimeoutSeconds(Integer)
+    *******************************************************************************/
+   public void setHttpIdleConnectionTimeoutSeconds(Integer httpIdleConnectionTimeoutSeconds)
+   {
+      this.httpIdleConnectionTimeoutSeconds = httpIdleConnectionTimeoutSeconds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for httpIdleConnectionTimeoutSeconds
+    *
+    * @param httpIdleConnectionTimeoutSeconds
+    * Sets the number of seconds that a pooled http connection to a webhook may sit
+    * idle before it is evicted from the pool (also used as the keep-alive duration
+    * for servers that do not send a Keep-Alive header).  Must be non-null and > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withHttpIdleConnectionTimeoutSeconds(Integer httpIdleConnectionTimeoutSeconds)
+   {
+      this.httpIdleConnectionTimeoutSeconds = httpIdleConnectionTimeoutSeconds;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for httpConnectTimeoutMillis
+    * @see #withHttpConnectTimeoutMillis(Integer)
+    *******************************************************************************/
+   public Integer getHttpConnectTimeoutMillis()
+   {
+      return (this.httpConnectTimeoutMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for httpConnectTimeoutMillis
+    * @see #withHttpConnectTimeoutMillis(Integer)
+    *******************************************************************************/
+   public void setHttpConnectTimeoutMillis(Integer httpConnectTimeoutMillis)
+   {
+      this.httpConnectTimeoutMillis = httpConnectTimeoutMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for httpConnectTimeoutMillis
+    *
+    * @param httpConnectTimeoutMillis
+    * Sets the number of milliseconds allowed for establishing a connection to a
+    * webhook (also used as the timeout for leasing a connection from the pool).
+    * If null, httpTimeoutMillis is used.  If given, must be > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withHttpConnectTimeoutMillis(Integer httpConnectTimeoutMillis)
+   {
+      this.httpConnectTimeoutMillis = httpConnectTimeoutMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for httpReadTimeoutMillis
+    * @see #withHttpReadTimeoutMillis(Integer)
+    *******************************************************************************/
+   public Integer getHttpReadTimeoutMillis()
+   {
+      return (this.httpReadTimeoutMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for httpReadTimeoutMillis
+    * @see #withHttpReadTimeoutMillis(Integer)
+    *******************************************************************************/
+   public void setHttpReadTimeoutMillis(Integer httpReadTimeoutMillis)
+   {
+      this.httpReadTimeoutMillis = httpReadTimeoutMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for httpReadTimeoutMillis
+    *
+    * @param httpReadTimeoutMillis
+    * Sets the number of milliseconds allowed for waiting on data from a webhook
+    * (the socket read timeout).  If null, httpTimeoutMillis is used.  If
+    * useAdaptiveHttpReadTimeouts is true, this value is the ceiling for adaptive
+    * timeouts.  If given, must be > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withHttpReadTimeoutMillis(Integer httpReadTimeoutMillis)
+   {
+      this.httpReadTimeoutMillis = httpReadTimeoutMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useAdaptiveHttpReadTimeouts
+    * @see #withUseAdaptiveHttpReadTimeouts(Boolean)
+    *******************************************************************************/
+   public Boolean getUseAdaptiveHttpReadTimeouts()
+   {
+      return (this.useAdaptiveHttpReadTimeouts);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useAdaptiveHttpReadTimeouts
+    * @see #withUseAdaptiveHttpReadTimeouts(Boolean)
+    *******************************************************************************/
+   public void setUseAdaptiveHttpReadTimeouts(Boolean useAdaptiveHttpReadTimeouts)
+   {
+      this.useAdaptiveHttpReadTimeouts = useAdaptiveHttpReadTimeouts;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useAdaptiveHttpReadTimeouts
+    *
+    * @param useAdaptiveHttpReadTimeouts
+    * If true, each webhook's read timeout is derived from its recently observed
+    * response latencies:  the adaptiveHttpReadTimeoutPercentile latency, times
+    * adaptiveHttpReadTimeoutMultiplier, bounded below by
+    * adaptiveHttpReadTimeoutMinMillis and above by the (non-adaptive) read timeout.
+    * Until a webhook has enough samples, the non-adaptive read timeout is used.
+    * Latencies are only tracked in memory.  Defaults to false.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUseAdaptiveHttpReadTimeouts(Boolean useAdaptiveHttpReadTimeouts)
+   {
+      this.useAdaptiveHttpReadTimeouts = useAdaptiveHttpReadTimeouts;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for adaptiveHttpReadTimeoutMinMillis
+    * @see #withAdaptiveHttpReadTimeoutMinMillis(Integer)
+    *******************************************************************************/
+   public Integer getAdaptiveHttpReadTimeoutMinMillis()
+   {
+      return (this.adaptiveHttpReadTimeoutMinMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for adaptiveHttpReadTimeoutMinMillis
+    * @see #withAdaptiveHttpReadTimeoutMinMillis(Integer)
+    *******************************************************************************/
+   public void setAdaptiveHttpReadTimeoutMinMillis(Integer adaptiveHttpReadTimeoutMinMillis)
+   {
+      this.adaptiveHttpReadTimeoutMinMillis = adaptiveHttpReadTimeoutMinMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for adaptiveHttpReadTimeoutMinMillis
+    *
+    * @param adaptiveHttpReadTimeoutMinMillis
+    * Sets the floor for adaptive read timeouts (see useAdaptiveHttpReadTimeouts).
+    * Must be non-null and > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withAdaptiveHttpReadTimeoutMinMillis(Integer adaptiveHttpReadTimeoutMinMillis)
+   {
+      this.adaptiveHttpReadTimeoutMinMillis = adaptiveHttpReadTimeoutMinMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for adaptiveHttpReadTimeoutPercentile
+    * @see #withAdaptiveHttpReadTimeoutPercentile(Integer)
+    *******************************************************************************/
+   public Integer getAdaptiveHttpReadTimeoutPercentile()
+   {
+      return (this.adaptiveHttpReadTimeoutPercentile);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for adaptiveHttpReadTimeoutPercentile
+    * @see #withAdaptiveHttpReadTimeoutPercentile(Integer)
+    *******************************************************************************/
+   public void setAdaptiveHttpReadTimeoutPercentile(Integer adaptiveHttpReadTimeoutPercentile)
+   {
+      this.adaptiveHttpReadTimeoutPercentile = adaptiveHttpReadTimeoutPercentile;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for adaptiveHttpReadTimeoutPercentile
+    *
+    * @param adaptiveHttpReadTimeoutPercentile
+    * Sets which percentile of a webhook's recent latencies adaptive read timeouts
+    * are based on (see useAdaptiveHttpReadTimeouts).  Must be non-null and between
+    * 1 and 100.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withAdaptiveHttpReadTimeoutPercentile(Integer adaptiveHttpReadTimeoutPercentile)
+   {
+      this.adaptiveHttpReadTimeoutPercentile = adaptiveHttpReadTimeoutPercentile;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for adaptiveHttpReadTimeoutMultiplier
+    * @see #withAdaptiveHttpReadTimeoutMultiplier(Integer)
+    *******************************************************************************/
+   public Integer getAdaptiveHttpReadTimeoutMultiplier()
+   {
+      return (this.adaptiveHttpReadTimeoutMultiplier);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for adaptiveHttpReadTimeoutMultiplier
+    * @see #withAdaptiveHttpReadTimeoutMultiplier(Integer)
+    *******************************************************************************/
+   public void setAdaptiveHttpReadTimeoutMultiplier(Integer adaptiveHttpReadTimeoutMultiplier)
+   {
+      this.adaptiveHttpReadTimeoutMultiplier = adaptiveHttpReadTimeoutMultiplier;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for adaptiveHttpReadTimeoutMultiplier
+    *
+    * @param adaptiveHttpReadTimeoutMultiplier
+    * Sets the factor that the percentile latency is multiplied by, to compute an
+    * adaptive read timeout (see useAdaptiveHttpReadTimeouts).  Must be non-null
+    * and >= 1.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withAdaptiveHttpReadTimeoutMultiplier(Integer adaptiveHttpReadTimeoutMultiplier)
+   {
+      this.adaptiveHttpReadTimeoutMultiplier = adaptiveHttpReadTimeoutMultiplier;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for maxConcurrentSendsPerWebhook
+    * @see #withMaxConcurrentSendsPerWebhook(Integer)
+    *******************************************************************************/
+   public Integer getMaxConcurrentSendsPerWebhook()
+   {
+      return (this.maxConcurrentSendsPerWebhook);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxConcurrentSendsPerWebhook
+    * @see #withMaxConcurrentSendsPerWebhook(Integer)
+    *******************************************************************************/
+   public void setMaxConcurrentSendsPerWebhook(Integer maxConcurrentSendsPerWebhook)
+   {
+      this.maxConcurrentSendsPerWebhook = maxConcurrentSendsPerWebhook;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxConcurrentSendsPerWebhook
+    *
+    * @param maxConcurrentSendsPerWebhook
+    * number of events for a single webhook that the send process will post
+    * concurrently (default 1, meaning one at a time).  can be overridden per-webhook
+    * (see Webhook.maxConcurrentSends).  values above maxHttpConnectionsPerWebhook
+    * will just wait on the connection pool.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withMaxConcurrentSendsPerWebhook(Integer maxConcurrentSendsPerWebhook)
+   {
+      this.maxConcurrentSendsPerWebhook = maxConcurrentSendsPerWebhook;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for maxSendThreads
+    * @see #withMaxSendThreads(Integer)
+    *******************************************************************************/
+   public Integer getMaxSendThreads()
+   {
+      return (this.maxSendThreads);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxSendThreads
+    * @see #withMaxSendThreads(Integer)
+    *******************************************************************************/
+   public void setMaxSendThreads(Integer maxSendThreads)
+   {
+      this.maxSendThreads = maxSendThreads;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxSendThreads
+    *
+    * @param maxSendThreads
+    * size of the one pool of threads (per node) that the send process runs
+    * concurrent sends on - for all webhooks and runs.  when it's busy, sends run
+    * on the submitting thread instead.  (idle threads are let go after a minute.)
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withMaxSendThreads(Integer maxSendThreads)
+   {
+      this.maxSendThreads = maxSendThreads;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useAsyncHttpSender
+    * @see #withUseAsyncHttpSender(Boolean)
+    *******************************************************************************/
+   public Boolean getUseAsyncHttpSender()
+   {
+      return (this.useAsyncHttpSender);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useAsyncHttpSender
+    * @see #withUseAsyncHttpSender(Boolean)
+    *******************************************************************************/
+   public void setUseAsyncHttpSender(Boolean useAsyncHttpSender)
+   {
+      this.useAsyncHttpSender = useAsyncHttpSender;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useAsyncHttpSender
+    *
+    * @param useAsyncHttpSender
+    * if true, the send process uses the AsyncWebhookEventSender (non-blocking JDK http
+    * client) instead of the (blocking) Apache client.  when webhooks allow concurrent
+    * sends, this lets their posts be in flight without a thread each.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUseAsyncHttpSender(Boolean useAsyncHttpSender)
+   {
+      this.useAsyncHttpSender = useAsyncHttpSender;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for maxResponseBodyBytes
+    * @see #withMaxResponseBodyBytes(Integer)
+    *******************************************************************************/
+   public Integer getMaxResponseBodyBytes()
+   {
+      return (this.maxResponseBodyBytes);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for maxResponseBodyBytes
+    * @see #withMaxResponseBodyBytes(Integer)
+    *******************************************************************************/
+   public void setMaxResponseBodyBytes(Integer maxResponseBodyBytes)
+   {
+      this.maxResponseBodyBytes = maxResponseBodyBytes;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for maxResponseBodyBytes
+    *
+    * @param maxResponseBodyBytes
+    * max number of bytes of a webhook's response body to read (e.g., for the error
+    * message of a failed post).  any more than this is not read - the connection is
+    * discarded instead.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withMaxResponseBodyBytes(Integer maxResponseBodyBytes)
+   {
+      this.maxResponseBodyBytes = maxResponseBodyBytes;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for logSuccessfulResponseBodies
+    * @see #withLogSuccessfulResponseBodies(Boolean)
+    *******************************************************************************/
+   public Boolean getLogSuccessfulResponseBodies()
+   {
+      return (this.logSuccessfulResponseBodies);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for logSuccessfulResponseBodies
+    * @see #withLogSuccessfulResponseBodies(Boolean)
+    *******************************************************************************/
+   public void setLogSuccessfulResponseBodies(Boolean logSuccessfulResponseBodies)
+   {
+      this.logSuccessfulResponseBodies = logSuccessfulResponseBodies;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for logSuccessfulResponseBodies
+    *
+    * @param logSuccessfulResponseBodies
+    * for debugging - if true, the (capped) body of successful responses is read and
+    * logged (at debug level).  by default, successful response bodies are not read
+    * into memory at all.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withLogSuccessfulResponseBodies(Boolean logSuccessfulResponseBodies)
+   {
+      this.logSuccessfulResponseBodies = logSuccessfulResponseBodies;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for gzipCacheMaxBytes
+    * @see #withGzipCacheMaxBytes(Integer)
+    *******************************************************************************/
+   public Integer getGzipCacheMaxBytes()
+   {
+      return (this.gzipCacheMaxBytes);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for gzipCacheMaxBytes
+    * @see #withGzipCacheMaxBytes(Integer)
+    *******************************************************************************/
+   public void setGzipCacheMaxBytes(Integer gzipCacheMaxBytes)
+   {
+      this.gzipCacheMaxBytes = gzipCacheMaxBytes;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for gzipCacheMaxBytes
+    *
+    * @param gzipCacheMaxBytes
+    * max total bytes of gzipped post bodies to keep cached (for webhooks using gzip
+    * compression), so that retried events aren't re-compressed.  0 disables the cache.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withGzipCacheMaxBytes(Integer gzipCacheMaxBytes)
+   {
+      this.gzipCacheMaxBytes = gzipCacheMaxBytes;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for outcomeFlushMaxRecords
+    * @see #withOutcomeFlushMaxRecords(Integer)
+    *******************************************************************************/
+   public Integer getOutcomeFlushMaxRecords()
+   {
+      return (this.outcomeFlushMaxRecords);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for outcomeFlushMaxRecords
+    * @see #withOutcomeFlushMaxRecords(Integer)
+    *******************************************************************************/
+   public void setOutcomeFlushMaxRecords(Integer outcomeFlushMaxRecords)
+   {
+      this.outcomeFlushMaxRecords = outcomeFlushMaxRecords;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for outcomeFlushMaxRecords
+    *
+    * @param outcomeFlushMaxRecords
+    * when sending a page of events, how many send outcomes (send logs and event
+    * status updates) to buffer before writing them to the database together
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withOutcomeFlushMaxRecords(Integer outcomeFlushMaxRecords)
+   {
+      this.outcomeFlushMaxRecords = outcomeFlushMaxRecords;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for outcomeFlushMaxMillis
+    * @see #withOutcomeFlushMaxMillis(Integer)
+    *******************************************************************************/
+   public Integer getOutcomeFlushMaxMillis()
+   {
+      return (this.outcomeFlushMaxMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for outcomeFlushMaxMillis
+    * @see #withOutcomeFlushMaxMillis(Integer)
+    *******************************************************************************/
+   public void setOutcomeFlushMaxMillis(Integer outcomeFlushMaxMillis)
+   {
+      this.outcomeFlushMaxMillis = outcomeFlushMaxMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for outcomeFlushMaxMillis
+    *
+    * @param outcomeFlushMaxMillis
+    * when sending a page of events, the longest to buffer send outcomes before
+    * writing them to the database (checked as outcomes are added)
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withOutcomeFlushMaxMillis(Integer outcomeFlushMaxMillis)
+   {
+      this.outcomeFlushMaxMillis = outcomeFlushMaxMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for dispatchMode
+    * @see #withDispatchMode(DispatchMode)
+    *******************************************************************************/
+   public DispatchMode getDispatchMode()
+   {
+      return (this.dispatchMode);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for dispatchMode
+    * @see #withDispatchMode(DispatchMode)
+    *******************************************************************************/
+   public void setDispatchMode(DispatchMode dispatchMode)
+   {
+      this.dispatchMode = dispatchMode;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for dispatchMode
+    *
+    * @param dispatchMode
+    * how the SendWebhookEvent process is scheduled:  PER_WEBHOOK_JOB (the default)
+    * syncs one scheduled job per webhook, each polling for its own events - fine for
+    * small installs.  SINGLE_DISPATCHER instead schedules one DispatchWebhookEvents
+    * process, which finds the webhooks with due events in one grouped query, and
+    * runs the send process for just those, over a pool of worker threads.  After a
+    * change of mode, the existing per-webhook jobs are re-synced (activated or
+    * deactivated) by the first DispatchWebhookEvents run on a node.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withDispatchMode(DispatchMode dispatchMode)
+   {
+      this.dispatchMode = dispatchMode;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for dispatcherMaxConcurrentWebhooks
+    * @see #withDispatcherMaxConcurrentWebhooks(Integer)
+    *******************************************************************************/
+   public Integer getDispatcherMaxConcurrentWebhooks()
+   {
+      return (this.dispatcherMaxConcurrentWebhooks);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for dispatcherMaxConcurrentWebhooks
+    * @see #withDispatcherMaxConcurrentWebhooks(Integer)
+    *******************************************************************************/
+   public void setDispatcherMaxConcurrentWebhooks(Integer dispatcherMaxConcurrentWebhooks)
+   {
+      this.dispatcherMaxConcurrentWebhooks = dispatcherMaxConcurrentWebhooks;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for dispatcherMaxConcurrentWebhooks
+    *
+    * @param dispatcherMaxConcurrentWebhooks
+    * in SINGLE_DISPATCHER mode, how many webhooks the dispatcher may send events
+    * to at once (i.e., the size of its worker pool).
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withDispatcherMaxConcurrentWebhooks(Integer dispatcherMaxConcurrentWebhooks)
+   {
+      this.dispatcherMaxConcurrentWebhooks = dispatcherMaxConcurrentWebhooks;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for useRetryTimingWheel
+    * @see #withUseRetryTimingWheel(Boolean)
+    *******************************************************************************/
+   public Boolean getUseRetryTimingWheel()
+   {
+      return (this.useRetryTimingWheel);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for useRetryTimingWheel
+    * @see #withUseRetryTimingWheel(Boolean)
+    *******************************************************************************/
+   public void setUseRetryTimingWheel(Boolean useRetryTimingWheel)
+   {
+      this.useRetryTimingWheel = useRetryTimingWheel;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for useRetryTimingWheel
+    *
+    * @param useRetryTimingWheel
+    * if true, each node keeps an in-memory timing wheel of events awaiting retry
+    * (loaded from the database the first time the SendWebhookEvent process runs on
+    * the node, and fed as send outcomes are stored), and runs the SendWebhookEvent
+    * process for an event's webhook as soon as its retry is due - rather than
+    * waiting for the next scheduled run to find it.  the database remains the
+    * source of truth:  scheduled runs still find any events the wheel misses.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUseRetryTimingWheel(Boolean useRetryTimingWheel)
+   {
+      this.useRetryTimingWheel = useRetryTimingWheel;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for retryTimingWheelTickMillis
+    * @see #withRetryTimingWheelTickMillis(Integer)
+    *******************************************************************************/
+   public Integer getRetryTimingWheelTickMillis()
+   {
+      return (this.retryTimingWheelTickMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for retryTimingWheelTickMillis
+    * @see #withRetryTimingWheelTickMillis(Integer)
+    *******************************************************************************/
+   public void setRetryTimingWheelTickMillis(Integer retryTimingWheelTickMillis)
+   {
+      this.retryTimingWheelTickMillis = retryTimingWheelTickMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for retryTimingWheelTickMillis
+    *
+    * @param retryTimingWheelTickMillis
+    * how often (and so, how precisely) the retry timing wheel checks for due
+    * events, when useRetryTimingWheel is true.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withRetryTimingWheelTickMillis(Integer retryTimingWheelTickMillis)
+   {
+      this.retryTimingWheelTickMillis = retryTimingWheelTickMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for retryTimingWheelSlots
+    * @see #withRetryTimingWheelSlots(Integer)
+    *******************************************************************************/
+   public Integer getRetryTimingWheelSlots()
+   {
+      return (this.retryTimingWheelSlots);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for retryTimingWheelSlots
+    * @see #withRetryTimingWheelSlots(Integer)
+    *******************************************************************************/
+   public void setRetryTimingWheelSlots(Integer retryTimingWheelSlots)
+   {
+      this.retryTimingWheelSlots = retryTimingWheelSlots;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for retryTimingWheelSlots
+    *
+    * @param retryTimingWheelSlots
+    * number of slots (each covering one tick) in the retry timing wheel.  events
+    * due further out than one revolution of the wheel share slots with nearer
+    * ones, and are skipped over until their tick comes around.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withRetryTimingWheelSlots(Integer retryTimingWheelSlots)
+   {
+      this.retryTimingWheelSlots = retryTimingWheelSlots;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for nonRetryableHttpStatusCodes
+    * @see #withNonRetryableHttpStatusCodes(List)
+    *******************************************************************************/
+   public List<Integer> getNonRetryableHttpStatusCodes()
+   {
+      return (this.nonRetryableHttpStatusCodes);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for nonRetryableHttpStatusCodes
+    * @see #withNonRetryableHttpStatusCodes(List)
+    *******************************************************************************/
+   public void setNonRetryableHttpStatusCodes(List<Integer> nonRetryableHttpStatusCodes)
+   {
+      this.nonRetryableHttpStatusCodes = nonRetryableHttpStatusCodes;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for nonRetryableHttpStatusCodes
+    *
+    * @param nonRetryableHttpStatusCodes
+    * http status codes for which a failed send is not retried (under any retry
+    * policy) - the event is marked as failed right away.  e.g., 410 (Gone).
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withNonRetryableHttpStatusCodes(List<Integer> nonRetryableHttpStatusCodes)
+   {
+      this.nonRetryableHttpStatusCodes = nonRetryableHttpStatusCodes;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for retryBaseSeconds
+    * @see #withRetryBaseSeconds(Integer)
+    *******************************************************************************/
+   public Integer getRetryBaseSeconds()
+   {
+      return (this.retryBaseSeconds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for retryBaseSeconds
+    * @see #withRetryBaseSeconds(Integer)
+    *******************************************************************************/
+   public void setRetryBaseSeconds(Integer retryBaseSeconds)
+   {
+      this.retryBaseSeconds = retryBaseSeconds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for retryBaseSeconds
+    *
+    * @param retryBaseSeconds
+    * base delay before retrying a failed event, for webhooks using the EXPONENTIAL
+    * or DECORRELATED_JITTER retry policies.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withRetryBaseSeconds(Integer retryBaseSeconds)
+   {
+      this.retryBaseSeconds = retryBaseSeconds;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for retryMaxSeconds
+    * @see #withRetryMaxSeconds(Integer)
+    *******************************************************************************/
+   public Integer getRetryMaxSeconds()
+   {
+      return (this.retryMaxSeconds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for retryMaxSeconds
+    * @see #withRetryMaxSeconds(Integer)
+    *******************************************************************************/
+   public void setRetryMaxSeconds(Integer retryMaxSeconds)
+   {
+      this.retryMaxSeconds = retryMaxSeconds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for retryMaxSeconds
+    *
+    * @param retryMaxSeconds
+    * longest delay before retrying a failed event, for webhooks using the
+    * EXPONENTIAL or DECORRELATED_JITTER retry policies.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withRetryMaxSeconds(Integer retryMaxSeconds)
+   {
+      this.retryMaxSeconds = retryMaxSeconds;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for healthWindowSize
+    * @see #withHealthWindowSize(Integer)
+    *******************************************************************************/
+   public Integer getHealthWindowSize()
+   {
+      return (this.healthWindowSize);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for healthWindowSize
+    * @see #withHealthWindowSize(Integer)
+    *******************************************************************************/
+   public void setHealthWindowSize(Integer healthWindowSize)
+   {
+      this.healthWindowSize = healthWindowSize;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for healthWindowSize
+    *
+    * @param healthWindowSize
+    * number of most-recent send outcomes (per webhook) that the WebhookHealthManager
+    * looks at for its failure rate, timeout rate, and p95 latency thresholds.
+    * Samples are kept in memory, by the process sending the events.
+    *
+    * Value must be > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withHealthWindowSize(Integer healthWindowSize)
+   {
+      this.healthWindowSize = healthWindowSize;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for healthWindowMinSamples
+    * @see #withHealthWindowMinSamples(Integer)
+    *******************************************************************************/
+   public Integer getHealthWindowMinSamples()
+   {
+      return (this.healthWindowMinSamples);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for healthWindowMinSamples
+    * @see #withHealthWindowMinSamples(Integer)
+    *******************************************************************************/
+   public void setHealthWindowMinSamples(Integer healthWindowMinSamples)
+   {
+      this.healthWindowMinSamples = healthWindowMinSamples;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for healthWindowMinSamples
+    *
+    * @param healthWindowMinSamples
+    * minimum number of send outcomes a webhook must have in its health window
+    * before the failure rate, timeout rate, or p95 latency thresholds apply.
+    *
+    * Value must be > 0.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withHealthWindowMinSamples(Integer healthWindowMinSamples)
+   {
+      this.healthWindowMinSamples = healthWindowMinSamples;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for unhealthyFailureRatePercent
+    * @see #withUnhealthyFailureRatePercent(Integer)
+    *******************************************************************************/
+   public Integer getUnhealthyFailureRatePercent()
+   {
+      return (this.unhealthyFailureRatePercent);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for unhealthyFailureRatePercent
+    * @see #withUnhealthyFailureRatePercent(Integer)
+    *******************************************************************************/
+   public void setUnhealthyFailureRatePercent(Integer unhealthyFailureRatePercent)
+   {
+      this.unhealthyFailureRatePercent = unhealthyFailureRatePercent;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for unhealthyFailureRatePercent
+    *
+    * @param unhealthyFailureRatePercent
+    * percent of the sends in a webhook's health window that, if failed, make a
+    * HEALTHY webhook go UNHEALTHY (regardless of whether they were in-a-row).
+    *
+    * Use a null value (the default) to disable this check.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUnhealthyFailureRatePercent(Integer unhealthyFailureRatePercent)
+   {
+      this.unhealthyFailureRatePercent = unhealthyFailureRatePercent;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for unhealthyTimeoutRatePercent
+    * @see #withUnhealthyTimeoutRatePercent(Integer)
+    *******************************************************************************/
+   public Integer getUnhealthyTimeoutRatePercent()
+   {
+      return (this.unhealthyTimeoutRatePercent);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for unhealthyTimeoutRatePercent
+    * @see #withUnhealthyTimeoutRatePercent(Integer)
+    *******************************************************************************/
+   public void setUnhealthyTimeoutRatePercent(Integer unhealthyTimeoutRatePercent)
+   {
+      this.unhealthyTimeoutRatePercent = unhealthyTimeoutRatePercent;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for unhealthyTimeoutRatePercent
+    *
+    * @param unhealthyTimeoutRatePercent
+    * percent of the sends in a webhook's health window that, if timed out, make
+    * a HEALTHY webhook go UNHEALTHY.
+    *
+    * Use a null value (the default) to disable this check.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUnhealthyTimeoutRatePercent(Integer unhealthyTimeoutRatePercent)
+   {
+      this.unhealthyTimeoutRatePercent = unhealthyTimeoutRatePercent;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for unhealthyP95LatencyMillis
+    * @see #withUnhealthyP95LatencyMillis(Integer)
+    *******************************************************************************/
+   public Integer getUnhealthyP95LatencyMillis()
+   {
+      return (this.unhealthyP95LatencyMillis);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for unhealthyP95LatencyMillis
+    * @see #withUnhealthyP95LatencyMillis(Integer)
+    *******************************************************************************/
+   public void setUnhealthyP95LatencyMillis(Integer unhealthyP95LatencyMillis)
+   {
+      this.unhealthyP95LatencyMillis = unhealthyP95LatencyMillis;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for unhealthyP95LatencyMillis
+    *
+    * @param unhealthyP95LatencyMillis
+    * p95 latency (of the sends in a webhook's health window) at or above which a
+    * HEALTHY webhook goes UNHEALTHY - i.e., a latency SLO for webhooks.
+    *
+    * Use a null value (the default) to disable this check.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withUnhealthyP95LatencyMillis(Integer unhealthyP95LatencyMillis)
+   {
+      this.unhealthyP95LatencyMillis = unhealthyP95LatencyMillis;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    * Getter for subscriptionVersionCheckSeconds
+    * @see #withSubscriptionVersionCheckSeconds(Integer)
+    *******************************************************************************/
+   public Integer getSubscriptionVersionCheckSeconds()
+   {
+      return (this.subscriptionVersionCheckSeconds);
+   }
+
+
+
+   /*******************************************************************************
+    * Setter for subscriptionVersionCheckSeconds
+    * @see #withSubscriptionVersionCheckSeconds(Integer)
+    *******************************************************************************/
+   public void setSubscriptionVersionCheckSeconds(Integer subscriptionVersionCheckSeconds)
+   {
+      this.subscriptionVersionCheckSeconds = subscriptionVersionCheckSeconds;
+   }
+
+
+
+   /*******************************************************************************
+    * Fluent setter for subscriptionVersionCheckSeconds
+    *
+    * @param subscriptionVersionCheckSeconds
+    * How often (at most, in seconds) each node checks the webhookCacheVersion
+    * table, to find out if subscriptions or webhooks were changed (e.g., on
+    * another node) - and if so, reloads its subscription snapshot.  Null (the
+    * default) to not check - in which case other nodes only see changes once
+    * their snapshots expire (per memoizationTimeoutMinutes).
+    *
+    * When set, every insert, update, or delete of a webhook or subscription
+    * also writes to the webhookCacheVersion table - so that table must exist
+    * (e.g., be created by a migration) before turning this on.
+    *
+    * @return this
+    *******************************************************************************/
+   public WebhooksQBitConfig withSubscriptionVersionCheckSeconds(Integer subscriptionVersionCheckSeconds)
+   {
+      this.subscriptionVersionCheckSeconds = subscriptionVersionCheckSeconds;
+      return (this);
+   }
+
+
+
    /*******************************************************************************
     * Getter for defaultBackendNameForTables
     * @see #withDefaultBackendNameForTables(String)
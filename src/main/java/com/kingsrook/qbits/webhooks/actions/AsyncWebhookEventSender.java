@@ -0,0 +1,438 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookEvent;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+import com.kingsrook.qbits.webhooks.model.WebhookHttpVersion;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import org.apache.http.HttpHeaders;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** webhook event sender that uses the JDK's non-blocking java.net.http client,
+ ** instead of the Apache (blocking) client used by the base class.
+ **
+ ** sendEventAsync returns a future, without holding a thread while the request
+ ** is in flight - so a small pool of threads can have many requests in flight.
+ ** Only the completion work (storing the send log & updating the event) runs
+ ** on a thread, from a small shared pool (owned, and shut down, by the
+ ** WebhookHttpClientManager).  Nor is a thread held while waiting under the
+ ** webhook's outbound rate limit:  the post is started from that pool once
+ ** its reserved time comes.
+ **
+ ** This client also supports HTTP/2 (see getHttpVersion), which the Apache
+ ** client does not - so webhooks set to require HTTP/2 are always sent with
+ ** this class.
+ **
+ ** The synchronous methods of the base class (sendEvent, sendEventBatch) also
+ ** work, using this class's client, by overriding doPost.  Note that the read
+ ** timeout is applied by the JDK client as a timeout for the whole response,
+ ** rather than per socket read.
+ *******************************************************************************/
+public class AsyncWebhookEventSender extends WebhookEventSender
+{
+   private static final QLogger LOG = QLogger.getLogger(AsyncWebhookEventSender.class);
+
+
+
+   /***************************************************************************
+    ** send an event, without blocking while the post is in flight.  the
+    ** returned future completes (with the same outcome as sendEvent would
+    ** return) after the send log is stored and the event is updated.  errors
+    ** (including unchecked ones, from starting the post) come back as a failed
+    ** future, rather than being thrown.
+    ***************************************************************************/
+   public CompletableFuture<WebhookSendOutcome> sendEventAsync(WebhookEvent webhookEvent, Webhook webhook, List<WebhookEventSendLog> sendLogs)
+   {
+      try
+      {
+         WebhookSendOutcome deferredOutcome = markSendingOrDefer(webhookEvent, webhook);
+         if(deferredOutcome != null)
+         {
+            return (CompletableFuture.completedFuture(deferredOutcome));
+         }
+
+         WebhookEventSendLog sendLog = newSendLog(webhookEvent, webhook);
+
+         HttpRequest request;
+         try
+         {
+            request = buildHttpRequest(getPostBody(webhookEvent), WebhookCompressedBodyCache.getCacheKey(webhookEvent.getId()), webhook);
+         }
+         catch(Exception e)
+         {
+            LOG.warn("Exception preparing http request", e, logPair("webhookId", webhook.getId()));
+            PostResult postResult = attemptPost(sendLog, () ->
+            {
+               throw (new WebhookPostException(e.getMessage(), e));
+            });
+            return (CompletableFuture.completedFuture(storePostResult(webhookEvent, webhook, sendLogs, postResult)));
+         }
+
+         long waitMillis;
+         try
+         {
+            waitMillis = WebhookOutboundRateLimiter.reserve(webhook);
+         }
+         catch(WebhookRateLimitException e)
+         {
+            ///////////////////////////////////////////////////////////////////////
+            // too long a wait under the webhook's outbound limit - so defer the //
+            // event, as if the webhook had rate-limited us, instead of waiting. //
+            ///////////////////////////////////////////////////////////////////////
+            PostResult postResult = attemptPost(sendLog, () ->
+            {
+               throw (e);
+            });
+            return (CompletableFuture.completedFuture(storePostResult(webhookEvent, webhook, sendLogs, postResult)));
+         }
+
+         HttpClient      httpClient         = getAsyncHttpClient();
+         ExecutorService completionExecutor = WebhookHttpClientManager.getAsyncCompletionExecutor();
+         QInstance       qInstance          = QContext.getQInstance();
+         QSession        qSession           = QContext.getQSession();
+         long            requestStartMillis = System.currentTimeMillis() + waitMillis;
+
+         /////////////////////////////////////////////////////////////////////////
+         // if the outbound limit has us wait, start the post when our reserved //
+         // time comes (from the completion pool), instead of sleeping till it. //
+         /////////////////////////////////////////////////////////////////////////
+         CompletableFuture<HttpResponse<String>> responseFuture;
+         if(waitMillis > 0)
+         {
+            Executor delayedExecutor = CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS, completionExecutor);
+            responseFuture = CompletableFuture.supplyAsync(() -> request, delayedExecutor).thenCompose(delayedRequest -> executeAsyncHttpRequest(httpClient, delayedRequest));
+         }
+         else
+         {
+            responseFuture = executeAsyncHttpRequest(httpClient, request);
+         }
+
+         return responseFuture.handleAsync((response, throwable) ->
+         {
+            try
+            {
+               QContext.init(qInstance, qSession);
+               PostResult postResult = attemptPost(sendLog, () -> handleAsyncResponse(webhook, requestStartMillis, response, throwable, sendLog));
+               return (storePostResult(webhookEvent, webhook, sendLogs, postResult));
+            }
+            catch(QException e)
+            {
+               throw (new CompletionException(e));
+            }
+            finally
+            {
+               QContext.clear();
+            }
+         }, completionExecutor);
+      }
+      catch(QException | RuntimeException e)
+      {
+         return (CompletableFuture.failedFuture(e));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** synchronous post using the non-blocking client - so that the base class's
+    ** sendEvent and sendEventBatch also go through this client.
+    ***************************************************************************/
+   @Override
+   protected void doPost(String postBody, String bodyCacheKey, Webhook webhook, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      HttpRequest request;
+      try
+      {
+         request = buildHttpRequest(postBody, bodyCacheKey, webhook);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Exception preparing http request", e, logPair("webhookId", webhook.getId()));
+         throw (new WebhookPostException(e.getMessage(), e));
+      }
+
+      WebhookOutboundRateLimiter.acquire(webhook);
+
+      long                 requestStartMillis = System.currentTimeMillis();
+      HttpResponse<String> response           = null;
+      Throwable            throwable          = null;
+      try
+      {
+         response = executeAsyncHttpRequest(getAsyncHttpClient(), request).join();
+      }
+      catch(CompletionException e)
+      {
+         throwable = e;
+      }
+
+      handleAsyncResponse(webhook, requestStartMillis, response, throwable, sendLog);
+   }
+
+
+
+   /***************************************************************************
+    ** build the request to post a body to a webhook (gzipped, if the webhook
+    ** uses compression - with the bodyCacheKey, which may be null, used to
+    ** cache the compressed body).
+    ***************************************************************************/
+   protected HttpRequest buildHttpRequest(String postBody, String bodyCacheKey, Webhook webhook) throws IOException
+   {
+      HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(webhook.getUrl()))
+         .version(getHttpVersion(webhook))
+         .timeout(Duration.ofMillis(getReadTimeoutMillis(webhook)))
+         .header("Content-Type", "application/json");
+
+      if(isUseGzipCompression(webhook))
+      {
+         builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+         builder.POST(HttpRequest.BodyPublishers.ofByteArray(WebhookCompressedBodyCache.getOrCompress(bodyCacheKey, postBody)));
+      }
+      else
+      {
+         builder.POST(HttpRequest.BodyPublishers.ofString(postBody, StandardCharsets.UTF_8));
+      }
+
+      return (builder.build());
+   }
+
+
+
+   /***************************************************************************
+    ** get the http version to use for a webhook, per its httpVersionId.  for
+    ** AUTO:  https urls use HTTP/2 - which the client negotiates via ALPN,
+    ** falling back to HTTP/1.1 if the server doesn't support it.  plain http
+    ** urls use HTTP/1.1, rather than have the client send h2c upgrade requests,
+    ** which some servers mishandle.
+    ***************************************************************************/
+   protected HttpClient.Version getHttpVersion(Webhook webhook)
+   {
+      WebhookHttpVersion httpVersion = WebhookHttpVersion.getById(webhook.getHttpVersionId());
+      if(WebhookHttpVersion.HTTP_1_1.equals(httpVersion))
+      {
+         return (HttpClient.Version.HTTP_1_1);
+      }
+      else if(WebhookHttpVersion.HTTP_2.equals(httpVersion))
+      {
+         return (HttpClient.Version.HTTP_2);
+      }
+
+      boolean isHttps = webhook.getUrl() != null && webhook.getUrl().toLowerCase().startsWith("https:");
+      return (isHttps ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+   }
+
+
+
+   /***************************************************************************
+    ** execute an http request - returning a future for its response.  the
+    ** extension point (e.g., for tests) that corresponds to executeHttpRequest
+    ** in the base class.
+    ***************************************************************************/
+   protected CompletableFuture<HttpResponse<String>> executeAsyncHttpRequest(HttpClient httpClient, HttpRequest request)
+   {
+      return httpClient.sendAsync(request, newResponseBodyHandler());
+   }
+
+
+
+   /***************************************************************************
+    ** body handler for responses:  successful responses' bodies are discarded
+    ** (unless logging them for debugging) - others are read only up to the
+    ** configured max bytes.
+    ***************************************************************************/
+   protected HttpResponse.BodyHandler<String> newResponseBodyHandler()
+   {
+      int     maxBytes                    = getMaxResponseBodyBytes();
+      boolean logSuccessfulResponseBodies = isLogSuccessfulResponseBodies();
+      return (responseInfo ->
+      {
+         if(isSuccessfulStatusCode(responseInfo.statusCode()) && !logSuccessfulResponseBodies)
+         {
+            return (HttpResponse.BodySubscribers.replacing(null));
+         }
+         return (new CappedBodySubscriber(maxBytes));
+      });
+   }
+
+
+
+   /***************************************************************************
+    ** get the (shared) non-blocking http client, from the WebhookHttpClientManager
+    ** (which owns its thread pool, and closes it).  it pools connections by
+    ** origin internally, so one client serves all webhooks - and, for origins
+    ** that speak HTTP/2, concurrent posts (for any webhooks on that origin)
+    ** are multiplexed over a single connection.
+    ***************************************************************************/
+   protected HttpClient getAsyncHttpClient()
+   {
+      return (WebhookHttpClientManager.getAsyncHttpClient(executor -> HttpClient.newBuilder()
+         .version(HttpClient.Version.HTTP_2)
+         .connectTimeout(Duration.ofMillis(getConnectTimeoutMillis()))
+         .followRedirects(HttpClient.Redirect.NEVER)
+         .executor(executor)
+         .build()));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private void handleAsyncResponse(Webhook webhook, long requestStartMillis, HttpResponse<String> response, Throwable throwable, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      if(throwable != null)
+      {
+         Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null) ? throwable.getCause() : throwable;
+         LOG.warn("Exception executing http request", cause, logPair("webhookId", webhook.getId()));
+         recordTimeoutLatency(webhook, cause);
+         throw (new WebhookPostException(cause.getMessage(), cause));
+      }
+
+      long latencyMillis = System.currentTimeMillis() - requestStartMillis;
+      handleResponse(webhook, latencyMillis, response.statusCode(), response.body(), response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null), sendLog);
+   }
+
+
+
+   /***************************************************************************
+    ** body subscriber that keeps only the first maxBytes of a body (as a utf-8
+    ** string) - cancelling its subscription once it has them, so the rest of
+    ** the body is never read.
+    ***************************************************************************/
+   private static class CappedBodySubscriber implements HttpResponse.BodySubscriber<String>
+   {
+      private final int                       maxBytes;
+      private final ByteArrayOutputStream     bytes = new ByteArrayOutputStream();
+      private final CompletableFuture<String> body  = new CompletableFuture<>();
+      private       Flow.Subscription         subscription;
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      CappedBodySubscriber(int maxBytes)
+      {
+         this.maxBytes = maxBytes;
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public CompletionStage<String> getBody()
+      {
+         return (body);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void onSubscribe(Flow.Subscription subscription)
+      {
+         this.subscription = subscription;
+         subscription.request(Long.MAX_VALUE);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void onNext(List<ByteBuffer> buffers)
+      {
+         if(body.isDone())
+         {
+            return;
+         }
+
+         for(ByteBuffer buffer : buffers)
+         {
+            int    length = Math.min(buffer.remaining(), maxBytes - bytes.size());
+            byte[] chunk  = new byte[length];
+            buffer.get(chunk);
+            bytes.write(chunk, 0, length);
+         }
+
+         if(bytes.size() >= maxBytes)
+         {
+            body.complete(bytes.toString(StandardCharsets.UTF_8));
+            subscription.cancel();
+         }
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void onError(Throwable throwable)
+      {
+         body.completeExceptionally(throwable);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void onComplete()
+      {
+         body.complete(bytes.toString(StandardCharsets.UTF_8));
+      }
+   }
+
+}
@@ -24,26 +24,67 @@ package com.kingsrook.qbits.webhooks.actions;
 
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
 import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizerInterface;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.AbstractActionInput;
+import com.kingsrook.qqq.backend.core.model.actions.AbstractTableActionInput;
 import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 
 
 /*******************************************************************************
- ** table customizer that clears the memoizations in the WebhookSubscriptionsHelper
+ ** table customizer (for webhooks and webhook subscriptions) that applies
+ ** changes to the WebhookSubscriptionsHelper's subscription snapshot - only
+ ** for the records that were touched - and changes the subscriptions' cache
+ ** version, so other nodes reload their snapshots.
  *******************************************************************************/
 public class ClearWebhookSubscriptionHelperMemoizationsTableCustomizer implements TableCustomizerInterface
 {
+   //////////////////////////////////////////////////////////////////////////
+   // webhook fields that are updated as events are sent, and aren't used  //
+   // from other nodes' snapshots - so updates of only these (and the keys //
+   // & dates set along with them) don't change the cache version.         //
+   //////////////////////////////////////////////////////////////////////////
+   private static final Set<String> SEND_TRACKING_FIELD_NAMES = Set.of("id", "modifyDate", "healthStatusId", "healthStatusChangedTimestamp", "consecutiveFailCount", "lastAttemptTimestamp");
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
    @Override
    public List<QRecord> postInsertOrUpdate(AbstractActionInput input, List<QRecord> records, Optional<List<QRecord>> oldRecordList) throws QException
    {
-      WebhookSubscriptionsHelper.clearMemoizations();;
+      String tableName = input instanceof AbstractTableActionInput tableActionInput ? tableActionInput.getTableName() : null;
+      if(WebhookSubscription.TABLE_NAME.equals(tableName))
+      {
+         WebhookSubscriptionsHelper.onSubscriptionsStored(getIds(records), getTransaction(input));
+         WebhookSubscriptionsHelper.changeSubscriptionsVersion(getTransaction(input));
+      }
+      else if(Webhook.TABLE_NAME.equals(tableName))
+      {
+         //////////////////////////////////////////////////////////////////////////
+         // webhooks not in the snapshot (e.g., new ones, which don't have any   //
+         // subscriptions yet) are ignored; others get the stored values merged. //
+         //////////////////////////////////////////////////////////////////////////
+         WebhookSubscriptionsHelper.onWebhooksUpdated(records);
+         if(input instanceof UpdateInput && records.stream().anyMatch(r -> !SEND_TRACKING_FIELD_NAMES.containsAll(r.getValues().keySet())))
+         {
+            WebhookSubscriptionsHelper.changeSubscriptionsVersion(getTransaction(input));
+         }
+      }
+      else
+      {
+         WebhookSubscriptionsHelper.clearMemoizations();
+      }
       return (records);
    }
 
@@ -55,7 +96,53 @@ public class ClearWebhookSubscriptionHelperMemoizationsTableCustomizer implement
    @Override
    public List<QRecord> postDelete(DeleteInput deleteInput, List<QRecord> records) throws QException
    {
-      WebhookSubscriptionsHelper.clearMemoizations();;
+      List<Integer> ids = getIds(records);
+      if(ids.isEmpty())
+      {
+         WebhookSubscriptionsHelper.clearMemoizations();
+      }
+      else if(WebhookSubscription.TABLE_NAME.equals(deleteInput.getTableName()))
+      {
+         WebhookSubscriptionsHelper.onSubscriptionsDeleted(ids);
+      }
+      else if(Webhook.TABLE_NAME.equals(deleteInput.getTableName()))
+      {
+         WebhookSubscriptionsHelper.onWebhooksDeleted(ids);
+      }
+      else
+      {
+         WebhookSubscriptionsHelper.clearMemoizations();
+      }
+
+      WebhookSubscriptionsHelper.changeSubscriptionsVersion(deleteInput.getTransaction());
       return (records);
    }
+
+
+
+   /***************************************************************************
+    ** get the transaction of an insert or update, if it has one.
+    ***************************************************************************/
+   private static QBackendTransaction getTransaction(AbstractActionInput input)
+   {
+      if(input instanceof InsertInput insertInput)
+      {
+         return (insertInput.getTransaction());
+      }
+      else if(input instanceof UpdateInput updateInput)
+      {
+         return (updateInput.getTransaction());
+      }
+      return (null);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static List<Integer> getIds(List<QRecord> records)
+   {
+      return (records == null ? List.of() : records.stream().map(r -> r.getValueInteger("id")).filter(Objects::nonNull).toList());
+   }
 }
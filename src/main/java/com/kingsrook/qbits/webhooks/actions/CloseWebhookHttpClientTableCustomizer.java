@@ -0,0 +1,93 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizerInterface;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.AbstractActionInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+
+
+/*******************************************************************************
+ ** table customizer for the webhook table, that closes the pooled http client
+ ** (in the WebhookHttpClientManager), and forgets tracked latencies (in the
+ ** WebhookLatencyTracker), for webhooks that are deleted, disabled, or have
+ ** their url changed.
+ *******************************************************************************/
+public class CloseWebhookHttpClientTableCustomizer implements TableCustomizerInterface
+{
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   @Override
+   public List<QRecord> postInsertOrUpdate(AbstractActionInput input, List<QRecord> records, Optional<List<QRecord>> oldRecordList) throws QException
+   {
+      Map<Serializable, QRecord> oldRecordMap = CollectionUtils.listToMap(oldRecordList.orElse(Collections.emptyList()), r -> r.getValue("id"));
+
+      for(QRecord record : records)
+      {
+         /////////////////////////////////////////////////////////////////////////////
+         // note - inserted records won't have a client yet, so closing is a no-op; //
+         // and if we don't have an old record, assume a given url is a change.     //
+         /////////////////////////////////////////////////////////////////////////////
+         Integer webhookId = record.getValueInteger("id");
+         QRecord oldRecord = oldRecordMap.get(webhookId);
+
+         boolean urlChanged = record.getValues().containsKey("url") && (oldRecord == null || !Objects.equals(oldRecord.getValueString("url"), record.getValueString("url")));
+         boolean disabled   = WebhookActiveStatus.DISABLED.getId().equals(record.getValueInteger("activeStatusId"));
+         if(urlChanged || disabled)
+         {
+            WebhookHttpClientManager.close(webhookId);
+            WebhookLatencyTracker.clear(webhookId);
+         }
+      }
+
+      return (records);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   @Override
+   public List<QRecord> postDelete(DeleteInput deleteInput, List<QRecord> records) throws QException
+   {
+      for(QRecord record : records)
+      {
+         WebhookHttpClientManager.close(record.getValueInteger("id"));
+         WebhookLatencyTracker.clear(record.getValueInteger("id"));
+      }
+      return (records);
+   }
+}
@@ -0,0 +1,60 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+
+
+/*******************************************************************************
+ ** retry policy with "decorrelated jitter":  each delay is random, between the
+ ** qbit config's retryBaseSeconds and 3 times the previous delay (capped at
+ ** its retryMaxSeconds).  Delays grow roughly exponentially, but events that
+ ** failed together drift apart with each retry, rather than staying in step.
+ *******************************************************************************/
+public class DecorrelatedJitterWebhookRetryPolicy implements WebhookRetryPolicyInterface
+{
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   @Override
+   public Duration getRetryDelay(WebhookEventSendLog sendLog, Duration previousDelay)
+   {
+      long baseSeconds = WebhooksQBitConfig.getConfigValue(config -> config.getRetryBaseSeconds());
+      long maxSeconds  = WebhooksQBitConfig.getConfigValue(config -> config.getRetryMaxSeconds());
+
+      long previousSeconds = previousDelay == null ? baseSeconds : Math.max(baseSeconds, previousDelay.toSeconds());
+      long upperSeconds    = Math.min(maxSeconds, previousSeconds * 3);
+      if(upperSeconds <= baseSeconds)
+      {
+         return (Duration.ofSeconds(Math.min(baseSeconds, maxSeconds)));
+      }
+
+      return (Duration.ofSeconds(ThreadLocalRandom.current().nextLong(baseSeconds, upperSeconds + 1)));
+   }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+
+
+/*******************************************************************************
+ ** retry policy that doubles the delay with each attempt - from the qbit
+ ** config's retryBaseSeconds, up to its retryMaxSeconds - with "equal jitter":
+ ** half of the delay is fixed, and the other half random, so that events that
+ ** failed together don't all come back at the same instant.
+ *******************************************************************************/
+public class ExponentialWebhookRetryPolicy implements WebhookRetryPolicyInterface
+{
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   @Override
+   public Duration getRetryDelay(WebhookEventSendLog sendLog, Duration previousDelay)
+   {
+      long baseSeconds = WebhooksQBitConfig.getConfigValue(config -> config.getRetryBaseSeconds());
+      long maxSeconds  = WebhooksQBitConfig.getConfigValue(config -> config.getRetryMaxSeconds());
+
+      int  exponent       = Math.max(0, Math.min(sendLog.getAttemptNo() - 1, 30));
+      long ceilingSeconds = Math.min(maxSeconds, baseSeconds << exponent);
+      long halfSeconds    = ceilingSeconds / 2;
+      return (Duration.ofSeconds(halfSeconds + ThreadLocalRandom.current().nextLong(ceilingSeconds - halfSeconds + 1)));
+   }
+
+}
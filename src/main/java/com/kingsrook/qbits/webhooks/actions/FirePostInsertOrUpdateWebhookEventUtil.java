@@ -24,8 +24,12 @@ package com.kingsrook.qbits.webhooks.actions;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qbits.webhooks.registry.WebhookEventType;
 import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
@@ -54,23 +58,55 @@ public abstract class FirePostInsertOrUpdateWebhookEventUtil
     ***************************************************************************/
    public static WebhookEventBuilder processSubscriptions(String tableName, WebhookEventType webhookEventType, QRecord record, WebhookEventBuilder webhookEventBuilder, QBackendTransaction transaction)
    {
-      List<WebhookSubscription> webhookSubscriptions = CollectionUtils.nonNullList(WebhookSubscriptionsHelper.getSubscriptionsForEventType(webhookEventType));
+      return (processSubscriptions(tableName, webhookEventType, List.of(record), webhookEventBuilder, transaction));
+   }
+
+
+
+   /***************************************************************************
+    ** add events to the builder for each record that matches each subscription
+    ** to the event type - with each subscription evaluated against the whole
+    ** list of records at once.  Events are added record-by-record (then
+    ** subscription-by-subscription), as they would be if each record were
+    ** processed on its own.
+    ***************************************************************************/
+   public static WebhookEventBuilder processSubscriptions(String tableName, WebhookEventType webhookEventType, List<QRecord> records, WebhookEventBuilder webhookEventBuilder, QBackendTransaction transaction)
+   {
+      if(CollectionUtils.nullSafeIsEmpty(records))
+      {
+         return (webhookEventBuilder);
+      }
+
+      List<WebhookSubscription>              webhookSubscriptions         = CollectionUtils.nonNullList(WebhookSubscriptionsHelper.getSubscriptionsForEventType(webhookEventType));
+      Map<WebhookSubscription, Set<QRecord>> allowedRecordsBySubscription = new IdentityHashMap<>();
       for(WebhookSubscription webhookSubscription : webhookSubscriptions)
       {
          try
          {
-            if(WebhookSubscriptionsHelper.doesRecordMatchSubscription(webhookEventType, webhookSubscription, record, transaction))
+            Set<QRecord> allowedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
+            allowedRecords.addAll(WebhookSubscriptionsHelper.filterRecordsForSubscription(tableName, webhookSubscription, records, transaction));
+            allowedRecordsBySubscription.put(webhookSubscription, allowedRecords);
+         }
+         catch(QException e)
+         {
+            LOG.warn("Error processing webhookSubscription", e, logPair("tableName", tableName), logPair("recordCount", records.size()), logPair("webhookEventType", () -> webhookEventType.getName()), logPair("webhookSubscriptionId", webhookSubscription.getId()));
+         }
+      }
+
+      for(QRecord record : records)
+      {
+         for(WebhookSubscription webhookSubscription : webhookSubscriptions)
+         {
+            Set<QRecord> allowedRecords = allowedRecordsBySubscription.get(webhookSubscription);
+            if(allowedRecords != null && allowedRecords.contains(record))
             {
                LOG.info("Building webhook event", logPair("tableName", tableName), logPair("recordId", record.getValue("id")), logPair("webhookEventType", () -> webhookEventType.getName()), logPair("webhookSubscriptionId", webhookSubscription.getId()));
                webhookEventBuilder = Objects.requireNonNullElseGet(webhookEventBuilder, WebhookEventBuilder::new);
                webhookEventBuilder.addWebhookEvent(webhookSubscription, record);
             }
          }
-         catch(QException e)
-         {
-            LOG.warn("Error processing webhookSubscription", e, logPair("tableName", tableName), logPair("recordId", record.getValue("id")), logPair("webhookEventType", () -> webhookEventType.getName()), logPair("webhookSubscriptionId", webhookSubscription.getId()));
-         }
       }
+
       return webhookEventBuilder;
    }
 
@@ -74,7 +74,8 @@ public class FirePostInsertWebhookEvent implements TableCustomizerInterface
       WebhookEventBuilder webhookEventBuilder = null;
       for(WebhookEventType webhookEventType : webhookEventTypes)
       {
-         QFieldMetaData field = FirePostInsertOrUpdateWebhookEventUtil.getQFieldMetaData(webhookEventType);
+         QFieldMetaData field           = FirePostInsertOrUpdateWebhookEventUtil.getQFieldMetaData(webhookEventType);
+         List<QRecord>  matchingRecords = new ArrayList<>();
          for(QRecord record : records)
          {
             if(CollectionUtils.nullSafeHasContents(record.getErrors()))
@@ -89,9 +90,11 @@ public class FirePostInsertWebhookEvent implements TableCustomizerInterface
 
             if(doesRecordMatchWebhookEventType(record, webhookEventType, field))
             {
-               webhookEventBuilder = FirePostInsertOrUpdateWebhookEventUtil.processSubscriptions(insertInput.getTableName(), webhookEventType, record, webhookEventBuilder, insertInput.getTransaction());
+               matchingRecords.add(record);
             }
          }
+
+         webhookEventBuilder = FirePostInsertOrUpdateWebhookEventUtil.processSubscriptions(insertInput.getTableName(), webhookEventType, matchingRecords, webhookEventBuilder, insertInput.getTransaction());
       }
 
       if(webhookEventBuilder != null)
@@ -79,7 +79,8 @@ public class FirePostUpdateWebhookEvent implements TableCustomizerInterface
       WebhookEventBuilder webhookEventBuilder = null;
       for(WebhookEventType webhookEventType : webhookEventTypes)
       {
-         QFieldMetaData field = FirePostInsertOrUpdateWebhookEventUtil.getQFieldMetaData(webhookEventType);
+         QFieldMetaData field           = FirePostInsertOrUpdateWebhookEventUtil.getQFieldMetaData(webhookEventType);
+         List<QRecord>  matchingRecords = new ArrayList<>();
          for(QRecord record : records)
          {
             if(CollectionUtils.nullSafeHasContents(record.getErrors()))
@@ -112,9 +113,11 @@ public class FirePostUpdateWebhookEvent implements TableCustomizerInterface
                   }
                }
 
-               webhookEventBuilder = FirePostInsertOrUpdateWebhookEventUtil.processSubscriptions(updateInput.getTableName(), webhookEventType, recordToProcess, webhookEventBuilder, updateInput.getTransaction());
+               matchingRecords.add(recordToProcess);
             }
          }
+
+         webhookEventBuilder = FirePostInsertOrUpdateWebhookEventUtil.processSubscriptions(updateInput.getTableName(), webhookEventType, matchingRecords, webhookEventBuilder, updateInput.getTransaction());
       }
 
       if(webhookEventBuilder != null)
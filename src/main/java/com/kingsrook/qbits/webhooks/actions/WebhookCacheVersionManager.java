@@ -0,0 +1,141 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.List;
+import java.util.UUID;
+import com.kingsrook.qbits.webhooks.model.WebhookCacheVersion;
+import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+
+
+/*******************************************************************************
+ ** reads & changes the versions in the webhookCacheVersion table - by which
+ ** nodes find out that data they cache (e.g., the subscription snapshot) was
+ ** changed, possibly by another node.
+ **
+ ** A version is changed by setting it to a new random value, rather than by
+ ** incrementing it - so no read-and-increment race between nodes is possible,
+ ** and every change results in a version that no node has seen before.
+ **
+ ** A cache's row is only ever updated in the caller's transaction.  If the row
+ ** doesn't exist yet, it is first inserted on its own, outside that
+ ** transaction - as that insert can fail on the unique key (if another node
+ ** inserts it at the same moment), and on some backends (e.g., postgres) a
+ ** failed statement aborts the whole transaction it's in.
+ *******************************************************************************/
+public class WebhookCacheVersionManager
+{
+
+   /***************************************************************************
+    ** get the current version of a cache - or null if it's never been changed.
+    ***************************************************************************/
+   public static String getVersion(String name) throws QException
+   {
+      QRecord record = getRecord(name, null);
+      return (record == null ? null : new WebhookCacheVersion(record).getVersion());
+   }
+
+
+
+   /***************************************************************************
+    ** change the version of a cache (in the given transaction, if any - so the
+    ** change is only seen along with the data change that caused it).
+    ***************************************************************************/
+   public static void changeVersion(String name, QBackendTransaction transaction) throws QException
+   {
+      QRecord record = getRecord(name, transaction);
+      if(record == null)
+      {
+         record = insertRecord(name);
+      }
+
+      new UpdateAction().execute(new UpdateInput(WebhookCacheVersion.TABLE_NAME)
+         .withRecord(new QRecord().withValue("id", record.getValue("id")).withValue("version", UUID.randomUUID().toString()))
+         .withTransaction(transaction));
+   }
+
+
+
+   /***************************************************************************
+    ** insert the row for a cache - in its own transaction (i.e., none) - and
+    ** return it.  if the insert fails because another node inserted the row at
+    ** the same time (i.e., on its unique key), return that node's row instead.
+    ***************************************************************************/
+   private static QRecord insertRecord(String name) throws QException
+   {
+      String error;
+      try
+      {
+         QRecord insertedRecord = new InsertAction().execute(new InsertInput(WebhookCacheVersion.TABLE_NAME)
+               .withRecordEntity(new WebhookCacheVersion().withName(name).withVersion(UUID.randomUUID().toString())))
+            .getRecords().get(0);
+         if(CollectionUtils.nullSafeIsEmpty(insertedRecord.getErrors()))
+         {
+            return (insertedRecord);
+         }
+         error = String.valueOf(insertedRecord.getErrors());
+      }
+      catch(QException e)
+      {
+         ////////////////////////////////////////////////////////////////////
+         // a backend may throw (rather than give a record error) when its //
+         // unique constraint stops the insert.                            //
+         ////////////////////////////////////////////////////////////////////
+         error = e.getMessage();
+      }
+
+      QRecord record = getRecord(name, null);
+      if(record == null)
+      {
+         throw (new QException("Error inserting webhook cache version for " + name + ": " + error));
+      }
+      return (record);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static QRecord getRecord(String name, QBackendTransaction transaction) throws QException
+   {
+      List<QRecord> records = new QueryAction().execute(new QueryInput(WebhookCacheVersion.TABLE_NAME)
+            .withFilter(new QQueryFilter(new QFilterCriteria("name", QCriteriaOperator.EQUALS, name)))
+            .withTransaction(transaction))
+         .getRecords();
+      return (records.isEmpty() ? null : records.get(0));
+   }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+
+
+/*******************************************************************************
+ ** gzip compression of webhook post bodies - with an LRU cache (bounded by
+ ** total compressed bytes) of compressed bodies, so that an event that's
+ ** retried isn't re-compressed on every attempt.
+ *******************************************************************************/
+public class WebhookCompressedBodyCache
+{
+   private static final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+   private static long cachedBytes = 0;
+
+
+
+   /***************************************************************************
+    ** get the gzipped bytes of a post body - from the cache if the cacheKey is
+    ** in it, else by compressing (and caching, if a cacheKey is given).
+    ***************************************************************************/
+   public static byte[] getOrCompress(String cacheKey, String postBody) throws IOException
+   {
+      if(cacheKey != null)
+      {
+         synchronized(cache)
+         {
+            byte[] cached = cache.get(cacheKey);
+            if(cached != null)
+            {
+               return (cached);
+            }
+         }
+      }
+
+      byte[] compressed = compress(postBody);
+
+      if(cacheKey != null)
+      {
+         int maxBytes = WebhooksQBitConfig.getConfigValue(config -> config.getGzipCacheMaxBytes());
+         synchronized(cache)
+         {
+            byte[] previous = cache.put(cacheKey, compressed);
+            cachedBytes += compressed.length - (previous == null ? 0 : previous.length);
+
+            ////////////////////////////////////////////////////////////
+            // evict least-recently-used entries while over the limit //
+            ////////////////////////////////////////////////////////////
+            Iterator<Map.Entry<String, byte[]>> iterator = cache.entrySet().iterator();
+            while(cachedBytes > maxBytes && iterator.hasNext())
+            {
+               cachedBytes -= iterator.next().getValue().length;
+               iterator.remove();
+            }
+         }
+      }
+
+      return (compressed);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   public static byte[] compress(String postBody) throws IOException
+   {
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      try(GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream))
+      {
+         gzipOutputStream.write(postBody.getBytes(StandardCharsets.UTF_8));
+      }
+      return (byteArrayOutputStream.toByteArray());
+   }
+
+
+
+   /***************************************************************************
+    ** get the cache key to use for a single event's post body
+    ***************************************************************************/
+   public static String getCacheKey(Integer webhookEventId)
+   {
+      return (webhookEventId == null ? null : "webhookEvent:" + webhookEventId);
+   }
+
+
+
+   /***************************************************************************
+    ** mostly for tests
+    ***************************************************************************/
+   public static boolean isCached(String cacheKey)
+   {
+      synchronized(cache)
+      {
+         return (cache.containsKey(cacheKey));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** forget all cached bodies
+    ***************************************************************************/
+   public static void clearAll()
+   {
+      synchronized(cache)
+      {
+         cache.clear();
+         cachedBytes = 0;
+      }
+   }
+
+}
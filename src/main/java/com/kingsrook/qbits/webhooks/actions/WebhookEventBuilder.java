@@ -23,7 +23,10 @@ package com.kingsrook.qbits.webhooks.actions;
 
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookEvent;
@@ -51,6 +54,11 @@ import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
 /*******************************************************************************
  ** class that build webhook events
+ **
+ ** Event content is built once per source record, event type, api name and
+ ** api version within a builder (e.g., one firing batch) - so a record that
+ ** many subscriptions match is only converted to its api form and serialized
+ ** once, with each event getting its own content record for the same body.
  *******************************************************************************/
 public class WebhookEventBuilder
 {
@@ -58,6 +66,17 @@ public class WebhookEventBuilder
 
    private List<QRecord> webhookEvents = null;
 
+   private Map<QRecord, Map<EventContentKey, WebhookEventContent>> eventContentsBySourceRecord = null;
+
+
+
+   /***************************************************************************
+    ** what (other than the source record) an event's content depends on.
+    ***************************************************************************/
+   private record EventContentKey(String webhookEventTypeName, String apiName, String apiVersion)
+   {
+   }
+
 
 
    /***************************************************************************
@@ -77,10 +96,11 @@ public class WebhookEventBuilder
          webhookEvent.setWebhookSubscriptionId(subscription.getId());
          webhookEvent.setWebhookEventTypeName(subscription.getWebhookEventTypeName());
          webhookEvent.setEventStatusId(WebhookEventStatus.NEW.getId());
+         webhookEvent.setAttemptCount(0);
          webhookEvent.setEventSourceRecordId(sourceRecordId);
          webhookEvent.setEventSourceRecordQqqTableId(sourceTableId);
 
-         webhookEvent.setContent(List.of(buildEventContent(sourceRecord, subscription.getWebhookEventTypeName(), subscription.getApiName(), subscription.getApiVersion())));
+         webhookEvent.setContent(List.of(getEventContent(sourceRecord, subscription.getWebhookEventTypeName(), subscription.getApiName(), subscription.getApiVersion())));
 
          QRecord eventRecord = webhookEvent.toQRecord();
 
@@ -115,6 +135,37 @@ public class WebhookEventBuilder
 
 
 
+   /***************************************************************************
+    ** get the content for an event - built on first use for a source record
+    ** (by identity), event type, api name and version, then re-used (as a new
+    ** content record with the same post body) for each subsequent event.
+    ***************************************************************************/
+   private WebhookEventContent getEventContent(QRecord sourceRecord, String webhookEventTypeName, String apiName, String apiVersion) throws QException
+   {
+      if(eventContentsBySourceRecord == null)
+      {
+         eventContentsBySourceRecord = new IdentityHashMap<>();
+      }
+
+      Map<EventContentKey, WebhookEventContent> eventContents = eventContentsBySourceRecord.computeIfAbsent(sourceRecord, r -> new HashMap<>());
+      EventContentKey                           key           = new EventContentKey(webhookEventTypeName, apiName, apiVersion);
+
+      WebhookEventContent eventContent = eventContents.get(key);
+      if(eventContent == null)
+      {
+         eventContent = buildEventContent(sourceRecord, webhookEventTypeName, apiName, apiVersion);
+         eventContents.put(key, eventContent);
+      }
+
+      ///////////////////////////////////////////////////////////////////////////////
+      // each event needs its own content record (it'll get that event's id when   //
+      // stored) - but they can all share the same (already-serialized) post body. //
+      ///////////////////////////////////////////////////////////////////////////////
+      return (new WebhookEventContent().withPostBody(eventContent.getPostBody()));
+   }
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
@@ -0,0 +1,309 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.kingsrook.qbits.webhooks.model.WebhookEvent;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
+import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** buffer of the results of sending webhook events - send logs to insert, and
+ ** status transitions for their events - written to the database together, in
+ ** one transaction:  one multi-row insert of send logs, one update per distinct
+ ** (status, next attempt timestamp) - setting only those shared values - and one
+ ** batched update of the events' own attempt counts and last attempt timestamps
+ ** (from their send logs), so later sends don't need to read the send logs.
+ **
+ ** The buffer is flushed when it reaches a max number of outcomes, or when its
+ ** oldest outcome has waited a max amount of time (checked as outcomes are
+ ** added), or when flush() is called (e.g., at the end of a page of events).
+ **
+ ** If a flush is lost (e.g., the node dies before it), the events are still in
+ ** the SENDING status that they were claimed with, so once their lease expires
+ ** they'll be sent again - i.e., a redelivery, but never a lost event.
+ **
+ ** Once a flush is committed, events left awaiting retry are put in the retry
+ ** timing wheel (if it's running), and others are taken out of it.
+ **
+ ** Thread-safe, as events in a page may be sent concurrently.  The buffer is
+ ** only locked to add outcomes, and to swap them out for writing - the writing
+ ** itself is done outside the lock, so other threads' sends aren't held up
+ ** behind one flush's database round-trips.
+ *******************************************************************************/
+public class WebhookEventOutcomeBuffer
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookEventOutcomeBuffer.class);
+
+   private final int  maxOutcomes;
+   private final long maxMillis;
+
+   private List<WebhookEventSendLog>            sendLogs         = new ArrayList<>();
+   private Map<StatusTransition, List<Integer>> eventIdsByStatus = new LinkedHashMap<>();
+   private Instant                              oldestOutcomeAt  = null;
+
+
+
+   /***************************************************************************
+    ** status (and next attempt timestamp) to set on a group of events
+    ***************************************************************************/
+   private record StatusTransition(WebhookEventStatus status, Instant nextAttemptTimestamp)
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** outcomes swapped out of the buffer, to be written together
+    ***************************************************************************/
+   private record Batch(List<WebhookEventSendLog> sendLogs, Map<StatusTransition, List<Integer>> eventIdsByStatus)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor for a buffer that is only flushed explicitly.
+    *******************************************************************************/
+   public WebhookEventOutcomeBuffer()
+   {
+      this(Integer.MAX_VALUE, Long.MAX_VALUE);
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param maxOutcomes flush once this many outcomes are buffered
+    ** @param maxMillis flush once the oldest buffered outcome is this old
+    *******************************************************************************/
+   public WebhookEventOutcomeBuffer(int maxOutcomes, long maxMillis)
+   {
+      this.maxOutcomes = maxOutcomes;
+      this.maxMillis = maxMillis;
+   }
+
+
+
+   /***************************************************************************
+    ** add the outcome of sending an event (its send log, and the status and next
+    ** attempt timestamp to set on it) - flushing the buffer if that makes it due.
+    ***************************************************************************/
+   public void add(WebhookEventSendLog sendLog, WebhookEventStatus status, Instant nextAttemptTimestamp) throws QException
+   {
+      ///////////////////////////////////////////////////////////////////////////////
+      // truncate next attempt timestamps to the second - so events that failed at //
+      // nearly the same time can share one update.                                //
+      ///////////////////////////////////////////////////////////////////////////////
+      if(nextAttemptTimestamp != null)
+      {
+         nextAttemptTimestamp = nextAttemptTimestamp.truncatedTo(ChronoUnit.SECONDS);
+      }
+
+      Batch dueBatch = null;
+      synchronized(this)
+      {
+         sendLogs.add(sendLog);
+         eventIdsByStatus.computeIfAbsent(new StatusTransition(status, nextAttemptTimestamp), k -> new ArrayList<>()).add(sendLog.getWebhookEventId());
+         if(oldestOutcomeAt == null)
+         {
+            oldestOutcomeAt = Instant.now();
+         }
+
+         if(sendLogs.size() >= maxOutcomes || Instant.now().toEpochMilli() - oldestOutcomeAt.toEpochMilli() >= maxMillis)
+         {
+            dueBatch = takeBatch();
+         }
+      }
+
+      if(dueBatch != null)
+      {
+         write(dueBatch);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** write all buffered outcomes to the database, in one transaction.
+    ***************************************************************************/
+   public void flush() throws QException
+   {
+      Batch batch;
+      synchronized(this)
+      {
+         batch = takeBatch();
+      }
+
+      if(batch != null)
+      {
+         write(batch);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** swap the buffered outcomes out for fresh, empty ones - returning them (or
+    ** null if there are none).  must be called while synchronized on this.
+    **
+    ** they're taken even if writing them then fails - the events' leases will
+    ** expire, and they'll be sent again, so no need to keep (and retry writing)
+    ** these.
+    ***************************************************************************/
+   private Batch takeBatch()
+   {
+      if(sendLogs.isEmpty())
+      {
+         return (null);
+      }
+
+      Batch batch = new Batch(sendLogs, eventIdsByStatus);
+      sendLogs = new ArrayList<>();
+      eventIdsByStatus = new LinkedHashMap<>();
+      oldestOutcomeAt = null;
+      return (batch);
+   }
+
+
+
+   /***************************************************************************
+    ** write a batch of outcomes to the database, in one transaction - then
+    ** update the retry timing wheel for them.
+    ***************************************************************************/
+   private void write(Batch batch) throws QException
+   {
+      List<WebhookEventSendLog>            sendLogs         = batch.sendLogs();
+      Map<StatusTransition, List<Integer>> eventIdsByStatus = batch.eventIdsByStatus();
+
+      Map<Integer, WebhookEventSendLog> sendLogsByEventId = new HashMap<>();
+      for(WebhookEventSendLog sendLog : sendLogs)
+      {
+         sendLogsByEventId.put(sendLog.getWebhookEventId(), sendLog);
+      }
+
+      try(QBackendTransaction transaction = QBackendTransaction.openFor(new InsertInput(WebhookEventSendLog.TABLE_NAME)))
+      {
+         new InsertAction().execute(new InsertInput(WebhookEventSendLog.TABLE_NAME).withRecordEntities(sendLogs).withTransaction(transaction));
+
+         ///////////////////////////////////////////////////////////////////////////
+         // events in a group get the same values, so the backend can update them //
+         // all in one statement (e.g., an update where id in (...)).             //
+         ///////////////////////////////////////////////////////////////////////////
+         for(Map.Entry<StatusTransition, List<Integer>> entry : eventIdsByStatus.entrySet())
+         {
+            List<QRecord> records = new ArrayList<>();
+            for(Integer id : entry.getValue())
+            {
+               records.add(new QRecord()
+                  .withValue("id", id)
+                  .withValue("nextAttemptTimestamp", entry.getKey().nextAttemptTimestamp())
+                  .withValue("eventStatusId", entry.getKey().status().getId())
+                  .withValue("leaseOwner", null));
+            }
+
+            new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecords(records).withAreAllValuesBeingUpdatedTheSame(true).withTransaction(transaction));
+         }
+
+         //////////////////////////////////////////////////////////////////////////
+         // attempt counts & timestamps differ per event - but every record sets //
+         // the same fields, so they're written as one batch.                    //
+         //////////////////////////////////////////////////////////////////////////
+         List<QRecord> attemptRecords = new ArrayList<>();
+         for(WebhookEventSendLog sendLog : sendLogsByEventId.values())
+         {
+            attemptRecords.add(new QRecord()
+               .withValue("id", sendLog.getWebhookEventId())
+               .withValue("attemptCount", sendLog.getAttemptNo())
+               .withValue("lastAttemptTimestamp", sendLog.getStartTimestamp()));
+         }
+
+         new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecords(attemptRecords).withTransaction(transaction));
+
+         transaction.commit();
+      }
+
+      LOG.debug("Flushed webhook event outcomes", logPair("noSendLogs", sendLogs.size()), logPair("noStatusUpdates", eventIdsByStatus.size()));
+      updateRetryTimingWheel(sendLogs, eventIdsByStatus);
+   }
+
+
+
+   /***************************************************************************
+    ** put the written events that are awaiting retry in the retry timing
+    ** wheel, for their next attempt times - and take others out of it.
+    ***************************************************************************/
+   private static void updateRetryTimingWheel(List<WebhookEventSendLog> sendLogs, Map<StatusTransition, List<Integer>> eventIdsByStatus)
+   {
+      Map<Integer, Integer> webhookIdsByEventId = new HashMap<>();
+      for(WebhookEventSendLog sendLog : sendLogs)
+      {
+         webhookIdsByEventId.put(sendLog.getWebhookEventId(), sendLog.getWebhookId());
+      }
+
+      for(Map.Entry<StatusTransition, List<Integer>> entry : eventIdsByStatus.entrySet())
+      {
+         StatusTransition statusTransition = entry.getKey();
+         for(Integer id : entry.getValue())
+         {
+            if(WebhookEventStatus.AWAITING_RETRY.equals(statusTransition.status()))
+            {
+               WebhookRetryTimingWheel.schedule(id, webhookIdsByEventId.get(id), statusTransition.nextAttemptTimestamp());
+            }
+            else
+            {
+               WebhookRetryTimingWheel.cancel(id);
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** number of outcomes currently buffered
+    ***************************************************************************/
+   public synchronized int size()
+   {
+      return (sendLogs.size());
+   }
+
+}
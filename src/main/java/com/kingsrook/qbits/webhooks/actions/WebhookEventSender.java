@@ -23,11 +23,17 @@ package com.kingsrook.qbits.webhooks.actions;
 
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookEvent;
@@ -35,29 +41,31 @@ import com.kingsrook.qbits.webhooks.model.WebhookEventContent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookRetryPolicy;
 import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
 import com.kingsrook.qqq.backend.core.actions.audits.AuditAction;
-import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
 import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
-import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
 import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
-import com.kingsrook.qqq.backend.core.utils.SleepUtils;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
@@ -74,69 +82,376 @@ public class WebhookEventSender
    private static Integer[] backoffMinutes                     = null;
    private static Integer   maxAllowedRateLimitErrors          = null;
    private static Integer   initialRateLimitBackoffMillis      = null;
+   private static Integer   connectTimeoutMillis               = null;
+   private static Integer   readTimeoutMillis                  = null;
+   private static Integer   maxResponseBodyBytes               = null;
+
+   ////////////////////////////////////////////////////////////////////////////
+   // if set, send logs & event status updates are added to this buffer (for //
+   // the caller to flush) - else, they're written as each send completes.   //
+   ////////////////////////////////////////////////////////////////////////////
+   private WebhookEventOutcomeBuffer outcomeBuffer;
+
+   ////////////////////////////////////////////////////////////////////////
+   // result of this sender's most recent post - so callers can feed its //
+   // latency & whether it timed out into the webhook's health tracking. //
+   ////////////////////////////////////////////////////////////////////////
+   private PostResult lastPostResult;
+
+   ////////////////////////////////////////////////////////////////////////
+   // round-trip time of the current post's http request, as measured by //
+   // the client code that made it - null until (or unless) a response.  //
+   ////////////////////////////////////////////////////////////////////////
+   private Long responseLatencyMillis;
 
 
 
    /***************************************************************************
-    **
+    ** send an event - returning true iff it was delivered.
+    ** @see #sendEvent(WebhookEvent, Webhook, List)
     ***************************************************************************/
    public boolean handleEvent(WebhookEvent webhookEvent, Webhook webhook, List<WebhookEventSendLog> sendLogs) throws QException
    {
-      /////////////////////
-      // mark as sending //
-      /////////////////////
-      Instant nextAttemptTimestamp = Instant.now().plus(getMinutesToConsiderLeakedSendAttempt() * 60, ChronoUnit.SECONDS);
-      updateWebhookEvent(webhookEvent.getId(), WebhookEventStatus.SENDING, nextAttemptTimestamp, null);
+      return (WebhookSendOutcome.DELIVERED.equals(sendEvent(webhookEvent, webhook, sendLogs)));
+   }
+
+
+
+   /***************************************************************************
+    ** send an event - storing a send log and updating the event's status.
+    **
+    ** If the webhook is currently rate-limited (either before we try, or as a
+    ** result of trying), the event is not counted as an attempt:  no send log
+    ** is stored, and the event is rescheduled for when the webhook may resume.
+    ***************************************************************************/
+   public WebhookSendOutcome sendEvent(WebhookEvent webhookEvent, Webhook webhook, List<WebhookEventSendLog> sendLogs) throws QException
+   {
+      WebhookSendOutcome deferredOutcome = markSendingOrDefer(webhookEvent, webhook);
+      if(deferredOutcome != null)
+      {
+         return (deferredOutcome);
+      }
 
       /////////////////
       // try to send //
       /////////////////
-      WebhookEventSendLog sendLog = post(webhookEvent, webhook);
-      sendLog.setAttemptNo(sendLogs.size() + 1);
+      PostResult postResult = attemptPost(webhookEvent, webhook);
+      return (storePostResult(webhookEvent, webhook, sendLogs, postResult));
+   }
+
+
+
+   /***************************************************************************
+    ** first part of sending an event:  if the webhook is already deferred due
+    ** to rate limits, defer the event (returning RATE_LIMITED) - else, mark the
+    ** event as sending (returning null).
+    ***************************************************************************/
+   WebhookSendOutcome markSendingOrDefer(WebhookEvent webhookEvent, Webhook webhook) throws QException
+   {
+      ///////////////////////////////////////////////////////////////////
+      // if the webhook is already deferred due to rate limits, defer. //
+      ///////////////////////////////////////////////////////////////////
+      Instant resumeAt = WebhookRateLimitManager.getResumeAt(webhook.getId());
+      if(resumeAt != null)
+      {
+         updateWebhookEvent(webhookEvent.getId(), WebhookEventStatus.AWAITING_RETRY, resumeAt, null);
+         return (WebhookSendOutcome.RATE_LIMITED);
+      }
+
+      /////////////////////////////////////////////////////////////////////////////
+      // mark as sending - unless the event was already claimed (i.e., leased as //
+      // sending) by the process that's sending it, in which case no need.       //
+      /////////////////////////////////////////////////////////////////////////////
+      if(webhookEvent.getLeaseOwner() == null)
+      {
+         Instant nextAttemptTimestamp = Instant.now().plus(getMinutesToConsiderLeakedSendAttempt() * 60, ChronoUnit.SECONDS);
+         updateWebhookEvent(webhookEvent.getId(), WebhookEventStatus.SENDING, nextAttemptTimestamp, null);
+      }
+      return (null);
+   }
+
+
+
+   /***************************************************************************
+    ** last part of sending an event:  given the result of posting it, either
+    ** reschedule it (if rate-limited), or store its send log & update its
+    ** status.
+    ***************************************************************************/
+   WebhookSendOutcome storePostResult(WebhookEvent webhookEvent, Webhook webhook, List<WebhookEventSendLog> sendLogs, PostResult postResult) throws QException
+   {
+      if(postResult.rateLimitedUntil != null)
+      {
+         //////////////////////////////////////////////////////////////////////////
+         // rate-limited - put the event back to await retry when we may resume. //
+         //////////////////////////////////////////////////////////////////////////
+         updateWebhookEvent(webhookEvent.getId(), WebhookEventStatus.AWAITING_RETRY, postResult.rateLimitedUntil, null);
+         return (WebhookSendOutcome.RATE_LIMITED);
+      }
+
+      WebhookEventSendLog sendLog = postResult.sendLog;
+      sendLog.setAttemptNo(getPreviousAttemptCount(webhookEvent, sendLogs) + 1);
+
+      WebhookEventOutcomeBuffer buffer  = getOutcomeBufferOrNew();
+      WebhookSendOutcome        outcome = storeSendLogAndUpdateEvent(webhookEvent, webhook, sendLog, getPreviousAttemptTimestamp(webhookEvent, sendLogs), buffer);
+      if(buffer != outcomeBuffer)
+      {
+         buffer.flush();
+      }
+      return (outcome);
+   }
+
+
+
+   /***************************************************************************
+    ** send a batch of events to a webhook, as a single post whose body is a
+    ** JSON array of the events' post bodies.  A send log is stored for each
+    ** event, and all events get the same outcome (e.g., all delivered, or all
+    ** failed & set to retry based on their own number of attempts).
+    **
+    ** Rate limiting is handled as in sendEvent - i.e., all events in the batch
+    ** are rescheduled, without being counted as an attempt.
+    ***************************************************************************/
+   public WebhookSendOutcome sendEventBatch(List<WebhookEvent> webhookEvents, Webhook webhook, Map<Integer, List<WebhookEventSendLog>> sendLogsByEventId) throws QException
+   {
+      if(webhookEvents.size() == 1)
+      {
+         return (sendEvent(webhookEvents.get(0), webhook, sendLogsByEventId.getOrDefault(webhookEvents.get(0).getId(), Collections.emptyList())));
+      }
+
+      List<Integer> eventIds = webhookEvents.stream().map(e -> e.getId()).toList();
+
+      Instant resumeAt = WebhookRateLimitManager.getResumeAt(webhook.getId());
+      if(resumeAt != null)
+      {
+         updateWebhookEvents(eventIds, WebhookEventStatus.AWAITING_RETRY, resumeAt, null);
+         return (WebhookSendOutcome.RATE_LIMITED);
+      }
+
+      List<Integer> unclaimedEventIds = webhookEvents.stream().filter(e -> e.getLeaseOwner() == null).map(e -> e.getId()).toList();
+      if(!unclaimedEventIds.isEmpty())
+      {
+         Instant nextAttemptTimestamp = Instant.now().plus(getMinutesToConsiderLeakedSendAttempt() * 60, ChronoUnit.SECONDS);
+         updateWebhookEvents(unclaimedEventIds, WebhookEventStatus.SENDING, nextAttemptTimestamp, null);
+      }
+
+      ///////////////////////////////////////////////////////////////////
+      // post the batch - using a send log not (yet) tied to any event //
+      ///////////////////////////////////////////////////////////////////
+      WebhookEventSendLog batchSendLog = new WebhookEventSendLog();
+      batchSendLog.setWebhookId(webhook.getId());
+      batchSendLog.setStartTimestamp(Instant.now());
+      PostResult postResult = attemptPost(batchSendLog, () -> doBatchPost(webhookEvents, webhook, batchSendLog));
+      if(postResult.rateLimitedUntil != null)
+      {
+         updateWebhookEvents(eventIds, WebhookEventStatus.AWAITING_RETRY, postResult.rateLimitedUntil, null);
+         return (WebhookSendOutcome.RATE_LIMITED);
+      }
 
-      InsertInput insertSendLogInput = new InsertInput(WebhookEventSendLog.TABLE_NAME).withRecordEntity(sendLog);
+      /////////////////////////////////////////////////////////////////
+      // store a copy of the batch's send log for each of its events //
+      /////////////////////////////////////////////////////////////////
+      WebhookSendOutcome        outcome = null;
+      WebhookEventOutcomeBuffer buffer  = getOutcomeBufferOrNew();
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         List<WebhookEventSendLog> eventSendLogs = sendLogsByEventId.getOrDefault(webhookEvent.getId(), Collections.emptyList());
+         WebhookEventSendLog sendLog = new WebhookEventSendLog()
+            .withWebhookId(webhook.getId())
+            .withWebhookEventId(webhookEvent.getId())
+            .withAttemptNo(getPreviousAttemptCount(webhookEvent, eventSendLogs) + 1)
+            .withSuccessful(batchSendLog.getSuccessful())
+            .withHttpStatusCode(batchSendLog.getHttpStatusCode())
+            .withErrorMessage(batchSendLog.getErrorMessage())
+            .withStartTimestamp(batchSendLog.getStartTimestamp())
+            .withEndTimestamp(batchSendLog.getEndTimestamp());
+         outcome = storeSendLogAndUpdateEvent(webhookEvent, webhook, sendLog, getPreviousAttemptTimestamp(webhookEvent, eventSendLogs), buffer);
+      }
 
-      try(QBackendTransaction transaction = QBackendTransaction.openFor(insertSendLogInput))
+      if(buffer != outcomeBuffer)
       {
-         insertSendLogInput.setTransaction(transaction);
-         if(sendLog.getSuccessful())
+         buffer.flush();
+      }
+      return (outcome);
+   }
+
+
+
+   /***************************************************************************
+    ** split a list of events into batches for a webhook, based on its max
+    ** events per batch and max batch bytes.  A single event larger than the
+    ** byte budget gets a batch to itself.  Post bodies looked up here are set
+    ** in the events' content, so they aren't looked up again when posting.
+    ***************************************************************************/
+   public List<List<WebhookEvent>> partitionIntoBatches(List<WebhookEvent> webhookEvents, Webhook webhook)
+   {
+      int maxEventsPerBatch = webhook.getMaxEventsPerBatch() == null ? 1 : Math.max(1, webhook.getMaxEventsPerBatch());
+      int maxBatchBytes     = webhook.getMaxBatchBytes() == null ? Integer.MAX_VALUE : webhook.getMaxBatchBytes();
+
+      List<List<WebhookEvent>> batches      = new ArrayList<>();
+      List<WebhookEvent>       currentBatch = new ArrayList<>();
+      long                     currentBytes = 0;
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         long eventBytes;
+         try
          {
-            ///////////////////////
-            // mark as delivered //
-            ///////////////////////
-            new InsertAction().execute(insertSendLogInput);
-            updateWebhookEvent(webhookEvent.getId(), WebhookEventStatus.DELIVERED, null, transaction);
-            transaction.commit();
-            return (true);
+            String postBody = getPostBody(webhookEvent);
+            webhookEvent.setContent(List.of(new WebhookEventContent().withWebhookEventId(webhookEvent.getId()).withPostBody(postBody)));
+            eventBytes = postBody.getBytes(StandardCharsets.UTF_8).length + 1;
          }
-         else
+         catch(Exception e)
          {
-            //////////////////////////////////////////////////////////////////////////////////////////
-            // consider if this event is now failed, or if it is retryable (based on # of failures) //
-            //////////////////////////////////////////////////////////////////////////////////////////
-            WebhookEventStatus eventStatus = sendLog.getAttemptNo() >= getMaxAllowedAttempts() ? WebhookEventStatus.FAILED : WebhookEventStatus.AWAITING_RETRY;
-            if(eventStatus.equals(WebhookEventStatus.FAILED) && WebhookHealthStatus.PROBATION.getId().equals(webhook.getHealthStatusId()))
-            {
-               String message = "This Webhook Event has had too many failures, but since its Webhook's health status is Probation, its status will be Awaiting Retry instead of Failure.";
-               AuditAction.execute(WebhookEvent.TABLE_NAME, webhookEvent.getId(), null, message);
-               eventStatus = WebhookEventStatus.AWAITING_RETRY;
-            }
+            /////////////////////////////////////////////////////////////////
+            // put it in a batch by itself - where its post will just fail //
+            /////////////////////////////////////////////////////////////////
+            batches.add(List.of(webhookEvent));
+            continue;
+         }
+
+         if(!currentBatch.isEmpty() && (currentBatch.size() >= maxEventsPerBatch || currentBytes + eventBytes > maxBatchBytes))
+         {
+            batches.add(currentBatch);
+            currentBatch = new ArrayList<>();
+            currentBytes = 0;
+         }
+
+         currentBatch.add(webhookEvent);
+         currentBytes += eventBytes;
+      }
+
+      if(!currentBatch.isEmpty())
+      {
+         batches.add(currentBatch);
+      }
+
+      return (batches);
+   }
+
+
+
+   /***************************************************************************
+    ** store a send log for an event, and update the event's status based on
+    ** it - delivered, or, if failed, awaiting retry (when the webhook's retry
+    ** policy says) or failed - by adding them to an outcome buffer (which does
+    ** the actual writes).
+    ***************************************************************************/
+   private WebhookSendOutcome storeSendLogAndUpdateEvent(WebhookEvent webhookEvent, Webhook webhook, WebhookEventSendLog sendLog, Instant previousAttemptTimestamp, WebhookEventOutcomeBuffer buffer) throws QException
+   {
+      if(sendLog.getSuccessful())
+      {
+         ///////////////////////
+         // mark as delivered //
+         ///////////////////////
+         buffer.add(sendLog, WebhookEventStatus.DELIVERED, null);
+         return (WebhookSendOutcome.DELIVERED);
+      }
+
+      ////////////////////////////////////////////////////////////////////////////
+      // responses the retry policy says not to retry (e.g., 410 Gone) fail the //
+      // event right away - even if its webhook is on probation.                //
+      ////////////////////////////////////////////////////////////////////////////
+      WebhookRetryPolicyInterface retryPolicy = getRetryPolicy(webhook);
+      if(!retryPolicy.isRetryable(sendLog))
+      {
+         buffer.add(sendLog, WebhookEventStatus.FAILED, null);
+         return (WebhookSendOutcome.FAILED);
+      }
+
+      //////////////////////////////////////////////////////////////////////////////////////////
+      // consider if this event is now failed, or if it is retryable (based on # of failures) //
+      //////////////////////////////////////////////////////////////////////////////////////////
+      WebhookEventStatus eventStatus = sendLog.getAttemptNo() >= getMaxAllowedAttempts() ? WebhookEventStatus.FAILED : WebhookEventStatus.AWAITING_RETRY;
+      if(eventStatus.equals(WebhookEventStatus.FAILED) && WebhookHealthStatus.PROBATION.getId().equals(webhook.getHealthStatusId()))
+      {
+         String message = "This Webhook Event has had too many failures, but since its Webhook's health status is Probation, its status will be Awaiting Retry instead of Failure.";
+         AuditAction.execute(WebhookEvent.TABLE_NAME, webhookEvent.getId(), null, message);
+         eventStatus = WebhookEventStatus.AWAITING_RETRY;
+      }
+
+      ////////////////////////////////////////////////////////////////
+      // set the next-send time based on the webhook's retry policy //
+      ////////////////////////////////////////////////////////////////
+      Instant nextAttemptTimestamp = null;
+      if(eventStatus.equals(WebhookEventStatus.AWAITING_RETRY))
+      {
+         Duration previousDelay = previousAttemptTimestamp == null || sendLog.getStartTimestamp() == null ? null : Duration.between(previousAttemptTimestamp, sendLog.getStartTimestamp());
+         nextAttemptTimestamp = Instant.now().plus(retryPolicy.getRetryDelay(sendLog, previousDelay));
+      }
+
+      buffer.add(sendLog, eventStatus, nextAttemptTimestamp);
+      return (WebhookSendOutcome.FAILED);
+   }
+
+
+
+   /***************************************************************************
+    ** get the retry policy to use for a webhook's failed events - per its
+    ** retryPolicyId (defaulting to the fixed schedule).
+    ***************************************************************************/
+   protected WebhookRetryPolicyInterface getRetryPolicy(Webhook webhook)
+   {
+      WebhookRetryPolicy retryPolicy = WebhookRetryPolicy.getById(webhook.getRetryPolicyId());
+      if(WebhookRetryPolicy.EXPONENTIAL.equals(retryPolicy))
+      {
+         return (new ExponentialWebhookRetryPolicy());
+      }
+      else if(WebhookRetryPolicy.DECORRELATED_JITTER.equals(retryPolicy))
+      {
+         return (new DecorrelatedJitterWebhookRetryPolicy());
+      }
+
+      return (new FixedScheduleWebhookRetryPolicy());
+   }
 
-            ///////////////////////////////////////////////////////////////////////
-            // set the next-send time based on how many attempts there have been //
-            ///////////////////////////////////////////////////////////////////////
-            nextAttemptTimestamp = calculateNextAttemptBackoff(sendLog.getAttemptNo());
-            if(eventStatus.equals(WebhookEventStatus.FAILED))
-            {
-               nextAttemptTimestamp = null;
-            }
 
-            new InsertAction().execute(insertSendLogInput);
-            updateWebhookEvent(webhookEvent.getId(), eventStatus, nextAttemptTimestamp, transaction);
-            transaction.commit();
-            return (false);
+
+   /***************************************************************************
+    ** get the number of times an event has already been attempted - from its
+    ** attemptCount if it has one, else (e.g., for events created before that
+    ** field was kept) by counting its send logs.
+    ***************************************************************************/
+   private static int getPreviousAttemptCount(WebhookEvent webhookEvent, List<WebhookEventSendLog> sendLogs)
+   {
+      if(webhookEvent.getAttemptCount() != null)
+      {
+         return (webhookEvent.getAttemptCount());
+      }
+      return (CollectionUtils.nonNullList(sendLogs).size());
+   }
+
+
+
+   /***************************************************************************
+    ** get the time of an event's previous attempt (or null if it hasn't had
+    ** one) - from its lastAttemptTimestamp if it has an attemptCount, else from
+    ** its send logs.
+    ***************************************************************************/
+   private static Instant getPreviousAttemptTimestamp(WebhookEvent webhookEvent, List<WebhookEventSendLog> sendLogs)
+   {
+      if(webhookEvent.getAttemptCount() != null)
+      {
+         return (webhookEvent.getLastAttemptTimestamp());
+      }
+      return (getLastAttemptTimestamp(sendLogs));
+   }
+
+
+
+   /***************************************************************************
+    ** get the start time of the most recent of an event's send logs (or null
+    ** if it doesn't have any).
+    ***************************************************************************/
+   private static Instant getLastAttemptTimestamp(List<WebhookEventSendLog> sendLogs)
+   {
+      Instant lastAttemptTimestamp = null;
+      for(WebhookEventSendLog sendLog : CollectionUtils.nonNullList(sendLogs))
+      {
+         if(sendLog.getStartTimestamp() != null && (lastAttemptTimestamp == null || sendLog.getStartTimestamp().isAfter(lastAttemptTimestamp)))
+         {
+            lastAttemptTimestamp = sendLog.getStartTimestamp();
          }
       }
+      return (lastAttemptTimestamp);
    }
 
 
@@ -154,24 +469,69 @@ public class WebhookEventSender
 
 
    /***************************************************************************
-    **
+    ** post an event to a webhook, returning a (not-yet-stored) send log.
     ***************************************************************************/
    public WebhookEventSendLog post(WebhookEvent webhookEvent, Webhook webhook)
+   {
+      return (attemptPost(webhookEvent, webhook).sendLog);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private PostResult attemptPost(WebhookEvent webhookEvent, Webhook webhook)
+   {
+      WebhookEventSendLog sendLog = newSendLog(webhookEvent, webhook);
+      return (attemptPost(sendLog, () -> doPost(webhookEvent, webhook, sendLog)));
+   }
+
+
+
+   /***************************************************************************
+    ** start a (not-yet-stored) send log for posting an event to a webhook.
+    ***************************************************************************/
+   WebhookEventSendLog newSendLog(WebhookEvent webhookEvent, Webhook webhook)
    {
       WebhookEventSendLog sendLog = new WebhookEventSendLog();
       sendLog.setWebhookEventId(webhookEvent.getId());
       sendLog.setWebhookId(webhook.getId());
       sendLog.setStartTimestamp(Instant.now());
+      return (sendLog);
+   }
+
+
+
+   /***************************************************************************
+    ** make a post (via the postCall), capturing its result in the send log -
+    ** and, if rate-limited, when we may resume.
+    ***************************************************************************/
+   PostResult attemptPost(WebhookEventSendLog sendLog, PostCall postCall)
+   {
+      PostResult postResult = new PostResult();
+      postResult.sendLog = sendLog;
+      responseLatencyMillis = null;
 
       try
       {
-         doPost(webhookEvent, webhook, sendLog);
+         postCall.post();
 
          //////////////////////////////////////////////////
          // interpret no exception as meaning successful //
          //////////////////////////////////////////////////
          sendLog.setSuccessful(true);
       }
+      catch(WebhookRateLimitException e)
+      {
+         /////////////////////////////////////////////////////////////////
+         // rate-limited - not successful, and note when we may resume. //
+         /////////////////////////////////////////////////////////////////
+         sendLog.setSuccessful(false);
+         sendLog.setHttpStatusCode(HttpStatus.SC_TOO_MANY_REQUESTS); // 429
+         sendLog.setErrorMessage(e.getMessage());
+         postResult.rateLimitedUntil = e.getResumeAt();
+      }
       catch(WebhookPostException e)
       {
          ///////////////////////////////////////////////////////////////////////////
@@ -179,85 +539,154 @@ public class WebhookEventSender
          ///////////////////////////////////////////////////////////////////////////
          sendLog.setSuccessful(false);
          sendLog.setErrorMessage(e.getMessage());
+         postResult.timedOut = isTimeout(e.getCause());
       }
 
       sendLog.setEndTimestamp(Instant.now());
-      return (sendLog);
+      postResult.latencyMillis = responseLatencyMillis;
+      lastPostResult = postResult;
+      return (postResult);
    }
 
 
 
    /***************************************************************************
-    **
+    ** is an exception (the cause of a failed post) a timeout - from either http
+    ** client (i.e., a connect or socket timeout).
+    ***************************************************************************/
+   static boolean isTimeout(Throwable throwable)
+   {
+      return (throwable instanceof InterruptedIOException || throwable instanceof HttpTimeoutException);
+   }
+
+
+
+   /***************************************************************************
+    ** did this sender's most recent post fail by timing out?
+    ***************************************************************************/
+   public boolean isLastPostTimedOut()
+   {
+      return (lastPostResult != null && lastPostResult.timedOut);
+   }
+
+
+
+   /***************************************************************************
+    ** how long did the http request of this sender's most recent post take
+    ** (just the round-trip - not waiting for a rate limit token, building the
+    ** body, etc) - or null if it didn't get a response (e.g., it timed out, or
+    ** the webhook is rate-limiting us).
+    ***************************************************************************/
+   public Long getLastPostLatencyMillis()
+   {
+      return (lastPostResult == null ? null : lastPostResult.latencyMillis);
+   }
+
+
+
+   /***************************************************************************
+    ** post an event to a webhook.  throws if not successful - specifically, a
+    ** WebhookRateLimitException if the webhook rate-limited us (in which case,
+    ** rather than sleeping here, the caller should defer the webhook).
     ***************************************************************************/
    protected void doPost(WebhookEvent webhookEvent, Webhook webhook, WebhookEventSendLog sendLog) throws WebhookPostException
    {
-      int rateLimitsCaught     = 0;
-      int rateLimitSleepMillis = getInitialRateLimitBackoffMillis();
+      String postBody;
+      try
+      {
+         postBody = getPostBody(webhookEvent);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Exception preparing http request", e, logPair("webhookId", webhook.getId()));
+         throw (new WebhookPostException(e.getMessage(), e));
+      }
+
+      doPost(postBody, WebhookCompressedBodyCache.getCacheKey(webhookEvent.getId()), webhook, sendLog);
+   }
+
+
+
+   /***************************************************************************
+    ** post a batch of events to a webhook, as a JSON array.
+    ** @see #doPost(WebhookEvent, Webhook, WebhookEventSendLog)
+    ***************************************************************************/
+   protected void doBatchPost(List<WebhookEvent> webhookEvents, Webhook webhook, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      String postBody;
+      try
+      {
+         postBody = getBatchPostBody(webhookEvents);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Exception preparing http request", e, logPair("webhookId", webhook.getId()));
+         throw (new WebhookPostException(e.getMessage(), e));
+      }
+
+      ///////////////////////////////////////////////////////////////////////
+      // batches may be made up differently on retry, so don't cache their //
+      // compressed bodies (i.e., null cache key)                          //
+      ///////////////////////////////////////////////////////////////////////
+      doPost(postBody, null, webhook, sendLog);
+   }
 
-      ///////////////////////////////////
-      // loop in case of rate limiting //
-      ///////////////////////////////////
-      while(true)
+
+
+   /***************************************************************************
+    ** post a body to a webhook.  the bodyCacheKey (which may be null) is used
+    ** to cache the compressed body, for webhooks that use gzip compression.
+    ** @see #doPost(WebhookEvent, Webhook, WebhookEventSendLog)
+    ***************************************************************************/
+   protected void doPost(String postBody, String bodyCacheKey, Webhook webhook, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      CloseableHttpClient httpClient = null;
+      try
       {
-         try(CloseableHttpClient httpClient = buildHttpClient())
-         {
-            HttpPost request = new HttpPost(webhook.getUrl());
-            request.setHeader("Content-Type", "application/json");
+         httpClient = getHttpClient(webhook);
 
-            String postBody = getPostBody(webhookEvent);
+         HttpPost request = new HttpPost(webhook.getUrl());
+         request.setHeader("Content-Type", "application/json");
+         request.setConfig(buildRequestConfig(webhook));
+
+         if(isUseGzipCompression(webhook))
+         {
+            request.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            request.setEntity(new ByteArrayEntity(WebhookCompressedBodyCache.getOrCompress(bodyCacheKey, postBody), ContentType.APPLICATION_JSON));
+         }
+         else
+         {
             request.setEntity(new StringEntity(postBody, StandardCharsets.UTF_8));
+         }
 
-            try(CloseableHttpResponse response = executeHttpRequest(httpClient, request))
-            {
-               int    statusCode     = response.getStatusLine().getStatusCode();
-               String responseString = EntityUtils.toString(response.getEntity());
-
-               if(statusCode == HttpStatus.SC_TOO_MANY_REQUESTS) // 429
-               {
-                  throw (new WebhookRateLimitException(responseString));
-               }
-
-               sendLog.setHttpStatusCode(statusCode);
-
-               if(statusCode < 200 || statusCode >= 300)
-               {
-                  if(!StringUtils.hasContent(responseString))
-                  {
-                     LOG.warn("Unsuccessful http status code, but no response body returned", logPair("statusCode", statusCode), logPair("webhookId", webhook.getId()));
-                     responseString = "No response body returned";
-                  }
-                  throw new WebhookPostException(responseString);
-               }
-
-               ////////////////////////////////////////////
-               // successful exit of the rate-limit loop //
-               ////////////////////////////////////////////
-               break;
-            }
-            catch(WebhookRateLimitException rle)
-            {
-               rateLimitsCaught++;
-               if(rateLimitsCaught > getMaxAllowedRateLimitErrors())
-               {
-                  sendLog.setHttpStatusCode(HttpStatus.SC_TOO_MANY_REQUESTS); // 429
-                  LOG.warn("Giving up webhook post after too many rate limit errors", logPair("webhookId", webhook.getId()), logPair("rateLimitsCaught", rateLimitsCaught), logPair("response", rle.getMessage()));
-                  throw (new WebhookPostException("Giving up after too many rate-limit errors (" + getMaxAllowedRateLimitErrors() + ").  Latest response: " + rle.getMessage()));
-               }
-
-               LOG.info("Caught rate limit.  Will sleep and re-try", logPair("rateLimitsCaught", rateLimitsCaught), logPair("webhookId", webhook.getId()), logPair("sleeping", rateLimitSleepMillis));
-               SleepUtils.sleep(rateLimitSleepMillis, TimeUnit.MILLISECONDS);
-               rateLimitSleepMillis *= 2;
-            }
-            catch(WebhookPostException wpe)
+         //////////////////////////////////////////////////////////////////////
+         // if the webhook has an outbound rate limit, wait for a token (or, //
+         // if the wait would be too long, throw to defer the event).        //
+         //////////////////////////////////////////////////////////////////////
+         WebhookOutboundRateLimiter.acquire(webhook);
+
+         long requestStartMillis = System.currentTimeMillis();
+         try(CloseableHttpResponse response = executeHttpRequest(httpClient, request))
+         {
+            long latencyMillis = System.currentTimeMillis() - requestStartMillis;
+            int  statusCode    = response.getStatusLine().getStatusCode();
+
+            ///////////////////////////////////////////////////////////////////////////
+            // only read (a capped amount of) the body if it's an error, or if we're //
+            // debugging.  else just consume it, so the connection can be reused.    //
+            ///////////////////////////////////////////////////////////////////////////
+            String responseString = null;
+            if(!isSuccessfulStatusCode(statusCode) || isLogSuccessfulResponseBodies())
             {
-               throw (wpe);
+               responseString = readResponseBody(response.getEntity(), getMaxResponseBodyBytes());
             }
-            catch(Exception e)
+            else
             {
-               LOG.warn("Exception executing http request", e, logPair("webhookId", webhook.getId()));
-               throw (new WebhookPostException(e.getMessage(), e));
+               EntityUtils.consume(response.getEntity());
             }
+
+            Header retryAfterHeader = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            handleResponse(webhook, latencyMillis, statusCode, responseString, retryAfterHeader == null ? null : retryAfterHeader.getValue(), sendLog);
          }
          catch(WebhookPostException wpe)
          {
@@ -265,10 +694,163 @@ public class WebhookEventSender
          }
          catch(Exception e)
          {
-            LOG.warn("Exception building http client", e, logPair("webhookId", webhook.getId()));
+            LOG.warn("Exception executing http request", e, logPair("webhookId", webhook.getId()));
+            recordTimeoutLatency(webhook, e);
             throw (new WebhookPostException(e.getMessage(), e));
          }
       }
+      catch(WebhookPostException wpe)
+      {
+         throw (wpe);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Exception preparing http request", e, logPair("webhookId", webhook.getId()));
+         throw (new WebhookPostException(e.getMessage(), e));
+      }
+      finally
+      {
+         //////////////////////////////////////////////////////////////////////
+         // clients for stored webhooks are pooled & reused by the client    //
+         // manager - but one built for an un-stored webhook must be closed. //
+         //////////////////////////////////////////////////////////////////////
+         if(webhook.getId() == null && httpClient != null)
+         {
+            try
+            {
+               httpClient.close();
+            }
+            catch(IOException e)
+            {
+               LOG.info("Error closing http client", e);
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** if a post failed by timing out, and adaptive read timeouts are on, record
+    ** a latency sample at the webhook's current timeout - so that a webhook
+    ** whose latency rises above its adaptive timeout has that timeout grow,
+    ** rather than timing out on every attempt from then on.
+    ***************************************************************************/
+   protected void recordTimeoutLatency(Webhook webhook, Throwable throwable)
+   {
+      if(isTimeout(throwable) && isUseAdaptiveReadTimeouts())
+      {
+         WebhookLatencyTracker.recordLatency(webhook.getId(), getReadTimeoutMillis(webhook));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** handle the response from posting to a webhook (independent of which http
+    ** client made the post):  record latency & rate-limit state, and throw if
+    ** the response is not successful.
+    ***************************************************************************/
+   protected void handleResponse(Webhook webhook, long latencyMillis, int statusCode, String responseString, String retryAfterValue, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      responseLatencyMillis = latencyMillis;
+      if(isUseAdaptiveReadTimeouts())
+      {
+         WebhookLatencyTracker.recordLatency(webhook.getId(), latencyMillis);
+      }
+
+      if(statusCode == HttpStatus.SC_TOO_MANY_REQUESTS) // 429
+      {
+         handleRateLimitResponse(webhook, retryAfterValue, responseString, sendLog);
+      }
+
+      WebhookRateLimitManager.recordNotRateLimited(webhook.getId());
+      sendLog.setHttpStatusCode(statusCode);
+
+      if(isSuccessfulStatusCode(statusCode) && responseString != null)
+      {
+         LOG.debug("Successful webhook response", logPair("webhookId", webhook.getId()), logPair("statusCode", statusCode), logPair("response", responseString));
+      }
+
+      if(!isSuccessfulStatusCode(statusCode))
+      {
+         if(!StringUtils.hasContent(responseString))
+         {
+            LOG.warn("Unsuccessful http status code, but no response body returned", logPair("statusCode", statusCode), logPair("webhookId", webhook.getId()));
+            responseString = "No response body returned";
+         }
+         throw new WebhookPostException(responseString);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** read at most maxBytes of a response entity's body.  if there's more than
+    ** that, the rest is deliberately not read (and the stream not closed, as
+    ** closing it would read the rest) - the connection is instead discarded
+    ** when the response is closed.
+    ***************************************************************************/
+   protected String readResponseBody(HttpEntity entity, int maxBytes) throws IOException
+   {
+      if(entity == null)
+      {
+         return (null);
+      }
+
+      Charset charset = StandardCharsets.UTF_8;
+      try
+      {
+         ContentType contentType = ContentType.get(entity);
+         if(contentType != null && contentType.getCharset() != null)
+         {
+            charset = contentType.getCharset();
+         }
+      }
+      catch(Exception e)
+      {
+         /////////////////////////////////////////////////////
+         // bad content-type header - just stick with utf-8 //
+         /////////////////////////////////////////////////////
+      }
+
+      byte[] bytes = entity.getContent().readNBytes(maxBytes);
+      return (new String(bytes, charset));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   protected static boolean isSuccessfulStatusCode(int statusCode)
+   {
+      return (statusCode >= 200 && statusCode < 300);
+   }
+
+
+
+   /***************************************************************************
+    ** handle a rate-limit (429) response:  record the webhook as deferred (until
+    ** its Retry-After, or our backoff), and throw a WebhookRateLimitException -
+    ** unless the webhook has rate-limited us more than the allowed number of
+    ** consecutive times, in which case, give up and throw a regular failure.
+    ***************************************************************************/
+   private void handleRateLimitResponse(Webhook webhook, String retryAfterValue, String responseString, WebhookEventSendLog sendLog) throws WebhookPostException
+   {
+      Instant resumeAt = WebhookRateLimitManager.recordRateLimit(webhook.getId(), retryAfterValue, getInitialRateLimitBackoffMillis());
+
+      int rateLimitsCaught = WebhookRateLimitManager.getConsecutiveRateLimits(webhook.getId());
+      if(rateLimitsCaught > getMaxAllowedRateLimitErrors())
+      {
+         WebhookRateLimitManager.resetConsecutiveRateLimits(webhook.getId());
+         sendLog.setHttpStatusCode(HttpStatus.SC_TOO_MANY_REQUESTS); // 429
+         LOG.warn("Giving up webhook post after too many rate limit errors", logPair("webhookId", webhook.getId()), logPair("rateLimitsCaught", rateLimitsCaught), logPair("response", responseString));
+         throw (new WebhookPostException("Giving up after too many rate-limit errors (" + getMaxAllowedRateLimitErrors() + ").  Latest response: " + responseString));
+      }
+
+      LOG.info("Caught rate limit.  Will defer webhook until resume time", logPair("rateLimitsCaught", rateLimitsCaught), logPair("webhookId", webhook.getId()), logPair("resumeAt", resumeAt));
+      throw (new WebhookRateLimitException(responseString, resumeAt));
    }
 
 
@@ -302,6 +884,27 @@ public class WebhookEventSender
 
 
 
+   /***************************************************************************
+    ** build the body for posting a batch of events - a JSON array of their
+    ** individual post bodies.
+    ***************************************************************************/
+   protected String getBatchPostBody(List<WebhookEvent> webhookEvents) throws QException
+   {
+      StringBuilder postBody = new StringBuilder("[");
+      for(int i = 0; i < webhookEvents.size(); i++)
+      {
+         if(i > 0)
+         {
+            postBody.append(",");
+         }
+         postBody.append(getPostBody(webhookEvents.get(i)));
+      }
+      postBody.append("]");
+      return (postBody.toString());
+   }
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
@@ -313,26 +916,89 @@ public class WebhookEventSender
 
 
    /*******************************************************************************
-    ** Build the default HttpClient used by the makeRequest method
+    ** Get the HttpClient to use for posting to a webhook.  Clients are pooled &
+    ** kept alive, one per webhook, by the WebhookHttpClientManager - so this
+    ** method's caller must NOT close the client it gets back.
+    *******************************************************************************/
+   protected CloseableHttpClient getHttpClient(Webhook webhook)
+   {
+      return (WebhookHttpClientManager.getHttpClient(webhook.getId(), this::buildHttpClient));
+   }
+
+
+
+   /*******************************************************************************
+    ** Build a new (pooling) HttpClient - called by the WebhookHttpClientManager
+    ** when a webhook doesn't yet have a client.
     *******************************************************************************/
    protected CloseableHttpClient buildHttpClient()
    {
-      ///////////////////////////////////////////////////////////////////////////////////////
-      // do we want this?? .setConnectionManager(new PoolingHttpClientConnectionManager()) //
-      // needs some good scrutiny.                                                         //
-      ///////////////////////////////////////////////////////////////////////////////////////
-      return HttpClientBuilder.create()
+      return WebhookHttpClientManager.newPoolingHttpClientBuilder()
          .setDefaultRequestConfig(RequestConfig.custom()
-            .setConnectTimeout(5000)
-            .setConnectionRequestTimeout(5000)
-            .setSocketTimeout(5000).build())
+            .setConnectTimeout(getConnectTimeoutMillis())
+            .setConnectionRequestTimeout(getConnectTimeoutMillis())
+            .setSocketTimeout(getReadTimeoutMillis()).build())
          .build();
    }
 
 
 
+   /*******************************************************************************
+    ** Build the RequestConfig (e.g., timeouts) for a post to a webhook - using
+    ** an adaptive read timeout for the webhook, if so configured.
+    *******************************************************************************/
+   protected RequestConfig buildRequestConfig(Webhook webhook)
+   {
+      return RequestConfig.custom()
+         .setConnectTimeout(getConnectTimeoutMillis())
+         .setConnectionRequestTimeout(getConnectTimeoutMillis())
+         .setSocketTimeout(getReadTimeoutMillis(webhook))
+         .build();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the read (socket) timeout to use for a webhook.  If adaptive timeouts
+    ** are off (or the webhook doesn't have enough latency samples yet), this is
+    ** just the configured read timeout.  Else, it's a multiple of the webhook's
+    ** percentile latency - bounded by the configured min & the configured read
+    ** timeout as the max.
+    *******************************************************************************/
+   protected int getReadTimeoutMillis(Webhook webhook)
+   {
+      int maxReadTimeoutMillis = getReadTimeoutMillis();
+      if(!isUseAdaptiveReadTimeouts())
+      {
+         return (maxReadTimeoutMillis);
+      }
+
+      Long percentileLatencyMillis = WebhookLatencyTracker.getPercentileLatencyMillis(webhook.getId(), WebhooksQBitConfig.getConfigValue(config -> config.getAdaptiveHttpReadTimeoutPercentile()));
+      if(percentileLatencyMillis == null)
+      {
+         return (maxReadTimeoutMillis);
+      }
+
+      long adaptiveMillis = percentileLatencyMillis * WebhooksQBitConfig.getConfigValue(config -> config.getAdaptiveHttpReadTimeoutMultiplier());
+      long minMillis      = Math.min(WebhooksQBitConfig.getConfigValue(config -> config.getAdaptiveHttpReadTimeoutMinMillis()), maxReadTimeoutMillis);
+      return ((int) Math.max(minMillis, Math.min(adaptiveMillis, maxReadTimeoutMillis)));
+   }
+
+
+
    /***************************************************************************
-    **
+    ** get this sender's outcome buffer, if it has one - else a new one (which
+    ** the caller must flush).
+    ***************************************************************************/
+   private WebhookEventOutcomeBuffer getOutcomeBufferOrNew()
+   {
+      return (outcomeBuffer == null ? new WebhookEventOutcomeBuffer() : outcomeBuffer);
+   }
+
+
+
+   /***************************************************************************
+    ** update an event's status & next attempt time - releasing any lease on it.
     ***************************************************************************/
    private void updateWebhookEvent(Integer id, WebhookEventStatus status, Instant nextAttemptTimestamp, QBackendTransaction transaction) throws QException
    {
@@ -341,7 +1007,30 @@ public class WebhookEventSender
          .withRecord(new QRecord()
             .withValue("id", id)
             .withValue("nextAttemptTimestamp", nextAttemptTimestamp)
-            .withValue("eventStatusId", status.getId())));
+            .withValue("eventStatusId", status.getId())
+            .withValue("leaseOwner", null)));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private void updateWebhookEvents(List<Integer> ids, WebhookEventStatus status, Instant nextAttemptTimestamp, QBackendTransaction transaction) throws QException
+   {
+      List<QRecord> records = new ArrayList<>();
+      for(Integer id : ids)
+      {
+         records.add(new QRecord()
+            .withValue("id", id)
+            .withValue("nextAttemptTimestamp", nextAttemptTimestamp)
+            .withValue("eventStatusId", status.getId())
+            .withValue("leaseOwner", null));
+      }
+
+      new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME)
+         .withTransaction(transaction)
+         .withRecords(records));
    }
 
 
@@ -374,6 +1063,79 @@ public class WebhookEventSender
 
 
 
+   /*******************************************************************************
+    ** connect timeout - from config, falling back to the general http timeout.
+    *******************************************************************************/
+   protected int getConnectTimeoutMillis()
+   {
+      if(connectTimeoutMillis == null)
+      {
+         connectTimeoutMillis = WebhooksQBitConfig.getConfigValue(config -> config.getHttpConnectTimeoutMillis() != null ? config.getHttpConnectTimeoutMillis() : config.getHttpTimeoutMillis());
+      }
+      return (connectTimeoutMillis);
+   }
+
+
+
+   /*******************************************************************************
+    ** (non-adaptive) read timeout - from config, falling back to the general
+    ** http timeout.
+    *******************************************************************************/
+   protected int getReadTimeoutMillis()
+   {
+      if(readTimeoutMillis == null)
+      {
+         readTimeoutMillis = WebhooksQBitConfig.getConfigValue(config -> config.getHttpReadTimeoutMillis() != null ? config.getHttpReadTimeoutMillis() : config.getHttpTimeoutMillis());
+      }
+      return (readTimeoutMillis);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   protected int getMaxResponseBodyBytes()
+   {
+      if(maxResponseBodyBytes == null)
+      {
+         maxResponseBodyBytes = WebhooksQBitConfig.getConfigValue(config -> config.getMaxResponseBodyBytes());
+      }
+      return (maxResponseBodyBytes);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   protected boolean isUseGzipCompression(Webhook webhook)
+   {
+      return (Boolean.TRUE.equals(webhook.getUseGzipCompression()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   protected boolean isLogSuccessfulResponseBodies()
+   {
+      return (Boolean.TRUE.equals(WebhooksQBitConfig.getConfigValue(config -> config.getLogSuccessfulResponseBodies())));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   protected boolean isUseAdaptiveReadTimeouts()
+   {
+      return (Boolean.TRUE.equals(WebhooksQBitConfig.getConfigValue(config -> config.getUseAdaptiveHttpReadTimeouts())));
+   }
+
+
+
    /***************************************************************************
     *
     ***************************************************************************/
@@ -405,7 +1167,7 @@ public class WebhookEventSender
    /***************************************************************************
     *
     ***************************************************************************/
-   private static Integer[] getBackoffMinutes()
+   static Integer[] getBackoffMinutes()
    {
       if(backoffMinutes == null)
       {
@@ -415,4 +1177,63 @@ public class WebhookEventSender
       return (backoffMinutes);
    }
 
+
+
+   /***************************************************************************
+    ** result of attempting a post - the send log, plus, if the webhook rate-
+    ** limited us, when it may resume.
+    ***************************************************************************/
+   static class PostResult
+   {
+      private WebhookEventSendLog sendLog;
+      private Instant             rateLimitedUntil;
+      private boolean             timedOut;
+      private Long                latencyMillis;
+   }
+
+
+
+   /***************************************************************************
+    ** a post to make (single event or batch) - which throws if unsuccessful.
+    ***************************************************************************/
+   @FunctionalInterface
+   interface PostCall
+   {
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      void post() throws WebhookPostException;
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for outcomeBuffer
+    *******************************************************************************/
+   public WebhookEventOutcomeBuffer getOutcomeBuffer()
+   {
+      return (this.outcomeBuffer);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for outcomeBuffer
+    *******************************************************************************/
+   public void setOutcomeBuffer(WebhookEventOutcomeBuffer outcomeBuffer)
+   {
+      this.outcomeBuffer = outcomeBuffer;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for outcomeBuffer
+    *******************************************************************************/
+   public WebhookEventSender withOutcomeBuffer(WebhookEventOutcomeBuffer outcomeBuffer)
+   {
+      this.outcomeBuffer = outcomeBuffer;
+      return (this);
+   }
+
 }
@@ -22,10 +22,9 @@
 package com.kingsrook.qbits.webhooks.actions;
 
 
-import java.util.Stack;
+import java.time.Instant;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
-import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
 import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
@@ -33,12 +32,16 @@ import com.kingsrook.qqq.backend.core.logging.QLogger;
 import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.scheduler.processes.AbstractRecordSyncToScheduledJobProcess;
-import org.apache.commons.lang3.BooleanUtils;
 import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
 
 /*******************************************************************************
- ** class that manages webhook health status
+ ** class that manages webhook health status.
+ **
+ ** A HEALTHY webhook goes UNHEALTHY after repeatedFailsToGoUnhealthy fails in
+ ** a row - or, once its health window has at least healthWindowMinSamples
+ ** outcomes, if its failure rate, timeout rate, or p95 latency in that window
+ ** reaches the configured threshold (each of which is optional).
  *******************************************************************************/
 public class WebhookHealthManager
 {
@@ -47,12 +50,13 @@ public class WebhookHealthManager
 
 
    /***************************************************************************
-    **
+    ** update the webhook's health status (if needed), based on its window of
+    ** recent send outcomes (the last of which is the send just made).
     ***************************************************************************/
-   public Webhook updateWebhookHealth(Stack<WebhookEventSendLog> recentSendLogs, Webhook webhook) throws QException
+   public Webhook updateWebhookHealth(WebhookHealthWindow healthWindow, Webhook webhook) throws QException
    {
       Integer repeatedFailsToGoUnhealthy = WebhooksQBitConfig.getConfigValue(config -> config.getRepeatedFailsToGoUnhealthy());
-      boolean lastSuccessful             = !recentSendLogs.isEmpty() && BooleanUtils.isTrue(recentSendLogs.peek().getSuccessful());
+      boolean lastSuccessful             = healthWindow.isLastSuccessful();
       if(lastSuccessful)
       {
          //////////////////////////////////////////////////////////////////
@@ -63,6 +67,19 @@ public class WebhookHealthManager
          {
             LOG.info("Marking previously-probation webhook as healthy due to a success", logPair("id", webhook.getId()));
             webhook = updateWebhookHealthStatus(webhook, WebhookHealthStatus.HEALTHY);
+
+            //////////////////////////////////////////////////////////////////////
+            // start the window over, so the outcomes from before the webhook   //
+            // recovered don't immediately count against it in the rate checks. //
+            //////////////////////////////////////////////////////////////////////
+            healthWindow.reset();
+         }
+         else if(WebhookHealthStatus.HEALTHY.getId().equals(webhook.getHealthStatusId()))
+         {
+            //////////////////////////////////////////////////////////////////
+            // successes can still be slow enough to breach the latency SLO //
+            //////////////////////////////////////////////////////////////////
+            webhook = checkWindowThresholds(healthWindow, webhook);
          }
       }
       else
@@ -83,12 +100,57 @@ public class WebhookHealthManager
             ///////////////////////////////////////////////////////////////////////////////////////////////////
             // if the webhook was healthy - mark it as unhealthy if there have been enough failures in-a-row //
             ///////////////////////////////////////////////////////////////////////////////////////////////////
-            if(repeatedFailsToGoUnhealthy != null && recentSendLogs.size() >= repeatedFailsToGoUnhealthy
-               && recentSendLogs.stream().noneMatch(sendLog -> BooleanUtils.isTrue(sendLog.getSuccessful())))
+            if(repeatedFailsToGoUnhealthy != null && healthWindow.getConsecutiveFailCount() >= repeatedFailsToGoUnhealthy)
             {
                LOG.info("Marking previously-healthy webhook as unhealthy due to repeated failures", logPair("id", webhook.getId()), logPair("repeatedFailLimit", repeatedFailsToGoUnhealthy));
                webhook = updateWebhookHealthStatus(webhook, WebhookHealthStatus.UNHEALTHY);
             }
+            else
+            {
+               webhook = checkWindowThresholds(healthWindow, webhook);
+            }
+         }
+      }
+
+      return (webhook);
+   }
+
+
+
+   /***************************************************************************
+    ** mark a HEALTHY webhook as UNHEALTHY if, with enough samples in its window,
+    ** its failure rate, timeout rate, or p95 latency reaches its threshold.
+    ***************************************************************************/
+   private Webhook checkWindowThresholds(WebhookHealthWindow healthWindow, Webhook webhook) throws QException
+   {
+      Integer minSamples = WebhooksQBitConfig.getConfigValue(config -> config.getHealthWindowMinSamples());
+      if(healthWindow.getSize() < minSamples)
+      {
+         return (webhook);
+      }
+
+      Integer failureRateLimit = WebhooksQBitConfig.getConfigValue(config -> config.getUnhealthyFailureRatePercent());
+      if(failureRateLimit != null && healthWindow.getFailureRatePercent() >= failureRateLimit)
+      {
+         LOG.info("Marking previously-healthy webhook as unhealthy due to its failure rate", logPair("id", webhook.getId()), logPair("failureRatePercent", healthWindow.getFailureRatePercent()), logPair("limit", failureRateLimit));
+         return (updateWebhookHealthStatus(webhook, WebhookHealthStatus.UNHEALTHY));
+      }
+
+      Integer timeoutRateLimit = WebhooksQBitConfig.getConfigValue(config -> config.getUnhealthyTimeoutRatePercent());
+      if(timeoutRateLimit != null && healthWindow.getTimeoutRatePercent() >= timeoutRateLimit)
+      {
+         LOG.info("Marking previously-healthy webhook as unhealthy due to its timeout rate", logPair("id", webhook.getId()), logPair("timeoutRatePercent", healthWindow.getTimeoutRatePercent()), logPair("limit", timeoutRateLimit));
+         return (updateWebhookHealthStatus(webhook, WebhookHealthStatus.UNHEALTHY));
+      }
+
+      Integer p95LatencyLimit = WebhooksQBitConfig.getConfigValue(config -> config.getUnhealthyP95LatencyMillis());
+      if(p95LatencyLimit != null && healthWindow.getLatencyCount() >= minSamples)
+      {
+         Long p95LatencyMillis = healthWindow.getPercentileLatencyMillis(95);
+         if(p95LatencyMillis != null && p95LatencyMillis >= p95LatencyLimit)
+         {
+            LOG.info("Marking previously-healthy webhook as unhealthy due to its p95 latency", logPair("id", webhook.getId()), logPair("p95LatencyMillis", p95LatencyMillis), logPair("limit", p95LatencyLimit));
+            return (updateWebhookHealthStatus(webhook, WebhookHealthStatus.UNHEALTHY));
          }
       }
 
@@ -98,17 +160,21 @@ public class WebhookHealthManager
 
 
    /***************************************************************************
-    **
+    ** set a webhook's health status - noting when it changed (which is what the
+    ** ManageWebhookHealth process goes by, if the webhook has no send attempts).
     ***************************************************************************/
    private Webhook updateWebhookHealthStatus(Webhook webhook, WebhookHealthStatus status) throws QException
    {
+      Instant now = Instant.now();
       new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME)
          .withFlag(AbstractRecordSyncToScheduledJobProcess.ActionFlags.DO_NOT_SYNC)
          .withRecord(new QRecord()
             .withValue("id", webhook.getId())
-            .withValue("healthStatusId", status.getId())));
+            .withValue("healthStatusId", status.getId())
+            .withValue("healthStatusChangedTimestamp", now)));
 
       webhook.setHealthStatusId(status.getId());
+      webhook.setHealthStatusChangedTimestamp(now);
       return (webhook);
    }
 
@@ -0,0 +1,301 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.Arrays;
+
+
+/*******************************************************************************
+ ** the recent send outcomes of one webhook, used for its health decisions.
+ **
+ ** Outcomes (success or not, timed-out or not, and latency) are kept in a
+ ** fixed-size ring buffer, along with running counters (failures & timeouts in
+ ** the window, and failures in-a-row), so recording an outcome and getting the
+ ** window's rates are constant-time.  Percentile latencies sort a copy of the
+ ** window's latencies.
+ **
+ ** The failures-in-a-row counter is what gets persisted on the webhook record
+ ** (as its consecutiveFailCount), and a window can be re-seeded from just that
+ ** - as the repeated-failures rule only looks at the trailing run of failures.
+ ** Timeouts and latencies are only kept in memory, so the rate & latency rules
+ ** start from an empty window in each run of the sending process.
+ **
+ ** Not thread-safe - callers sharing a window must synchronize on it (or on
+ ** whatever owns it).
+ *******************************************************************************/
+public class WebhookHealthWindow
+{
+   private final boolean[] outcomes;
+   private final boolean[] timeouts;
+   private final long[]    latencies;
+
+   private int head                 = 0;
+   private int size                 = 0;
+   private int failureCount         = 0;
+   private int timeoutCount         = 0;
+   private int latencyCount         = 0;
+   private int consecutiveFailCount = 0;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param capacity number of most-recent outcomes to keep.  values < 1 are
+    ** treated as 1.
+    *******************************************************************************/
+   public WebhookHealthWindow(int capacity)
+   {
+      this.outcomes = new boolean[Math.max(1, capacity)];
+      this.timeouts = new boolean[outcomes.length];
+      this.latencies = new long[outcomes.length];
+   }
+
+
+
+   /***************************************************************************
+    ** make a window that starts out as if the given number of failures in-a-row
+    ** had just been recorded (e.g., from a webhook's persisted consecutiveFailCount).
+    ***************************************************************************/
+   public static WebhookHealthWindow seeded(int capacity, Integer consecutiveFailCount)
+   {
+      WebhookHealthWindow window = new WebhookHealthWindow(capacity);
+      int                 fails  = consecutiveFailCount == null ? 0 : Math.max(0, consecutiveFailCount);
+      for(int i = 0; i < Math.min(fails, window.outcomes.length); i++)
+      {
+         window.record(false);
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // the run of fails may be longer than the window - keep its length //
+      //////////////////////////////////////////////////////////////////////
+      window.consecutiveFailCount = fails;
+      return (window);
+   }
+
+
+
+   /***************************************************************************
+    ** record the outcome of one send, with no timeout or latency information.
+    ** @see #record(boolean, boolean, Long)
+    ***************************************************************************/
+   public void record(boolean successful)
+   {
+      record(successful, false, null);
+   }
+
+
+
+   /***************************************************************************
+    ** record the outcome of one send - evicting the oldest outcome if the
+    ** window is full.
+    **
+    ** @param successful was the send successful
+    ** @param timedOut did the send fail by timing out
+    ** @param latencyMillis how long the send took - or null if not known
+    ***************************************************************************/
+   public void record(boolean successful, boolean timedOut, Long latencyMillis)
+   {
+      if(size == outcomes.length)
+      {
+         if(!outcomes[head])
+         {
+            failureCount--;
+         }
+         if(timeouts[head])
+         {
+            timeoutCount--;
+         }
+         if(latencies[head] >= 0)
+         {
+            latencyCount--;
+         }
+      }
+      else
+      {
+         size++;
+      }
+
+      outcomes[head] = successful;
+      timeouts[head] = timedOut;
+      latencies[head] = latencyMillis == null ? -1 : Math.max(0, latencyMillis);
+      head = (head + 1) % outcomes.length;
+
+      if(timedOut)
+      {
+         timeoutCount++;
+      }
+      if(latencyMillis != null)
+      {
+         latencyCount++;
+      }
+
+      if(successful)
+      {
+         consecutiveFailCount = 0;
+      }
+      else
+      {
+         failureCount++;
+         consecutiveFailCount++;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** forget all recorded outcomes (e.g., when a webhook is made healthy again,
+    ** so that the outcomes that had made it unhealthy don't count against it).
+    ***************************************************************************/
+   public void reset()
+   {
+      head = 0;
+      size = 0;
+      failureCount = 0;
+      timeoutCount = 0;
+      latencyCount = 0;
+      consecutiveFailCount = 0;
+   }
+
+
+
+   /***************************************************************************
+    ** get the percent (0 to 100) of the outcomes in the window that failed
+    ***************************************************************************/
+   public double getFailureRatePercent()
+   {
+      return (size == 0 ? 0 : 100.0 * failureCount / size);
+   }
+
+
+
+   /***************************************************************************
+    ** get the percent (0 to 100) of the outcomes in the window that timed out
+    ***************************************************************************/
+   public double getTimeoutRatePercent()
+   {
+      return (size == 0 ? 0 : 100.0 * timeoutCount / size);
+   }
+
+
+
+   /***************************************************************************
+    ** get the given percentile (e.g., 95) of the latencies in the window - or
+    ** null if no outcomes in the window have a latency.
+    ***************************************************************************/
+   public Long getPercentileLatencyMillis(int percentile)
+   {
+      if(latencyCount == 0)
+      {
+         return (null);
+      }
+
+      long[] sorted = new long[latencyCount];
+      int    index  = 0;
+      for(int i = 0; i < size; i++)
+      {
+         if(latencies[i] >= 0)
+         {
+            sorted[index++] = latencies[i];
+         }
+      }
+      Arrays.sort(sorted);
+
+      int percentileIndex = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+      return (sorted[Math.max(0, Math.min(percentileIndex, latencyCount - 1))]);
+   }
+
+
+
+   /***************************************************************************
+    ** was the most recently recorded outcome a success?  false if the window
+    ** is empty.
+    ***************************************************************************/
+   public boolean isLastSuccessful()
+   {
+      return (size > 0 && outcomes[(head - 1 + outcomes.length) % outcomes.length]);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for number of outcomes in the window
+    ***************************************************************************/
+   public int getSize()
+   {
+      return (size);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for the max number of outcomes the window holds
+    ***************************************************************************/
+   public int getCapacity()
+   {
+      return (outcomes.length);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for number of failures in the window
+    ***************************************************************************/
+   public int getFailureCount()
+   {
+      return (failureCount);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for number of timeouts in the window
+    ***************************************************************************/
+   public int getTimeoutCount()
+   {
+      return (timeoutCount);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for number of outcomes in the window that have a latency
+    ***************************************************************************/
+   public int getLatencyCount()
+   {
+      return (latencyCount);
+   }
+
+
+
+   /***************************************************************************
+    ** Getter for number of failures in-a-row (since the last success) - which
+    ** may be greater than the window's capacity.
+    ***************************************************************************/
+   public int getConsecutiveFailCount()
+   {
+      return (consecutiveFailCount);
+   }
+
+}
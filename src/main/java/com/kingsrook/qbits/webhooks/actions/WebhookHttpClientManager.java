@@ -0,0 +1,422 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** registry of long-lived, pooling http clients, used for posting webhook
+ ** events - one client per webhook.
+ **
+ ** Clients are built lazily (by a supplier given by the caller - e.g., the
+ ** WebhookEventSender), and then reused for every post to that webhook, so that
+ ** TCP/TLS connections can be kept alive and reused between events.
+ **
+ ** Clients are closed (and their connections released):
+ ** - when a webhook is disabled, deleted, or has its url changed (see
+ **   {@link CloseWebhookHttpClientTableCustomizer});
+ ** - when the active QInstance changes (e.g., it is reloaded), at which point
+ **   all clients are closed and will be rebuilt on next use;
+ ** - when {@link #closeAll()} is called.
+ **
+ ** Idle & expired connections in all of the clients' pools are closed by one
+ ** shared background thread (rather than a thread per client, as the Apache
+ ** builder's evictIdleConnections would start), which closeAll also stops.
+ **
+ ** Also holds the one (non-blocking, JDK) client shared by all webhooks for the
+ ** AsyncWebhookEventSender - which runs on a small fixed pool of threads owned
+ ** here, that is shut down (dropping the client) by closeAll - along with the
+ ** small pool that sender runs its completion work (and delayed posts) on.
+ *******************************************************************************/
+public class WebhookHttpClientManager
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookHttpClientManager.class);
+
+   private static final Map<Integer, CloseableHttpClient> clientsByWebhookId = new ConcurrentHashMap<>();
+
+   ////////////////////////////////////////////////////////////////////////////////
+   // remember which qInstance the clients were built for, so that if a new one  //
+   // is activated (e.g., a hot-reload), we can shut down all of our old clients //
+   ////////////////////////////////////////////////////////////////////////////////
+   private static volatile QInstance qInstanceClientsWereBuiltFor = null;
+
+   private static final int  ASYNC_CLIENT_THREADS      = 4;
+   private static final int  ASYNC_COMPLETION_THREADS  = 4;
+   private static final long EVICTION_INTERVAL_SECONDS = 5;
+
+   private static volatile HttpClient      asyncHttpClient         = null;
+   private static          ExecutorService asyncHttpClientExecutor = null;
+   private static          ExecutorService asyncCompletionExecutor = null;
+
+   //////////////////////////////////////////////////////////////////////////////
+   // connection pools for the eviction thread to sweep, with each one's idle  //
+   // timeout.  weak keys, so pools of clients that were closed just drop out. //
+   //////////////////////////////////////////////////////////////////////////////
+   private static final Map<PoolingHttpClientConnectionManager, Integer> idleSecondsByConnectionManager = Collections.synchronizedMap(new WeakHashMap<>());
+
+   private static ScheduledExecutorService evictionExecutor = null;
+
+
+
+   /***************************************************************************
+    ** get the client for a webhook - building it (via the supplier) if one
+    ** doesn't already exist.
+    ***************************************************************************/
+   public static CloseableHttpClient getHttpClient(Integer webhookId, Supplier<CloseableHttpClient> clientSupplier)
+   {
+      checkForQInstanceChange();
+
+      if(webhookId == null)
+      {
+         //////////////////////////////////////////////////////////////////////////
+         // e.g., a webhook that isn't stored yet - caller gets a new, unmanaged //
+         // client (which it is then responsible for closing).                   //
+         //////////////////////////////////////////////////////////////////////////
+         return (clientSupplier.get());
+      }
+
+      return (clientsByWebhookId.computeIfAbsent(webhookId, id -> clientSupplier.get()));
+   }
+
+
+
+   /***************************************************************************
+    ** get the shared non-blocking client - building it (by the function given
+    ** by the caller, to which the executor it must use is passed) if it doesn't
+    ** already exist.
+    ***************************************************************************/
+   public static HttpClient getAsyncHttpClient(Function<Executor, HttpClient> clientBuilder)
+   {
+      checkForQInstanceChange();
+
+      HttpClient client = asyncHttpClient;
+      if(client == null)
+      {
+         synchronized(WebhookHttpClientManager.class)
+         {
+            if(asyncHttpClient == null)
+            {
+               asyncHttpClientExecutor = Executors.newFixedThreadPool(ASYNC_CLIENT_THREADS, new DaemonThreadFactory("webhook-async-http-"));
+               asyncHttpClient = clientBuilder.apply(asyncHttpClientExecutor);
+            }
+            client = asyncHttpClient;
+         }
+      }
+      return (client);
+   }
+
+
+
+   /***************************************************************************
+    ** get the (shared) pool on which the non-blocking sender does the work of
+    ** completing its posts (storing send logs, updating events) - and starts
+    ** posts that it has delayed - starting it if needed.
+    ***************************************************************************/
+   public static synchronized ExecutorService getAsyncCompletionExecutor()
+   {
+      if(asyncCompletionExecutor == null)
+      {
+         asyncCompletionExecutor = Executors.newFixedThreadPool(ASYNC_COMPLETION_THREADS, new DaemonThreadFactory("webhook-send-completion-"));
+      }
+      return (asyncCompletionExecutor);
+   }
+
+
+
+   /***************************************************************************
+    ** build a new pooling http client builder, using config values from the
+    ** qbit config for its pool size and idle-connection settings.
+    ***************************************************************************/
+   public static HttpClientBuilder newPoolingHttpClientBuilder()
+   {
+      int maxConnections        = WebhooksQBitConfig.getConfigValue(config -> config.getMaxHttpConnectionsPerWebhook());
+      int idleConnectionSeconds = WebhooksQBitConfig.getConfigValue(config -> config.getHttpIdleConnectionTimeoutSeconds());
+
+      PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+      connectionManager.setMaxTotal(maxConnections);
+      connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+      ////////////////////////////////////////////////////////////////////////////////////
+      // re-validate connections that have sat idle for a moment before we reuse them - //
+      // to avoid posting to a connection the server has already half-closed.           //
+      ////////////////////////////////////////////////////////////////////////////////////
+      connectionManager.setValidateAfterInactivity(2000);
+
+      /////////////////////////////////////////////////////////////////////////////////
+      // honor a server's keep-alive header if it gives one (but never keep past our //
+      // idle timeout); if it doesn't give one, keep alive up to our idle timeout.   //
+      /////////////////////////////////////////////////////////////////////////////////
+      long                        idleConnectionMillis = idleConnectionSeconds * 1000L;
+      ConnectionKeepAliveStrategy keepAliveStrategy    = (response, context) ->
+      {
+         long serverKeepAliveMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+         return (serverKeepAliveMillis > 0 ? Math.min(serverKeepAliveMillis, idleConnectionMillis) : idleConnectionMillis);
+      };
+
+      //////////////////////////////////////////////////////////////////////
+      // have the shared eviction thread close this pool's expired & idle //
+      // connections (so the client doesn't start its own thread for it). //
+      //////////////////////////////////////////////////////////////////////
+      idleSecondsByConnectionManager.put(connectionManager, idleConnectionSeconds);
+      startEvictionIfNeeded();
+
+      return HttpClientBuilder.create()
+         .setConnectionManager(connectionManager)
+         .setKeepAliveStrategy(keepAliveStrategy);
+   }
+
+
+
+   /***************************************************************************
+    ** close (and forget) the client for a single webhook, e.g., because it was
+    ** disabled or its url changed.  a new one will be built on next use.
+    ***************************************************************************/
+   public static void close(Integer webhookId)
+   {
+      if(webhookId == null)
+      {
+         return;
+      }
+
+      closeClient(webhookId, clientsByWebhookId.remove(webhookId));
+   }
+
+
+
+   /***************************************************************************
+    ** close (and forget) all clients.
+    ***************************************************************************/
+   public static void closeAll()
+   {
+      for(Integer webhookId : new ArrayList<>(clientsByWebhookId.keySet()))
+      {
+         close(webhookId);
+      }
+
+      /////////////////////////////////////////////////////////////////////////////
+      // the JDK client can't be closed (before java 21) - but shutting down its //
+      // executor stops its work, and it (and its connections) are then let go.  //
+      /////////////////////////////////////////////////////////////////////////////
+      synchronized(WebhookHttpClientManager.class)
+      {
+         if(asyncHttpClientExecutor != null)
+         {
+            asyncHttpClientExecutor.shutdown();
+         }
+         asyncHttpClientExecutor = null;
+         asyncHttpClient = null;
+
+         if(asyncCompletionExecutor != null)
+         {
+            asyncCompletionExecutor.shutdown();
+         }
+         asyncCompletionExecutor = null;
+
+         if(evictionExecutor != null)
+         {
+            evictionExecutor.shutdown();
+         }
+         evictionExecutor = null;
+         idleSecondsByConnectionManager.clear();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get the ids of webhooks that currently have a client - mostly for tests.
+    ***************************************************************************/
+   public static List<Integer> getWebhookIdsWithClients()
+   {
+      return (new ArrayList<>(clientsByWebhookId.keySet()));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static void checkForQInstanceChange()
+   {
+      QInstance qInstance = QContext.getQInstance();
+      if(qInstance == null)
+      {
+         ///////////////////////////////////////////////////////////////////////
+         // e.g., called from a thread without a context - which doesn't mean //
+         // the instance changed, so keep the clients we have.                //
+         ///////////////////////////////////////////////////////////////////////
+         return;
+      }
+
+      if(qInstance != qInstanceClientsWereBuiltFor)
+      {
+         synchronized(WebhookHttpClientManager.class)
+         {
+            if(qInstance != qInstanceClientsWereBuiltFor)
+            {
+               if(qInstanceClientsWereBuiltFor != null && !clientsByWebhookId.isEmpty())
+               {
+                  LOG.info("QInstance changed - closing all webhook http clients", logPair("noClients", clientsByWebhookId.size()));
+               }
+
+               closeAll();
+               qInstanceClientsWereBuiltFor = qInstance;
+            }
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** start the shared thread that closes idle & expired connections, if it
+    ** isn't already running.
+    ***************************************************************************/
+   private static synchronized void startEvictionIfNeeded()
+   {
+      if(evictionExecutor == null)
+      {
+         evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable ->
+         {
+            Thread thread = new Thread(runnable, "webhook-http-connection-evictor");
+            thread.setDaemon(true);
+            return (thread);
+         });
+         evictionExecutor.scheduleWithFixedDelay(WebhookHttpClientManager::evictConnections, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** close expired connections, and connections idle past their pool's idle
+    ** timeout, in all of the pools we know of.
+    ***************************************************************************/
+   private static void evictConnections()
+   {
+      Map<PoolingHttpClientConnectionManager, Integer> connectionManagers;
+      synchronized(idleSecondsByConnectionManager)
+      {
+         connectionManagers = new HashMap<>(idleSecondsByConnectionManager);
+      }
+
+      for(Map.Entry<PoolingHttpClientConnectionManager, Integer> entry : connectionManagers.entrySet())
+      {
+         try
+         {
+            entry.getKey().closeExpiredConnections();
+            entry.getKey().closeIdleConnections(entry.getValue(), TimeUnit.SECONDS);
+         }
+         catch(Exception e)
+         {
+            LOG.info("Error evicting webhook http connections", e);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static void closeClient(Integer webhookId, CloseableHttpClient client)
+   {
+      if(client == null)
+      {
+         return;
+      }
+
+      try
+      {
+         client.close();
+      }
+      catch(Exception e)
+      {
+         LOG.info("Error closing webhook http client", e, logPair("webhookId", webhookId));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** thread factory for the async client's & completion pools - daemon threads,
+    ** with names to make them identifiable in logs & thread dumps.
+    ***************************************************************************/
+   private static class DaemonThreadFactory implements ThreadFactory
+   {
+      private final String        namePrefix;
+      private final AtomicInteger threadNo = new AtomicInteger(0);
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      DaemonThreadFactory(String namePrefix)
+      {
+         this.namePrefix = namePrefix;
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+         Thread thread = new Thread(runnable, namePrefix + threadNo.incrementAndGet());
+         thread.setDaemon(true);
+         return (thread);
+      }
+   }
+
+}
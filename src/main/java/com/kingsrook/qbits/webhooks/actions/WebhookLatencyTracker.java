@@ -0,0 +1,151 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/*******************************************************************************
+ ** in-memory tracker of recent http response latencies, per webhook - used to
+ ** derive adaptive read timeouts (see WebhookEventSender.getReadTimeoutMillis).
+ **
+ ** Each webhook gets a small ring buffer of its most recent latencies; from
+ ** that, a percentile can be computed.  Posts that time out are recorded too,
+ ** as a sample at the timeout they had (see WebhookEventSender) - else, once a
+ ** webhook's latency rose above its adaptive timeout, every post would time
+ ** out, no samples would be added, and the timeout would never grow back.
+ **
+ ** Nothing here is persisted - after a restart, webhooks go back to the
+ ** configured (non-adaptive) timeout until enough samples have been collected
+ ** again.
+ *******************************************************************************/
+public class WebhookLatencyTracker
+{
+   public static final int WINDOW_SIZE        = 100;
+   public static final int MIN_SAMPLES_TO_USE = 20;
+
+   private static final Map<Integer, LatencyWindow> windowsByWebhookId = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    ** record the latency of a response from a webhook.
+    ***************************************************************************/
+   public static void recordLatency(Integer webhookId, long latencyMillis)
+   {
+      if(webhookId == null)
+      {
+         return;
+      }
+
+      windowsByWebhookId.computeIfAbsent(webhookId, id -> new LatencyWindow()).record(latencyMillis);
+   }
+
+
+
+   /***************************************************************************
+    ** get the given percentile (e.g., 99) of recent latencies for a webhook -
+    ** or null if there aren't enough samples to say.
+    ***************************************************************************/
+   public static Long getPercentileLatencyMillis(Integer webhookId, int percentile)
+   {
+      LatencyWindow window = webhookId == null ? null : windowsByWebhookId.get(webhookId);
+      if(window == null)
+      {
+         return (null);
+      }
+
+      return (window.getPercentile(percentile));
+   }
+
+
+
+   /***************************************************************************
+    ** forget the latencies for a webhook (e.g., because its url changed)
+    ***************************************************************************/
+   public static void clear(Integer webhookId)
+   {
+      if(webhookId != null)
+      {
+         windowsByWebhookId.remove(webhookId);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** forget all latencies
+    ***************************************************************************/
+   public static void clearAll()
+   {
+      windowsByWebhookId.clear();
+   }
+
+
+
+   /***************************************************************************
+    ** fixed-size ring buffer of latencies
+    ***************************************************************************/
+   private static class LatencyWindow
+   {
+      private final long[] samples = new long[WINDOW_SIZE];
+      private int          count   = 0;
+      private int          next    = 0;
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized void record(long latencyMillis)
+      {
+         samples[next] = latencyMillis;
+         next = (next + 1) % WINDOW_SIZE;
+         count = Math.min(count + 1, WINDOW_SIZE);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized Long getPercentile(int percentile)
+      {
+         if(count < MIN_SAMPLES_TO_USE)
+         {
+            return (null);
+         }
+
+         long[] sorted = Arrays.copyOf(samples, count);
+         Arrays.sort(sorted);
+
+         int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+         index = Math.max(0, Math.min(index, count - 1));
+         return (sorted[index]);
+      }
+   }
+
+}
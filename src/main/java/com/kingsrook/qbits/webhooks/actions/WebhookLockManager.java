@@ -0,0 +1,128 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+import com.kingsrook.qbits.webhooks.model.WebhookLock;
+import com.kingsrook.qqq.backend.core.actions.tables.DeleteAction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** takes & releases the cluster-wide locks in the webhookLock table.
+ **
+ ** A lock is taken by inserting its row - which only one node can do, per the
+ ** table's unique key on name.  Each lock has an expiry, after which any node
+ ** may delete it (e.g., if the node that held it died) - by its id, so a lock
+ ** that has since been re-taken by another node is never deleted.
+ **
+ ** Locks are taken and released outside of any transaction, so that a failed
+ ** insert can't spoil a caller's transaction.
+ *******************************************************************************/
+public class WebhookLockManager
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookLockManager.class);
+
+
+
+   /***************************************************************************
+    ** try (once) to take a lock - returning whether it was taken.
+    ***************************************************************************/
+   public static boolean tryLock(String name, String holder, int expirationSeconds) throws QException
+   {
+      deleteExpiredLock(name);
+
+      try
+      {
+         QRecord insertedRecord = new InsertAction().execute(new InsertInput(WebhookLock.TABLE_NAME)
+               .withRecordEntity(new WebhookLock()
+                  .withName(name)
+                  .withHolder(holder)
+                  .withExpiresTimestamp(Instant.now().plusSeconds(expirationSeconds))))
+            .getRecords().get(0);
+         return (CollectionUtils.nullSafeIsEmpty(insertedRecord.getErrors()));
+      }
+      catch(QException e)
+      {
+         /////////////////////////////////////////////////////////////////////
+         // a backend may throw (rather than give a record error) when its  //
+         // unique constraint stops the insert - either way, it's not ours. //
+         /////////////////////////////////////////////////////////////////////
+         LOG.debug("Did not take webhook lock", logPair("name", name), logPair("holder", holder), logPair("message", e.getMessage()));
+         return (false);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** release a lock, if it's (still) held by the given holder.
+    ***************************************************************************/
+   public static void unlock(String name, String holder) throws QException
+   {
+      deleteLocks(new QQueryFilter()
+         .withCriteria(new QFilterCriteria("name", QCriteriaOperator.EQUALS, name))
+         .withCriteria(new QFilterCriteria("holder", QCriteriaOperator.EQUALS, holder)));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static void deleteExpiredLock(String name) throws QException
+   {
+      deleteLocks(new QQueryFilter()
+         .withCriteria(new QFilterCriteria("name", QCriteriaOperator.EQUALS, name))
+         .withCriteria(new QFilterCriteria("expiresTimestamp", QCriteriaOperator.LESS_THAN, Instant.now())));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static void deleteLocks(QQueryFilter filter) throws QException
+   {
+      List<Serializable> ids = QueryAction.execute(WebhookLock.TABLE_NAME, filter).stream().map(r -> r.getValue("id")).toList();
+      if(!ids.isEmpty())
+      {
+         new DeleteAction().execute(new DeleteInput(WebhookLock.TABLE_NAME).withPrimaryKeys(ids));
+      }
+   }
+
+}
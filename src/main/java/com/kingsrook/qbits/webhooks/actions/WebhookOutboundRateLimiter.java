@@ -0,0 +1,328 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookOutboundRate;
+import com.kingsrook.qqq.backend.core.actions.tables.DeleteAction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** outbound rate limiter for webhooks that have a maxRequestsPerSecond set.
+ **
+ ** Each webhook gets a local token bucket.  To keep multiple app nodes (each
+ ** running the send process) under the webhook's limit together, once per
+ ** sync interval each node stores the rate at which it sent requests to the
+ ** webhook over the last interval, in its own row of the webhookOutboundRate
+ ** table, and reads the other nodes' rows.  The node's bucket is then re-sized
+ ** to its fair share of the limit (the limit divided by the number of nodes
+ ** currently sending), or to whatever of the limit the other nodes' rates
+ ** leave unused, if that's more.  So with N nodes all backlogged on a webhook,
+ ** this settles at about limit/N each - while a node that has the webhook to
+ ** itself (or whose peers send less than their share) can use the rest.
+ ** (Requests are counted as they're made - so a batched post counts once, and
+ ** buffered send logs don't delay the count.)
+ **
+ ** This is an approximation - each node's rate is up to a sync interval old,
+ ** and nodes re-size at different moments - so short bursts over the limit
+ ** are possible when the set of nodes sending changes.  Rows not updated for
+ ** a couple of intervals (i.e., nodes no longer sending) are ignored, and
+ ** removed after STALE_RATE_MILLIS.  Each node is always allowed at least 1
+ ** request per second, so that no node is starved entirely.
+ **
+ ** The sync is done by whichever thread first finds it due; other threads
+ ** sending to the webhook meanwhile don't wait for it (they keep using the
+ ** bucket as last sized).
+ **
+ ** A caller waits (sleeps) for a token only up to MAX_WAIT_MILLIS.  If many
+ ** callers at once have pushed the wait past that, acquire throws a
+ ** WebhookRateLimitException instead - so the sender defers the event (as it
+ ** does when the webhook itself rate-limits us), rather than holding a worker
+ ** thread asleep.  Callers that can start their post later without holding a
+ ** thread (i.e., the non-blocking sender) use reserve instead, which returns
+ ** the wait rather than sleeping it.
+ *******************************************************************************/
+public class WebhookOutboundRateLimiter
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookOutboundRateLimiter.class);
+
+   public static final long SYNC_INTERVAL_MILLIS = 1000;
+   public static final long MAX_WAIT_MILLIS      = 1000;
+   public static final long STALE_RATE_MILLIS    = 60 * 60 * 1000;
+
+   private static final String NODE_ID = UUID.randomUUID().toString();
+
+   private static final Map<Integer, LimiterState> stateByWebhookId = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    ** acquire permission to send a request to a webhook - waiting (briefly)
+    ** if needed to stay under its max requests per second.  no-op for webhooks
+    ** without a limit.  throws WebhookRateLimitException (with the time at which
+    ** a token should be available) if the wait would be over MAX_WAIT_MILLIS.
+    ***************************************************************************/
+   public static void acquire(Webhook webhook) throws WebhookRateLimitException
+   {
+      long waitMillis = reserve(webhook);
+      if(waitMillis > 0)
+      {
+         SleepUtils.sleep(waitMillis, TimeUnit.MILLISECONDS);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** reserve permission to send a request to a webhook, returning how many
+    ** millis from now the request may be sent (0 for right away, including for
+    ** webhooks without a limit) - for the caller to wait, in whatever way suits
+    ** it.  throws WebhookRateLimitException, as acquire does, if the wait would
+    ** be over MAX_WAIT_MILLIS.
+    ***************************************************************************/
+   public static long reserve(Webhook webhook) throws WebhookRateLimitException
+   {
+      Integer limit = webhook.getMaxRequestsPerSecond();
+      if(webhook.getId() == null || limit == null || limit <= 0)
+      {
+         return (0);
+      }
+
+      /////////////////////////////////////////////////////////////
+      // (re)build the state if new, or if the limit was changed //
+      /////////////////////////////////////////////////////////////
+      LimiterState state = stateByWebhookId.compute(webhook.getId(), (id, existing) -> existing != null && existing.limit == limit ? existing : new LimiterState(limit));
+      syncWithClusterIfDue(webhook.getId(), state);
+
+      long waitMillis = state.bucket.reserve(MAX_WAIT_MILLIS);
+      if(waitMillis > MAX_WAIT_MILLIS)
+      {
+         LOG.debug("Deferring send to webhook, rather than waiting for its outbound rate limit", logPair("webhookId", webhook.getId()), logPair("waitMillis", waitMillis));
+         throw (new WebhookRateLimitException("Outbound rate limit for webhook reached", Instant.now().plusMillis(waitMillis)));
+      }
+
+      state.localSendsSinceSync.incrementAndGet();
+      return (waitMillis);
+   }
+
+
+
+   /***************************************************************************
+    ** get the current (local) permits per second for a webhook - or null if it
+    ** isn't being limited.  mostly for tests.
+    ***************************************************************************/
+   public static Double getCurrentPermitsPerSecond(Integer webhookId)
+   {
+      LimiterState state = webhookId == null ? null : stateByWebhookId.get(webhookId);
+      return (state == null ? null : state.bucket.getPermitsPerSecond());
+   }
+
+
+
+   /***************************************************************************
+    ** forget all limiter state
+    ***************************************************************************/
+   public static void clearAll()
+   {
+      stateByWebhookId.clear();
+   }
+
+
+
+   /***************************************************************************
+    ** re-size a webhook's bucket from the other nodes' rates, if it's been a
+    ** sync interval since that was last done - unless another thread is
+    ** already doing so, in which case, just carry on without waiting for it.
+    ***************************************************************************/
+   private static void syncWithClusterIfDue(Integer webhookId, LimiterState state)
+   {
+      long now = System.currentTimeMillis();
+      if(now - state.lastSyncMillis < SYNC_INTERVAL_MILLIS || !state.syncLock.tryLock())
+      {
+         return;
+      }
+
+      try
+      {
+         if(now - state.lastSyncMillis < SYNC_INTERVAL_MILLIS)
+         {
+            return;
+         }
+
+         long elapsedMillis = now - state.lastSyncMillis;
+         int  localSends    = state.localSendsSinceSync.getAndSet(0);
+         state.lastSyncMillis = now;
+
+         try
+         {
+            int        localSendsPerSecond = (int) Math.ceil(localSends * 1000.0 / Math.max(elapsedMillis, 1000));
+            OtherNodes otherNodes          = storeLocalRateAndReadOtherNodes(webhookId, localSendsPerSecond, now);
+
+            ///////////////////////////////////////////////////////////////////////
+            // our fair share is the limit split evenly over the nodes currently //
+            // sending - but if the others leave more than that unused, take it. //
+            ///////////////////////////////////////////////////////////////////////
+            double fairShare        = (double) state.limit / (otherNodes.noNodes() + 1);
+            double permitsPerSecond = Math.max(1, Math.max(fairShare, state.limit - otherNodes.sendsPerSecond()));
+
+            if(permitsPerSecond != state.bucket.getPermitsPerSecond())
+            {
+               LOG.debug("Adjusting webhook outbound rate limit based on other nodes' sends", logPair("webhookId", webhookId), logPair("limit", state.limit), logPair("otherNodes", otherNodes.noNodes()), logPair("otherNodesSendsPerSecond", otherNodes.sendsPerSecond()), logPair("permitsPerSecond", permitsPerSecond));
+               state.bucket.setPermitsPerSecond(permitsPerSecond);
+            }
+         }
+         catch(Exception e)
+         {
+            ///////////////////////////////////////////////////////////////////////////
+            // if we can't read the other nodes' rates, keep the rate we already had //
+            ///////////////////////////////////////////////////////////////////////////
+            LOG.info("Error syncing webhook outbound rate limit with other nodes", e, logPair("webhookId", webhookId));
+         }
+      }
+      finally
+      {
+         state.syncLock.unlock();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** store this node's rate of sending to a webhook (updating its row, or
+    ** inserting it the first time), and return the number of other nodes with
+    ** a current rate, and the sum of those rates.  rows gone stale (e.g., from
+    ** nodes that were shut down) are deleted along the way.
+    ***************************************************************************/
+   private static OtherNodes storeLocalRateAndReadOtherNodes(Integer webhookId, int localSendsPerSecond, long now) throws QException
+   {
+      List<WebhookOutboundRate> rates = QueryAction.execute(WebhookOutboundRate.TABLE_NAME, WebhookOutboundRate.class, new QQueryFilter()
+         .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.EQUALS, webhookId)));
+
+      Instant             currentCutoff  = Instant.ofEpochMilli(now - 2 * SYNC_INTERVAL_MILLIS);
+      Instant             staleCutoff    = Instant.ofEpochMilli(now - STALE_RATE_MILLIS);
+      WebhookOutboundRate localRate      = null;
+      int                 otherNodesRate = 0;
+      int                 otherNodes     = 0;
+      List<Serializable>  staleIds       = new ArrayList<>();
+      for(WebhookOutboundRate rate : rates)
+      {
+         if(NODE_ID.equals(rate.getNodeId()))
+         {
+            localRate = rate;
+         }
+         else if(rate.getPeriodEndTimestamp() == null || rate.getPeriodEndTimestamp().isBefore(staleCutoff))
+         {
+            staleIds.add(rate.getId());
+         }
+         else if(!rate.getPeriodEndTimestamp().isBefore(currentCutoff) && rate.getRequestsPerSecond() != null)
+         {
+            otherNodesRate += rate.getRequestsPerSecond();
+            otherNodes++;
+         }
+      }
+
+      if(localRate == null)
+      {
+         new InsertAction().execute(new InsertInput(WebhookOutboundRate.TABLE_NAME).withRecordEntity(new WebhookOutboundRate()
+            .withWebhookId(webhookId)
+            .withNodeId(NODE_ID)
+            .withRequestsPerSecond(localSendsPerSecond)
+            .withPeriodEndTimestamp(Instant.ofEpochMilli(now))));
+      }
+      else
+      {
+         new UpdateAction().execute(new UpdateInput(WebhookOutboundRate.TABLE_NAME).withRecord(new QRecord()
+            .withValue("id", localRate.getId())
+            .withValue("requestsPerSecond", localSendsPerSecond)
+            .withValue("periodEndTimestamp", Instant.ofEpochMilli(now))));
+      }
+
+      if(!staleIds.isEmpty())
+      {
+         new DeleteAction().execute(new DeleteInput(WebhookOutboundRate.TABLE_NAME).withPrimaryKeys(staleIds));
+      }
+
+      return (new OtherNodes(otherNodes, otherNodesRate));
+   }
+
+
+
+   /***************************************************************************
+    ** the other nodes currently sending to a webhook - how many, and their
+    ** total requests per second.
+    ***************************************************************************/
+   private record OtherNodes(int noNodes, int sendsPerSecond)
+   {
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static class LimiterState
+   {
+      private final int                limit;
+      private final WebhookTokenBucket bucket;
+      private final AtomicInteger      localSendsSinceSync = new AtomicInteger(0);
+      private final ReentrantLock      syncLock            = new ReentrantLock();
+      private volatile long            lastSyncMillis      = 0;
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      LimiterState(int limit)
+      {
+         this.limit = limit;
+         this.bucket = new WebhookTokenBucket(limit);
+      }
+   }
+
+}
@@ -19,20 +19,41 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+
 package com.kingsrook.qbits.webhooks.actions;
 
 
+import java.time.Instant;
+
+
 /*******************************************************************************
- **
+ ** exception thrown when posting to a webhook is rate-limited (e.g., http 429)
+ ** - indicating that the event should be deferred until resumeAt, rather
+ ** than counted as a failed attempt.
  *******************************************************************************/
-public class WebhookRateLimitException extends Exception
+public class WebhookRateLimitException extends WebhookPostException
 {
+   private final Instant resumeAt;
+
+
+
    /*******************************************************************************
     ** Constructor
     **
     *******************************************************************************/
-   public WebhookRateLimitException(String message)
+   public WebhookRateLimitException(String message, Instant resumeAt)
    {
       super(message);
+      this.resumeAt = resumeAt;
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for resumeAt
+    *******************************************************************************/
+   public Instant getResumeAt()
+   {
+      return (this.resumeAt);
    }
 }
@@ -0,0 +1,215 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.utils.StringUtils;
+import org.apache.http.client.utils.DateUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** in-memory tracker of webhooks that have been rate-limited (e.g., http 429)
+ ** by their receivers.
+ **
+ ** When a webhook is rate-limited, we record the time at which it may resume
+ ** being sent to - based on the response's Retry-After header if given, else
+ ** on an exponential backoff from the configured initialRateLimitBackoffMillis
+ ** (and never earlier than the backoff, even if Retry-After says sooner).
+ ** Until that time, senders should defer (not send) that webhook's events,
+ ** rather than sleeping the worker thread.
+ **
+ ** We also count consecutive rate-limits per webhook, so that, if a webhook
+ ** keeps rate-limiting us, the sender can give up and treat the response as a
+ ** regular failure.  Any non-rate-limited response resets the count - but
+ ** not the resume time: a response that was already in flight when the
+ ** webhook rate-limited us doesn't mean it's ready for more, so the webhook
+ ** stays deferred until that time has passed.
+ *******************************************************************************/
+public class WebhookRateLimitManager
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookRateLimitManager.class);
+
+   private static final Map<Integer, RateLimitState> stateByWebhookId = new ConcurrentHashMap<>();
+
+
+
+   /***************************************************************************
+    ** record that a webhook rate-limited us.  returns the instant at which
+    ** the webhook may next be sent to.
+    ***************************************************************************/
+   public static Instant recordRateLimit(Integer webhookId, String retryAfterHeaderValue, int initialBackoffMillis)
+   {
+      ////////////////////////////////////////////////////////////////////////
+      // a webhook without an id (e.g., not stored) gets a throw-away state //
+      ////////////////////////////////////////////////////////////////////////
+      RateLimitState state = webhookId == null ? new RateLimitState() : stateByWebhookId.computeIfAbsent(webhookId, id -> new RateLimitState());
+      synchronized(state)
+      {
+         state.consecutiveRateLimits++;
+
+         long    backoffMillis = initialBackoffMillis * (1L << Math.min(state.consecutiveRateLimits - 1, 20));
+         Instant resumeAt      = Instant.now().plusMillis(backoffMillis);
+
+         Instant retryAfter = parseRetryAfter(retryAfterHeaderValue);
+         if(retryAfter != null && retryAfter.isAfter(resumeAt))
+         {
+            resumeAt = retryAfter;
+         }
+
+         state.resumeAt = resumeAt;
+         return (resumeAt);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** record that a webhook did not rate-limit us - resets its consecutive
+    ** count, keeping its resume time until that has passed.
+    ***************************************************************************/
+   public static void recordNotRateLimited(Integer webhookId)
+   {
+      if(webhookId == null)
+      {
+         return;
+      }
+
+      stateByWebhookId.computeIfPresent(webhookId, (id, state) ->
+      {
+         synchronized(state)
+         {
+            state.consecutiveRateLimits = 0;
+            return (state.resumeAt == null || !state.resumeAt.isAfter(Instant.now()) ? null : state);
+         }
+      });
+   }
+
+
+
+   /***************************************************************************
+    ** get the number of consecutive times a webhook has rate-limited us.
+    ***************************************************************************/
+   public static int getConsecutiveRateLimits(Integer webhookId)
+   {
+      RateLimitState state = webhookId == null ? null : stateByWebhookId.get(webhookId);
+      return (state == null ? 0 : state.consecutiveRateLimits);
+   }
+
+
+
+   /***************************************************************************
+    ** if a webhook is currently deferred due to rate-limiting, get the instant
+    ** at which it may resume.  else, null.
+    ***************************************************************************/
+   public static Instant getResumeAt(Integer webhookId)
+   {
+      RateLimitState state = webhookId == null ? null : stateByWebhookId.get(webhookId);
+      if(state == null || state.resumeAt == null || !state.resumeAt.isAfter(Instant.now()))
+      {
+         return (null);
+      }
+      return (state.resumeAt);
+   }
+
+
+
+   /***************************************************************************
+    ** reset the consecutive count for a webhook (but keep its resume time) -
+    ** e.g., after the sender gives up on an event due to too many rate limits.
+    ***************************************************************************/
+   public static void resetConsecutiveRateLimits(Integer webhookId)
+   {
+      RateLimitState state = webhookId == null ? null : stateByWebhookId.get(webhookId);
+      if(state != null)
+      {
+         synchronized(state)
+         {
+            state.consecutiveRateLimits = 0;
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** forget all rate-limit state
+    ***************************************************************************/
+   public static void clearAll()
+   {
+      stateByWebhookId.clear();
+   }
+
+
+
+   /***************************************************************************
+    ** parse a Retry-After header value - which per RFC 9110 may either be a
+    ** number of seconds, or an HTTP-date.  returns null if not given or not
+    ** parseable.
+    ***************************************************************************/
+   public static Instant parseRetryAfter(String retryAfterHeaderValue)
+   {
+      if(!StringUtils.hasContent(retryAfterHeaderValue))
+      {
+         return (null);
+      }
+
+      String value = retryAfterHeaderValue.trim();
+      try
+      {
+         return (Instant.now().plusSeconds(Math.max(0, Long.parseLong(value))));
+      }
+      catch(NumberFormatException nfe)
+      {
+         ////////////////////////////////
+         // fall through to date parse //
+         ////////////////////////////////
+      }
+
+      Date date = DateUtils.parseDate(value);
+      if(date == null)
+      {
+         LOG.info("Unparseable Retry-After header value", logPair("value", value));
+         return (null);
+      }
+
+      return (date.toInstant());
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static class RateLimitState
+   {
+      private volatile int     consecutiveRateLimits = 0;
+      private volatile Instant resumeAt;
+   }
+
+}
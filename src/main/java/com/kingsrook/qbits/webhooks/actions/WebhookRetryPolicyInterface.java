@@ -0,0 +1,64 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Duration;
+import java.util.List;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+
+
+/*******************************************************************************
+ ** interface for deciding if, and when, an event whose send failed should be
+ ** retried.  Which policy a webhook uses is set by its retryPolicyId (see
+ ** WebhookRetryPolicy) - or, a subclass of WebhookEventSender can override its
+ ** getRetryPolicy method, to use its own.
+ *******************************************************************************/
+public interface WebhookRetryPolicyInterface
+{
+
+   /***************************************************************************
+    ** should an event whose send failed (per the given send log) be retried at
+    ** all?  by default, not if the response's http status code is one of the
+    ** qbit config's nonRetryableHttpStatusCodes (e.g., 410 Gone).
+    ***************************************************************************/
+   default boolean isRetryable(WebhookEventSendLog sendLog)
+   {
+      List<Integer> nonRetryableHttpStatusCodes = WebhooksQBitConfig.getConfigValue(config -> config.getNonRetryableHttpStatusCodes());
+      return (sendLog.getHttpStatusCode() == null || nonRetryableHttpStatusCodes == null || !nonRetryableHttpStatusCodes.contains(sendLog.getHttpStatusCode()));
+   }
+
+
+
+   /***************************************************************************
+    ** how long to wait before retrying an event whose send failed.
+    **
+    ** @param sendLog the failed attempt's send log - with its attempt number,
+    ** and http status code (null if there was no response).
+    ** @param previousDelay the time from the event's previous attempt to this
+    ** one - or null if this was its first attempt.
+    ***************************************************************************/
+   Duration getRetryDelay(WebhookEventSendLog sendLog, Duration previousDelay);
+
+}
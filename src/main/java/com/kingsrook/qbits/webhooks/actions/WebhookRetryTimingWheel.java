@@ -0,0 +1,449 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.model.WebhookEvent;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
+import com.kingsrook.qbits.webhooks.processes.SendWebhookEventProcessMetaDataProducer;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.utils.ListingHash;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** node-local hashed timing wheel of webhook events awaiting retry - so that
+ ** a retry is sent when it comes due, rather than whenever the next scheduled
+ ** run of the SendWebhookEvent process happens to query for it.
+ **
+ ** The wheel is an array of slots, each covering one tick (of the configured
+ ** retryTimingWheelTickMillis).  An event is put in the slot for the tick at
+ ** which it's due (modulo the number of slots) - so events due more than one
+ ** revolution out share slots with nearer ones, and are just skipped over until
+ ** their own tick comes around.  Each tick, the due events are collected from
+ ** the slots passed since the last tick, and the SendWebhookEvent process is
+ ** run for each of their webhooks (once at a time per webhook).  A webhook
+ ** that comes due again while its process is still running isn't put back in
+ ** the wheel - it's just run once more when the running process finishes (as
+ ** each run sends all of the webhook's due events).
+ **
+ ** The database is the source of truth:  the wheel is loaded from it when
+ ** started (the first time the SendWebhookEvent process runs on the node) -
+ ** but only with events due within one revolution - and fed as send outcomes
+ ** are stored.  Anything the wheel misses (e.g., retries scheduled by another
+ ** node, or further out at startup) is still found by scheduled runs of the
+ ** process.
+ **
+ ** Processes are run in the latest QInstance to have started the wheel, with
+ ** the session of the process that started it in that instance - i.e., the
+ ** same session that scheduled runs of the send process use, so the wheel's
+ ** runs see (and send) the same events that those would.
+ *******************************************************************************/
+public class WebhookRetryTimingWheel
+{
+   private static final QLogger LOG = QLogger.getLogger(WebhookRetryTimingWheel.class);
+
+   private static List<Map<Integer, Entry>> slots            = null;
+   private static Map<Integer, Entry>       entriesByEventId = new HashMap<>();
+   private static long                      tickMillis;
+   private static long                      lastTick;
+
+   private static ScheduledExecutorService ticker;
+   private static ExecutorService          runner;
+   private static QInstance                qInstance;
+   private static QSession                 qSession;
+
+   //////////////////////////////////////////////////////////////////////////
+   // webhooks whose process is running - each mapped to whether it's come //
+   // due again since, and so should run once more when it finishes.       //
+   //////////////////////////////////////////////////////////////////////////
+   private static final Map<Integer, Boolean> rerunByRunningWebhookId = new HashMap<>();
+
+
+
+   /***************************************************************************
+    ** an event in the wheel, with the (absolute) tick at which it is due
+    ***************************************************************************/
+   private record Entry(Integer webhookEventId, Integer webhookId, long dueTick)
+   {
+   }
+
+
+
+   /***************************************************************************
+    ** if the qbit is configured to use the retry timing wheel, and it isn't
+    ** already running on this node, then start ticking it, and load it from the
+    ** database.  either way, if the current QContext's instance is new to the
+    ** wheel, processes the wheel runs will use it (and the current session).
+    ***************************************************************************/
+   public static void startIfEnabled()
+   {
+      if(!WebhooksQBitConfig.getConfigValue(config -> config.getUseRetryTimingWheel()))
+      {
+         return;
+      }
+
+      synchronized(WebhookRetryTimingWheel.class)
+      {
+         if(QContext.getQInstance() != qInstance)
+         {
+            qInstance = QContext.getQInstance();
+            qSession = QContext.getQSession();
+         }
+
+         if(ticker != null)
+         {
+            return;
+         }
+
+         initSlots();
+         runner = Executors.newFixedThreadPool(WebhooksQBitConfig.getConfigValue(config -> config.getDispatcherMaxConcurrentWebhooks()), runnable -> newDaemonThread(runnable, "webhook-retry-wheel-runner"));
+         ticker = Executors.newSingleThreadScheduledExecutor(runnable -> newDaemonThread(runnable, "webhook-retry-wheel-ticker"));
+         ticker.scheduleAtFixedRate(WebhookRetryTimingWheel::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+      }
+
+      //////////////////////////////////////////////////////////////////////////
+      // load outside the lock, so its query doesn't hold up the outcome      //
+      // buffer's (or the ticker's) use of the wheel.  if it fails, the wheel //
+      // still runs - due retries it missed are found by scheduled runs.      //
+      //////////////////////////////////////////////////////////////////////////
+      try
+      {
+         load();
+      }
+      catch(QException e)
+      {
+         LOG.warn("Error loading webhook retry timing wheel", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get the session that processes run by the wheel use - mostly for tests.
+    ***************************************************************************/
+   static synchronized QSession getQSession()
+   {
+      return (qSession);
+   }
+
+
+
+   /***************************************************************************
+    ** set up the wheel (if it isn't already), and load into it the events that
+    ** are awaiting retry (or are leased as sending, until their lease expires)
+    ** and are due within one revolution of the wheel - events further out are
+    ** left for scheduled runs of the process to find.
+    **
+    ** the query runs without holding the wheel's lock; its results are then
+    ** put in under it.  (an event whose outcome was stored in between may so be
+    ** put back in the wheel - which just runs its webhook's process once more.)
+    ***************************************************************************/
+   public static void load() throws QException
+   {
+      long revolutionMillis;
+      synchronized(WebhookRetryTimingWheel.class)
+      {
+         initSlots();
+         revolutionMillis = slots.size() * tickMillis;
+      }
+
+      Instant       horizon = Instant.now().plusMillis(revolutionMillis);
+      List<QRecord> records = QueryAction.execute(WebhookEvent.TABLE_NAME, new QQueryFilter()
+         .withCriteria(new QFilterCriteria("eventStatusId", QCriteriaOperator.IN, WebhookEventStatus.AWAITING_RETRY.getId(), WebhookEventStatus.SENDING.getId()))
+         .withCriteria(new QFilterCriteria("nextAttemptTimestamp", QCriteriaOperator.IS_NOT_BLANK))
+         .withCriteria(new QFilterCriteria("nextAttemptTimestamp", QCriteriaOperator.LESS_THAN, horizon)));
+
+      synchronized(WebhookRetryTimingWheel.class)
+      {
+         for(QRecord record : records)
+         {
+            schedule(record.getValueInteger("id"), record.getValueInteger("webhookId"), record.getValueInstant("nextAttemptTimestamp"));
+         }
+      }
+
+      LOG.info("Loaded webhook retry timing wheel", logPair("noEvents", records.size()));
+   }
+
+
+
+   /***************************************************************************
+    ** create the wheel's (empty) slots, per the qbit config, if they haven't
+    ** been already.  must be called while synchronized on the class.
+    ***************************************************************************/
+   private static void initSlots()
+   {
+      if(slots == null)
+      {
+         int noSlots = WebhooksQBitConfig.getConfigValue(config -> config.getRetryTimingWheelSlots());
+         tickMillis = WebhooksQBitConfig.getConfigValue(config -> config.getRetryTimingWheelTickMillis());
+         lastTick = Instant.now().toEpochMilli() / tickMillis;
+         slots = new ArrayList<>();
+         for(int i = 0; i < noSlots; i++)
+         {
+            slots.add(new HashMap<>());
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** put an event in the wheel, to be sent at the given time (replacing any
+    ** time it was already in the wheel for).  no-op if the wheel isn't loaded.
+    ***************************************************************************/
+   public static synchronized void schedule(Integer webhookEventId, Integer webhookId, Instant dueAt)
+   {
+      if(slots == null || webhookEventId == null || webhookId == null || dueAt == null)
+      {
+         return;
+      }
+
+      cancel(webhookEventId);
+
+      //////////////////////////////////////////////////////////////////////
+      // round up to the tick at or after the due time - and anything due //
+      // already (or in a tick that has passed) goes in the next tick.    //
+      //////////////////////////////////////////////////////////////////////
+      long  dueTick = Math.max(Math.floorDiv(dueAt.toEpochMilli() + tickMillis - 1, tickMillis), lastTick + 1);
+      Entry entry   = new Entry(webhookEventId, webhookId, dueTick);
+      slots.get((int) (dueTick % slots.size())).put(webhookEventId, entry);
+      entriesByEventId.put(webhookEventId, entry);
+   }
+
+
+
+   /***************************************************************************
+    ** take an event out of the wheel (e.g., because it was delivered, or failed
+    ** for good).  no-op if it isn't in the wheel.
+    ***************************************************************************/
+   public static synchronized void cancel(Integer webhookEventId)
+   {
+      Entry entry = entriesByEventId.remove(webhookEventId);
+      if(entry != null && slots != null)
+      {
+         slots.get((int) (entry.dueTick() % slots.size())).remove(webhookEventId);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** advance the wheel to the given time, removing and returning the events
+    ** that are due by then, as lists of event ids by webhook id.
+    ***************************************************************************/
+   public static synchronized ListingHash<Integer, Integer> pollDue(Instant now)
+   {
+      ListingHash<Integer, Integer> dueEventIdsByWebhookId = new ListingHash<>();
+      if(slots == null)
+      {
+         return (dueEventIdsByWebhookId);
+      }
+
+      long nowTick = now.toEpochMilli() / tickMillis;
+      if(nowTick <= lastTick)
+      {
+         return (dueEventIdsByWebhookId);
+      }
+
+      //////////////////////////////////////////////////////////////////////
+      // visit the slots for each tick passed since the last poll (but if //
+      // more than a whole revolution has passed, each slot just once).   //
+      //////////////////////////////////////////////////////////////////////
+      long ticksToVisit = Math.min(nowTick - lastTick, slots.size());
+      for(long tick = lastTick + 1; tick <= lastTick + ticksToVisit; tick++)
+      {
+         Iterator<Entry> iterator = slots.get((int) (tick % slots.size())).values().iterator();
+         while(iterator.hasNext())
+         {
+            Entry entry = iterator.next();
+            if(entry.dueTick() <= nowTick)
+            {
+               iterator.remove();
+               entriesByEventId.remove(entry.webhookEventId());
+               dueEventIdsByWebhookId.add(entry.webhookId(), entry.webhookEventId());
+            }
+         }
+      }
+
+      lastTick = nowTick;
+      return (dueEventIdsByWebhookId);
+   }
+
+
+
+   /***************************************************************************
+    ** number of events in the wheel
+    ***************************************************************************/
+   public static synchronized int size()
+   {
+      return (entriesByEventId.size());
+   }
+
+
+
+   /***************************************************************************
+    ** run by the ticker - run the SendWebhookEvent process for webhooks with
+    ** due events.  a webhook that's still running from an earlier tick is
+    ** instead marked to run once more when it finishes.
+    ***************************************************************************/
+   private static void tick()
+   {
+      try
+      {
+         ListingHash<Integer, Integer> dueEventIdsByWebhookId = pollDue(Instant.now());
+         for(Integer webhookId : dueEventIdsByWebhookId.keySet())
+         {
+            if(!startRun(webhookId))
+            {
+               continue;
+            }
+
+            runner.submit(() ->
+            {
+               do
+               {
+                  try
+                  {
+                     QContext.init(qInstance, qSession);
+                     SendWebhookEventProcessMetaDataProducer.runForWebhook(webhookId);
+                  }
+                  catch(Exception e)
+                  {
+                     LOG.warn("Error running send process for webhook with due retries", e, logPair("webhookId", webhookId));
+                  }
+                  finally
+                  {
+                     QContext.clear();
+                  }
+               }
+               while(finishRun(webhookId));
+            });
+         }
+      }
+      catch(Exception e)
+      {
+         ///////////////////////////////////////////////////////////////
+         // don't let an exception stop the ticker from ticking again //
+         ///////////////////////////////////////////////////////////////
+         LOG.warn("Error ticking webhook retry timing wheel", e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** mark a webhook as running, returning true - unless it's already running,
+    ** in which case, mark it to run once more when that run finishes, and
+    ** return false.
+    ***************************************************************************/
+   static synchronized boolean startRun(Integer webhookId)
+   {
+      if(rerunByRunningWebhookId.containsKey(webhookId))
+      {
+         rerunByRunningWebhookId.put(webhookId, true);
+         return (false);
+      }
+
+      rerunByRunningWebhookId.put(webhookId, false);
+      return (true);
+   }
+
+
+
+   /***************************************************************************
+    ** at the end of a webhook's run:  if it came due again while running, keep
+    ** it marked as running and return true (to run it again).  else, unmark it,
+    ** and return false.
+    ***************************************************************************/
+   static synchronized boolean finishRun(Integer webhookId)
+   {
+      if(Boolean.TRUE.equals(rerunByRunningWebhookId.get(webhookId)))
+      {
+         rerunByRunningWebhookId.put(webhookId, false);
+         return (true);
+      }
+
+      rerunByRunningWebhookId.remove(webhookId);
+      return (false);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static Thread newDaemonThread(Runnable runnable, String name)
+   {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return (thread);
+   }
+
+
+
+   /***************************************************************************
+    ** stop the wheel (if it's running), and forget everything in it
+    ***************************************************************************/
+   public static synchronized void clearAll()
+   {
+      if(ticker != null)
+      {
+         ticker.shutdownNow();
+         ticker = null;
+      }
+
+      if(runner != null)
+      {
+         runner.shutdownNow();
+         runner = null;
+      }
+
+      slots = null;
+      entriesByEventId = new HashMap<>();
+      rerunByRunningWebhookId.clear();
+      qInstance = null;
+      qSession = null;
+   }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+/*******************************************************************************
+ ** possible outcomes of the WebhookEventSender trying to send an event
+ *******************************************************************************/
+public enum WebhookSendOutcome
+{
+   /////////////////////////
+   // event was delivered //
+   /////////////////////////
+   DELIVERED,
+
+   ////////////////////////////////////////////////////////////////////
+   // event failed to deliver (and is now awaiting retry, or failed) //
+   ////////////////////////////////////////////////////////////////////
+   FAILED,
+
+   ////////////////////////////////////////////////////////////////////////////
+   // the webhook rate-limited us - the event was rescheduled, not attempted //
+   ////////////////////////////////////////////////////////////////////////////
+   RATE_LIMITED
+}
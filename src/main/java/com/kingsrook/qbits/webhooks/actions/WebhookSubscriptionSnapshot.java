@@ -0,0 +1,350 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+
+
+/*******************************************************************************
+ ** immutable snapshot of the active webhook subscriptions (indexed by event type
+ ** name), and of the webhooks they belong to.
+ **
+ ** Changes are applied copy-on-write (see WebhookSubscriptionsHelper):  each
+ ** change makes a new snapshot, in which only the touched subscriptions or
+ ** webhooks are re-read (or merged), so readers never lock, and never see a
+ ** partially applied change.  The subscription & webhook objects in a snapshot
+ ** are shared by all of its readers, so must not be modified.
+ **
+ ** A snapshot also records the webhookCacheVersion that was current when it was
+ ** loaded - so it can be reloaded when that version changes (e.g., because the
+ ** data was changed on another node).
+ **
+ ** The pseudo-sessions used to check if webhooks may see records (see
+ ** WebhookSubscriptionsHelper.filterRecordsForSubscription) are built as they're
+ ** first needed, and kept in the snapshot - so they're only rebuilt when their
+ ** webhooks change.
+ *******************************************************************************/
+public class WebhookSubscriptionSnapshot
+{
+   private final Map<Integer, WebhookSubscription>       subscriptionsById;
+   private final Map<Integer, QRecord>                   webhooksById;
+   private final Map<String, List<WebhookSubscription>> subscriptionsByEventTypeName;
+   private final Instant                                 expiresAt;
+   private final String                                  version;
+   private final Map<Integer, Optional<QSession>>        pseudoSessionsByWebhookId;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    ** @param subscriptionsById the snapshot's subscriptions - iterated in id order
+    ** @param webhooksById the webhooks of those subscriptions
+    ** @param expiresAt when the snapshot should be fully reloaded
+    ** @param version the cache version current as the snapshot was loaded
+    ** @param pseudoSessionsByWebhookId already-built pseudo-sessions to keep
+    *******************************************************************************/
+   private WebhookSubscriptionSnapshot(Map<Integer, WebhookSubscription> subscriptionsById, Map<Integer, QRecord> webhooksById, Instant expiresAt, String version, Map<Integer, Optional<QSession>> pseudoSessionsByWebhookId)
+   {
+      this.subscriptionsById = Collections.unmodifiableMap(subscriptionsById);
+      this.webhooksById = Collections.unmodifiableMap(webhooksById);
+      this.expiresAt = expiresAt;
+      this.version = version;
+      this.pseudoSessionsByWebhookId = new ConcurrentHashMap<>(pseudoSessionsByWebhookId);
+
+      Map<String, List<WebhookSubscription>> byEventTypeName = new HashMap<>();
+      for(WebhookSubscription subscription : subscriptionsById.values())
+      {
+         byEventTypeName.computeIfAbsent(subscription.getWebhookEventTypeName(), k -> new ArrayList<>()).add(subscription);
+      }
+      byEventTypeName.replaceAll((eventTypeName, subscriptions) -> Collections.unmodifiableList(subscriptions));
+      this.subscriptionsByEventTypeName = Collections.unmodifiableMap(byEventTypeName);
+   }
+
+
+
+   /***************************************************************************
+    ** load a snapshot of all active subscriptions (and their webhooks) - which
+    ** expires after the qbit's memoizationTimeoutMinutes.  The given version
+    ** should be read before the snapshot is loaded - so that any change made
+    ** while it's loading gives a different version.
+    ***************************************************************************/
+   public static WebhookSubscriptionSnapshot load(String version) throws QException
+   {
+      Map<Integer, WebhookSubscription> subscriptionsById = new TreeMap<>();
+      for(WebhookSubscription subscription : queryActiveSubscriptions(null))
+      {
+         subscriptionsById.put(subscription.getId(), subscription);
+      }
+
+      Map<Integer, QRecord> webhooksById = new HashMap<>();
+      putWebhooks(webhooksById, subscriptionsById.values().stream().map(s -> s.getWebhookId()).collect(Collectors.toSet()));
+
+      Integer timeoutMinutes = WebhooksQBitConfig.getConfigValue(config -> config.getMemoizationTimeoutMinutes());
+      return (new WebhookSubscriptionSnapshot(subscriptionsById, webhooksById, Instant.now().plus(timeoutMinutes, ChronoUnit.MINUTES), version, Collections.emptyMap()));
+   }
+
+
+
+   /***************************************************************************
+    ** make a copy of this snapshot, with the given subscriptions re-read (so
+    ** they're added, replaced, or - if they're now disabled - removed).  Any
+    ** webhooks left without subscriptions are dropped.
+    ***************************************************************************/
+   public WebhookSubscriptionSnapshot withSubscriptionsReloaded(Collection<Integer> subscriptionIds) throws QException
+   {
+      Map<Integer, WebhookSubscription> newSubscriptionsById = new TreeMap<>(subscriptionsById);
+      subscriptionIds.forEach(newSubscriptionsById::remove);
+
+      List<WebhookSubscription> reloadedSubscriptions = queryActiveSubscriptions(subscriptionIds);
+      for(WebhookSubscription subscription : reloadedSubscriptions)
+      {
+         newSubscriptionsById.put(subscription.getId(), subscription);
+      }
+
+      /////////////////////////////////////////////////////////////////////////
+      // only read webhooks that aren't already in the snapshot (e.g., for a //
+      // subscription to a webhook that didn't have any before).             //
+      /////////////////////////////////////////////////////////////////////////
+      Map<Integer, QRecord> newWebhooksById = new HashMap<>(webhooksById);
+      Set<Integer>          newWebhookIds   = reloadedSubscriptions.stream().map(s -> s.getWebhookId()).filter(id -> id != null && !webhooksById.containsKey(id)).collect(Collectors.toSet());
+      putWebhooks(newWebhooksById, newWebhookIds);
+
+      return (withUnreferencedWebhooksRemoved(newSubscriptionsById, newWebhooksById));
+   }
+
+
+
+   /***************************************************************************
+    ** make a copy of this snapshot, without the given subscriptions (nor any
+    ** webhooks left without subscriptions).
+    ***************************************************************************/
+   public WebhookSubscriptionSnapshot withSubscriptionsRemoved(Collection<Integer> subscriptionIds)
+   {
+      Map<Integer, WebhookSubscription> newSubscriptionsById = new TreeMap<>(subscriptionsById);
+      subscriptionIds.forEach(newSubscriptionsById::remove);
+      return (withUnreferencedWebhooksRemoved(newSubscriptionsById, new HashMap<>(webhooksById)));
+   }
+
+
+
+   /***************************************************************************
+    ** make a snapshot of the given subscriptions & webhooks - dropping webhooks
+    ** (and their pseudo-sessions) that no subscription refers to any more, so
+    ** they don't stay in the snapshot until it's next reloaded.
+    ***************************************************************************/
+   private WebhookSubscriptionSnapshot withUnreferencedWebhooksRemoved(Map<Integer, WebhookSubscription> newSubscriptionsById, Map<Integer, QRecord> newWebhooksById)
+   {
+      Set<Integer> referencedWebhookIds = newSubscriptionsById.values().stream().map(s -> s.getWebhookId()).collect(Collectors.toSet());
+      newWebhooksById.keySet().retainAll(referencedWebhookIds);
+
+      Map<Integer, Optional<QSession>> newPseudoSessionsByWebhookId = new HashMap<>(pseudoSessionsByWebhookId);
+      newPseudoSessionsByWebhookId.keySet().retainAll(referencedWebhookIds);
+
+      return (new WebhookSubscriptionSnapshot(newSubscriptionsById, newWebhooksById, expiresAt, version, newPseudoSessionsByWebhookId));
+   }
+
+
+
+   /***************************************************************************
+    ** make a copy of this snapshot, with the values from updated webhook records
+    ** (which may only have the fields that were updated) merged into its copies
+    ** of those webhooks.  No reads are needed - so the webhook updates made as
+    ** events are sent (e.g., of health status) are cheap to apply.  Webhooks
+    ** not in the snapshot (i.e., without active subscriptions) are ignored.
+    ***************************************************************************/
+   public WebhookSubscriptionSnapshot withWebhooksUpdated(List<QRecord> webhookRecords)
+   {
+      Map<Integer, QRecord>            newWebhooksById              = null;
+      Map<Integer, Optional<QSession>> newPseudoSessionsByWebhookId = pseudoSessionsByWebhookId;
+      Set<String>                      securityLockFieldNames       = WebhookSubscriptionsHelper.getSecurityLockFieldNames();
+      for(QRecord webhookRecord : CollectionUtils.nonNullList(webhookRecords))
+      {
+         QRecord existingWebhook = webhooksById.get(webhookRecord.getValueInteger("id"));
+         if(existingWebhook != null && CollectionUtils.nullSafeIsEmpty(webhookRecord.getErrors()))
+         {
+            newWebhooksById = newWebhooksById == null ? new HashMap<>(webhooksById) : newWebhooksById;
+
+            QRecord updatedWebhook = new QRecord(existingWebhook);
+            webhookRecord.getValues().forEach(updatedWebhook::setValue);
+            newWebhooksById.put(updatedWebhook.getValueInteger("id"), updatedWebhook);
+
+            ////////////////////////////////////////////////////////////////////////
+            // only drop the webhook's pseudo-session if a field it's built from  //
+            // changed - not for the frequent updates of e.g., health & attempts. //
+            ////////////////////////////////////////////////////////////////////////
+            boolean securityValueChanged = securityLockFieldNames.stream().anyMatch(fieldName -> webhookRecord.getValues().containsKey(fieldName) && !Objects.equals(webhookRecord.getValue(fieldName), existingWebhook.getValue(fieldName)));
+            if(securityValueChanged)
+            {
+               newPseudoSessionsByWebhookId = newPseudoSessionsByWebhookId == pseudoSessionsByWebhookId ? new HashMap<>(pseudoSessionsByWebhookId) : newPseudoSessionsByWebhookId;
+               newPseudoSessionsByWebhookId.remove(updatedWebhook.getValueInteger("id"));
+            }
+         }
+      }
+
+      return (newWebhooksById == null ? this : new WebhookSubscriptionSnapshot(subscriptionsById, newWebhooksById, expiresAt, version, newPseudoSessionsByWebhookId));
+   }
+
+
+
+   /***************************************************************************
+    ** make a copy of this snapshot, without the given webhooks.
+    ***************************************************************************/
+   public WebhookSubscriptionSnapshot withWebhooksRemoved(Collection<Integer> webhookIds)
+   {
+      Map<Integer, QRecord> newWebhooksById = new HashMap<>(webhooksById);
+      webhookIds.forEach(newWebhooksById::remove);
+
+      Map<Integer, Optional<QSession>> newPseudoSessionsByWebhookId = new HashMap<>(pseudoSessionsByWebhookId);
+      webhookIds.forEach(newPseudoSessionsByWebhookId::remove);
+
+      return (new WebhookSubscriptionSnapshot(subscriptionsById, newWebhooksById, expiresAt, version, newPseudoSessionsByWebhookId));
+   }
+
+
+
+   /***************************************************************************
+    ** get the active subscriptions to an event type (an empty list if none).
+    ***************************************************************************/
+   public List<WebhookSubscription> getSubscriptionsForEventType(String webhookEventTypeName)
+   {
+      return (subscriptionsByEventTypeName.getOrDefault(webhookEventTypeName, Collections.emptyList()));
+   }
+
+
+
+   /***************************************************************************
+    ** get a webhook (that has active subscriptions) by id - or null if it isn't
+    ** in the snapshot.
+    ***************************************************************************/
+   public QRecord getWebhook(Integer webhookId)
+   {
+      return (webhooksById.get(webhookId));
+   }
+
+
+
+   /***************************************************************************
+    ** get the pseudo-session for checking what records a webhook may see (see
+    ** WebhookSubscriptionsHelper.buildPseudoSession) - building it upon first
+    ** use.  Returns null if the webhook isn't in the snapshot.
+    ***************************************************************************/
+   public Optional<QSession> getPseudoSession(Integer webhookId)
+   {
+      QRecord webhook = webhooksById.get(webhookId);
+      if(webhook == null)
+      {
+         return (null);
+      }
+
+      return (pseudoSessionsByWebhookId.computeIfAbsent(webhookId, id -> WebhookSubscriptionsHelper.buildPseudoSession(webhook)));
+   }
+
+
+
+   /***************************************************************************
+    ** get the cache version that was current when this snapshot was loaded.
+    ***************************************************************************/
+   public String getVersion()
+   {
+      return (version);
+   }
+
+
+
+   /***************************************************************************
+    ** check if it's time for this snapshot to be fully reloaded.
+    ***************************************************************************/
+   public boolean isExpired()
+   {
+      return (!Instant.now().isBefore(expiresAt));
+   }
+
+
+
+   /***************************************************************************
+    ** query for active subscriptions - either all, or only those with the given
+    ** ids.
+    ***************************************************************************/
+   private static List<WebhookSubscription> queryActiveSubscriptions(Collection<Integer> subscriptionIds) throws QException
+   {
+      if(subscriptionIds != null && subscriptionIds.isEmpty())
+      {
+         return (Collections.emptyList());
+      }
+
+      QQueryFilter filter = new QQueryFilter()
+         .withCriteria(new QFilterCriteria("activeStatusId", QCriteriaOperator.NOT_EQUALS, WebhookActiveStatus.DISABLED.getId()));
+      if(subscriptionIds != null)
+      {
+         filter.withCriteria(new QFilterCriteria("id", QCriteriaOperator.IN, subscriptionIds));
+      }
+
+      return (QueryAction.execute(WebhookSubscription.TABLE_NAME, WebhookSubscription.class, filter));
+   }
+
+
+
+   /***************************************************************************
+    ** query for webhooks by id, putting them in a map.
+    ***************************************************************************/
+   private static void putWebhooks(Map<Integer, QRecord> webhooksById, Set<Integer> webhookIds) throws QException
+   {
+      webhookIds.remove(null);
+      if(webhookIds.isEmpty())
+      {
+         return;
+      }
+
+      for(QRecord webhook : QueryAction.execute(Webhook.TABLE_NAME, new QQueryFilter(new QFilterCriteria("id", QCriteriaOperator.IN, webhookIds))))
+      {
+         webhooksById.put(webhook.getValueInteger("id"), webhook);
+      }
+   }
+
+}
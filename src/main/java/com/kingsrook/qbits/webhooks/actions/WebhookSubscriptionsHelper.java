@@ -23,17 +23,19 @@ package com.kingsrook.qbits.webhooks.actions;
 
 
 import java.io.Serializable;
-import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
-import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookCacheVersion;
 import com.kingsrook.qbits.webhooks.model.WebhookEventCategory;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qbits.webhooks.registry.WebhookEventType;
@@ -43,6 +45,7 @@ import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
 import com.kingsrook.qqq.backend.core.actions.tables.helpers.ValidateRecordSecurityLockHelper;
 import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
@@ -56,7 +59,6 @@ import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
 import com.kingsrook.qqq.backend.core.model.session.QSession;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
-import com.kingsrook.qqq.backend.core.utils.memoization.Memoization;
 
 
 /*******************************************************************************
@@ -64,48 +66,115 @@ import com.kingsrook.qqq.backend.core.utils.memoization.Memoization;
  *******************************************************************************/
 public class WebhookSubscriptionsHelper
 {
-   private static final Memoization<String, List<WebhookSubscription>> subscriptionsByEventTypeMemoization = new Memoization<String, List<WebhookSubscription>>()
-      .withTimeout(Duration.of(WebhooksQBitConfig.getConfigValue(config -> config.getMemoizationTimeoutMinutes()).longValue(), ChronoUnit.MINUTES));
-
-   private static final Memoization<Integer, QRecord> webhookBySubscriptionIdMemoization = new Memoization<Integer, QRecord>()
-      .withTimeout(Duration.of(WebhooksQBitConfig.getConfigValue(config -> config.getMemoizationTimeoutMinutes()).longValue(), ChronoUnit.MINUTES));
+   private static final QLogger LOG = QLogger.getLogger(WebhookSubscriptionsHelper.class);
+
+   ///////////////////////////////////////////////////////////////////////////
+   // snapshot of active subscriptions & their webhooks - read without any  //
+   // locking; replaced (under the lock) as changes are applied to it, when //
+   // it expires, or after it's cleared.                                    //
+   ///////////////////////////////////////////////////////////////////////////
+   private static volatile WebhookSubscriptionSnapshot subscriptionSnapshot     = null;
+   private static final    ReentrantLock               subscriptionSnapshotLock = new ReentrantLock();
+
+   //////////////////////////////////////////////////////////////////////////
+   // when to next check the snapshot's version against the backend's - to //
+   // find out about changes made on other nodes.                          //
+   //////////////////////////////////////////////////////////////////////////
+   private static volatile long nextVersionCheckMillis = 0;
 
    private static List<String> allAccessSecurityKeysToUse = null;
 
 
 
    /***************************************************************************
-    **
+    ** a change to apply to the subscription snapshot
+    ***************************************************************************/
+   private interface SubscriptionSnapshotChange
+   {
+      /***************************************************************************
+       ** make the snapshot with the change applied
+       ***************************************************************************/
+      WebhookSubscriptionSnapshot apply(WebhookSubscriptionSnapshot snapshot) throws QException;
+   }
+
+
+
+   /***************************************************************************
+    ** discard the subscription snapshot, so it's fully reloaded upon next use.
     ***************************************************************************/
    public static void clearMemoizations()
    {
-      subscriptionsByEventTypeMemoization.clear();
-      webhookBySubscriptionIdMemoization.clear();
+      subscriptionSnapshotLock.lock();
+      try
+      {
+         subscriptionSnapshot = null;
+      }
+      finally
+      {
+         subscriptionSnapshotLock.unlock();
+      }
    }
 
 
+
    /***************************************************************************
+    ** get the current subscription snapshot - loading it if there isn't one.
     **
+    ** At most every subscriptionVersionCheckSeconds, the snapshot's version is
+    ** compared to the one in the webhookCacheVersion table, and, if it's been
+    ** changed (e.g., by another node), the snapshot is reloaded.  When it's
+    ** time to check (or if the snapshot has expired), one caller does so,
+    ** while any others keep using the current snapshot, rather than waiting.
     ***************************************************************************/
-   public static List<WebhookEventType> getWebhookEventTypesToConsiderFiringEventsFor(WebhookEventCategory.Kind kind, String tableName)
+   static WebhookSubscriptionSnapshot getSubscriptionSnapshot() throws QException
    {
-      List<WebhookEventType> eventTypes = null;
-      for(WebhookEventType webhookEventType : WebhooksRegistry.ofOrWithNew(QContext.getQInstance()).getAllWebhookEventTypes())
+      WebhookSubscriptionSnapshot snapshot = subscriptionSnapshot;
+      if(snapshot != null && !snapshot.isExpired() && System.currentTimeMillis() < nextVersionCheckMillis)
+      {
+         return (snapshot);
+      }
+
+      if(snapshot == null)
+      {
+         subscriptionSnapshotLock.lock();
+      }
+      else if(!subscriptionSnapshotLock.tryLock())
+      {
+         return (snapshot);
+      }
+
+      try
       {
-         if(webhookEventType.getCategory().getKind().equals(kind))
+         snapshot = subscriptionSnapshot;
+         if(snapshot != null && !snapshot.isExpired() && System.currentTimeMillis() >= nextVersionCheckMillis)
          {
-            if(!StringUtils.hasContent(webhookEventType.getTableName()) || Objects.equals(webhookEventType.getTableName(), tableName))
+            scheduleNextVersionCheck();
+            try
             {
-               if(CollectionUtils.nullSafeHasContents(getSubscriptionsForEventType(webhookEventType)))
+               if(!Objects.equals(snapshot.getVersion(), WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS)))
                {
-                  eventTypes = Objects.requireNonNullElseGet(eventTypes, ArrayList::new);
-                  eventTypes.add(webhookEventType);
+                  snapshot = null;
                }
             }
+            catch(Exception e)
+            {
+               LOG.warn("Error checking webhook subscription cache version - will keep using the current snapshot", e);
+            }
          }
-      }
 
-      return (eventTypes);
+         if(snapshot == null || snapshot.isExpired())
+         {
+            String version = isVersionCheckEnabled() ? WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS) : null;
+            snapshot = WebhookSubscriptionSnapshot.load(version);
+            subscriptionSnapshot = snapshot;
+            scheduleNextVersionCheck();
+         }
+         return (snapshot);
+      }
+      finally
+      {
+         subscriptionSnapshotLock.unlock();
+      }
    }
 
 
@@ -113,54 +182,199 @@ public class WebhookSubscriptionsHelper
    /***************************************************************************
     **
     ***************************************************************************/
-   public static List<WebhookSubscription> getSubscriptionsForEventType(WebhookEventType webhookEventType)
+   private static boolean isVersionCheckEnabled()
+   {
+      return (WebhooksQBitConfig.getConfigValue(config -> config.getSubscriptionVersionCheckSeconds()) != null);
+   }
+
+
+
+   /***************************************************************************
+    ** set when the subscription snapshot's version should next be checked (if
+    ** ever - i.e., never, if checks aren't enabled).
+    ***************************************************************************/
+   private static void scheduleNextVersionCheck()
+   {
+      Integer checkSeconds = WebhooksQBitConfig.getConfigValue(config -> config.getSubscriptionVersionCheckSeconds());
+      nextVersionCheckMillis = checkSeconds == null ? Long.MAX_VALUE : System.currentTimeMillis() + checkSeconds * 1000L;
+   }
+
+
+
+   /***************************************************************************
+    ** record that subscriptions (or their webhooks) were changed, so that other
+    ** nodes reload their snapshots (as will this node - which is simpler than
+    ** trying to tell its own change apart from any others').
+    ***************************************************************************/
+   public static void changeSubscriptionsVersion(QBackendTransaction transaction) throws QException
+   {
+      if(isVersionCheckEnabled())
+      {
+         WebhookCacheVersionManager.changeVersion(WebhookCacheVersion.SUBSCRIPTIONS, transaction);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** apply a change to the subscription snapshot (if there is one - else it'll
+    ** be loaded, with the change, upon next use).  If applying the change fails,
+    ** the snapshot is discarded, rather than being left out of date.
+    ***************************************************************************/
+   private static void applySubscriptionSnapshotChange(SubscriptionSnapshotChange change)
    {
-      return subscriptionsByEventTypeMemoization.getResultThrowing(webhookEventType.getName(), name ->
+      subscriptionSnapshotLock.lock();
+      try
       {
-         try
+         if(subscriptionSnapshot != null)
          {
-            return QueryAction.execute(WebhookSubscription.TABLE_NAME, WebhookSubscription.class, new QQueryFilter()
-               .withCriteria(new QFilterCriteria("webhookEventTypeName", QCriteriaOperator.EQUALS, name))
-               .withCriteria(new QFilterCriteria("activeStatusId", QCriteriaOperator.NOT_EQUALS, WebhookActiveStatus.DISABLED.getId()))
-            );
+            subscriptionSnapshot = change.apply(subscriptionSnapshot);
          }
-         catch(QException e)
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error applying change to webhook subscription snapshot - it will be reloaded", e);
+         subscriptionSnapshot = null;
+      }
+      finally
+      {
+         subscriptionSnapshotLock.unlock();
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** update the subscription snapshot for subscriptions that were inserted or
+    ** updated - by re-reading only those subscriptions.
+    **
+    ** If the write was in a transaction, it may not be committed yet (and may
+    ** yet be rolled back) - and there's no hook for after it's committed - so
+    ** rather than reading (uncommitted, or not-yet-visible) rows into it, the
+    ** snapshot is discarded, to be reloaded upon next use.  (if that reload
+    ** happens before the commit, it's reloaded again once the version change
+    ** made in the same transaction is seen - or else, when it expires.)
+    ***************************************************************************/
+   public static void onSubscriptionsStored(List<Integer> subscriptionIds, QBackendTransaction transaction)
+   {
+      if(transaction != null)
+      {
+         clearMemoizations();
+         return;
+      }
+
+      applySubscriptionSnapshotChange(snapshot -> snapshot.withSubscriptionsReloaded(subscriptionIds));
+   }
+
+
+
+   /***************************************************************************
+    ** update the subscription snapshot for subscriptions that were deleted.
+    ***************************************************************************/
+   public static void onSubscriptionsDeleted(List<Integer> subscriptionIds)
+   {
+      applySubscriptionSnapshotChange(snapshot -> snapshot.withSubscriptionsRemoved(subscriptionIds));
+   }
+
+
+
+   /***************************************************************************
+    ** update the subscription snapshot for webhooks that were updated - by
+    ** merging the updated values into its copies of them.
+    ***************************************************************************/
+   public static void onWebhooksUpdated(List<QRecord> webhookRecords)
+   {
+      applySubscriptionSnapshotChange(snapshot -> snapshot.withWebhooksUpdated(webhookRecords));
+   }
+
+
+
+   /***************************************************************************
+    ** update the subscription snapshot for webhooks that were deleted.
+    ***************************************************************************/
+   public static void onWebhooksDeleted(List<Integer> webhookIds)
+   {
+      applySubscriptionSnapshotChange(snapshot -> snapshot.withWebhooksRemoved(webhookIds));
+   }
+
+
+   /***************************************************************************
+    ** get the event types of a kind, for a table, that have subscriptions (or
+    ** null if there aren't any).  Called for every insert & update - so the
+    ** candidate types come from the registry's index, which, for the (many)
+    ** tables without any types, is an empty list.
+    ***************************************************************************/
+   public static List<WebhookEventType> getWebhookEventTypesToConsiderFiringEventsFor(WebhookEventCategory.Kind kind, String tableName)
+   {
+      List<WebhookEventType> candidateEventTypes = WebhooksRegistry.ofOrWithNew(QContext.getQInstance()).getWebhookEventTypes(kind, tableName);
+      if(candidateEventTypes.isEmpty())
+      {
+         return (null);
+      }
+
+      List<WebhookEventType> eventTypes = null;
+      for(WebhookEventType webhookEventType : candidateEventTypes)
+      {
+         if(CollectionUtils.nullSafeHasContents(getSubscriptionsForEventType(webhookEventType)))
          {
-            throw new RuntimeException(e);
+            eventTypes = Objects.requireNonNullElseGet(eventTypes, ArrayList::new);
+            eventTypes.add(webhookEventType);
          }
-      }).orElse(Collections.emptyList());
-   }
+      }
 
+      return (eventTypes);
+   }
 
 
 
    /***************************************************************************
     **
     ***************************************************************************/
+   public static List<WebhookSubscription> getSubscriptionsForEventType(WebhookEventType webhookEventType)
+   {
+      try
+      {
+         return (getSubscriptionSnapshot().getSubscriptionsForEventType(webhookEventType.getName()));
+      }
+      catch(QException e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get the webhook for a subscription - from the subscription snapshot, or,
+    ** for a subscription that isn't in it (e.g., a disabled one), by querying.
+    ***************************************************************************/
    public static QRecord getWebhookForSubscription(WebhookSubscription webhookSubscription)
    {
-      return webhookBySubscriptionIdMemoization.getResultThrowing(webhookSubscription.getId(), subscriptionId ->
+      try
       {
-         try
+         QRecord webhook = getSubscriptionSnapshot().getWebhook(webhookSubscription.getWebhookId());
+         if(webhook != null)
          {
-            List<QRecord> webhooks = new QueryAction().execute(new QueryInput(Webhook.TABLE_NAME)
-                  .withFilter(new QQueryFilter(new QFilterCriteria(WebhookSubscription.TABLE_NAME + ".id", QCriteriaOperator.EQUALS, subscriptionId)))
-                  .withQueryJoin(new QueryJoin(WebhookSubscription.TABLE_NAME)))
-               .getRecords();
-            if(webhooks.isEmpty())
-            {
-               return (null);
-            }
-            else
-            {
-               return (webhooks.get(0));
-            }
+            return (webhook);
          }
-         catch(QException e)
+
+         List<QRecord> webhooks = new QueryAction().execute(new QueryInput(Webhook.TABLE_NAME)
+               .withFilter(new QQueryFilter(new QFilterCriteria(WebhookSubscription.TABLE_NAME + ".id", QCriteriaOperator.EQUALS, webhookSubscription.getId())))
+               .withQueryJoin(new QueryJoin(WebhookSubscription.TABLE_NAME)))
+            .getRecords();
+         if(webhooks.isEmpty())
          {
-            throw new RuntimeException(e);
+            return (null);
          }
-      }).orElse(null);
+         else
+         {
+            return (webhooks.get(0));
+         }
+      }
+      catch(QException e)
+      {
+         throw new RuntimeException(e);
+      }
    }
 
 
@@ -208,19 +422,98 @@ public class WebhookSubscriptionsHelper
     ***************************************************************************/
    public static boolean doesRecordMatchSubscription(WebhookEventType webhookEventType, WebhookSubscription webhookSubscription, QRecord record, QBackendTransaction transaction) throws QException
    {
-      String         tableName = record.getTableName();
-      QTableMetaData table     = QContext.getQInstance().getTable(tableName);
+      return (!filterRecordsForSubscription(record.getTableName(), webhookSubscription, List.of(record), transaction).isEmpty());
+   }
+
+
 
-      List<RecordSecurityLock> recordSecurityLocks = table.getRecordSecurityLocks();
-      if(CollectionUtils.nullSafeIsEmpty(recordSecurityLocks))
+   /***************************************************************************
+    ** get the records (all from one table) that a subscription's webhook is
+    ** allowed to see, per the record security locks on the table and in the
+    ** qbit config.  The table's locks are looked up, and the webhook's
+    ** pseudo-session is fetched (from the subscription snapshot), just once
+    ** for the whole list, rather than once per record.
+    ***************************************************************************/
+   public static List<QRecord> filterRecordsForSubscription(String tableName, WebhookSubscription webhookSubscription, List<QRecord> records, QBackendTransaction transaction) throws QException
+   {
+      if(CollectionUtils.nullSafeIsEmpty(records))
+      {
+         return (records);
+      }
+
+      QTableMetaData table = QContext.getQInstance().getTable(tableName);
+      if(CollectionUtils.nullSafeIsEmpty(table.getRecordSecurityLocks()))
       {
          ////////////////////////////////////////////
          // if no locks on the table, always allow //
          ////////////////////////////////////////////
-         return (true);
+         return (records);
+      }
+
+      Optional<QSession> pseudoSession = getPseudoSession(webhookSubscription);
+      if(pseudoSession.isEmpty())
+      {
+         //////////////////////////////////////////////////////////////
+         // if there are no security locks on the qbit, always allow //
+         //////////////////////////////////////////////////////////////
+         return (records);
+      }
+
+      List<QRecord> allowedRecords = new ArrayList<>();
+      for(QRecord record : records)
+      {
+         if(ValidateRecordSecurityLockHelper.allowedToReadRecord(table, record, pseudoSession.get(), transaction))
+         {
+            allowedRecords.add(record);
+         }
+      }
+
+      return (allowedRecords);
+   }
+
+
+
+   /***************************************************************************
+    ** get the pseudo-session for a subscription's webhook - from the
+    ** subscription snapshot if the webhook is in it, else freshly built.
+    ***************************************************************************/
+   static Optional<QSession> getPseudoSession(WebhookSubscription webhookSubscription) throws QException
+   {
+      Optional<QSession> pseudoSession = getSubscriptionSnapshot().getPseudoSession(webhookSubscription.getWebhookId());
+      if(pseudoSession != null)
+      {
+         return (pseudoSession);
+      }
+
+      return (buildPseudoSession(getWebhookForSubscription(webhookSubscription)));
+   }
+
+
+
+   /***************************************************************************
+    ** get the names of the webhook fields that pseudo-sessions are built from -
+    ** i.e., those of the qbit config's record security locks.
+    ***************************************************************************/
+   static Set<String> getSecurityLockFieldNames()
+   {
+      QBitConfig qbitConfig = QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      if(qbitConfig instanceof WebhooksQBitConfig webhooksQBitConfig)
+      {
+         return (CollectionUtils.nonNullList(webhooksQBitConfig.getRecordSecurityLocks()).stream().map(lock -> lock.getFieldName()).collect(Collectors.toSet()));
       }
+      return (Collections.emptySet());
+   }
 
-      QRecord        webhookRecord = getWebhookForSubscription(webhookSubscription);
+
+
+   /***************************************************************************
+    ** build the session used to check if a webhook is allowed to see records -
+    ** with security key values copied from the webhook record, per the qbit
+    ** config's record security locks.  Empty if the qbit has no locks (in
+    ** which case, webhooks can see all records).
+    ***************************************************************************/
+   static Optional<QSession> buildPseudoSession(QRecord webhookRecord)
+   {
       QTableMetaData webhookTable  = QContext.getQInstance().getTable(Webhook.TABLE_NAME);
       QBitConfig     qbitConfig    = webhookTable.getSourceQBitConfig();
       QSession       pseudoSession = new QSession();
@@ -238,12 +531,9 @@ public class WebhookSubscriptionsHelper
          }
       }
 
-      //////////////////////////////////////////////////////////////
-      // if there are no security locks on the qbit, always allow //
-      //////////////////////////////////////////////////////////////
       if(pseudoSession.getSecurityKeyValues().isEmpty())
       {
-         return (true);
+         return (Optional.empty());
       }
 
       //////////////////////////////////////////////////////////////////////////////////////////////////
@@ -255,6 +545,6 @@ public class WebhookSubscriptionsHelper
          pseudoSession.withSecurityKeyValue(allAccessKey, true);
       }
 
-      return (ValidateRecordSecurityLockHelper.allowedToReadRecord(table, record, pseudoSession, transaction));
+      return (Optional.of(pseudoSession));
    }
 }
@@ -0,0 +1,129 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+/*******************************************************************************
+ ** simple token bucket, used to limit the rate of requests sent to a webhook.
+ **
+ ** The bucket holds up to one second's worth of tokens (so, allows bursts up to
+ ** the rate), and refills continuously at the rate.  Callers reserve a token,
+ ** and are told how long they must wait before using it (0 if one is available
+ ** now) - so that waiting callers are served in the order they reserved.
+ ** Callers may give a max wait, past which no token is reserved, so that they
+ ** can do something other than wait (e.g., defer their work).
+ *******************************************************************************/
+public class WebhookTokenBucket
+{
+   private double permitsPerSecond;
+   private double availableTokens;
+   private long   lastRefillNanos;
+
+
+
+   /*******************************************************************************
+    ** Constructor
+    **
+    *******************************************************************************/
+   public WebhookTokenBucket(double permitsPerSecond)
+   {
+      this.permitsPerSecond = permitsPerSecond;
+      this.availableTokens = permitsPerSecond;
+      this.lastRefillNanos = System.nanoTime();
+   }
+
+
+
+   /***************************************************************************
+    ** reserve a token - returning the number of millis the caller must wait
+    ** before it may be used.
+    ***************************************************************************/
+   public synchronized long reserve()
+   {
+      return (reserve(Long.MAX_VALUE));
+   }
+
+
+
+   /***************************************************************************
+    ** reserve a token, if the caller would not have to wait more than
+    ** maxWaitMillis to use it - returning the number of millis the caller must
+    ** wait.  if that is more than maxWaitMillis, no token was reserved, and the
+    ** return value is how long until one would be available.
+    ***************************************************************************/
+   public synchronized long reserve(long maxWaitMillis)
+   {
+      refill();
+      if(availableTokens >= 1)
+      {
+         availableTokens -= 1;
+         return (0);
+      }
+
+      //////////////////////////////////////////////////////////////////////////
+      // we'd go negative - so the caller must wait until the bucket refills  //
+      // back to zero (which accounts for any other callers already waiting). //
+      //////////////////////////////////////////////////////////////////////////
+      long waitMillis = (long) Math.ceil((1 - availableTokens) / permitsPerSecond * 1000);
+      if(waitMillis <= maxWaitMillis)
+      {
+         availableTokens -= 1;
+      }
+      return (waitMillis);
+   }
+
+
+
+   /***************************************************************************
+    ** change the rate (e.g., based on what other nodes are sending).
+    ***************************************************************************/
+   public synchronized void setPermitsPerSecond(double permitsPerSecond)
+   {
+      refill();
+      this.permitsPerSecond = permitsPerSecond;
+      this.availableTokens = Math.min(availableTokens, permitsPerSecond);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   public synchronized double getPermitsPerSecond()
+   {
+      return (permitsPerSecond);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private void refill()
+   {
+      long now = System.nanoTime();
+      availableTokens = Math.min(permitsPerSecond, availableTokens + (now - lastRefillNanos) / 1_000_000_000.0 * permitsPerSecond);
+      lastRefillNanos = now;
+   }
+
+}
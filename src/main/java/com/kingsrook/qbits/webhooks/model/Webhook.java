@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.List;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.actions.ClearWebhookSubscriptionHelperMemoizationsTableCustomizer;
+import com.kingsrook.qbits.webhooks.actions.CloseWebhookHttpClientTableCustomizer;
 import com.kingsrook.qbits.webhooks.processes.SyncWebhookScheduledJobProcess;
 import com.kingsrook.qqq.backend.core.actions.customizers.MultiCustomizer;
 import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizers;
@@ -58,6 +59,7 @@ import com.kingsrook.qqq.backend.core.model.metadata.tables.ExposedJoin;
 import com.kingsrook.qqq.backend.core.model.metadata.tables.QFieldSection;
 import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
 import com.kingsrook.qqq.backend.core.model.metadata.tables.SectionFactory;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.Tier;
 import com.kingsrook.qqq.backend.core.scheduler.processes.BaseSyncToScheduledJobTableCustomizer;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
 import com.kingsrook.qqq.backend.core.utils.collections.MutableList;
@@ -118,7 +120,8 @@ public class Webhook extends QRecordEntity
             .withRecordLabelFormat("%s")
             .withRecordLabelFields("name")
             .withSection(t1section)
-            .withSection(SectionFactory.defaultT2("url", "activeStatusId", "healthStatusId"))
+            .withSection(SectionFactory.defaultT2("url", "activeStatusId", "healthStatusId", "healthStatusChangedTimestamp", "consecutiveFailCount", "lastAttemptTimestamp"))
+            .withSection(new QFieldSection("delivery", "Delivery Settings", new QIcon("tune"), Tier.T2, List.of("maxRequestsPerSecond", "maxConcurrentSends", "maxEventsPerBatch", "maxBatchBytes", "httpVersionId", "useGzipCompression", "retryPolicyId")))
             .withSection(SectionFactory.customT2("subscriptions", new QIcon("subscriptions")).withWidgetName(subscriptionChildJoinName))
             .withSection(SectionFactory.customT2("events", new QIcon("notifications")).withWidgetName(eventChildJoinName))
             .withSection(SectionFactory.customT2("sendLog", new QIcon("receipt_long")).withWidgetName(eventSendLogChildJoinName))
@@ -146,12 +149,13 @@ public class Webhook extends QRecordEntity
          }
 
          ////////////////////////////////////////////////////////////////////////
-         // we need 2 customizers to run post insert, update, and delete:      //
+         // we need 3 customizers to run post insert, update, and delete:      //
          // first, to clear the webhookSubscriptionHelper class's memoizations //
-         // second, to sync scheduled jobs for this table                      //
+         // second, to close pooled http clients for changed/deleted webhooks  //
+         // third, to sync scheduled jobs for this table                       //
          ////////////////////////////////////////////////////////////////////////
          QCodeReference syncScheduledJobCustomizer    = BaseSyncToScheduledJobTableCustomizer.makeCodeReference(table, new SyncWebhookScheduledJobProcess());
-         QCodeReference postEverythingMultiCustomizer = MultiCustomizer.of(new QCodeReference(ClearWebhookSubscriptionHelperMemoizationsTableCustomizer.class), syncScheduledJobCustomizer);
+         QCodeReference postEverythingMultiCustomizer = MultiCustomizer.of(new QCodeReference(ClearWebhookSubscriptionHelperMemoizationsTableCustomizer.class), new QCodeReference(CloseWebhookHttpClientTableCustomizer.class), syncScheduledJobCustomizer);
          table.withCustomizer(TableCustomizers.POST_INSERT_RECORD, postEverythingMultiCustomizer);
          table.withCustomizer(TableCustomizers.POST_UPDATE_RECORD, postEverythingMultiCustomizer);
          table.withCustomizer(TableCustomizers.POST_DELETE_RECORD, postEverythingMultiCustomizer);
@@ -229,6 +233,36 @@ public class Webhook extends QRecordEntity
    @QField(isRequired = true, possibleValueSourceName = WebhookHealthStatus.NAME, defaultValue = WebhookHealthStatus.DEFAULT_VALUE, isEditable = false)
    private Integer healthStatusId;
 
+   @QField(isEditable = false)
+   private Integer consecutiveFailCount;
+
+   @QField(isEditable = false)
+   private Instant healthStatusChangedTimestamp;
+
+   @QField(isEditable = false)
+   private Instant lastAttemptTimestamp;
+
+   @QField(label = "Max Requests Per Second")
+   private Integer maxRequestsPerSecond;
+
+   @QField(label = "Max Concurrent Sends")
+   private Integer maxConcurrentSends;
+
+   @QField(label = "Max Events Per Batch")
+   private Integer maxEventsPerBatch;
+
+   @QField(label = "Max Batch Bytes")
+   private Integer maxBatchBytes;
+
+   @QField(label = "HTTP Version", possibleValueSourceName = WebhookHttpVersion.NAME, defaultValue = WebhookHttpVersion.DEFAULT_VALUE)
+   private Integer httpVersionId;
+
+   @QField(label = "Use Gzip Compression", defaultValue = "false")
+   private Boolean useGzipCompression;
+
+   @QField(label = "Retry Policy", possibleValueSourceName = WebhookRetryPolicy.NAME, defaultValue = WebhookRetryPolicy.DEFAULT_VALUE)
+   private Integer retryPolicyId;
+
    @QField(isEditable = false)
    private Instant createDate;
 
@@ -536,4 +570,314 @@ public class Webhook extends QRecordEntity
       return (this);
    }
 
+
+
+   /*******************************************************************************
+    ** Getter for maxRequestsPerSecond
+    *******************************************************************************/
+   public Integer getMaxRequestsPerSecond()
+   {
+      return (this.maxRequestsPerSecond);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for maxRequestsPerSecond
+    *******************************************************************************/
+   public void setMaxRequestsPerSecond(Integer maxRequestsPerSecond)
+   {
+      this.maxRequestsPerSecond = maxRequestsPerSecond;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for maxRequestsPerSecond
+    *******************************************************************************/
+   public Webhook withMaxRequestsPerSecond(Integer maxRequestsPerSecond)
+   {
+      this.maxRequestsPerSecond = maxRequestsPerSecond;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for maxConcurrentSends
+    *******************************************************************************/
+   public Integer getMaxConcurrentSends()
+   {
+      return (this.maxConcurrentSends);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for maxConcurrentSends
+    *******************************************************************************/
+   public void setMaxConcurrentSends(Integer maxConcurrentSends)
+   {
+      this.maxConcurrentSends = maxConcurrentSends;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for maxConcurrentSends
+    *******************************************************************************/
+   public Webhook withMaxConcurrentSends(Integer maxConcurrentSends)
+   {
+      this.maxConcurrentSends = maxConcurrentSends;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for maxEventsPerBatch
+    *******************************************************************************/
+   public Integer getMaxEventsPerBatch()
+   {
+      return (this.maxEventsPerBatch);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for maxEventsPerBatch
+    *******************************************************************************/
+   public void setMaxEventsPerBatch(Integer maxEventsPerBatch)
+   {
+      this.maxEventsPerBatch = maxEventsPerBatch;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for maxEventsPerBatch
+    *******************************************************************************/
+   public Webhook withMaxEventsPerBatch(Integer maxEventsPerBatch)
+   {
+      this.maxEventsPerBatch = maxEventsPerBatch;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for maxBatchBytes
+    *******************************************************************************/
+   public Integer getMaxBatchBytes()
+   {
+      return (this.maxBatchBytes);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for maxBatchBytes
+    *******************************************************************************/
+   public void setMaxBatchBytes(Integer maxBatchBytes)
+   {
+      this.maxBatchBytes = maxBatchBytes;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for maxBatchBytes
+    *******************************************************************************/
+   public Webhook withMaxBatchBytes(Integer maxBatchBytes)
+   {
+      this.maxBatchBytes = maxBatchBytes;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for httpVersionId
+    *******************************************************************************/
+   public Integer getHttpVersionId()
+   {
+      return (this.httpVersionId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for httpVersionId
+    *******************************************************************************/
+   public void setHttpVersionId(Integer httpVersionId)
+   {
+      this.httpVersionId = httpVersionId;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for httpVersionId
+    *******************************************************************************/
+   public Webhook withHttpVersionId(Integer httpVersionId)
+   {
+      this.httpVersionId = httpVersionId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for useGzipCompression
+    *******************************************************************************/
+   public Boolean getUseGzipCompression()
+   {
+      return (this.useGzipCompression);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for useGzipCompression
+    *******************************************************************************/
+   public void setUseGzipCompression(Boolean useGzipCompression)
+   {
+      this.useGzipCompression = useGzipCompression;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for useGzipCompression
+    *******************************************************************************/
+   public Webhook withUseGzipCompression(Boolean useGzipCompression)
+   {
+      this.useGzipCompression = useGzipCompression;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for retryPolicyId
+    *******************************************************************************/
+   public Integer getRetryPolicyId()
+   {
+      return (this.retryPolicyId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for retryPolicyId
+    *******************************************************************************/
+   public void setRetryPolicyId(Integer retryPolicyId)
+   {
+      this.retryPolicyId = retryPolicyId;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for retryPolicyId
+    *******************************************************************************/
+   public Webhook withRetryPolicyId(Integer retryPolicyId)
+   {
+      this.retryPolicyId = retryPolicyId;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for consecutiveFailCount
+    *******************************************************************************/
+   public Integer getConsecutiveFailCount()
+   {
+      return (this.consecutiveFailCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for consecutiveFailCount
+    *******************************************************************************/
+   public void setConsecutiveFailCount(Integer consecutiveFailCount)
+   {
+      this.consecutiveFailCount = consecutiveFailCount;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for consecutiveFailCount
+    *******************************************************************************/
+   public Webhook withConsecutiveFailCount(Integer consecutiveFailCount)
+   {
+      this.consecutiveFailCount = consecutiveFailCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for healthStatusChangedTimestamp
+    *******************************************************************************/
+   public Instant getHealthStatusChangedTimestamp()
+   {
+      return (this.healthStatusChangedTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for healthStatusChangedTimestamp
+    *******************************************************************************/
+   public void setHealthStatusChangedTimestamp(Instant healthStatusChangedTimestamp)
+   {
+      this.healthStatusChangedTimestamp = healthStatusChangedTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for healthStatusChangedTimestamp
+    *******************************************************************************/
+   public Webhook withHealthStatusChangedTimestamp(Instant healthStatusChangedTimestamp)
+   {
+      this.healthStatusChangedTimestamp = healthStatusChangedTimestamp;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for lastAttemptTimestamp
+    *******************************************************************************/
+   public Instant getLastAttemptTimestamp()
+   {
+      return (this.lastAttemptTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for lastAttemptTimestamp
+    *******************************************************************************/
+   public void setLastAttemptTimestamp(Instant lastAttemptTimestamp)
+   {
+      this.lastAttemptTimestamp = lastAttemptTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for lastAttemptTimestamp
+    *******************************************************************************/
+   public Webhook withLastAttemptTimestamp(Instant lastAttemptTimestamp)
+   {
+      this.lastAttemptTimestamp = lastAttemptTimestamp;
+      return (this);
+   }
+
 }
@@ -108,7 +108,7 @@ public class WebhookEvent extends QRecordEntity
             .withRecordLabelFormat("%s")
             .withRecordLabelFields("id")
             .withSection(t1section)
-            .withSection(SectionFactory.defaultT2("eventStatusId", "eventSourceRecordQqqTableId", "eventSourceRecordId", "nextAttemptTimestamp"))
+            .withSection(SectionFactory.defaultT2("eventStatusId", "eventSourceRecordQqqTableId", "eventSourceRecordId", "nextAttemptTimestamp", "attemptCount", "lastAttemptTimestamp", "leaseOwner"))
             .withSection(SectionFactory.customT2("sendLogs", new QIcon("receipt_long")).withWidgetName(sendLogChildJoinName))
             .withSection(SectionFactory.customT2("content", new QIcon("description"), WebhookEventContent.TABLE_NAME + ".postBody"))
             .withSection(SectionFactory.defaultT3("createDate", "modifyDate"))
@@ -192,6 +192,15 @@ public class WebhookEvent extends QRecordEntity
    @QField(isEditable = false)
    private Instant nextAttemptTimestamp;
 
+   @QField(isEditable = false, maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.TRUNCATE)
+   private String leaseOwner;
+
+   @QField(isEditable = false)
+   private Integer attemptCount;
+
+   @QField(isEditable = false)
+   private Instant lastAttemptTimestamp;
+
    @QAssociation(name = CONTENT_ASSOCIATION_NAME)
    private List<WebhookEventContent> content;
 
@@ -555,4 +564,96 @@ public class WebhookEvent extends QRecordEntity
    }
 
 
+
+   /*******************************************************************************
+    ** Getter for leaseOwner
+    *******************************************************************************/
+   public String getLeaseOwner()
+   {
+      return (this.leaseOwner);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for leaseOwner
+    *******************************************************************************/
+   public void setLeaseOwner(String leaseOwner)
+   {
+      this.leaseOwner = leaseOwner;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for leaseOwner
+    *******************************************************************************/
+   public WebhookEvent withLeaseOwner(String leaseOwner)
+   {
+      this.leaseOwner = leaseOwner;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for attemptCount
+    *******************************************************************************/
+   public Integer getAttemptCount()
+   {
+      return (this.attemptCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for attemptCount
+    *******************************************************************************/
+   public void setAttemptCount(Integer attemptCount)
+   {
+      this.attemptCount = attemptCount;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for attemptCount
+    *******************************************************************************/
+   public WebhookEvent withAttemptCount(Integer attemptCount)
+   {
+      this.attemptCount = attemptCount;
+      return (this);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for lastAttemptTimestamp
+    *******************************************************************************/
+   public Instant getLastAttemptTimestamp()
+   {
+      return (this.lastAttemptTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for lastAttemptTimestamp
+    *******************************************************************************/
+   public void setLastAttemptTimestamp(Instant lastAttemptTimestamp)
+   {
+      this.lastAttemptTimestamp = lastAttemptTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for lastAttemptTimestamp
+    *******************************************************************************/
+   public WebhookEvent withLastAttemptTimestamp(Instant lastAttemptTimestamp)
+   {
+      this.lastAttemptTimestamp = lastAttemptTimestamp;
+      return (this);
+   }
+
 }
@@ -0,0 +1,278 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.model;
+
+
+import java.time.Instant;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.ValueTooLongBehavior;
+import com.kingsrook.qqq.backend.core.model.metadata.layout.QIcon;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.MetaDataCustomizerInterface;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.annotations.QMetaDataProducingEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.SectionFactory;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.UniqueKey;
+
+
+/*******************************************************************************
+ ** QRecord Entity for WebhookLock table - short-lived, cluster-wide locks (one
+ ** row per held lock, by name), for work that must not be done by two nodes at
+ ** once (e.g., claiming webhook events to send).  The unique key on name is
+ ** what makes taking a lock atomic.
+ *******************************************************************************/
+@QMetaDataProducingEntity(
+   produceTableMetaData = true,
+   tableMetaDataCustomizer = WebhookLock.TableMetaDataCustomizer.class
+)
+public class WebhookLock extends QRecordEntity
+{
+   public static final String TABLE_NAME = "webhookLock";
+
+   public static final String CLAIM_EVENTS = "claimEvents";
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   public static class TableMetaDataCustomizer implements MetaDataCustomizerInterface<QTableMetaData>
+   {
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public QTableMetaData customizeMetaData(QInstance qInstance, QTableMetaData table) throws QException
+      {
+         table
+            .withIcon(new QIcon().withName("lock"))
+            .withUniqueKey(new UniqueKey("name"))
+            .withRecordLabelFormat("%s")
+            .withRecordLabelFields("name")
+            .withSection(SectionFactory.defaultT1("id", "name"))
+            .withSection(SectionFactory.defaultT2("holder", "expiresTimestamp"))
+            .withSection(SectionFactory.defaultT3("createDate"));
+
+         return (table);
+      }
+   }
+
+
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Integer id;
+
+   @QField(maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.ERROR, isRequired = true)
+   private String name;
+
+   @QField(isEditable = false, maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.ERROR)
+   private String holder;
+
+   @QField(isEditable = false)
+   private Instant expiresTimestamp;
+
+   @QField(isEditable = false)
+   private Instant createDate;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public WebhookLock()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public WebhookLock(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for id
+    *******************************************************************************/
+   public Integer getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for id
+    *******************************************************************************/
+   public void setId(Integer id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for id
+    *******************************************************************************/
+   public WebhookLock withId(Integer id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for name
+    *******************************************************************************/
+   public String getName()
+   {
+      return (this.name);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for name
+    *******************************************************************************/
+   public void setName(String name)
+   {
+      this.name = name;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for name
+    *******************************************************************************/
+   public WebhookLock withName(String name)
+   {
+      this.name = name;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for holder
+    *******************************************************************************/
+   public String getHolder()
+   {
+      return (this.holder);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for holder
+    *******************************************************************************/
+   public void setHolder(String holder)
+   {
+      this.holder = holder;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for holder
+    *******************************************************************************/
+   public WebhookLock withHolder(String holder)
+   {
+      this.holder = holder;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for expiresTimestamp
+    *******************************************************************************/
+   public Instant getExpiresTimestamp()
+   {
+      return (this.expiresTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for expiresTimestamp
+    *******************************************************************************/
+   public void setExpiresTimestamp(Instant expiresTimestamp)
+   {
+      this.expiresTimestamp = expiresTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for expiresTimestamp
+    *******************************************************************************/
+   public WebhookLock withExpiresTimestamp(Instant expiresTimestamp)
+   {
+      this.expiresTimestamp = expiresTimestamp;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for createDate
+    *******************************************************************************/
+   public Instant getCreateDate()
+   {
+      return (this.createDate);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for createDate
+    *******************************************************************************/
+   public void setCreateDate(Instant createDate)
+   {
+      this.createDate = createDate;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for createDate
+    *******************************************************************************/
+   public WebhookLock withCreateDate(Instant createDate)
+   {
+      this.createDate = createDate;
+      return (this);
+   }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.model;
+
+
+import java.time.Instant;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.ValueTooLongBehavior;
+import com.kingsrook.qqq.backend.core.model.metadata.layout.QIcon;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.MetaDataCustomizerInterface;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.annotations.QMetaDataProducingEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.SectionFactory;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.UniqueKey;
+
+
+/*******************************************************************************
+ ** QRecord Entity for WebhookOutboundRate table - the rate at which each node
+ ** has recently been sending requests to each webhook that has an outbound
+ ** rate limit (one row per webhook per node, updated by that node about once
+ ** a second while it sends).  Read by each node's WebhookOutboundRateLimiter,
+ ** to find out how much of a webhook's limit the other nodes are using.
+ *******************************************************************************/
+@QMetaDataProducingEntity(
+   produceTableMetaData = true,
+   tableMetaDataCustomizer = WebhookOutboundRate.TableMetaDataCustomizer.class
+)
+public class WebhookOutboundRate extends QRecordEntity
+{
+   public static final String TABLE_NAME = "webhookOutboundRate";
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   public static class TableMetaDataCustomizer implements MetaDataCustomizerInterface<QTableMetaData>
+   {
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public QTableMetaData customizeMetaData(QInstance qInstance, QTableMetaData table) throws QException
+      {
+         table
+            .withIcon(new QIcon().withName("speed"))
+            .withUniqueKey(new UniqueKey("webhookId", "nodeId"))
+            .withRecordLabelFormat("%s %s")
+            .withRecordLabelFields("webhookId", "nodeId")
+            .withSection(SectionFactory.defaultT1("id", "webhookId", "nodeId"))
+            .withSection(SectionFactory.defaultT2("requestsPerSecond", "periodEndTimestamp"));
+
+         return (table);
+      }
+   }
+
+
+
+   @QField(isEditable = false, isPrimaryKey = true)
+   private Integer id;
+
+   @QField(isEditable = false, possibleValueSourceName = Webhook.TABLE_NAME, isRequired = true)
+   private Integer webhookId;
+
+   @QField(isEditable = false, maxLength = 100, valueTooLongBehavior = ValueTooLongBehavior.ERROR, isRequired = true)
+   private String nodeId;
+
+   @QField(isEditable = false)
+   private Integer requestsPerSecond;
+
+   @QField(isEditable = false)
+   private Instant periodEndTimestamp;
+
+
+
+   /*******************************************************************************
+    ** Default constructor
+    *******************************************************************************/
+   public WebhookOutboundRate()
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor that takes a QRecord
+    *******************************************************************************/
+   public WebhookOutboundRate(QRecord record)
+   {
+      populateFromQRecord(record);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for id
+    *******************************************************************************/
+   public Integer getId()
+   {
+      return (this.id);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for id
+    *******************************************************************************/
+   public void setId(Integer id)
+   {
+      this.id = id;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for id
+    *******************************************************************************/
+   public WebhookOutboundRate withId(Integer id)
+   {
+      this.id = id;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for webhookId
+    *******************************************************************************/
+   public Integer getWebhookId()
+   {
+      return (this.webhookId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for webhookId
+    *******************************************************************************/
+   public void setWebhookId(Integer webhookId)
+   {
+      this.webhookId = webhookId;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for webhookId
+    *******************************************************************************/
+   public WebhookOutboundRate withWebhookId(Integer webhookId)
+   {
+      this.webhookId = webhookId;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for nodeId
+    *******************************************************************************/
+   public String getNodeId()
+   {
+      return (this.nodeId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for nodeId
+    *******************************************************************************/
+   public void setNodeId(String nodeId)
+   {
+      this.nodeId = nodeId;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for nodeId
+    *******************************************************************************/
+   public WebhookOutboundRate withNodeId(String nodeId)
+   {
+      this.nodeId = nodeId;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for requestsPerSecond
+    *******************************************************************************/
+   public Integer getRequestsPerSecond()
+   {
+      return (this.requestsPerSecond);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for requestsPerSecond
+    *******************************************************************************/
+   public void setRequestsPerSecond(Integer requestsPerSecond)
+   {
+      this.requestsPerSecond = requestsPerSecond;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for requestsPerSecond
+    *******************************************************************************/
+   public WebhookOutboundRate withRequestsPerSecond(Integer requestsPerSecond)
+   {
+      this.requestsPerSecond = requestsPerSecond;
+      return (this);
+   }
+
+
+
+
+   /*******************************************************************************
+    ** Getter for periodEndTimestamp
+    *******************************************************************************/
+   public Instant getPeriodEndTimestamp()
+   {
+      return (this.periodEndTimestamp);
+   }
+
+
+
+   /*******************************************************************************
+    ** Setter for periodEndTimestamp
+    *******************************************************************************/
+   public void setPeriodEndTimestamp(Instant periodEndTimestamp)
+   {
+      this.periodEndTimestamp = periodEndTimestamp;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fluent setter for periodEndTimestamp
+    *******************************************************************************/
+   public WebhookOutboundRate withPeriodEndTimestamp(Instant periodEndTimestamp)
+   {
+      this.periodEndTimestamp = periodEndTimestamp;
+      return (this);
+   }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.model;
+
+
+import java.util.Objects;
+import com.kingsrook.qqq.backend.core.model.metadata.possiblevalues.PossibleValueEnum;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.annotations.QMetaDataProducingPossibleValueEnum;
+
+
+/*******************************************************************************
+ ** policy for when to retry a webhook's failed events.  FIXED_SCHEDULE uses the
+ ** qbit config's minutesBetweenRetryAttempts; EXPONENTIAL doubles the delay with
+ ** each attempt (with jitter); DECORRELATED_JITTER picks each delay at random,
+ ** between the base delay and 3 times the previous one.
+ *******************************************************************************/
+@QMetaDataProducingPossibleValueEnum()
+public enum WebhookRetryPolicy implements PossibleValueEnum<Integer>
+{
+   FIXED_SCHEDULE(1, "Fixed Schedule"),
+   EXPONENTIAL(2, "Exponential"),
+   DECORRELATED_JITTER(3, "Decorrelated Jitter");
+
+   private final Integer id;
+   private final String label;
+
+   public static final String NAME = "WebhookRetryPolicy";
+
+   public static final String DEFAULT_VALUE = "1";
+
+   static
+   {
+      Objects.requireNonNull(getById(Integer.parseInt(DEFAULT_VALUE)), "Default value '" + DEFAULT_VALUE + " in WebhookRetryPolicy is not a defined enum value");
+   }
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   WebhookRetryPolicy(Integer id, String label)
+   {
+      this.id = id;
+      this.label = label;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get instance by id
+    **
+    *******************************************************************************/
+   public static WebhookRetryPolicy getById(Integer id)
+   {
+      if(id == null)
+      {
+         return (null);
+      }
+
+      for(WebhookRetryPolicy value : WebhookRetryPolicy.values())
+      {
+         if(Objects.equals(value.id, id))
+         {
+            return (value);
+         }
+      }
+
+      return (null);
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for id
+    **
+    *******************************************************************************/
+   public Integer getId()
+   {
+      return id;
+   }
+
+
+
+   /*******************************************************************************
+    ** Getter for label
+    **
+    *******************************************************************************/
+   public String getLabel()
+   {
+      return label;
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Override
+   public Integer getPossibleValueId()
+   {
+      return (getId());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Override
+   public String getPossibleValueLabel()
+   {
+      return (getLabel());
+   }
+}
@@ -0,0 +1,76 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.processes;
+
+
+import java.util.List;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducer;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeReference;
+import com.kingsrook.qqq.backend.core.model.metadata.layout.QIcon;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QBackendStepMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QProcessMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitConfig;
+import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitProductionContext;
+import com.kingsrook.qqq.backend.core.model.metadata.scheduleing.QScheduleMetaData;
+
+
+/*******************************************************************************
+ ** Meta Data Producer for DispatchWebhookEvents - a process that finds the
+ ** webhooks with due events, and runs the SendWebhookEvent process for them.
+ ** Scheduled in either dispatchMode - so it can re-sync the per-webhook jobs
+ ** when the mode changes - but only dispatches in SINGLE_DISPATCHER mode.
+ *******************************************************************************/
+public class DispatchWebhookEventsProcessMetaDataProducer extends MetaDataProducer<QProcessMetaData>
+{
+   public static final String NAME = "DispatchWebhookEvents";
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Override
+   public QProcessMetaData produce(QInstance qInstance) throws QException
+   {
+      QProcessMetaData processMetaData = new QProcessMetaData()
+         .withName(NAME)
+         .withIcon(new QIcon().withName("call_split"))
+         .withStepList(List.of(new QBackendStepMetaData()
+            .withName("dispatch")
+            .withCode(new QCodeReference(DispatchWebhookEventsStep.class))));
+
+      QBitConfig qBitConfig = QBitProductionContext.peekQBitConfig();
+      if(qBitConfig instanceof WebhooksQBitConfig webhooksQBitConfig)
+      {
+         processMetaData.withSchedule(new QScheduleMetaData()
+            .withRepeatSeconds(webhooksQBitConfig.getSendWebhookEventProcessRepeatSeconds())
+            .withSchedulerName(webhooksQBitConfig.getSchedulerName()));
+      }
+
+      return (processMetaData);
+   }
+
+}
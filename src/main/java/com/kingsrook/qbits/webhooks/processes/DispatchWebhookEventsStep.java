@@ -0,0 +1,288 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.processes;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.actions.WebhookRateLimitManager;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookEvent;
+import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qqq.backend.core.actions.processes.BackendStep;
+import com.kingsrook.qqq.backend.core.actions.tables.AggregateAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.Aggregate;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateResult;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.GroupBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldType;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.utils.ValueUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+/*******************************************************************************
+ ** the one step of the DispatchWebhookEvents process:  with a single grouped
+ ** query, find which webhooks have events that are due to be sent - then run
+ ** the SendWebhookEvent process for each of those webhooks (that is active,
+ ** not unhealthy, and not rate-limited), over a bounded, node-wide pool of
+ ** threads.
+ **
+ ** So, webhooks without due events cost nothing (vs. one scheduled job per
+ ** webhook, each running its own query every few seconds).
+ **
+ ** The step doesn't wait for the sends it submits - so a slow webhook doesn't
+ ** hold up the next dispatch for the others.  Instead, a webhook whose send is
+ ** still queued or running is skipped by later dispatches until it finishes.
+ ** The pool's queue is bounded (to as many sends as it has threads):  once it's
+ ** full, further webhooks are left for a later dispatch, rather than piling up.
+ **
+ ** The process is scheduled in both dispatch modes:  its first run on a node
+ ** re-syncs the per-webhook scheduled jobs' active flags to the current mode
+ ** (as they're otherwise only synced when their webhook is stored), and only
+ ** in SINGLE_DISPATCHER mode does it go on to dispatch.
+ *******************************************************************************/
+public class DispatchWebhookEventsStep implements BackendStep
+{
+   private static final QLogger LOG = QLogger.getLogger(DispatchWebhookEventsStep.class);
+
+   private static final Set<Integer> inFlightWebhookIds = ConcurrentHashMap.newKeySet();
+
+   private static ThreadPoolExecutor executor                = null;
+   private static boolean            areJobsSyncedToDispatch = false;
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   @Override
+   public void run(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
+   {
+      syncJobsToDispatchModeIfNeeded();
+
+      if(!WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER.equals(WebhooksQBitConfig.getConfigValue(config -> config.getDispatchMode())))
+      {
+         runBackendStepOutput.addValue("noWebhooksDispatched", 0);
+         return;
+      }
+
+      List<Integer> webhookIds = getWebhookIdsToDispatch();
+      QInstance     qInstance  = QContext.getQInstance();
+      QSession      qSession   = QContext.getQSession();
+
+      ThreadPoolExecutor dispatchExecutor   = getExecutor();
+      int                noDispatched       = 0;
+      int                noSkippedQueueFull = 0;
+      for(Integer webhookId : webhookIds)
+      {
+         //////////////////////////////////////////////////////////////////////
+         // skip webhooks still being sent to from an earlier dispatch - the //
+         // events they have due will be found again by a later one.         //
+         //////////////////////////////////////////////////////////////////////
+         if(!inFlightWebhookIds.add(webhookId))
+         {
+            continue;
+         }
+
+         try
+         {
+            dispatchExecutor.submit(() ->
+            {
+               try
+               {
+                  QContext.init(qInstance, qSession);
+                  runSendProcess(webhookId);
+               }
+               catch(Exception e)
+               {
+                  LOG.warn("Error sending events for webhook", e, logPair("webhookId", webhookId));
+               }
+               finally
+               {
+                  QContext.clear();
+                  inFlightWebhookIds.remove(webhookId);
+               }
+            });
+            noDispatched++;
+         }
+         catch(RejectedExecutionException e)
+         {
+            ///////////////////////////////////////////////////////////////
+            // the pool's queue is full - leave this webhook for a later //
+            // dispatch (which will find its events still due).          //
+            ///////////////////////////////////////////////////////////////
+            inFlightWebhookIds.remove(webhookId);
+            noSkippedQueueFull++;
+         }
+      }
+
+      if(noSkippedQueueFull > 0)
+      {
+         LOG.info("Webhook dispatch queue is full - leaving webhooks for a later dispatch", logPair("noWebhooksSkipped", noSkippedQueueFull), logPair("queueDepth", dispatchExecutor.getQueue().size()));
+      }
+
+      LOG.debug("Dispatched webhook events", logPair("noWebhooksDue", webhookIds.size()), logPair("noWebhooksDispatched", noDispatched), logPair("queueDepth", dispatchExecutor.getQueue().size()));
+      runBackendStepOutput.addValue("noWebhooksDispatched", noDispatched);
+   }
+
+
+
+   /***************************************************************************
+    ** get the node-wide pool that sends run on - created on first use, with as
+    ** many threads (and as much queue) as the qbit config's
+    ** dispatcherMaxConcurrentWebhooks.  submits past that are rejected.
+    ***************************************************************************/
+   private static synchronized ThreadPoolExecutor getExecutor()
+   {
+      if(executor == null)
+      {
+         int maxConcurrentWebhooks = WebhooksQBitConfig.getConfigValue(config -> config.getDispatcherMaxConcurrentWebhooks());
+         executor = new ThreadPoolExecutor(maxConcurrentWebhooks, maxConcurrentWebhooks, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxConcurrentWebhooks), runnable ->
+         {
+            Thread thread = new Thread(runnable, "webhook-dispatcher");
+            thread.setDaemon(true);
+            return (thread);
+         });
+      }
+
+      return (executor);
+   }
+
+
+
+   /***************************************************************************
+    ** the first time this runs on a node, re-sync the per-webhook scheduled
+    ** jobs to the current dispatch mode.
+    ***************************************************************************/
+   private static void syncJobsToDispatchModeIfNeeded() throws QException
+   {
+      synchronized(DispatchWebhookEventsStep.class)
+      {
+         if(areJobsSyncedToDispatch)
+         {
+            return;
+         }
+
+         SyncWebhookScheduledJobProcess.syncScheduledJobsToDispatchMode();
+         areJobsSyncedToDispatch = true;
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** stop the dispatch pool (if it's running), and forget which webhooks are in
+    ** flight, and that jobs were synced.
+    ***************************************************************************/
+   public static synchronized void clearAll()
+   {
+      if(executor != null)
+      {
+         executor.shutdownNow();
+         executor = null;
+      }
+
+      inFlightWebhookIds.clear();
+      areJobsSyncedToDispatch = false;
+   }
+
+
+
+   /***************************************************************************
+    ** find ids of webhooks with due events (one aggregate query over events,
+    ** grouped by webhook), then keep the ones that should be sent to.
+    ***************************************************************************/
+   List<Integer> getWebhookIdsToDispatch() throws QException
+   {
+      GroupBy   groupBy = new GroupBy(QFieldType.INTEGER, "webhookId");
+      Aggregate count   = new Aggregate("id", AggregateOperator.COUNT);
+
+      AggregateInput aggregateInput = new AggregateInput();
+      aggregateInput.setTableName(WebhookEvent.TABLE_NAME);
+      aggregateInput.setFilter(new QQueryFilter()
+         .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.IS_NOT_BLANK))
+         .withSubFilter(SendWebhookEventExtractStep.getDueEventsFilter()));
+      aggregateInput.withAggregate(count);
+      aggregateInput.withGroupBy(groupBy);
+      AggregateOutput aggregateOutput = new AggregateAction().execute(aggregateInput);
+
+      List<Integer> webhookIdsWithDueEvents = new ArrayList<>();
+      for(AggregateResult result : aggregateOutput.getResults())
+      {
+         webhookIdsWithDueEvents.add(ValueUtils.getValueAsInteger(result.getGroupByValue(groupBy)));
+      }
+
+      if(webhookIdsWithDueEvents.isEmpty())
+      {
+         return (webhookIdsWithDueEvents);
+      }
+
+      List<Webhook> webhooks = QueryAction.execute(Webhook.TABLE_NAME, Webhook.class, new QQueryFilter()
+         .withCriteria(new QFilterCriteria("id", QCriteriaOperator.IN, webhookIdsWithDueEvents))
+         .withCriteria(new QFilterCriteria("activeStatusId", QCriteriaOperator.EQUALS, WebhookActiveStatus.ACTIVE.getId()))
+         .withSubFilter(new QQueryFilter().withBooleanOperator(QQueryFilter.BooleanOperator.OR)
+            .withCriteria(new QFilterCriteria("healthStatusId", QCriteriaOperator.IS_BLANK))
+            .withCriteria(new QFilterCriteria("healthStatusId", QCriteriaOperator.NOT_EQUALS, WebhookHealthStatus.UNHEALTHY.getId())))
+         .withOrderBy(new QFilterOrderBy("id")));
+
+      return (webhooks.stream()
+         .map(w -> w.getId())
+         .filter(id -> WebhookRateLimitManager.getResumeAt(id) == null)
+         .toList());
+   }
+
+
+
+   /***************************************************************************
+    ** run the SendWebhookEvent process for one webhook - as its scheduled job
+    ** would in per-webhook-job mode.  (an instance method, so tests can
+    ** override it.)
+    ***************************************************************************/
+   protected void runSendProcess(Integer webhookId) throws QException
+   {
+      SendWebhookEventProcessMetaDataProducer.runForWebhook(webhookId);
+   }
+
+}
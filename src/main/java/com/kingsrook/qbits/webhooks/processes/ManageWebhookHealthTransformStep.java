@@ -25,14 +25,14 @@ package com.kingsrook.qbits.webhooks.processes;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
-import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.AggregateAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
 import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLine;
@@ -40,14 +40,20 @@ import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLine
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
 import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.Aggregate;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.AggregateResult;
+import com.kingsrook.qqq.backend.core.model.actions.tables.aggregate.GroupBy;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
-import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
-import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldType;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.AbstractTransformStep;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+import com.kingsrook.qqq.backend.core.utils.ValueUtils;
 
 
 /*******************************************************************************
@@ -96,12 +102,15 @@ public class ManageWebhookHealthTransformStep extends AbstractTransformStep
 
 
    /*******************************************************************************
-    **
+    ** decide, for the whole page at once, which unhealthy webhooks have gone
+    ** long enough without a send attempt (per their lastAttemptTimestamp, else
+    ** healthStatusChangedTimestamp) to be put on probation - with at most one
+    ** aggregate query, for any webhooks that have neither.
     *******************************************************************************/
    @Override
    public void runOnePage(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
    {
-      Set<Webhook> unhealthy = new HashSet<>();
+      List<Webhook> unhealthy = new ArrayList<>();
       for(Webhook webhook : runBackendStepInput.getRecordsAsEntities(Webhook.class))
       {
          if(WebhookHealthStatus.UNHEALTHY.getId().equals(webhook.getHealthStatusId()))
@@ -120,27 +129,38 @@ public class ManageWebhookHealthTransformStep extends AbstractTransformStep
       }
 
       Integer timeoutMinutes = WebhooksQBitConfig.getConfigValue(config -> config.getUnhealthyToProbationTimeoutMinutes());
-      Instant limitTime = Instant.now().minus(timeoutMinutes, ChronoUnit.MINUTES);
+      Instant now            = Instant.now();
+      Instant limitTime      = now.minus(timeoutMinutes, ChronoUnit.MINUTES);
+
+      Map<Integer, Instant> lastSendLogTimestamps = getLastSendLogTimestamps(unhealthy.stream()
+         .filter(w -> w.getLastAttemptTimestamp() == null && w.getHealthStatusChangedTimestamp() == null)
+         .map(w -> w.getId())
+         .toList());
 
       for(Webhook webhook : unhealthy)
       {
-         List<WebhookEventSendLog> eventLogs = new QueryAction().execute(new QueryInput(WebhookEventSendLog.TABLE_NAME).withFilter(new QQueryFilter()
-            .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.EQUALS, webhook.getId()))
-            .withOrderBy(new QFilterOrderBy("id", false))
-            .withLimit(1))).getRecordEntities(WebhookEventSendLog.class);
-         Instant lastEventTimestamp = Instant.now();
-         if(!eventLogs.isEmpty() && eventLogs.get(0).getStartTimestamp() != null)
+         //////////////////////////////////////////////////////////////////////////
+         // with no attempts or status change on record, and no send logs, treat //
+         // the webhook as having just gone unhealthy (so it waits a full round) //
+         //////////////////////////////////////////////////////////////////////////
+         Instant lastActivityTimestamp = webhook.getLastAttemptTimestamp();
+         if(lastActivityTimestamp == null)
          {
-            lastEventTimestamp = eventLogs.get(0).getStartTimestamp();
+            lastActivityTimestamp = webhook.getHealthStatusChangedTimestamp();
+         }
+         if(lastActivityTimestamp == null)
+         {
+            lastActivityTimestamp = lastSendLogTimestamps.getOrDefault(webhook.getId(), now);
          }
 
-         if(lastEventTimestamp.isBefore(limitTime))
+         if(lastActivityTimestamp.isBefore(limitTime))
          {
             willPutOnProbationLine.incrementCountAndAddPrimaryKey(webhook.getId());
             runBackendStepOutput.addRecord(new QRecord()
                .withValue("id", webhook.getId())
                .withValue("name", webhook.getName()) // just for preview screen
-               .withValue("healthStatusId", WebhookHealthStatus.PROBATION.getId()));
+               .withValue("healthStatusId", WebhookHealthStatus.PROBATION.getId())
+               .withValue("healthStatusChangedTimestamp", now));
          }
          else
          {
@@ -149,4 +169,42 @@ public class ManageWebhookHealthTransformStep extends AbstractTransformStep
       }
    }
 
+
+
+   /***************************************************************************
+    ** for webhooks that don't have a lastAttemptTimestamp or
+    ** healthStatusChangedTimestamp (e.g., ones that went unhealthy before those
+    ** fields were kept), get the start of their latest send log - in one query,
+    ** grouped by webhook.  webhooks without any send logs aren't in the map.
+    ***************************************************************************/
+   private Map<Integer, Instant> getLastSendLogTimestamps(List<Integer> webhookIds) throws QException
+   {
+      Map<Integer, Instant> rs = new HashMap<>();
+      if(webhookIds.isEmpty())
+      {
+         return (rs);
+      }
+
+      GroupBy   groupBy           = new GroupBy(QFieldType.INTEGER, "webhookId");
+      Aggregate maxStartTimestamp = new Aggregate("startTimestamp", AggregateOperator.MAX);
+
+      AggregateInput aggregateInput = new AggregateInput();
+      aggregateInput.setTableName(WebhookEventSendLog.TABLE_NAME);
+      aggregateInput.setFilter(new QQueryFilter(new QFilterCriteria("webhookId", QCriteriaOperator.IN, webhookIds)));
+      aggregateInput.withAggregate(maxStartTimestamp);
+      aggregateInput.withGroupBy(groupBy);
+      AggregateOutput aggregateOutput = new AggregateAction().execute(aggregateInput);
+
+      for(AggregateResult result : aggregateOutput.getResults())
+      {
+         Instant timestamp = ValueUtils.getValueAsInstant(result.getAggregateValue(maxStartTimestamp));
+         if(timestamp != null)
+         {
+            rs.put(ValueUtils.getValueAsInteger(result.getGroupByValue(groupBy)), timestamp);
+         }
+      }
+
+      return (rs);
+   }
+
 }
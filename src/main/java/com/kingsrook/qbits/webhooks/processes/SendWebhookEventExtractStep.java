@@ -23,6 +23,7 @@ package com.kingsrook.qbits.webhooks.processes;
 
 
 import java.time.Instant;
+import com.kingsrook.qbits.webhooks.actions.WebhookRateLimitManager;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
@@ -102,6 +103,15 @@ public class SendWebhookEventExtractStep extends ExtractViaQueryStep
          return falseFilter;
       }
 
+      //////////////////////////////////////////////////////////////////////////////
+      // don't return records for webhooks that are deferred due to rate limiting //
+      //////////////////////////////////////////////////////////////////////////////
+      if(WebhookRateLimitManager.getResumeAt(webhookId) != null)
+      {
+         LOG.debug("Running for rate-limited webhook - returning query to find no rows.", logPair("webhookId", webhookId));
+         return falseFilter;
+      }
+
       ///////////////////////////////////////////////////////////////////////////////////
       // webhook_id = ?                                                                //
       // AND                                                                           //
@@ -113,8 +123,21 @@ public class SendWebhookEventExtractStep extends ExtractViaQueryStep
       QQueryFilter filter = new QQueryFilter()
          .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.EQUALS, webhookId));
 
+      filter.addSubFilter(getDueEventsFilter());
+
+      filter.addOrderBy(new QFilterOrderBy("id"));
+      return (filter);
+   }
+
+
+
+   /***************************************************************************
+    ** filter for events that are due to be sent (for any webhook) - i.e., new,
+    ** or sending/awaiting retry with a next attempt timestamp that has passed.
+    ***************************************************************************/
+   public static QQueryFilter getDueEventsFilter()
+   {
       QQueryFilter orStatusFilters = new QQueryFilter().withBooleanOperator(QQueryFilter.BooleanOperator.OR);
-      filter.addSubFilter(orStatusFilters);
 
       orStatusFilters.addSubFilter(new QQueryFilter()
          .withCriteria(new QFilterCriteria("eventStatusId", QCriteriaOperator.EQUALS, WebhookEventStatus.NEW.getId())));
@@ -124,7 +147,6 @@ public class SendWebhookEventExtractStep extends ExtractViaQueryStep
          .withCriteria(new QFilterCriteria("nextAttemptTimestamp", QCriteriaOperator.IS_NOT_BLANK))
          .withCriteria(new QFilterCriteria("nextAttemptTimestamp", QCriteriaOperator.LESS_THAN, Instant.now())));
 
-      filter.addOrderBy(new QFilterOrderBy("id"));
-      return (filter);
+      return (orStatusFilters);
    }
 }
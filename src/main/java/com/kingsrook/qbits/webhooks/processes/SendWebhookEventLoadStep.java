@@ -22,18 +22,49 @@
 package com.kingsrook.qbits.webhooks.processes;
 
 
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.actions.AsyncWebhookEventSender;
+import com.kingsrook.qbits.webhooks.actions.WebhookEventOutcomeBuffer;
 import com.kingsrook.qbits.webhooks.actions.WebhookEventSender;
 import com.kingsrook.qbits.webhooks.actions.WebhookHealthManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookHealthWindow;
+import com.kingsrook.qbits.webhooks.actions.WebhookLockManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookRateLimitManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookRetryTimingWheel;
+import com.kingsrook.qbits.webhooks.actions.WebhookSendOutcome;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookEvent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookHttpVersion;
+import com.kingsrook.qbits.webhooks.model.WebhookLock;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
 import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLine;
@@ -45,10 +76,17 @@ import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperat
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.AbstractLoadStep;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.ProcessSummaryProviderInterface;
+import com.kingsrook.qqq.backend.core.scheduler.processes.AbstractRecordSyncToScheduledJobProcess;
 import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
 import com.kingsrook.qqq.backend.core.utils.ListingHash;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import org.apache.commons.lang3.BooleanUtils;
 import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 import static com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator.IN;
 
@@ -60,12 +98,30 @@ public class SendWebhookEventLoadStep extends AbstractLoadStep implements Proces
 {
    private static final QLogger LOG = QLogger.getLogger(SendWebhookEventLoadStep.class);
 
-   ///////////////////////
-   // most recent first //
-   ///////////////////////
-   private boolean                    doHealthChecks = false;
-   private Integer                    repeatedFailsToGoUnhealthy;
-   private Stack<WebhookEventSendLog> recentSendLogs;
+   private static final int CLAIM_LOCK_TRIES              = 20;
+   private static final int CLAIM_LOCK_RETRY_MILLIS       = 50;
+   private static final int CLAIM_LOCK_EXPIRATION_SECONDS = 60;
+
+   private static ExecutorService sendExecutor = null;
+
+   private boolean doHealthChecks       = false;
+   private int     healthWindowCapacity = 0;
+
+   /////////////////////////////////////////////////////////////////////////
+   // state for each webhook that events are being sent for, by id - kept //
+   // across pages.  (summary lines are guarded by synchronized(this))    //
+   /////////////////////////////////////////////////////////////////////////
+   private final Map<Integer, WebhookSendState> webhookSendStates = new HashMap<>();
+
+   ///////////////////////////////////////////////////////////////////////
+   // identifies this run of the step, as the owner of events it claims //
+   ///////////////////////////////////////////////////////////////////////
+   private final String leaseOwner = UUID.randomUUID().toString();
+
+   ///////////////////////////////////////////////////////////////////////
+   // send logs & event status updates for the page, written in batches //
+   ///////////////////////////////////////////////////////////////////////
+   private WebhookEventOutcomeBuffer outcomeBuffer;
 
    private ProcessSummaryLine okLine = new ProcessSummaryLine(Status.OK)
       .withMessageSuffix(" delivered")
@@ -79,6 +135,16 @@ public class SendWebhookEventLoadStep extends AbstractLoadStep implements Proces
       .withSingularPastMessage("was not sent because its")
       .withPluralPastMessage("were not sent because their");
 
+   private ProcessSummaryLine claimedElsewhereLine = new ProcessSummaryLine(Status.WARNING)
+      .withMessageSuffix(" already being sent by another process.")
+      .withSingularPastMessage("was not sent because it was")
+      .withPluralPastMessage("were not sent because they were");
+
+   private ProcessSummaryLine rateLimitedLine = new ProcessSummaryLine(Status.WARNING)
+      .withMessageSuffix(" associated webhook is rate-limiting requests (will be retried later).")
+      .withSingularPastMessage("was not sent because its")
+      .withPluralPastMessage("were not sent because their");
+
 
 
    /***************************************************************************
@@ -105,6 +171,8 @@ public class SendWebhookEventLoadStep extends AbstractLoadStep implements Proces
       }
 
       becameUnhealthyLine.addSelfToListIfAnyCount(rs);
+      rateLimitedLine.addSelfToListIfAnyCount(rs);
+      claimedElsewhereLine.addSelfToListIfAnyCount(rs);
       return (rs);
    }
 
@@ -116,12 +184,24 @@ public class SendWebhookEventLoadStep extends AbstractLoadStep implements Proces
    @Override
    public void preRun(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
    {
-      repeatedFailsToGoUnhealthy = WebhooksQBitConfig.getConfigValue(config -> config.getRepeatedFailsToGoUnhealthy());
+      ////////////////////////////////////////////////////////////////////////////
+      // health is tracked if any way of going unhealthy is on - with a window  //
+      // big enough for the rate & latency checks, if any of those are enabled. //
+      ////////////////////////////////////////////////////////////////////////////
+      Integer repeatedFailsToGoUnhealthy = WebhooksQBitConfig.getConfigValue(config -> config.getRepeatedFailsToGoUnhealthy());
+      boolean useWindowThresholds        = WebhooksQBitConfig.getConfigValue(config -> config.getUnhealthyFailureRatePercent() != null || config.getUnhealthyTimeoutRatePercent() != null || config.getUnhealthyP95LatencyMillis() != null);
+      doHealthChecks = repeatedFailsToGoUnhealthy != null || useWindowThresholds;
+      healthWindowCapacity = useWindowThresholds ? WebhooksQBitConfig.getConfigValue(config -> config.getHealthWindowSize()) : 0;
       if(repeatedFailsToGoUnhealthy != null)
       {
-         recentSendLogs = newSendLogStack(repeatedFailsToGoUnhealthy);
-         doHealthChecks = true;
+         healthWindowCapacity = Math.max(healthWindowCapacity, repeatedFailsToGoUnhealthy);
       }
+
+      //////////////////////////////////////////////////////////////////////
+      // the first run of the process on this node starts the retry wheel //
+      // (if so configured) - a no-op once it's running.                  //
+      //////////////////////////////////////////////////////////////////////
+      WebhookRetryTimingWheel.startIfEnabled();
    }
 
 
@@ -137,124 +217,927 @@ public class SendWebhookEventLoadStep extends AbstractLoadStep implements Proces
          return;
       }
 
-      Webhook webhook = ((SendWebhookEventTransformStep) getTransformStep()).getWebhook();
-
-      ///////////////////////////////////////////////////////////////////////////////////////////
-      // look up the last several send logs for this webhook, to seed the recentSuccesses list //
-      ///////////////////////////////////////////////////////////////////////////////////////////
-      if(doHealthChecks)
+      //////////////////////////////////////////////////////////////////
+      // claim the page's events (skipping any another process holds) //
+      //////////////////////////////////////////////////////////////////
+      List<WebhookEvent> webhookEvents = claimEvents(runBackendStepInput.getRecordsAsEntities(WebhookEvent.class));
+      if(webhookEvents.isEmpty())
       {
-         List<WebhookEventSendLog> recentSendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, WebhookEventSendLog.class, new QQueryFilter()
-            .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.EQUALS, webhook.getId()))
-            .withOrderBy(new QFilterOrderBy("id", false))
-            .withLimit(repeatedFailsToGoUnhealthy));
-         Collections.reverse(recentSendLogs);
-         this.recentSendLogs.addAll(recentSendLogs);
+         return;
       }
 
-      ///////////////////////////////////////////////////
-      // look up send logs for all events in this page //
-      ///////////////////////////////////////////////////
-      List<WebhookEvent> webhookEvents = runBackendStepInput.getRecordsAsEntities(WebhookEvent.class);
-      List<WebhookEventSendLog> eventLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, WebhookEventSendLog.class, new QQueryFilter(
-         new QFilterCriteria("webhookEventId", IN, webhookEvents.stream().map(e -> e.getId()).toList())));
+      //////////////////////////////////////////////////////////////////////////
+      // events keep their own attempt count & last attempt timestamp - so we //
+      // only need to look up send logs for events from before they did.      //
+      //////////////////////////////////////////////////////////////////////////
+      List<Integer>             eventIdsWithoutCounts = webhookEvents.stream().filter(e -> e.getAttemptCount() == null).map(e -> e.getId()).toList();
+      List<WebhookEventSendLog> eventLogs             = eventIdsWithoutCounts.isEmpty() ? Collections.emptyList()
+         : QueryAction.execute(WebhookEventSendLog.TABLE_NAME, WebhookEventSendLog.class, new QQueryFilter(new QFilterCriteria("webhookEventId", IN, eventIdsWithoutCounts)));
       ListingHash<Integer, WebhookEventSendLog> eventLogsByEventId = CollectionUtils.listToListingHash(eventLogs, l -> l.getWebhookEventId());
 
-      boolean becameUnhealthy = false;
-      for(WebhookEvent webhookEvent : webhookEvents)
+      this.outcomeBuffer = new WebhookEventOutcomeBuffer(
+         WebhooksQBitConfig.getConfigValue(config -> config.getOutcomeFlushMaxRecords()),
+         WebhooksQBitConfig.getConfigValue(config -> config.getOutcomeFlushMaxMillis()));
+
+      ////////////////////////////////////////////////////////////////////////////
+      // group the page's events by webhook, and get the state for each webhook //
+      ////////////////////////////////////////////////////////////////////////////
+      ListingHash<Integer, WebhookEvent>        eventsByWebhookId = CollectionUtils.listToListingHash(webhookEvents, e -> e.getWebhookId());
+      Map<WebhookSendState, List<WebhookEvent>> eventsByState     = new LinkedHashMap<>();
+      Map<WebhookSendState, List<WebhookEvent>> unsentByState     = new LinkedHashMap<>();
+      for(Map.Entry<Integer, List<WebhookEvent>> entry : eventsByWebhookId.entrySet())
       {
-         if(becameUnhealthy)
+         WebhookSendState webhookSendState = getWebhookSendState(entry.getKey());
+         webhookSendState.setRateLimited(false);
+         eventsByState.put(webhookSendState, entry.getValue());
+      }
+
+      ///////////////////////////////////////////////////////////////////////////
+      // send each webhook's events - if the page has events for more than one //
+      // webhook, then the webhooks are sent to in parallel, over the shared   //
+      // send pool (each of which may in turn fan out its webhook's sends).    //
+      // a failure for one webhook is kept until after the outcomes (including //
+      // the other webhooks', which were already posted) are written.          //
+      ///////////////////////////////////////////////////////////////////////////
+      QException sendException = null;
+      if(eventsByState.size() == 1)
+      {
+         for(Map.Entry<WebhookSendState, List<WebhookEvent>> entry : eventsByState.entrySet())
          {
-            becameUnhealthyLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
-            continue;
+            try
+            {
+               unsentByState.put(entry.getKey(), sendEventsForWebhook(entry.getKey(), entry.getValue(), eventLogsByEventId));
+            }
+            catch(QException e)
+            {
+               sendException = e;
+            }
          }
+      }
+      else
+      {
+         QInstance       qInstance = QContext.getQInstance();
+         QSession        qSession  = QContext.getQSession();
+         ExecutorService executor  = getSendExecutor();
 
          try
          {
-            boolean lastSuccessful = newWebhookEventSender().handleEvent(webhookEvent, webhook, eventLogsByEventId.getOrDefault(webhookEvent.getId(), Collections.emptyList()));
+            Map<WebhookSendState, Future<List<WebhookEvent>>> futures = new LinkedHashMap<>();
+            for(Map.Entry<WebhookSendState, List<WebhookEvent>> entry : eventsByState.entrySet())
+            {
+               futures.put(entry.getKey(), executor.submit(() ->
+               {
+                  try
+                  {
+                     QContext.init(qInstance, qSession);
+                     return (sendEventsForWebhook(entry.getKey(), entry.getValue(), eventLogsByEventId));
+                  }
+                  finally
+                  {
+                     QContext.clear();
+                  }
+               }));
+            }
 
-            if(lastSuccessful)
+            for(Map.Entry<WebhookSendState, Future<List<WebhookEvent>>> entry : futures.entrySet())
             {
-               okLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
+               try
+               {
+                  unsentByState.put(entry.getKey(), entry.getValue().get());
+               }
+               catch(ExecutionException e)
+               {
+                  LOG.warn("Error sending webhook events", e.getCause(), logPair("webhookId", entry.getKey().getWebhook().getId()));
+                  sendException = sendException == null ? new QException("Error sending webhook events", e.getCause()) : sendException;
+               }
             }
-            else
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            sendException = new QException("Interrupted while sending webhook events", e);
+         }
+      }
+
+      /////////////////////////////////////////////////////////////////////////
+      // write any outcomes still buffered.  if this is lost (e.g., the node //
+      // dies first), the events are still leased as sending, so they'll be  //
+      // sent again once their leases expire.                                //
+      /////////////////////////////////////////////////////////////////////////
+      outcomeBuffer.flush();
+      storeWebhookSendFields(eventsByState.keySet());
+
+      for(Map.Entry<WebhookSendState, List<WebhookEvent>> entry : unsentByState.entrySet())
+      {
+         WebhookSendState   webhookSendState = entry.getKey();
+         List<WebhookEvent> unsentEvents     = entry.getValue();
+         if(webhookSendState.isRateLimited())
+         {
+            rescheduleRateLimitedEvents(webhookSendState.getWebhook(), unsentEvents);
+         }
+         else
+         {
+            for(WebhookEvent webhookEvent : unsentEvents)
             {
-               failLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
+               becameUnhealthyLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
             }
+            releaseClaims(unsentEvents);
+         }
+      }
 
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            // if we're to update health, then add this last-successful boolean to the stack, and call the health manager //
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            if(doHealthChecks)
+      if(sendException != null)
+      {
+         throw (sendException);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get the state for a webhook that events are being sent for - making it
+    ** the first time the webhook is seen in this run (seeding its health window
+    ** from the webhook's stored consecutiveFailCount, if doing health checks).
+    ** a webhook that has never had that count stored (e.g., one that predates
+    ** it) has it computed once from its most recent send logs instead.
+    ***************************************************************************/
+   private WebhookSendState getWebhookSendState(Integer webhookId) throws QException
+   {
+      WebhookSendState webhookSendState = webhookSendStates.get(webhookId);
+      if(webhookSendState == null)
+      {
+         Webhook webhook = ((SendWebhookEventTransformStep) getTransformStep()).getWebhook(webhookId);
+         if(webhook == null)
+         {
+            throw (new QException("Webhook [" + webhookId + "] was not loaded by the transform step"));
+         }
+
+         WebhookHealthWindow healthWindow = null;
+         if(doHealthChecks)
+         {
+            Integer consecutiveFailCount = webhook.getConsecutiveFailCount();
+            if(consecutiveFailCount == null)
+            {
+               consecutiveFailCount = countRecentConsecutiveFails(webhookId);
+            }
+            healthWindow = WebhookHealthWindow.seeded(healthWindowCapacity, consecutiveFailCount);
+         }
+
+         webhookSendState = new WebhookSendState(webhook, healthWindow);
+         webhookSendStates.put(webhookId, webhookSendState);
+      }
+
+      return (webhookSendState);
+   }
+
+
+
+   /***************************************************************************
+    ** send a page's events for one webhook - returning the events that weren't
+    ** sent (because the webhook became unhealthy or started rate-limiting us).
+    ***************************************************************************/
+   private List<WebhookEvent> sendEventsForWebhook(WebhookSendState webhookSendState, List<WebhookEvent> webhookEvents, ListingHash<Integer, WebhookEventSendLog> eventLogsByEventId) throws QException
+   {
+      Webhook webhook = webhookSendState.getWebhook();
+
+      /////////////////////////////////////////////////////////////////////////////
+      // if the webhook takes batches, split the events up into batches (each of //
+      // which is sent as one post) - else, each event is sent on its own.       //
+      /////////////////////////////////////////////////////////////////////////////
+      List<List<WebhookEvent>> sendUnits;
+      if(webhook.getMaxEventsPerBatch() != null && webhook.getMaxEventsPerBatch() > 1)
+      {
+         sendUnits = newWebhookEventSender(webhook).partitionIntoBatches(webhookEvents, webhook);
+      }
+      else
+      {
+         sendUnits = webhookEvents.stream().map(e -> List.of(e)).toList();
+      }
+
+      ////////////////////////////////////////////////////////////////////////////////
+      // send events - either one at a time in this thread, or, if the webhook is   //
+      // configured to allow more than 1 concurrent send, fanned out over the       //
+      // shared send pool, with a semaphore (the only per-webhook cap) limiting how //
+      // many are in-flight.  either way, once the webhook becomes unhealthy or     //
+      // starts rate-limiting us, we stop starting new sends.                       //
+      ////////////////////////////////////////////////////////////////////////////////
+      int                maxConcurrentSends = getMaxConcurrentSends(webhook);
+      List<WebhookEvent> unsentEvents       = new ArrayList<>();
+      if(maxConcurrentSends <= 1)
+      {
+         for(List<WebhookEvent> sendUnit : sendUnits)
+         {
+            if(webhookSendState.shouldStopSending())
             {
-               recentSendLogs.push(new WebhookEventSendLog()
-                  .withSuccessful(lastSuccessful));
-               webhook = new WebhookHealthManager().updateWebhookHealth(recentSendLogs, webhook);
+               unsentEvents.addAll(sendUnit);
+               continue;
             }
 
-            if(WebhookHealthStatus.UNHEALTHY.getId().equals(webhook.getHealthStatusId()))
+            sendEvents(webhookSendState, sendUnit, eventLogsByEventId);
+         }
+      }
+      else
+      {
+         QInstance       qInstance = QContext.getQInstance();
+         QSession        qSession  = QContext.getQSession();
+         Semaphore       inFlight  = new Semaphore(maxConcurrentSends);
+         ExecutorService executor  = getSendExecutor();
+
+         try
+         {
+            for(List<WebhookEvent> sendUnit : sendUnits)
             {
-               LOG.info("Webhook is now unhealthy - not attempting any more sends.", logPair("id", webhook.getId()));
-               becameUnhealthy = true;
+               inFlight.acquire();
+               if(webhookSendState.shouldStopSending())
+               {
+                  inFlight.release();
+                  unsentEvents.addAll(sendUnit);
+                  continue;
+               }
+
+               //////////////////////////////////////////////////////////////////////
+               // with an async sender, single events don't need a thread while in //
+               // flight - the semaphore alone caps how many are outstanding.      //
+               //////////////////////////////////////////////////////////////////////
+               WebhookEventSender webhookEventSender = newBufferedWebhookEventSender(webhook);
+               if(webhookEventSender instanceof AsyncWebhookEventSender asyncSender && sendUnit.size() == 1)
+               {
+                  WebhookEvent webhookEvent = sendUnit.get(0);
+
+                  ///////////////////////////////////////////////////////////////////////
+                  // a throw from starting the send must still release the permit (via //
+                  // the completion handler) - else the wait for all permits hangs.    //
+                  ///////////////////////////////////////////////////////////////////////
+                  CompletableFuture<WebhookSendOutcome> future;
+                  try
+                  {
+                     future = asyncSender.sendEventAsync(webhookEvent, webhookSendState.getWebhook(), eventLogsByEventId.getOrDefault(webhookEvent.getId(), Collections.emptyList()));
+                  }
+                  catch(RuntimeException e)
+                  {
+                     future = CompletableFuture.failedFuture(e);
+                  }
+
+                  future.whenComplete((outcome, throwable) ->
+                  {
+                     //////////////////////////////////////////////////////////////////////
+                     // this usually runs on a completion thread, which has no context - //
+                     // but recording the outcome (e.g., health updates) needs one.  if  //
+                     // the future was already done, it runs here, with our context.     //
+                     //////////////////////////////////////////////////////////////////////
+                     boolean initContext = QContext.getQInstance() == null;
+                     try
+                     {
+                        if(initContext)
+                        {
+                           QContext.init(qInstance, qSession);
+                        }
+
+                        if(throwable != null)
+                        {
+                           throw (throwable);
+                        }
+                        recordOutcome(webhookSendState, List.of(webhookEvent.getId()), outcome, asyncSender);
+                     }
+                     catch(Throwable t)
+                     {
+                        LOG.warn("Error handling webhook event", t, logPair("id", webhookEvent.getId()));
+                     }
+                     finally
+                     {
+                        if(initContext)
+                        {
+                           QContext.clear();
+                        }
+                        inFlight.release();
+                     }
+                  });
+                  continue;
+               }
+
+               executor.submit(() ->
+               {
+                  try
+                  {
+                     QContext.init(qInstance, qSession);
+                     sendEvents(webhookSendState, sendUnit, eventLogsByEventId);
+                  }
+                  finally
+                  {
+                     QContext.clear();
+                     inFlight.release();
+                  }
+               });
             }
+
+            ////////////////////////////////////////////////////////////////
+            // getting all the permits means all in-flight sends are done //
+            ////////////////////////////////////////////////////////////////
+            inFlight.acquire(maxConcurrentSends);
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw (new QException("Interrupted while sending webhook events", e));
+         }
+      }
+
+      return (unsentEvents);
+   }
+
+
+
+   /***************************************************************************
+    ** claim a page of events for this run to send:  with one update, mark them
+    ** all as sending, with this run as their lease owner, and a lease expiry
+    ** (as their next attempt timestamp) - so that the sender needn't mark each
+    ** one as sending, and so that if this node dies, the extract step's query
+    ** picks the events up again once their leases expire.
+    **
+    ** Events that are currently leased by someone else are skipped.  The query
+    ** for claimable events and the update that claims them are done while
+    ** holding the cluster-wide claimEvents lock (see WebhookLockManager) - so
+    ** no other node can claim the same events in between, and the events that
+    ** were updated are exactly the ones this run holds.  If the lock can't be
+    ** taken in time, no events are claimed (they're left for a later run).
+    ***************************************************************************/
+   private List<WebhookEvent> claimEvents(List<WebhookEvent> webhookEvents) throws QException
+   {
+      Set<Serializable> claimedIds = Collections.emptySet();
+      if(takeClaimLock())
+      {
+         try
+         {
+            claimedIds = new HashSet<>(claimUnleasedEvents(webhookEvents));
+         }
+         finally
+         {
+            WebhookLockManager.unlock(WebhookLock.CLAIM_EVENTS, leaseOwner);
+         }
+      }
+      else
+      {
+         LOG.info("Could not take the lock to claim webhook events", logPair("pageSize", webhookEvents.size()));
+      }
+
+      List<WebhookEvent> claimedEvents = new ArrayList<>();
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         if(claimedIds.contains(webhookEvent.getId()))
+         {
+            claimedEvents.add(webhookEvent.withLeaseOwner(leaseOwner));
+         }
+         else
+         {
+            claimedElsewhereLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
+         }
+      }
+
+      if(claimedEvents.size() < webhookEvents.size())
+      {
+         LOG.info("Some webhook events were already claimed by another process", logPair("pageSize", webhookEvents.size()), logPair("claimed", claimedEvents.size()));
+      }
+
+      return (claimedEvents);
+   }
+
+
+
+   /***************************************************************************
+    ** find the events in the page that are still due (i.e., not finished or
+    ** rescheduled since the page was extracted) and aren't under someone else's
+    ** lease, and claim them - returning the ids that were claimed.  Must only be
+    ** called while holding the claimEvents lock.
+    ***************************************************************************/
+   private List<Serializable> claimUnleasedEvents(List<WebhookEvent> webhookEvents) throws QException
+   {
+      List<Integer> eventIds = webhookEvents.stream().map(e -> e.getId()).toList();
+      Instant       now      = Instant.now();
+
+      //////////////////////////////////////////////////////////////////////////
+      // id in (page) AND (due, per the extract step) AND (not leased, or the //
+      // lease has expired) - so events that another run has since delivered, //
+      // failed, or rescheduled (or still holds) aren't claimed & sent again. //
+      //////////////////////////////////////////////////////////////////////////
+      QQueryFilter claimableFilter = new QQueryFilter()
+         .withCriteria(new QFilterCriteria("id", IN, eventIds))
+         .withSubFilter(SendWebhookEventExtractStep.getDueEventsFilter())
+         .withSubFilter(new QQueryFilter().withBooleanOperator(QQueryFilter.BooleanOperator.OR)
+            .withCriteria(new QFilterCriteria("leaseOwner", QCriteriaOperator.IS_BLANK))
+            .withCriteria(new QFilterCriteria("nextAttemptTimestamp", QCriteriaOperator.LESS_THAN, now)));
+      List<Serializable> claimableIds = QueryAction.execute(WebhookEvent.TABLE_NAME, claimableFilter).stream().map(r -> r.getValue("id")).toList();
+
+      if(claimableIds.isEmpty())
+      {
+         return (claimableIds);
+      }
+
+      Integer minutesToConsiderLeakedSendAttempt = WebhooksQBitConfig.getConfigValue(config -> config.getMinutesToConsiderLeakedSendAttempt());
+      Instant leaseExpiresAt                     = now.plus(minutesToConsiderLeakedSendAttempt, ChronoUnit.MINUTES);
+
+      List<QRecord> records = new ArrayList<>();
+      for(Serializable id : claimableIds)
+      {
+         records.add(new QRecord()
+            .withValue("id", id)
+            .withValue("eventStatusId", WebhookEventStatus.SENDING.getId())
+            .withValue("nextAttemptTimestamp", leaseExpiresAt)
+            .withValue("leaseOwner", leaseOwner));
+      }
+
+      //////////////////////////////////////////////////////////////////
+      // only the records that updated without error count as claimed //
+      //////////////////////////////////////////////////////////////////
+      return (new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecords(records)).getRecords().stream()
+         .filter(r -> CollectionUtils.nullSafeIsEmpty(r.getErrors()))
+         .map(r -> r.getValue("id"))
+         .toList());
+   }
+
+
+
+   /***************************************************************************
+    ** take the claimEvents lock - trying a few times, since it's only ever held
+    ** for the length of one query and one update.
+    ***************************************************************************/
+   private boolean takeClaimLock() throws QException
+   {
+      for(int i = 0; i < CLAIM_LOCK_TRIES; i++)
+      {
+         if(WebhookLockManager.tryLock(WebhookLock.CLAIM_EVENTS, leaseOwner, CLAIM_LOCK_EXPIRATION_SECONDS))
+         {
+            return (true);
+         }
+
+         SleepUtils.sleep(CLAIM_LOCK_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+      }
+
+      return (false);
+   }
+
+
+
+   /***************************************************************************
+    ** release this run's claims on events that it didn't send - putting them
+    ** back to the status & next attempt time they had before being claimed.
+    ***************************************************************************/
+   private void releaseClaims(List<WebhookEvent> webhookEvents) throws QException
+   {
+      if(webhookEvents.isEmpty())
+      {
+         return;
+      }
+
+      List<QRecord> records = new ArrayList<>();
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         records.add(new QRecord()
+            .withValue("id", webhookEvent.getId())
+            .withValue("eventStatusId", webhookEvent.getEventStatusId())
+            .withValue("nextAttemptTimestamp", webhookEvent.getNextAttemptTimestamp())
+            .withValue("leaseOwner", null));
+      }
+      new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecords(records));
+   }
+
+
+
+   /***************************************************************************
+    ** send one event (or one batch of events) to a webhook, then record the
+    ** outcome in the summary lines and the webhook's health tracking.  may be
+    ** called from multiple threads at once.
+    ***************************************************************************/
+   private void sendEvents(WebhookSendState webhookSendState, List<WebhookEvent> webhookEvents, ListingHash<Integer, WebhookEventSendLog> eventLogsByEventId)
+   {
+      List<Integer> eventIds = webhookEvents.stream().map(e -> e.getId()).toList();
+      try
+      {
+         Webhook            webhook            = webhookSendState.getWebhook();
+         WebhookEventSender webhookEventSender = newBufferedWebhookEventSender(webhook);
+         WebhookSendOutcome outcome;
+         if(webhookEvents.size() == 1)
+         {
+            WebhookEvent webhookEvent = webhookEvents.get(0);
+            outcome = webhookEventSender.sendEvent(webhookEvent, webhook, eventLogsByEventId.getOrDefault(webhookEvent.getId(), Collections.emptyList()));
          }
-         catch(Exception e)
+         else
          {
-            LOG.warn("Error handing webhook event", e, logPair("id", webhookEvent.getId()));
+            outcome = webhookEventSender.sendEventBatch(webhookEvents, webhook, eventLogsByEventId);
          }
+
+         recordOutcome(webhookSendState, eventIds, outcome, webhookEventSender);
+      }
+      catch(Exception e)
+      {
+         LOG.warn("Error handling webhook event", e, logPair("ids", eventIds));
       }
    }
 
 
 
    /***************************************************************************
-    ** meant so class can be overridden to use a different sender
+    ** record the outcome of sending one event (or one batch of events) in the
+    ** summary lines (shared by all webhooks, so synchronized on this step) and
+    ** the webhook's health tracking (synchronized on the webhook's state) - along
+    ** with the latency of the sender's post, and whether it timed out.
+    ***************************************************************************/
+   private void recordOutcome(WebhookSendState webhookSendState, List<Integer> eventIds, WebhookSendOutcome outcome, WebhookEventSender webhookEventSender) throws QException
+   {
+      if(WebhookSendOutcome.RATE_LIMITED.equals(outcome))
+      {
+         ///////////////////////////////////////////////////////////////////////////////
+         // the webhook is rate-limiting us - so rather than sleeping or trying more, //
+         // reschedule the rest of this page for when the webhook may resume.         //
+         ///////////////////////////////////////////////////////////////////////////////
+         synchronized(this)
+         {
+            eventIds.forEach(id -> rateLimitedLine.incrementCountAndAddPrimaryKey(id));
+         }
+         webhookSendState.setRateLimited(true);
+         return;
+      }
+
+      boolean lastSuccessful = WebhookSendOutcome.DELIVERED.equals(outcome);
+      webhookSendState.setLastAttemptTimestamp(Instant.now());
+
+      synchronized(this)
+      {
+         if(lastSuccessful)
+         {
+            eventIds.forEach(id -> okLine.incrementCountAndAddPrimaryKey(id));
+         }
+         else
+         {
+            eventIds.forEach(id -> failLine.incrementCountAndAddPrimaryKey(id));
+         }
+      }
+
+      synchronized(webhookSendState)
+      {
+         //////////////////////////////////////////////////////////////////////////////////////////////////
+         // if we're to update health, then record this outcome in the health window (once per event, as //
+         // there's a send log stored per event), and call the health manager                            //
+         //////////////////////////////////////////////////////////////////////////////////////////////////
+         Webhook webhook = webhookSendState.getWebhook();
+         if(doHealthChecks)
+         {
+            boolean timedOut      = webhookEventSender.isLastPostTimedOut();
+            Long    latencyMillis = webhookEventSender.getLastPostLatencyMillis();
+            for(int i = 0; i < eventIds.size(); i++)
+            {
+               webhookSendState.getHealthWindow().record(lastSuccessful, timedOut, latencyMillis);
+            }
+            webhook = new WebhookHealthManager().updateWebhookHealth(webhookSendState.getHealthWindow(), webhook);
+            webhookSendState.setWebhook(webhook);
+         }
+
+         if(!webhookSendState.isBecameUnhealthy() && WebhookHealthStatus.UNHEALTHY.getId().equals(webhook.getHealthStatusId()))
+         {
+            LOG.info("Webhook is now unhealthy - not attempting any more sends.", logPair("id", webhook.getId()));
+            webhookSendState.setBecameUnhealthy(true);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** count how many of a webhook's most recent send logs (up to the size of
+    ** its health window) are failures in-a-row.
+    ***************************************************************************/
+   private int countRecentConsecutiveFails(Integer webhookId) throws QException
+   {
+      List<WebhookEventSendLog> lastSendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, WebhookEventSendLog.class, new QQueryFilter()
+         .withCriteria(new QFilterCriteria("webhookId", QCriteriaOperator.EQUALS, webhookId))
+         .withOrderBy(new QFilterOrderBy("id", false))
+         .withLimit(healthWindowCapacity));
+
+      int consecutiveFails = 0;
+      for(WebhookEventSendLog sendLog : lastSendLogs)
+      {
+         if(BooleanUtils.isTrue(sendLog.getSuccessful()))
+         {
+            break;
+         }
+         consecutiveFails++;
+      }
+      return (consecutiveFails);
+   }
+
+
+
+   /***************************************************************************
+    ** store, on each webhook sent to in this page, its lastAttemptTimestamp, and
+    ** (if its health window's count changed) its consecutiveFailCount - in one
+    ** update for the whole page.  this lets the next run seed its health window,
+    ** and the ManageWebhookHealth process find webhooks ready for probation,
+    ** without reading send logs.
+    ***************************************************************************/
+   private void storeWebhookSendFields(Collection<WebhookSendState> sendStates) throws QException
+   {
+      List<QRecord> records = new ArrayList<>();
+      for(WebhookSendState webhookSendState : sendStates)
+      {
+         synchronized(webhookSendState)
+         {
+            Webhook webhook = webhookSendState.getWebhook();
+            QRecord record  = new QRecord().withValue("id", webhook.getId());
+
+            Instant lastAttemptTimestamp = webhookSendState.getLastAttemptTimestamp();
+            if(lastAttemptTimestamp != null && !lastAttemptTimestamp.equals(webhook.getLastAttemptTimestamp()))
+            {
+               record.setValue("lastAttemptTimestamp", lastAttemptTimestamp);
+               webhook.setLastAttemptTimestamp(lastAttemptTimestamp);
+            }
+
+            if(doHealthChecks)
+            {
+               int consecutiveFailCount = webhookSendState.getHealthWindow().getConsecutiveFailCount();
+               if(!Objects.equals(webhook.getConsecutiveFailCount(), consecutiveFailCount))
+               {
+                  record.setValue("consecutiveFailCount", consecutiveFailCount);
+                  webhook.setConsecutiveFailCount(consecutiveFailCount);
+               }
+            }
+
+            if(record.getValues().size() > 1)
+            {
+               records.add(record);
+            }
+         }
+      }
+
+      if(!records.isEmpty())
+      {
+         new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME)
+            .withFlag(AbstractRecordSyncToScheduledJobProcess.ActionFlags.DO_NOT_SYNC)
+            .withRecords(records));
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get the number of events that may be sent concurrently to a webhook -
+    ** its own setting if it has one, else the qbit config's.
+    ***************************************************************************/
+   private int getMaxConcurrentSends(Webhook webhook)
+   {
+      if(webhook.getMaxConcurrentSends() != null && webhook.getMaxConcurrentSends() > 0)
+      {
+         return (webhook.getMaxConcurrentSends());
+      }
+
+      Integer maxConcurrentSends = WebhooksQBitConfig.getConfigValue(config -> config.getMaxConcurrentSendsPerWebhook());
+      return (maxConcurrentSends == null ? 1 : maxConcurrentSends);
+   }
+
+
+
+   /***************************************************************************
+    ** update events that we won't try to send (because their webhook is rate-
+    ** limiting us) to await retry at the time the webhook may resume.
+    ***************************************************************************/
+   private void rescheduleRateLimitedEvents(Webhook webhook, List<WebhookEvent> webhookEvents) throws QException
+   {
+      if(webhookEvents.isEmpty())
+      {
+         return;
+      }
+
+      Instant resumeAt = WebhookRateLimitManager.getResumeAt(webhook.getId());
+      if(resumeAt == null)
+      {
+         ////////////////////////////////////////////////////////////////////
+         // deferral already expired (e.g., very short backoff), or it was //
+         // our own outbound rate limit that deferred - just leave these   //
+         // events for the next run of the process to pick up.             //
+         ////////////////////////////////////////////////////////////////////
+         resumeAt = Instant.now();
+      }
+
+      List<QRecord> records = new ArrayList<>();
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         rateLimitedLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
+         records.add(new QRecord()
+            .withValue("id", webhookEvent.getId())
+            .withValue("nextAttemptTimestamp", resumeAt)
+            .withValue("eventStatusId", WebhookEventStatus.AWAITING_RETRY.getId())
+            .withValue("leaseOwner", null));
+      }
+
+      LOG.info("Rescheduling events for rate-limited webhook", logPair("webhookId", webhook.getId()), logPair("count", records.size()), logPair("resumeAt", resumeAt));
+      new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecords(records));
+
+      for(WebhookEvent webhookEvent : webhookEvents)
+      {
+         WebhookRetryTimingWheel.schedule(webhookEvent.getId(), webhook.getId(), resumeAt);
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** meant so class can be overridden to use a different sender.  by default,
+    ** the async sender is used if so configured.
     ***************************************************************************/
    protected WebhookEventSender newWebhookEventSender()
    {
+      if(WebhooksQBitConfig.getConfigValue(config -> config.getUseAsyncHttpSender()))
+      {
+         return (new AsyncWebhookEventSender());
+      }
+
       return new WebhookEventSender();
    }
 
 
+
+   /***************************************************************************
+    ** get the sender for a specific webhook - from newWebhookEventSender(),
+    ** except that a webhook which requires HTTP/2 (which only the async
+    ** sender's client speaks) gets the async sender in place of the default
+    ** synchronous one.  a sender from a subclass's override is used as-is.
+    ***************************************************************************/
+   protected WebhookEventSender newWebhookEventSender(Webhook webhook)
+   {
+      WebhookEventSender webhookEventSender = newWebhookEventSender();
+
+      boolean requiresHttp2 = webhook != null && WebhookHttpVersion.HTTP_2.getId().equals(webhook.getHttpVersionId());
+      if(requiresHttp2 && webhookEventSender.getClass().equals(WebhookEventSender.class))
+      {
+         return (new AsyncWebhookEventSender());
+      }
+
+      return (webhookEventSender);
+   }
+
+
+
+   /***************************************************************************
+    ** get the one pool (per node) that concurrent sends - and the webhooks of a
+    ** multi-webhook page - run on, creating it on first use.  it's bounded by the
+    ** qbit config's maxSendThreads, with no queue:  when all of its threads are
+    ** busy, a task runs on the thread submitting it instead.  so a webhook's
+    ** fan-out never waits on a pool that its own callers are holding, and the
+    ** per-webhook semaphores remain the only caps on each webhook's sends.  its
+    ** threads are let go once idle for a minute, so it's never shut down.
+    ***************************************************************************/
+   private static synchronized ExecutorService getSendExecutor()
+   {
+      if(sendExecutor == null)
+      {
+         AtomicInteger threadNo = new AtomicInteger(0);
+         sendExecutor = new ThreadPoolExecutor(0, WebhooksQBitConfig.getConfigValue(config -> config.getMaxSendThreads()), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable ->
+         {
+            Thread thread = new Thread(runnable, "webhook-send-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return (thread);
+         }, new ThreadPoolExecutor.CallerRunsPolicy());
+      }
+
+      return (sendExecutor);
+   }
+
+
+
    /***************************************************************************
-    * meant for tests - to make a stack of send log events
+    ** get a sender from newWebhookEventSender, set to add its outcomes to this
+    ** page's outcome buffer.
     ***************************************************************************/
-   public Stack<WebhookEventSendLog> newSendLogStack(int maxSize)
+   private WebhookEventSender newBufferedWebhookEventSender(Webhook webhook)
    {
-      return (new FixedStack<>(maxSize));
+      return (newWebhookEventSender(webhook).withOutcomeBuffer(outcomeBuffer));
    }
 
 
+
    /***************************************************************************
-    *
+    ** what this step tracks for one webhook that it's sending events for:  the
+    ** webhook record (as its health may change while sending), its window of
+    ** recent send outcomes (for health checks), when it was last attempted,
+    ** and whether it has become unhealthy or is rate-limiting us.  a webhook's
+    ** sends may complete on many threads at once, so accessors are synchronized.
     ***************************************************************************/
-   static class FixedStack<T> extends Stack<T>
+   private static class WebhookSendState
    {
-      private final int maxSize;
+      private final WebhookHealthWindow healthWindow;
+
+      private Webhook webhook;
+      private Instant lastAttemptTimestamp;
+      private boolean becameUnhealthy = false;
+      private boolean rateLimited     = false;
 
 
 
       /***************************************************************************
-       *
+       **
        ***************************************************************************/
-      public FixedStack(int maxSize)
+      WebhookSendState(Webhook webhook, WebhookHealthWindow healthWindow)
       {
-         this.maxSize = maxSize;
+         this.webhook = webhook;
+         this.healthWindow = healthWindow;
       }
 
 
 
       /***************************************************************************
-       *
+       ** true once the webhook has become unhealthy or started rate-limiting us -
+       ** at which point no more sends to it should be started.
        ***************************************************************************/
-      @Override
-      public T push(T item)
+      synchronized boolean shouldStopSending()
       {
-         if(size() >= maxSize)
-         {
-            remove(0);  // remove bottom element
-         }
-         return super.push(item);  // then push on top
+         return (becameUnhealthy || rateLimited);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized Webhook getWebhook()
+      {
+         return (webhook);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized void setWebhook(Webhook webhook)
+      {
+         this.webhook = webhook;
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized WebhookHealthWindow getHealthWindow()
+      {
+         return (healthWindow);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized Instant getLastAttemptTimestamp()
+      {
+         return (lastAttemptTimestamp);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized void setLastAttemptTimestamp(Instant lastAttemptTimestamp)
+      {
+         this.lastAttemptTimestamp = lastAttemptTimestamp;
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized boolean isBecameUnhealthy()
+      {
+         return (becameUnhealthy);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized void setBecameUnhealthy(boolean becameUnhealthy)
+      {
+         this.becameUnhealthy = becameUnhealthy;
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized boolean isRateLimited()
+      {
+         return (rateLimited);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      synchronized void setRateLimited(boolean rateLimited)
+      {
+         this.rateLimited = rateLimited;
       }
    }
 }
@@ -28,7 +28,9 @@ import com.kingsrook.qbits.webhooks.model.WebhookEvent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qbits.webhooks.registry.WebhookEventTypePossibleValueSource;
+import com.kingsrook.qqq.backend.core.actions.processes.RunProcessAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunProcessInput;
 import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducer;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
 import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldMetaData;
@@ -79,4 +81,19 @@ public class SendWebhookEventProcessMetaDataProducer extends MetaDataProducer<QP
       return (processMetaData);
    }
 
+
+
+   /*******************************************************************************
+    ** run the process for one webhook (as its scheduled job would in per-webhook
+    ** job mode) - for the dispatcher and the retry timing wheel.
+    *******************************************************************************/
+   public static void runForWebhook(Integer webhookId) throws QException
+   {
+      RunProcessInput runProcessInput = new RunProcessInput();
+      runProcessInput.setProcessName(NAME);
+      runProcessInput.setFrontendStepBehavior(RunProcessInput.FrontendStepBehavior.SKIP);
+      runProcessInput.addValue("webhookId", webhookId);
+      new RunProcessAction().execute(runProcessInput);
+   }
+
 }
@@ -36,7 +36,6 @@ import com.kingsrook.qbits.webhooks.model.WebhookEvent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
-import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLine;
@@ -47,7 +46,6 @@ import com.kingsrook.qqq.backend.core.model.actions.processes.Status;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
-import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwithfrontend.AbstractTransformStep;
 
 
@@ -57,8 +55,8 @@ import com.kingsrook.qqq.backend.core.processes.implementations.etl.streamedwith
 public class SendWebhookEventTransformStep extends AbstractTransformStep
 {
    private Integer webhookId;
-   private Webhook webhook;
 
+   private Map<Integer, Webhook>             webhookMap      = new HashMap<>();
    private Map<Integer, WebhookSubscription> subscriptionMap = new HashMap<>();
 
    private ProcessSummaryLine okLine = new ProcessSummaryLine(Status.OK)
@@ -69,7 +67,7 @@ public class SendWebhookEventTransformStep extends AbstractTransformStep
       .withPluralPastMessage("were");
 
    private ProcessSummaryLine differentWebhookLine = new ProcessSummaryLine(Status.ERROR)
-      .withMessageSuffix(" sent because events were found for more than one webhook")
+      .withMessageSuffix(" sent because they are for a different webhook than the one being processed")
       .withSingularFutureMessage("will not be")
       .withPluralFutureMessage("will not be")
       .withSingularPastMessage("was not")
@@ -156,12 +154,13 @@ public class SendWebhookEventTransformStep extends AbstractTransformStep
    @Override
    public void runOnePage(RunBackendStepInput runBackendStepInput, RunBackendStepOutput runBackendStepOutput) throws QException
    {
-      ////////////////////////////////////////////////////
-      // fetch the subscriptions for the webhook events //
-      ////////////////////////////////////////////////////
+      ///////////////////////////////////////////////////////////////
+      // fetch the webhooks & subscriptions for the webhook events //
+      ///////////////////////////////////////////////////////////////
       List<WebhookEvent> webhookEvents   = runBackendStepInput.getRecordsAsEntities(WebhookEvent.class);
       Set<Integer>       subscriptionIds = webhookEvents.stream().map(we -> we.getWebhookSubscriptionId()).collect(Collectors.toSet());
       loadSubscriptions(subscriptionIds);
+      loadWebhooks(webhookEvents.stream().map(we -> we.getWebhookId()).filter(Objects::nonNull).collect(Collectors.toSet()));
 
       for(WebhookEvent webhookEvent : webhookEvents)
       {
@@ -180,49 +179,19 @@ public class SendWebhookEventTransformStep extends AbstractTransformStep
             continue;
          }
 
-         /////////////////////////////////////////////////////////////////////////////////////////////
-         // if we aren't running for a specific webhook, then grab the id off the first one we find //
-         /////////////////////////////////////////////////////////////////////////////////////////////
-         if(webhookId == null)
-         {
-            webhookId = webhookEvent.getWebhookId();
-         }
-
-         //////////////////////////////////////////////////////////////////////////////////
-         // in case events from multiple webhooks were found, only allow them for one    //
-         // (the first one we found). this will simplify sending, at least at this time. //
-         //////////////////////////////////////////////////////////////////////////////////
-         if(!Objects.equals(webhookId, webhookEvent.getWebhookId()))
+         //////////////////////////////////////////////////////////////////////////////
+         // if we're running for a specific webhook, only allow events for that one. //
+         // else, events for any number of webhooks go on to the load step.          //
+         //////////////////////////////////////////////////////////////////////////////
+         if(webhookId != null && !Objects.equals(webhookId, webhookEvent.getWebhookId()))
          {
             differentWebhookLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
             continue;
          }
 
-         ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-         // if we haven't loaded the webhook record yet, then do so now (should be on the first/only one we're using) //
-         ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-         if(webhook == null && webhookId != null)
-         {
-            QRecord webhookRecord = GetAction.execute(Webhook.TABLE_NAME, webhookId);
-            if(webhookRecord == null)
-            {
-               /////////////////////////////////////////////////////////////////////////////////////////
-               // if that webhook is missing, skip this line.                                         //
-               // note, if we had many records selected, all for a non-existing webhook, we'd do this //
-               // query a bunch, but, not too concerned about that scenario realistically happening.  //
-               /////////////////////////////////////////////////////////////////////////////////////////
-               missingWebhookLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
-               continue;
-            }
-
-            webhook = new Webhook(webhookRecord);
-         }
-
+         Webhook webhook = webhookMap.get(webhookEvent.getWebhookId());
          if(webhook == null)
          {
-            //////////////////////////////////////////////////////////////////////////////////////////////
-            // I think this is redundant, but it stops compiler warnings about webhook maybe being null //
-            //////////////////////////////////////////////////////////////////////////////////////////////
             missingWebhookLine.incrementCountAndAddPrimaryKey(webhookEvent.getId());
             continue;
          }
@@ -293,11 +262,31 @@ public class SendWebhookEventTransformStep extends AbstractTransformStep
 
 
    /***************************************************************************
-    **
+    ** load webhooks (that we haven't already loaded in a previous page) by id.
+    ***************************************************************************/
+   private void loadWebhooks(Set<Integer> webhookIds) throws QException
+   {
+      Set<Integer> webhooksToLookup = new HashSet<>(webhookIds);
+      webhooksToLookup.removeAll(webhookMap.keySet());
+      if(!webhooksToLookup.isEmpty())
+      {
+         List<Webhook> webhooks = QueryAction.execute(Webhook.TABLE_NAME, Webhook.class, new QQueryFilter(new QFilterCriteria("id", QCriteriaOperator.IN, webhooksToLookup)));
+         for(Webhook webhook : webhooks)
+         {
+            webhookMap.put(webhook.getId(), webhook);
+         }
+      }
+   }
+
+
+
+   /***************************************************************************
+    ** get one of the webhooks that events are being sent for (null if it
+    ** wasn't found, or no events for it have been seen).
     ***************************************************************************/
-   Webhook getWebhook()
+   Webhook getWebhook(Integer webhookId)
    {
-      return webhook;
+      return webhookMap.get(webhookId);
    }
 
 
@@ -307,7 +296,7 @@ public class SendWebhookEventTransformStep extends AbstractTransformStep
     ***************************************************************************/
    SendWebhookEventTransformStep withWebhook(Webhook webhook)
    {
-      this.webhook = webhook;
+      this.webhookMap.put(webhook.getId(), webhook);
       return this;
    }
 }
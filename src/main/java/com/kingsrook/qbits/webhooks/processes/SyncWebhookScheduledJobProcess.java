@@ -22,14 +22,28 @@
 package com.kingsrook.qbits.webhooks.processes;
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.model.scheduledjobs.ScheduledJob;
 import com.kingsrook.qqq.backend.core.scheduler.processes.AbstractRecordSyncToScheduledJobProcess;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
+import com.kingsrook.qqq.backend.core.utils.ValueUtils;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
 
 /*******************************************************************************
@@ -37,6 +51,8 @@ import com.kingsrook.qqq.backend.core.utils.StringUtils;
  *******************************************************************************/
 public class SyncWebhookScheduledJobProcess extends AbstractRecordSyncToScheduledJobProcess
 {
+   private static final QLogger LOG = QLogger.getLogger(SyncWebhookScheduledJobProcess.class);
+
 
    /***************************************************************************
     **
@@ -45,9 +61,7 @@ public class SyncWebhookScheduledJobProcess extends AbstractRecordSyncToSchedule
    protected ScheduledJob customizeScheduledJob(ScheduledJob scheduledJob, QRecord sourceRecord) throws QException
    {
       scheduledJob.setRepeatSeconds(WebhooksQBitConfig.getConfigValue(config -> config.getSendWebhookEventProcessRepeatSeconds()));
-
-      boolean isActive = (WebhookActiveStatus.ACTIVE.getId().equals(sourceRecord.getValueInteger("activeStatusId")));
-      scheduledJob.setIsActive(isActive);
+      scheduledJob.setIsActive(isJobActive(sourceRecord.getValueInteger("activeStatusId")));
 
       if(!StringUtils.hasContent(scheduledJob.getSchedulerName()))
       {
@@ -59,6 +73,65 @@ public class SyncWebhookScheduledJobProcess extends AbstractRecordSyncToSchedule
 
 
 
+   /***************************************************************************
+    ** should the scheduled job for a webhook with the given active status be
+    ** active.  in single-dispatcher mode, the per-webhook jobs exist but don't
+    ** run - the DispatchWebhookEvents process runs the sends instead.
+    ***************************************************************************/
+   static boolean isJobActive(Integer webhookActiveStatusId)
+   {
+      boolean isPerWebhookJobMode = WebhooksQBitConfig.DispatchMode.PER_WEBHOOK_JOB.equals(WebhooksQBitConfig.getConfigValue(config -> config.getDispatchMode()));
+      return (isPerWebhookJobMode && WebhookActiveStatus.ACTIVE.getId().equals(webhookActiveStatusId));
+   }
+
+
+
+   /***************************************************************************
+    ** update the isActive flag of any existing per-webhook scheduled jobs that
+    ** don't match the current dispatch mode - e.g., after the mode is changed,
+    ** as jobs are otherwise only synced when their webhook is stored.  no-op if
+    ** the instance has no scheduled job table.
+    ***************************************************************************/
+   public static void syncScheduledJobsToDispatchMode() throws QException
+   {
+      if(QContext.getQInstance().getTable(ScheduledJob.TABLE_NAME) == null)
+      {
+         return;
+      }
+
+      List<QRecord> scheduledJobs = QueryAction.execute(ScheduledJob.TABLE_NAME, new QQueryFilter()
+         .withCriteria(new QFilterCriteria("foreignKeyType", QCriteriaOperator.EQUALS, Webhook.TABLE_NAME)));
+      if(scheduledJobs.isEmpty())
+      {
+         return;
+      }
+
+      Map<Integer, Integer> activeStatusIdsByWebhookId = new HashMap<>();
+      List<Integer>         webhookIds                 = scheduledJobs.stream().map(job -> ValueUtils.getValueAsInteger(job.getValue("foreignKeyValue"))).toList();
+      for(QRecord webhook : QueryAction.execute(Webhook.TABLE_NAME, new QQueryFilter(new QFilterCriteria("id", QCriteriaOperator.IN, webhookIds))))
+      {
+         activeStatusIdsByWebhookId.put(webhook.getValueInteger("id"), webhook.getValueInteger("activeStatusId"));
+      }
+
+      List<QRecord> jobsToUpdate = new ArrayList<>();
+      for(QRecord scheduledJob : scheduledJobs)
+      {
+         boolean isActive = isJobActive(activeStatusIdsByWebhookId.get(ValueUtils.getValueAsInteger(scheduledJob.getValue("foreignKeyValue"))));
+         if(isActive != Boolean.TRUE.equals(scheduledJob.getValueBoolean("isActive")))
+         {
+            jobsToUpdate.add(new QRecord().withValue("id", scheduledJob.getValue("id")).withValue("isActive", isActive));
+         }
+      }
+
+      if(!jobsToUpdate.isEmpty())
+      {
+         new UpdateAction().execute(new UpdateInput(ScheduledJob.TABLE_NAME).withRecords(jobsToUpdate));
+         LOG.info("Synced webhook scheduled jobs to dispatch mode", logPair("noJobsUpdated", jobsToUpdate.size()));
+      }
+   }
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
@@ -23,6 +23,9 @@ package com.kingsrook.qbits.webhooks.registry;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +53,23 @@ public class WebhooksRegistry implements QSupplementalInstanceMetaData
 
    private final Map<String, WebhookEventType> eventTypes = new LinkedHashMap<>();
 
+   //////////////////////////////////////////////////////////////////////////
+   // index of event types by kind & table - built upon first lookup after //
+   // types are registered (or cleared), and never changed once built.     //
+   //////////////////////////////////////////////////////////////////////////
+   private volatile Map<WebhookEventCategory.Kind, KindIndex> eventTypesByKind = null;
+
+
+
+   /***************************************************************************
+    ** the event types of one kind:  those for each specific table (each of
+    ** which also includes the kind's types that aren't for any one table), and
+    ** those that apply to any table.
+    ***************************************************************************/
+   private record KindIndex(Map<String, List<WebhookEventType>> byTableName, List<WebhookEventType> forAnyTable)
+   {
+   }
+
 
 
    /*******************************************************************************
@@ -87,6 +107,7 @@ public class WebhooksRegistry implements QSupplementalInstanceMetaData
    public void clear()
    {
       eventTypes.clear();
+      eventTypesByKind = null;
    }
 
 
@@ -122,6 +143,91 @@ public class WebhooksRegistry implements QSupplementalInstanceMetaData
       }
 
       eventTypes.put(eventType.getName(), eventType);
+      eventTypesByKind = null;
+   }
+
+
+
+   /***************************************************************************
+    ** get the event types of a kind that apply to a table - i.e., those for
+    ** that table, plus those of the kind that aren't for any one table - in the
+    ** order they were registered.  The returned list is immutable, and is the
+    ** same (empty) list for tables that no types are for.
+    ***************************************************************************/
+   public List<WebhookEventType> getWebhookEventTypes(WebhookEventCategory.Kind kind, String tableName)
+   {
+      Map<WebhookEventCategory.Kind, KindIndex> index = eventTypesByKind;
+      if(index == null)
+      {
+         index = buildEventTypesByKind();
+         eventTypesByKind = index;
+      }
+
+      KindIndex kindIndex = index.get(kind);
+      if(kindIndex == null)
+      {
+         return (Collections.emptyList());
+      }
+
+      List<WebhookEventType> forTable = tableName == null ? null : kindIndex.byTableName().get(tableName);
+      return (forTable == null ? kindIndex.forAnyTable() : forTable);
+   }
+
+
+
+   /***************************************************************************
+    ** build the (immutable) index of event types by kind and table name.
+    ***************************************************************************/
+   private Map<WebhookEventCategory.Kind, KindIndex> buildEventTypesByKind()
+   {
+      List<WebhookEventType> allEventTypes = getAllWebhookEventTypes();
+
+      //////////////////////////////////////////////////////////////////////////
+      // first find the tables that each kind has types for - so that in the  //
+      // second pass, types for any table can be added to each of their lists //
+      // in registration order.                                               //
+      //////////////////////////////////////////////////////////////////////////
+      Map<WebhookEventCategory.Kind, Map<String, List<WebhookEventType>>> byKindAndTable = new EnumMap<>(WebhookEventCategory.Kind.class);
+      Map<WebhookEventCategory.Kind, List<WebhookEventType>>              forAnyTable    = new EnumMap<>(WebhookEventCategory.Kind.class);
+      for(WebhookEventType eventType : allEventTypes)
+      {
+         if(eventType.getCategory() != null)
+         {
+            Map<String, List<WebhookEventType>> byTable = byKindAndTable.computeIfAbsent(eventType.getCategory().getKind(), k -> new HashMap<>());
+            forAnyTable.computeIfAbsent(eventType.getCategory().getKind(), k -> new ArrayList<>());
+            if(StringUtils.hasContent(eventType.getTableName()))
+            {
+               byTable.computeIfAbsent(eventType.getTableName(), k -> new ArrayList<>());
+            }
+         }
+      }
+
+      for(WebhookEventType eventType : allEventTypes)
+      {
+         if(eventType.getCategory() != null)
+         {
+            WebhookEventCategory.Kind kind = eventType.getCategory().getKind();
+            if(StringUtils.hasContent(eventType.getTableName()))
+            {
+               byKindAndTable.get(kind).get(eventType.getTableName()).add(eventType);
+            }
+            else
+            {
+               forAnyTable.get(kind).add(eventType);
+               byKindAndTable.get(kind).values().forEach(list -> list.add(eventType));
+            }
+         }
+      }
+
+      Map<WebhookEventCategory.Kind, KindIndex> index = new EnumMap<>(WebhookEventCategory.Kind.class);
+      for(Map.Entry<WebhookEventCategory.Kind, Map<String, List<WebhookEventType>>> entry : byKindAndTable.entrySet())
+      {
+         Map<String, List<WebhookEventType>> byTable = new HashMap<>();
+         entry.getValue().forEach((tableName, list) -> byTable.put(tableName, List.copyOf(list)));
+         index.put(entry.getKey(), new KindIndex(Map.copyOf(byTable), List.copyOf(forAnyTable.get(entry.getKey()))));
+      }
+
+      return (Collections.unmodifiableMap(index));
    }
 
 
@@ -26,6 +26,12 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
+import com.kingsrook.qbits.webhooks.actions.WebhookCompressedBodyCache;
+import com.kingsrook.qbits.webhooks.actions.WebhookHttpClientManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookLatencyTracker;
+import com.kingsrook.qbits.webhooks.actions.WebhookOutboundRateLimiter;
+import com.kingsrook.qbits.webhooks.actions.WebhookRateLimitManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookRetryTimingWheel;
 import com.kingsrook.qbits.webhooks.actions.WebhookSubscriptionsHelper;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
@@ -34,6 +40,7 @@ import com.kingsrook.qbits.webhooks.model.WebhookEventCategory;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qbits.webhooks.processes.DispatchWebhookEventsStep;
 import com.kingsrook.qbits.webhooks.registry.WebhookEventType;
 import com.kingsrook.qbits.webhooks.registry.WebhooksRegistry;
 import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
@@ -81,6 +88,13 @@ public class BaseTest
    void afterEach()
    {
       MemoryRecordStore.fullReset();
+      WebhookHttpClientManager.closeAll();
+      WebhookLatencyTracker.clearAll();
+      WebhookRateLimitManager.clearAll();
+      WebhookOutboundRateLimiter.clearAll();
+      WebhookCompressedBodyCache.clearAll();
+      WebhookRetryTimingWheel.clearAll();
+      DispatchWebhookEventsStep.clearAll();
    }
 
 
@@ -144,6 +144,143 @@ class WebhooksQBitConfigTest extends BaseTest
       assertError("httpTimeoutMillis must be non-null and > 0", new WebhooksQBitConfig().withHttpTimeoutMillis(null));
       assertError("httpTimeoutMillis must be non-null and > 0", new WebhooksQBitConfig().withHttpTimeoutMillis(-1));
       assertError("httpTimeoutMillis must be non-null and > 0", new WebhooksQBitConfig().withHttpTimeoutMillis(0));
+
+      ////////////////////////////////////////////////////////////////
+      // maxHttpConnectionsPerWebhook - cannot be null, must be > 0 //
+      ////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withMaxHttpConnectionsPerWebhook(1));
+      assertError("maxHttpConnectionsPerWebhook must be non-null and > 0", new WebhooksQBitConfig().withMaxHttpConnectionsPerWebhook(null));
+      assertError("maxHttpConnectionsPerWebhook must be non-null and > 0", new WebhooksQBitConfig().withMaxHttpConnectionsPerWebhook(0));
+
+      ////////////////////////////////////////////////////////////////////
+      // httpIdleConnectionTimeoutSeconds - cannot be null, must be > 0 //
+      ////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withHttpIdleConnectionTimeoutSeconds(1));
+      assertError("httpIdleConnectionTimeoutSeconds must be non-null and > 0", new WebhooksQBitConfig().withHttpIdleConnectionTimeoutSeconds(null));
+      assertError("httpIdleConnectionTimeoutSeconds must be non-null and > 0", new WebhooksQBitConfig().withHttpIdleConnectionTimeoutSeconds(0));
+
+      ///////////////////////////////////////////////////////////////////
+      // httpConnectTimeoutMillis, httpReadTimeoutMillis - null or > 0 //
+      ///////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withHttpConnectTimeoutMillis(null).withHttpReadTimeoutMillis(null));
+      assertSuccess(new WebhooksQBitConfig().withHttpConnectTimeoutMillis(1).withHttpReadTimeoutMillis(1));
+      assertError("If httpConnectTimeoutMillis is given, it must be > 0", new WebhooksQBitConfig().withHttpConnectTimeoutMillis(0));
+      assertError("If httpReadTimeoutMillis is given, it must be > 0", new WebhooksQBitConfig().withHttpReadTimeoutMillis(0));
+
+      /////////////////////////////////////////
+      // adaptive http read timeout settings //
+      /////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withUseAdaptiveHttpReadTimeouts(true));
+      assertError("useAdaptiveHttpReadTimeouts must be non-null", new WebhooksQBitConfig().withUseAdaptiveHttpReadTimeouts(null));
+      assertError("adaptiveHttpReadTimeoutMinMillis must be non-null and > 0", new WebhooksQBitConfig().withAdaptiveHttpReadTimeoutMinMillis(0));
+      assertSuccess(new WebhooksQBitConfig().withAdaptiveHttpReadTimeoutPercentile(100));
+      assertError("adaptiveHttpReadTimeoutPercentile must be non-null and between 1 and 100", new WebhooksQBitConfig().withAdaptiveHttpReadTimeoutPercentile(0));
+      assertError("adaptiveHttpReadTimeoutPercentile must be non-null and between 1 and 100", new WebhooksQBitConfig().withAdaptiveHttpReadTimeoutPercentile(101));
+      assertError("adaptiveHttpReadTimeoutMultiplier must be non-null and >= 1", new WebhooksQBitConfig().withAdaptiveHttpReadTimeoutMultiplier(0));
+
+
+      ////////////////////////////////////////////////////////////////
+      // maxConcurrentSendsPerWebhook - cannot be null, must be > 0 //
+      ////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withMaxConcurrentSendsPerWebhook(1));
+      assertError("maxConcurrentSendsPerWebhook must be non-null and > 0", new WebhooksQBitConfig().withMaxConcurrentSendsPerWebhook(null));
+      assertError("maxConcurrentSendsPerWebhook must be non-null and > 0", new WebhooksQBitConfig().withMaxConcurrentSendsPerWebhook(0));
+
+
+      //////////////////////////////////////////////////
+      // maxSendThreads - cannot be null, must be > 0 //
+      //////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withMaxSendThreads(1));
+      assertError("maxSendThreads must be non-null and > 0", new WebhooksQBitConfig().withMaxSendThreads(null));
+      assertError("maxSendThreads must be non-null and > 0", new WebhooksQBitConfig().withMaxSendThreads(0));
+
+
+      /////////////////////////////////////////
+      // useAsyncHttpSender - cannot be null //
+      /////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withUseAsyncHttpSender(true));
+      assertError("useAsyncHttpSender must be non-null", new WebhooksQBitConfig().withUseAsyncHttpSender(null));
+
+
+      ////////////////////////////
+      // response body settings //
+      ////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withMaxResponseBodyBytes(1));
+      assertError("maxResponseBodyBytes must be non-null and > 0", new WebhooksQBitConfig().withMaxResponseBodyBytes(null));
+      assertError("maxResponseBodyBytes must be non-null and > 0", new WebhooksQBitConfig().withMaxResponseBodyBytes(0));
+      assertSuccess(new WebhooksQBitConfig().withLogSuccessfulResponseBodies(true));
+      assertError("logSuccessfulResponseBodies must be non-null", new WebhooksQBitConfig().withLogSuccessfulResponseBodies(null));
+
+
+      //////////////////////////////////////////////////////
+      // gzipCacheMaxBytes - cannot be null, must be >= 0 //
+      //////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withGzipCacheMaxBytes(0));
+      assertError("gzipCacheMaxBytes must be non-null and >= 0", new WebhooksQBitConfig().withGzipCacheMaxBytes(null));
+      assertError("gzipCacheMaxBytes must be non-null and >= 0", new WebhooksQBitConfig().withGzipCacheMaxBytes(-1));
+
+
+      ////////////////////////////////////////////////////////////////////
+      // outcome flush thresholds - cannot be null, records must be > 0 //
+      ////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withOutcomeFlushMaxRecords(1).withOutcomeFlushMaxMillis(0));
+      assertError("outcomeFlushMaxRecords must be non-null and > 0", new WebhooksQBitConfig().withOutcomeFlushMaxRecords(null));
+      assertError("outcomeFlushMaxRecords must be non-null and > 0", new WebhooksQBitConfig().withOutcomeFlushMaxRecords(0));
+      assertError("outcomeFlushMaxMillis must be non-null and >= 0", new WebhooksQBitConfig().withOutcomeFlushMaxMillis(null));
+      assertError("outcomeFlushMaxMillis must be non-null and >= 0", new WebhooksQBitConfig().withOutcomeFlushMaxMillis(-1));
+
+
+      /////////////////////////////////////////////////////////////////////////////
+      // dispatch mode & dispatcher pool size - cannot be null, pool must be > 0 //
+      /////////////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withDispatchMode(WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER).withDispatcherMaxConcurrentWebhooks(1));
+      assertError("dispatchMode must be non-null", new WebhooksQBitConfig().withDispatchMode(null));
+      assertError("dispatcherMaxConcurrentWebhooks must be non-null and > 0", new WebhooksQBitConfig().withDispatcherMaxConcurrentWebhooks(null));
+      assertError("dispatcherMaxConcurrentWebhooks must be non-null and > 0", new WebhooksQBitConfig().withDispatcherMaxConcurrentWebhooks(0));
+
+
+      ////////////////////////////////////////////////////////////////////////////
+      // retry timing wheel settings - cannot be null, tick & slots must be > 0 //
+      ////////////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withUseRetryTimingWheel(true).withRetryTimingWheelTickMillis(100).withRetryTimingWheelSlots(60));
+      assertError("useRetryTimingWheel must be non-null", new WebhooksQBitConfig().withUseRetryTimingWheel(null));
+      assertError("retryTimingWheelTickMillis must be non-null and > 0", new WebhooksQBitConfig().withRetryTimingWheelTickMillis(null));
+      assertError("retryTimingWheelTickMillis must be non-null and > 0", new WebhooksQBitConfig().withRetryTimingWheelTickMillis(0));
+      assertError("retryTimingWheelSlots must be non-null and > 0", new WebhooksQBitConfig().withRetryTimingWheelSlots(null));
+      assertError("retryTimingWheelSlots must be non-null and > 0", new WebhooksQBitConfig().withRetryTimingWheelSlots(0));
+
+
+      ////////////////////////////////////////////////////////////////////////////
+      // retry policy settings - cannot be null, base & max seconds must be > 0 //
+      ////////////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withNonRetryableHttpStatusCodes(List.of()).withRetryBaseSeconds(1).withRetryMaxSeconds(1));
+      assertError("nonRetryableHttpStatusCodes must be non-null", new WebhooksQBitConfig().withNonRetryableHttpStatusCodes(null));
+      assertError("retryBaseSeconds must be non-null and > 0", new WebhooksQBitConfig().withRetryBaseSeconds(null));
+      assertError("retryBaseSeconds must be non-null and > 0", new WebhooksQBitConfig().withRetryBaseSeconds(0));
+      assertError("retryMaxSeconds must be non-null and > 0", new WebhooksQBitConfig().withRetryMaxSeconds(null));
+      assertError("retryMaxSeconds must be non-null and > 0", new WebhooksQBitConfig().withRetryMaxSeconds(0));
+
+
+      //////////////////////////////////////////////////////////////////////////
+      // health window settings - size & min samples > 0; thresholds optional //
+      //////////////////////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withHealthWindowSize(1).withHealthWindowMinSamples(1));
+      assertSuccess(new WebhooksQBitConfig().withUnhealthyFailureRatePercent(100).withUnhealthyTimeoutRatePercent(1).withUnhealthyP95LatencyMillis(1000));
+      assertError("healthWindowSize must be non-null and > 0", new WebhooksQBitConfig().withHealthWindowSize(null));
+      assertError("healthWindowSize must be non-null and > 0", new WebhooksQBitConfig().withHealthWindowSize(0));
+      assertError("healthWindowMinSamples must be non-null and > 0", new WebhooksQBitConfig().withHealthWindowMinSamples(0));
+      assertError("If unhealthyFailureRatePercent is given, it must be between 1 and 100", new WebhooksQBitConfig().withUnhealthyFailureRatePercent(0));
+      assertError("If unhealthyFailureRatePercent is given, it must be between 1 and 100", new WebhooksQBitConfig().withUnhealthyFailureRatePercent(101));
+      assertError("If unhealthyTimeoutRatePercent is given, it must be between 1 and 100", new WebhooksQBitConfig().withUnhealthyTimeoutRatePercent(0));
+      assertError("If unhealthyP95LatencyMillis is given, it must be > 0", new WebhooksQBitConfig().withUnhealthyP95LatencyMillis(0));
+
+
+      ///////////////////////////////////////////////////////////
+      // subscription version checks - optional, but if so > 0 //
+      ///////////////////////////////////////////////////////////
+      assertSuccess(new WebhooksQBitConfig().withSubscriptionVersionCheckSeconds(null));
+      assertSuccess(new WebhooksQBitConfig().withSubscriptionVersionCheckSeconds(1));
+      assertError("If subscriptionVersionCheckSeconds is given, it must be > 0", new WebhooksQBitConfig().withSubscriptionVersionCheckSeconds(0));
    }
 
 
@@ -0,0 +1,454 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import javax.net.ssl.SSLSession;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookEvent;
+import com.kingsrook.qbits.webhooks.model.WebhookEventContent;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookHttpVersion;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for AsyncWebhookEventSender
+ *******************************************************************************/
+class AsyncWebhookEventSenderTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSendEventAsync() throws Exception
+   {
+      Webhook      webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, insert(newWebhook("Test"))));
+      WebhookEvent event   = insertEvent(webhook.getId());
+
+      List<HttpRequest> requests = new ArrayList<>();
+      WebhookSendOutcome outcome = new AsyncSenderThatMocksHttp(requests, CompletableFuture.completedFuture(new MockResponse(200, "OK", Map.of())))
+         .sendEventAsync(event, webhook, List.of()).get();
+
+      assertEquals(WebhookSendOutcome.DELIVERED, outcome);
+      assertEquals(1, requests.size());
+      assertEquals("application/json", requests.get(0).headers().firstValue("Content-Type").orElse(null));
+      assertEventStatus(WebhookEventStatus.DELIVERED, event.getId());
+
+      List<QRecord> sendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter());
+      assertEquals(1, sendLogs.size());
+      assertEquals(true, sendLogs.get(0).getValueBoolean("successful"));
+      assertEquals(200, sendLogs.get(0).getValueInteger("httpStatusCode"));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSendEventAsyncFailures() throws Exception
+   {
+      ///////////////////////
+      // error http status //
+      ///////////////////////
+      Webhook      webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, insert(newWebhook("Test"))));
+      WebhookEvent event   = insertEvent(webhook.getId());
+      WebhookSendOutcome outcome = new AsyncSenderThatMocksHttp(new ArrayList<>(), CompletableFuture.completedFuture(new MockResponse(500, "Oops", Map.of())))
+         .sendEventAsync(event, webhook, List.of()).get();
+      assertEquals(WebhookSendOutcome.FAILED, outcome);
+      assertEventStatus(WebhookEventStatus.AWAITING_RETRY, event.getId());
+
+      ///////////////////////////////
+      // exception from the client //
+      ///////////////////////////////
+      event = insertEvent(webhook.getId());
+      outcome = new AsyncSenderThatMocksHttp(new ArrayList<>(), CompletableFuture.failedFuture(new IOException("Connection refused")))
+         .sendEventAsync(event, webhook, List.of()).get();
+      assertEquals(WebhookSendOutcome.FAILED, outcome);
+      assertEventStatus(WebhookEventStatus.AWAITING_RETRY, event.getId());
+
+      List<QRecord> sendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter());
+      assertEquals(2, sendLogs.size());
+      assertThat(sendLogs).anyMatch(r -> "Oops".equals(r.getValueString("errorMessage")));
+      assertThat(sendLogs).anyMatch(r -> "Connection refused".equals(r.getValueString("errorMessage")));
+
+      /////////////////////////////////////////////////////////////////////
+      // rate limited - event rescheduled, webhook deferred, no send log //
+      /////////////////////////////////////////////////////////////////////
+      event = insertEvent(webhook.getId());
+      outcome = new AsyncSenderThatMocksHttp(new ArrayList<>(), CompletableFuture.completedFuture(new MockResponse(429, "Slow down", Map.of("Retry-After", List.of("60")))))
+         .sendEventAsync(event, webhook, List.of()).get();
+      assertEquals(WebhookSendOutcome.RATE_LIMITED, outcome);
+      assertEventStatus(WebhookEventStatus.AWAITING_RETRY, event.getId());
+      assertNotNull(WebhookRateLimitManager.getResumeAt(webhook.getId()));
+      assertEquals(2, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+
+      ////////////////////////////////////////////////////////////////////
+      // unchecked exception starting the post - a failed future, not a //
+      // throw (callers count on the future completing, either way).    //
+      ////////////////////////////////////////////////////////////////////
+      event = insertEvent(webhook.getId());
+      WebhookRateLimitManager.clearAll();
+      CompletableFuture<WebhookSendOutcome> future = new AsyncSenderThatMocksHttp(new ArrayList<>(), CompletableFuture.completedFuture(new MockResponse(200, "OK", Map.of())))
+      {
+         @Override
+         protected CompletableFuture<HttpResponse<String>> executeAsyncHttpRequest(HttpClient httpClient, HttpRequest request)
+         {
+            throw (new IllegalStateException("Executor shut down"));
+         }
+      }.sendEventAsync(event, webhook, List.of());
+      ExecutionException executionException = assertThrows(ExecutionException.class, future::get);
+      assertThat(executionException.getCause()).isInstanceOf(IllegalStateException.class);
+   }
+
+
+
+   /*******************************************************************************
+    ** a post that has to wait under the webhook's outbound limit is started later,
+    ** rather than sendEventAsync sleeping until it may be.
+    *******************************************************************************/
+   @Test
+   void testOutboundLimitDelaysPostWithoutSleeping() throws Exception
+   {
+      Webhook      webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, insert(newWebhook("Test").withMaxRequestsPerSecond(1))));
+      WebhookEvent event0  = insertEvent(webhook.getId());
+      WebhookEvent event1  = insertEvent(webhook.getId());
+
+      List<HttpRequest>       requests = Collections.synchronizedList(new ArrayList<>());
+      AsyncWebhookEventSender sender   = new AsyncSenderThatMocksHttp(requests, CompletableFuture.completedFuture(new MockResponse(200, "OK", Map.of())));
+      assertEquals(WebhookSendOutcome.DELIVERED, sender.sendEventAsync(event0, webhook, List.of()).get());
+
+      ////////////////////////////////////////////////////////////////////////
+      // the 2nd post must wait ~1 second - but the call returns right away //
+      ////////////////////////////////////////////////////////////////////////
+      long                                  start  = System.currentTimeMillis();
+      CompletableFuture<WebhookSendOutcome> future = sender.sendEventAsync(event1, webhook, List.of());
+      assertThat(System.currentTimeMillis() - start).isLessThan(500);
+      assertEquals(1, requests.size());
+
+      assertEquals(WebhookSendOutcome.DELIVERED, future.get());
+      assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(700);
+      assertEquals(2, requests.size());
+      assertEventStatus(WebhookEventStatus.DELIVERED, event1.getId());
+   }
+
+
+
+   /*******************************************************************************
+    ** the synchronous sendEvent should also go through the non-blocking client
+    *******************************************************************************/
+   @Test
+   void testSynchronousSendUsesAsyncClient() throws QException
+   {
+      Webhook      webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, insert(newWebhook("Test"))));
+      WebhookEvent event   = insertEvent(webhook.getId());
+
+      List<HttpRequest> requests = new ArrayList<>();
+      WebhookSendOutcome outcome = new AsyncSenderThatMocksHttp(requests, CompletableFuture.completedFuture(new MockResponse(200, "OK", Map.of())))
+         .sendEvent(event, webhook, List.of());
+
+      assertEquals(WebhookSendOutcome.DELIVERED, outcome);
+      assertEquals(1, requests.size());
+      assertEventStatus(WebhookEventStatus.DELIVERED, event.getId());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testHttpVersion() throws IOException
+   {
+      AsyncWebhookEventSender sender = new AsyncWebhookEventSender();
+
+      ///////////////////////////////////////////////////////////
+      // auto - HTTP/2 (via ALPN) for https, HTTP/1.1 for http //
+      ///////////////////////////////////////////////////////////
+      assertEquals(HttpClient.Version.HTTP_2, sender.buildHttpRequest("{}", null, newWebhook("Test").withUrl("https://example.com/hook")).version().orElse(null));
+      assertEquals(HttpClient.Version.HTTP_1_1, sender.buildHttpRequest("{}", null, newWebhook("Test").withUrl("http://example.com/hook")).version().orElse(null));
+      assertEquals(HttpClient.Version.HTTP_2, sender.buildHttpRequest("{}", null, newWebhook("Test").withUrl("https://example.com/hook").withHttpVersionId(WebhookHttpVersion.AUTO.getId())).version().orElse(null));
+
+      ////////////////////////////////////////
+      // forced to one version or the other //
+      ////////////////////////////////////////
+      assertEquals(HttpClient.Version.HTTP_1_1, sender.buildHttpRequest("{}", null, newWebhook("Test").withUrl("https://example.com/hook").withHttpVersionId(WebhookHttpVersion.HTTP_1_1.getId())).version().orElse(null));
+      assertEquals(HttpClient.Version.HTTP_2, sender.buildHttpRequest("{}", null, newWebhook("Test").withUrl("http://example.com/hook").withHttpVersionId(WebhookHttpVersion.HTTP_2.getId())).version().orElse(null));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testResponseBodyHandler() throws Exception
+   {
+      HttpResponse.BodyHandler<String> bodyHandler = new AsyncWebhookEventSender().newResponseBodyHandler();
+
+      ////////////////////////////////////////////////////////////////
+      // error response - only the first max-bytes (1024) are kept, //
+      // and the subscription is cancelled after that               //
+      ////////////////////////////////////////////////////////////////
+      HttpResponse.BodySubscriber<String> errorSubscriber = bodyHandler.apply(new MockResponseInfo(500));
+      MockSubscription                    subscription    = new MockSubscription();
+      errorSubscriber.onSubscribe(subscription);
+      errorSubscriber.onNext(List.of(ByteBuffer.wrap("x".repeat(1000).getBytes(StandardCharsets.UTF_8))));
+      assertFalse(subscription.cancelled);
+      errorSubscriber.onNext(List.of(ByteBuffer.wrap("y".repeat(1000).getBytes(StandardCharsets.UTF_8))));
+      assertTrue(subscription.cancelled);
+      assertEquals("x".repeat(1000) + "y".repeat(24), errorSubscriber.getBody().toCompletableFuture().get());
+
+      //////////////////////////////////////////
+      // successful response - body discarded //
+      //////////////////////////////////////////
+      HttpResponse.BodySubscriber<String> successSubscriber = bodyHandler.apply(new MockResponseInfo(200));
+      successSubscriber.onSubscribe(new MockSubscription());
+      successSubscriber.onNext(List.of(ByteBuffer.wrap("OK".getBytes(StandardCharsets.UTF_8))));
+      successSubscriber.onComplete();
+      assertNull(successSubscriber.getBody().toCompletableFuture().get());
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static WebhookEvent insertEvent(Integer webhookId) throws QException
+   {
+      Integer      subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer      eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+      WebhookEvent event          = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      return (event.withContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody("{}"))));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static void assertEventStatus(WebhookEventStatus webhookEventStatus, Integer eventId) throws QException
+   {
+      assertEquals(webhookEventStatus.getId(), GetAction.execute(WebhookEvent.TABLE_NAME, eventId).getValue("eventStatusId"));
+   }
+
+
+
+   /***************************************************************************
+    ** async sender that captures requests & returns a given response future
+    ***************************************************************************/
+   public static class AsyncSenderThatMocksHttp extends AsyncWebhookEventSender
+   {
+      private final List<HttpRequest>                       requests;
+      private final CompletableFuture<HttpResponse<String>> response;
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      public AsyncSenderThatMocksHttp(List<HttpRequest> requests, CompletableFuture<? extends HttpResponse<String>> response)
+      {
+         this.requests = requests;
+         this.response = response.thenApply(r -> r);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      protected CompletableFuture<HttpResponse<String>> executeAsyncHttpRequest(HttpClient httpClient, HttpRequest request)
+      {
+         requests.add(request);
+         return (response);
+      }
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private record MockResponseInfo(int statusCode) implements HttpResponse.ResponseInfo
+   {
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public HttpHeaders headers()
+      {
+         return (HttpHeaders.of(Map.of(), (k, v) -> true));
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public HttpClient.Version version()
+      {
+         return (HttpClient.Version.HTTP_1_1);
+      }
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static class MockSubscription implements Flow.Subscription
+   {
+      private boolean cancelled = false;
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void request(long n)
+      {
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public void cancel()
+      {
+         cancelled = true;
+      }
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   public record MockResponse(int statusCode, String body, Map<String, List<String>> headerMap) implements HttpResponse<String>
+   {
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public HttpRequest request()
+      {
+         return (null);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public Optional<HttpResponse<String>> previousResponse()
+      {
+         return (Optional.empty());
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public HttpHeaders headers()
+      {
+         return (HttpHeaders.of(headerMap, (k, v) -> true));
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public Optional<SSLSession> sslSession()
+      {
+         return (Optional.empty());
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public URI uri()
+      {
+         return (null);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public HttpClient.Version version()
+      {
+         return (HttpClient.Version.HTTP_1_1);
+      }
+   }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.model.WebhookCacheVersion;
+import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
+import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizerInterface;
+import com.kingsrook.qqq.backend.core.actions.customizers.TableCustomizers;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.AbstractActionInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.QueryOrGetInputInterface;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookCacheVersionManager
+ *******************************************************************************/
+class WebhookCacheVersionManagerTest extends BaseTest
+{
+   private static final List<QBackendTransaction> insertTransactions    = Collections.synchronizedList(new ArrayList<>());
+   private static final AtomicBoolean             hideRowsFromNextQuery = new AtomicBoolean(false);
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach()
+   {
+      insertTransactions.clear();
+      hideRowsFromNextQuery.set(false);
+
+      QCodeReference customizer = new QCodeReference(VersionTableCustomizer.class);
+      QContext.getQInstance().getTable(WebhookCacheVersion.TABLE_NAME)
+         .withCustomizer(TableCustomizers.POST_INSERT_RECORD, customizer)
+         .withCustomizer(TableCustomizers.POST_QUERY_RECORD, customizer);
+   }
+
+
+   /*******************************************************************************
+    ** versions start null, and every change gives a new one - kept in one row
+    ** per cache name.
+    *******************************************************************************/
+   @Test
+   void testChangeVersion() throws QException
+   {
+      assertNull(WebhookCacheVersionManager.getVersion("test"));
+
+      WebhookCacheVersionManager.changeVersion("test", null);
+      String version1 = WebhookCacheVersionManager.getVersion("test");
+      assertNotNull(version1);
+
+      WebhookCacheVersionManager.changeVersion("test", null);
+      String version2 = WebhookCacheVersionManager.getVersion("test");
+      assertNotNull(version2);
+      assertNotEquals(version1, version2);
+
+      WebhookCacheVersionManager.changeVersion("other", null);
+      assertEquals(version2, WebhookCacheVersionManager.getVersion("test"));
+      assertEquals(2, QueryAction.execute(WebhookCacheVersion.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    ** a change made in a transaction inserts a missing row on its own - outside
+    ** that transaction, where a failed insert couldn't abort it.
+    *******************************************************************************/
+   @Test
+   void testRowInsertedOutsideTransaction() throws QException
+   {
+      try(QBackendTransaction transaction = QBackendTransaction.openFor(new InsertInput(WebhookCacheVersion.TABLE_NAME)))
+      {
+         WebhookCacheVersionManager.changeVersion("test", transaction);
+         WebhookCacheVersionManager.changeVersion("test", transaction);
+         transaction.commit();
+      }
+
+      assertEquals(1, insertTransactions.size());
+      assertNull(insertTransactions.get(0));
+      assertNotNull(WebhookCacheVersionManager.getVersion("test"));
+      assertEquals(1, QueryAction.execute(WebhookCacheVersion.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    ** if another node inserts the row between this node finding it missing and
+    ** inserting it, this node's insert fails on the unique key - and it changes
+    ** the other node's row instead.
+    *******************************************************************************/
+   @Test
+   void testRowInsertedByAnotherNode() throws QException
+   {
+      new InsertAction().execute(new InsertInput(WebhookCacheVersion.TABLE_NAME).withRecordEntity(new WebhookCacheVersion().withName("test").withVersion("other-node")));
+
+      hideRowsFromNextQuery.set(true);
+      WebhookCacheVersionManager.changeVersion("test", null);
+
+      List<QRecord> records = QueryAction.execute(WebhookCacheVersion.TABLE_NAME, new QQueryFilter());
+      assertEquals(1, records.size());
+      assertNotEquals("other-node", records.get(0).getValueString("version"));
+   }
+
+
+
+   /***************************************************************************
+    ** customizer for the version table, that records the transactions of
+    ** inserts - and can make the next query find no rows, as if another node
+    ** hadn't inserted its row yet.
+    ***************************************************************************/
+   public static class VersionTableCustomizer implements TableCustomizerInterface
+   {
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public List<QRecord> postInsertOrUpdate(AbstractActionInput input, List<QRecord> records, Optional<List<QRecord>> oldRecordList) throws QException
+      {
+         if(input instanceof InsertInput insertInput)
+         {
+            insertTransactions.add(insertInput.getTransaction());
+         }
+         return (records);
+      }
+
+
+
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public List<QRecord> postQuery(QueryOrGetInputInterface queryInput, List<QRecord> records) throws QException
+      {
+         return (hideRowsFromNextQuery.getAndSet(false) ? new ArrayList<>() : records);
+      }
+   }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.model.WebhookEventCategory;
+import com.kingsrook.qbits.webhooks.model.WebhookEventContent;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qbits.webhooks.registry.WebhookEventType;
+import com.kingsrook.qbits.webhooks.registry.WebhooksRegistry;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeReference;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookEventBuilder
+ *******************************************************************************/
+class WebhookEventBuilderTest extends BaseTest
+{
+   private static final AtomicInteger buildCount = new AtomicInteger();
+
+
+
+   /*******************************************************************************
+    ** content is built once per source record (for the same event type & api),
+    ** no matter how many subscriptions it's added for.
+    *******************************************************************************/
+   @Test
+   void testContentBuiltOncePerRecord() throws QException
+   {
+      buildCount.set(0);
+
+      String eventTypeName = "counted-person-inserted";
+      WebhooksRegistry.ofOrWithNew(QContext.getQInstance()).registerWebhookEventType(new WebhookEventType()
+         .withName(eventTypeName)
+         .withCategory(WebhookEventCategory.INSERT)
+         .withTableName(WebhooksTestApplication.TABLE_NAME_PERSON)
+         .withCustomizer(new QCodeReference(CountingCustomizer.class)));
+
+      WebhookSubscription subscription0 = newWebhookSubscription(eventTypeName);
+      WebhookSubscription subscription1 = newWebhookSubscription(eventTypeName);
+
+      QRecord person0 = new QRecord().withTableName(WebhooksTestApplication.TABLE_NAME_PERSON).withValue("id", 1).withValue("firstName", "Darin");
+      QRecord person1 = new QRecord().withTableName(WebhooksTestApplication.TABLE_NAME_PERSON).withValue("id", 2).withValue("firstName", "Tim");
+
+      WebhookEventBuilder webhookEventBuilder = new WebhookEventBuilder();
+      webhookEventBuilder.addWebhookEvent(subscription0, person0);
+      webhookEventBuilder.addWebhookEvent(subscription1, person0);
+      webhookEventBuilder.addWebhookEvent(subscription0, person1);
+      assertEquals(2, buildCount.get());
+
+      webhookEventBuilder.storeWebhookEvents(null);
+
+      //////////////////////////////////////////////////////////////////////
+      // each event still gets its own content record - the first two     //
+      // (for the same person) with the same body, the third a different. //
+      //////////////////////////////////////////////////////////////////////
+      List<WebhookEventContent> contents = QueryAction.execute(WebhookEventContent.TABLE_NAME, WebhookEventContent.class, new QQueryFilter());
+      assertEquals(3, contents.size());
+      assertEquals(3, contents.stream().map(c -> c.getWebhookEventId()).distinct().count());
+      assertEquals(contents.get(0).getPostBody(), contents.get(1).getPostBody());
+      assertNotEquals(contents.get(0).getPostBody(), contents.get(2).getPostBody());
+   }
+
+
+
+   /***************************************************************************
+    ** customizer that counts how many times content is built.
+    ***************************************************************************/
+   public static class CountingCustomizer implements WebhookEventTypeCustomizerInterface
+   {
+      /***************************************************************************
+       **
+       ***************************************************************************/
+      @Override
+      public WebhookEventContent buildEventContent(QRecord sourceRecord, String webhookEventTypeName, String apiName, String apiVersion) throws QException
+      {
+         buildCount.incrementAndGet();
+         return (WebhookEventTypeCustomizerInterface.super.buildEventContent(sourceRecord, webhookEventTypeName, apiName, apiVersion));
+      }
+   }
+
+}
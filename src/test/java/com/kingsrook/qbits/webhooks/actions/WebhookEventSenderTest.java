@@ -22,14 +22,22 @@
 package com.kingsrook.qbits.webhooks.actions;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 import com.kingsrook.qbits.webhooks.BaseTest;
 import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
 import com.kingsrook.qbits.webhooks.model.Webhook;
@@ -38,6 +46,7 @@ import com.kingsrook.qbits.webhooks.model.WebhookEventContent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookRetryPolicy;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
@@ -47,6 +56,7 @@ import com.kingsrook.qqq.backend.core.logging.QLogger;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
 import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
 import com.kingsrook.qqq.backend.core.utils.collections.ListBuilder;
 import org.apache.http.Header;
 import org.apache.http.HeaderIterator;
@@ -64,12 +74,15 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicStatusLine;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.assertj.core.data.TemporalUnitWithinOffset;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -409,6 +422,98 @@ public class WebhookEventSenderTest extends BaseTest
 
 
 
+   /*******************************************************************************
+    ** the 3 retry policies' delays - fixed per attempt, or random within their
+    ** expected ranges.
+    *******************************************************************************/
+   @Test
+   void testRetryPolicies()
+   {
+      ////////////////////////////////////////////////////////////////////////
+      // fixed schedule follows minutesBetweenRetryAttempts (1,5,15,60,240) //
+      ////////////////////////////////////////////////////////////////////////
+      WebhookRetryPolicyInterface fixed = new FixedScheduleWebhookRetryPolicy();
+      assertEquals(Duration.ofMinutes(1), fixed.getRetryDelay(new WebhookEventSendLog().withAttemptNo(1), null));
+      assertEquals(Duration.ofMinutes(60), fixed.getRetryDelay(new WebhookEventSendLog().withAttemptNo(4), null));
+      assertEquals(Duration.ofMinutes(240), fixed.getRetryDelay(new WebhookEventSendLog().withAttemptNo(9), null));
+
+      ////////////////////////////////////////////////////////////////////////////
+      // exponential, from a 60 second base:  attempt 4 is in [240, 480]; later //
+      // attempts are capped at retryMaxSeconds (14400).                        //
+      ////////////////////////////////////////////////////////////////////////////
+      WebhookRetryPolicyInterface exponential = new ExponentialWebhookRetryPolicy();
+      Set<Long>                   delays      = new HashSet<>();
+      for(int i = 0; i < 100; i++)
+      {
+         long delay = exponential.getRetryDelay(new WebhookEventSendLog().withAttemptNo(4), null).toSeconds();
+         assertThat(delay).isBetween(240L, 480L);
+         delays.add(delay);
+         assertThat(exponential.getRetryDelay(new WebhookEventSendLog().withAttemptNo(20), null).toSeconds()).isBetween(7200L, 14400L);
+      }
+      assertThat(delays.size()).isGreaterThan(1);
+
+      //////////////////////////////////////////////////////////////////////////
+      // decorrelated jitter:  between the base and 3x the previous delay (or //
+      // the base, if no previous), capped at retryMaxSeconds.                //
+      //////////////////////////////////////////////////////////////////////////
+      WebhookRetryPolicyInterface decorrelatedJitter = new DecorrelatedJitterWebhookRetryPolicy();
+      delays.clear();
+      for(int i = 0; i < 100; i++)
+      {
+         assertThat(decorrelatedJitter.getRetryDelay(new WebhookEventSendLog().withAttemptNo(1), null).toSeconds()).isBetween(60L, 180L);
+
+         long delay = decorrelatedJitter.getRetryDelay(new WebhookEventSendLog().withAttemptNo(3), Duration.ofSeconds(1000)).toSeconds();
+         assertThat(delay).isBetween(60L, 3000L);
+         delays.add(delay);
+
+         assertThat(decorrelatedJitter.getRetryDelay(new WebhookEventSendLog().withAttemptNo(9), Duration.ofHours(10)).toSeconds()).isBetween(60L, 14400L);
+      }
+      assertThat(delays.size()).isGreaterThan(1);
+
+      ////////////////////////////////////////////////
+      // 410 is not retryable (by default); 503 is. //
+      ////////////////////////////////////////////////
+      assertFalse(exponential.isRetryable(new WebhookEventSendLog().withHttpStatusCode(410)));
+      assertTrue(exponential.isRetryable(new WebhookEventSendLog().withHttpStatusCode(503)));
+      assertTrue(exponential.isRetryable(new WebhookEventSendLog()));
+   }
+
+
+
+   /*******************************************************************************
+    ** a webhook's retry policy sets its failed events' next attempt times - and
+    ** a non-retryable status code fails an event on its first attempt.
+    *******************************************************************************/
+   @Test
+   void testRetryPolicyInSender() throws QException
+   {
+      Integer webhookId      = insert(newWebhook("Test").withRetryPolicyId(WebhookRetryPolicy.EXPONENTIAL.getId()));
+      Integer subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+
+      WebhookEvent event = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      event.setContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody("{}")));
+      Webhook webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId)).withRetryPolicyId(WebhookRetryPolicy.EXPONENTIAL.getId());
+
+      //////////////////////////////////////////////////////////////////////////
+      // 503 on a first attempt - exponential policy retries in 30-60 seconds //
+      //////////////////////////////////////////////////////////////////////////
+      assertFalse(new WebhookEventSenderThatMocksHttp(503, "Unavailable").handleEvent(event, webhook, new ArrayList<>()));
+      WebhookEvent updatedEvent = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      assertEquals(WebhookEventStatus.AWAITING_RETRY.getId(), updatedEvent.getEventStatusId());
+      assertThat(updatedEvent.getNextAttemptTimestamp()).isBetween(Instant.now().plusSeconds(28), Instant.now().plusSeconds(61));
+
+      /////////////////////////////////////////////////////////////
+      // 410 - fails right away, even with attempts left to make //
+      /////////////////////////////////////////////////////////////
+      assertFalse(new WebhookEventSenderThatMocksHttp(410, "Gone").handleEvent(updatedEvent, webhook, new ArrayList<>()));
+      updatedEvent = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      assertEquals(WebhookEventStatus.FAILED.getId(), updatedEvent.getEventStatusId());
+      assertNull(updatedEvent.getNextAttemptTimestamp());
+   }
+
+
+
    /*******************************************************************************
     **
     *******************************************************************************/
@@ -430,43 +535,357 @@ public class WebhookEventSenderTest extends BaseTest
       List<WebhookEventSendLog> sendLogs = new ArrayList<>();
 
       {
-         ///////////////////////////////////////////////////////////
-         // use http mocker that will always fail with rate limit //
-         ///////////////////////////////////////////////////////////
-         long               start  = System.currentTimeMillis();
+         //////////////////////////////////////////////////////////////////////////
+         // use http mocker that will always fail with rate limit.  the first    //
+         // few times, the event should be deferred (no send log, awaiting retry //
+         // until the resume time), without the sender sleeping.                 //
+         //////////////////////////////////////////////////////////////////////////
          WebhookEventSender sender = new WebhookEventSenderThatMocksHttp(429, "Too many requests");
+         for(int i = 1; i <= 3; i++)
+         {
+            assertEquals(WebhookSendOutcome.RATE_LIMITED, sender.sendEvent(event, webhook, sendLogs));
+            assertEquals(0, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, sendLogFilter).size());
+            assertEquals(i, WebhookRateLimitManager.getConsecutiveRateLimits(webhookId));
+
+            WebhookEvent updatedEvent = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+            assertEquals(WebhookEventStatus.AWAITING_RETRY.getId(), updatedEvent.getEventStatusId());
+            assertNotNull(updatedEvent.getNextAttemptTimestamp());
+
+            //////////////////////////////////////////////////////////////////////
+            // while deferred, sends don't even post - they're just rescheduled //
+            //////////////////////////////////////////////////////////////////////
+            assertNotNull(WebhookRateLimitManager.getResumeAt(webhookId));
+            assertEquals(WebhookSendOutcome.RATE_LIMITED, sender.sendEvent(event, webhook, sendLogs));
+            assertEquals(i, WebhookRateLimitManager.getConsecutiveRateLimits(webhookId));
+            SleepUtils.sleep(WebhookEventSenderThatMocksHttp.BACKOFF_MILLIS * (1L << i) + 5, TimeUnit.MILLISECONDS);
+         }
+
+         ////////////////////////////////////////////////////////////////////
+         // after too many consecutive rate limits, it's a regular failure //
+         ////////////////////////////////////////////////////////////////////
          assertFalse(sender.handleEvent(event, webhook, sendLogs));
          List<QRecord>       insertedSendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, sendLogFilter);
          WebhookEventSendLog sendLog          = new WebhookEventSendLog(insertedSendLogs.get(0));
-
-         long end = System.currentTimeMillis();
          assertEquals("Giving up after too many rate-limit errors (3).  Latest response: Too many requests", sendLog.getErrorMessage());
          assertFalse(sendLog.getSuccessful());
          assertEquals(429, sendLog.getHttpStatusCode());
-         assertThat(end - start).isGreaterThan(WebhookEventSenderThatMocksHttp.BACKOFF_MILLIS * 3L);
       }
 
       {
          ///////////////////////////////////////////////////////////////
          // use a sender that will rate-limit twice, but then succeed //
          ///////////////////////////////////////////////////////////////
+         WebhookRateLimitManager.clearAll();
          QCollectingLogger  collectingLogger = QLogger.activateCollectingLoggerForClass(WebhookEventSender.class);
-         long               start  = System.currentTimeMillis();
-         WebhookEventSender sender = new RateLimitPassEventuallySender("Too fast");
+         WebhookEventSender sender           = new RateLimitPassEventuallySender("Too fast");
+         assertEquals(WebhookSendOutcome.RATE_LIMITED, sender.sendEvent(event, webhook, sendLogs));
+         SleepUtils.sleep(WebhookEventSenderThatMocksHttp.BACKOFF_MILLIS * 2L + 5, TimeUnit.MILLISECONDS);
+         assertEquals(WebhookSendOutcome.RATE_LIMITED, sender.sendEvent(event, webhook, sendLogs));
+         SleepUtils.sleep(WebhookEventSenderThatMocksHttp.BACKOFF_MILLIS * 4L + 5, TimeUnit.MILLISECONDS);
          assertTrue(sender.handleEvent(event, webhook, sendLogs));
          List<QRecord>       insertedSendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, sendLogFilter);
          WebhookEventSendLog sendLog          = new WebhookEventSendLog(insertedSendLogs.get(0));
          QLogger.deactivateCollectingLoggerForClass(WebhookEventSender.class);
 
-         long end = System.currentTimeMillis();
          assertNull(sendLog.getErrorMessage());
          assertTrue(sendLog.getSuccessful());
          assertEquals(200, sendLog.getHttpStatusCode());
-         assertThat(end - start).isGreaterThan(WebhookEventSenderThatMocksHttp.BACKOFF_MILLIS * 3L);
+         assertEquals(0, WebhookRateLimitManager.getConsecutiveRateLimits(webhookId));
          assertThat(collectingLogger.getCollectedMessages())
-            .anyMatch(m -> m.getMessage().contains("Caught rate limit.  Will sleep and re-try"));
+            .anyMatch(m -> m.getMessage().contains("Caught rate limit.  Will defer webhook until resume time"));
       }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRetryAfter()
+   {
+      //////////////////////////////////////////////////
+      // seconds, http-date, and garbage retry-afters //
+      //////////////////////////////////////////////////
+      assertThat(WebhookRateLimitManager.parseRetryAfter("120")).isCloseTo(Instant.now().plusSeconds(120), WITHIN_5_SEC);
+      assertThat(WebhookRateLimitManager.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT")).isEqualTo(Instant.parse("2015-10-21T07:28:00Z"));
+      assertNull(WebhookRateLimitManager.parseRetryAfter("soon"));
+      assertNull(WebhookRateLimitManager.parseRetryAfter(null));
+
+      ////////////////////////////////////////////////////////////////////////
+      // retry-after later than our backoff wins; else backoff is the floor //
+      ////////////////////////////////////////////////////////////////////////
+      assertThat(WebhookRateLimitManager.recordRateLimit(1, "60", 1000)).isCloseTo(Instant.now().plusSeconds(60), WITHIN_5_SEC);
+      assertThat(WebhookRateLimitManager.recordRateLimit(2, "0", 30_000)).isCloseTo(Instant.now().plusSeconds(30), WITHIN_5_SEC);
+      assertThat(WebhookRateLimitManager.recordRateLimit(2, null, 30_000)).isCloseTo(Instant.now().plusSeconds(60), WITHIN_5_SEC);
+      assertEquals(2, WebhookRateLimitManager.getConsecutiveRateLimits(2));
+
+      //////////////////////////////////////////////////////////////////////
+      // a success resets the count, but the webhook stays deferred until //
+      // its resume time - and once that's passed, the state is dropped.  //
+      //////////////////////////////////////////////////////////////////////
+      WebhookRateLimitManager.recordNotRateLimited(2);
+      assertEquals(0, WebhookRateLimitManager.getConsecutiveRateLimits(2));
+      assertNotNull(WebhookRateLimitManager.getResumeAt(2));
+
+      WebhookRateLimitManager.recordRateLimit(3, "0", 1);
+      SleepUtils.sleep(10, TimeUnit.MILLISECONDS);
+      WebhookRateLimitManager.recordNotRateLimited(3);
+      assertEquals(0, WebhookRateLimitManager.getConsecutiveRateLimits(3));
+      assertNull(WebhookRateLimitManager.getResumeAt(3));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testResponseBodyHandling() throws Exception
+   {
+      ////////////////////////////////////////////////////////
+      // bodies are read only up to the max number of bytes //
+      ////////////////////////////////////////////////////////
+      WebhookEventSender sender = new WebhookEventSender();
+      assertEquals(1024, sender.readResponseBody(new StringEntity("x".repeat(5000)), 1024).length());
+      assertEquals("Short", sender.readResponseBody(new StringEntity("Short"), 1024));
+      assertNull(sender.readResponseBody(null, 1024));
+
+      ///////////////////////////////////////////////////////////////////
+      // successful responses' bodies aren't read at all - errors' are //
+      ///////////////////////////////////////////////////////////////////
+      Integer webhookId      = insert(newWebhook("Test"));
+      Integer subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+
+      WebhookEvent event = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      event.setContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody("{}")));
+      Webhook webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
 
+      List<String> bodiesRead = new ArrayList<>();
+      for(int statusCode : List.of(200, 500))
+      {
+         WebhookEventSender countingSender = new WebhookEventSenderThatMocksHttp(statusCode, "Response for " + statusCode)
+         {
+            @Override
+            protected String readResponseBody(HttpEntity entity, int maxBytes) throws IOException
+            {
+               String body = super.readResponseBody(entity, maxBytes);
+               bodiesRead.add(body);
+               return (body);
+            }
+         };
+         countingSender.handleEvent(event, webhook, new ArrayList<>());
+      }
+      assertEquals(List.of("Response for 500"), bodiesRead);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testGzipCompression() throws Exception
+   {
+      Integer webhookId      = insert(newWebhook("Test").withUseGzipCompression(true));
+      Integer subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+
+      String       postBody = "{\"name\": \"" + "Darin ".repeat(100) + "\"}";
+      WebhookEvent event    = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      event.setContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody(postBody)));
+      Webhook webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      List<HttpPost> requests = new ArrayList<>();
+      WebhookEventSender sender = new WebhookEventSenderThatMocksHttp(500, "Try again")
+      {
+         @Override
+         protected CloseableHttpResponse executeHttpRequest(CloseableHttpClient httpClient, HttpPost request) throws IOException
+         {
+            requests.add(request);
+            return (super.executeHttpRequest(httpClient, request));
+         }
+      };
+
+      //////////////////////////////////////////////////////////////////////////
+      // send (and fail) twice - both posts should be the same gzipped bytes, //
+      // compressed once and then taken from the cache.                       //
+      //////////////////////////////////////////////////////////////////////////
+      sender.handleEvent(event, webhook, new ArrayList<>());
+      assertTrue(WebhookCompressedBodyCache.isCached(WebhookCompressedBodyCache.getCacheKey(eventId)));
+      sender.handleEvent(event, webhook, new ArrayList<>());
+
+      assertEquals(2, requests.size());
+      for(HttpPost request : requests)
+      {
+         assertEquals("gzip", request.getFirstHeader("Content-Encoding").getValue());
+         byte[] bytes = EntityUtils.toByteArray(request.getEntity());
+         assertThat(bytes.length).isLessThan(postBody.length());
+         try(GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes)))
+         {
+            assertEquals(postBody, new String(gzipInputStream.readAllBytes(), StandardCharsets.UTF_8));
+         }
+      }
+      assertSame(WebhookCompressedBodyCache.getOrCompress(WebhookCompressedBodyCache.getCacheKey(eventId), postBody), WebhookCompressedBodyCache.getOrCompress(WebhookCompressedBodyCache.getCacheKey(eventId), postBody));
+
+      /////////////////////////////////////////////
+      // without the setting, body is sent as-is //
+      /////////////////////////////////////////////
+      requests.clear();
+      sender.handleEvent(event, webhook.withUseGzipCompression(false), new ArrayList<>());
+      assertNull(requests.get(0).getFirstHeader("Content-Encoding"));
+      assertEquals(postBody, EntityUtils.toString(requests.get(0).getEntity()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testAdaptiveReadTimeouts()
+   {
+      Webhook webhook = newWebhook("Test");
+
+      //////////////////////////////////////////////////////////
+      // with adaptive off, always get the configured timeout //
+      //////////////////////////////////////////////////////////
+      WebhookEventSender sender = new WebhookEventSender();
+      assertEquals(5000, sender.getReadTimeoutMillis(webhook));
+      assertEquals(5000, sender.buildRequestConfig(webhook).getSocketTimeout());
+      assertEquals(5000, sender.buildRequestConfig(webhook).getConnectTimeout());
+
+      ////////////////////////////////////////////////////////////////////////////
+      // with adaptive on, but not enough samples yet, still get the configured //
+      ////////////////////////////////////////////////////////////////////////////
+      WebhookEventSender adaptiveSender = new WebhookEventSender()
+      {
+         @Override
+         protected boolean isUseAdaptiveReadTimeouts()
+         {
+            return (true);
+         }
+      };
+      assertEquals(5000, adaptiveSender.getReadTimeoutMillis(webhook));
+
+      ///////////////////////////////////////////////////////
+      // fast endpoint - p99 of 500ms, times 3, gives 1500 //
+      ///////////////////////////////////////////////////////
+      for(int i = 0; i < WebhookLatencyTracker.MIN_SAMPLES_TO_USE; i++)
+      {
+         WebhookLatencyTracker.recordLatency(webhook.getId(), 500);
+      }
+      assertEquals(1500, adaptiveSender.getReadTimeoutMillis(webhook));
+
+      ////////////////////////////////////////////////////
+      // very fast endpoint - bounded by the min (1000) //
+      ////////////////////////////////////////////////////
+      WebhookLatencyTracker.clear(webhook.getId());
+      for(int i = 0; i < WebhookLatencyTracker.WINDOW_SIZE; i++)
+      {
+         WebhookLatencyTracker.recordLatency(webhook.getId(), 10);
+      }
+      assertEquals(1000, adaptiveSender.getReadTimeoutMillis(webhook));
+
+      ///////////////////////////////////////////////////////////////////
+      // slow endpoint - bounded by the configured read timeout (5000) //
+      ///////////////////////////////////////////////////////////////////
+      for(int i = 0; i < WebhookLatencyTracker.WINDOW_SIZE; i++)
+      {
+         WebhookLatencyTracker.recordLatency(webhook.getId(), 4000);
+      }
+      assertEquals(5000, adaptiveSender.getReadTimeoutMillis(webhook));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testAdaptiveReadTimeoutGrowsBackAfterTimeouts() throws QException
+   {
+      Integer webhookId      = insert(newWebhook("Test"));
+      Integer subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+
+      WebhookEvent event = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      event.setContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody("{}")));
+      Webhook webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      WebhookEventSender sender = new WebhookEventSenderThatMocksHttp(new SocketTimeoutException("Read timed out"))
+      {
+         @Override
+         protected boolean isUseAdaptiveReadTimeouts()
+         {
+            return (true);
+         }
+      };
+
+      //////////////////////////////////////////////////////////////////////
+      // a fast endpoint gets the min timeout (1000) - which then becomes //
+      // too short for it, e.g., because the endpoint slowed down.        //
+      //////////////////////////////////////////////////////////////////////
+      for(int i = 0; i < WebhookLatencyTracker.WINDOW_SIZE; i++)
+      {
+         WebhookLatencyTracker.recordLatency(webhookId, 10);
+      }
+      assertEquals(1000, sender.getReadTimeoutMillis(webhook));
+
+      /////////////////////////////////////////////////////////////////////////
+      // timeouts are recorded as samples at the timeout - so once there are //
+      // enough of them to reach the percentile (p99 of 100 samples - so the //
+      // 2nd highest), the timeout grows (times 3).                          //
+      /////////////////////////////////////////////////////////////////////////
+      for(int i = 0; i < 2; i++)
+      {
+         sender.handleEvent(event, webhook, new ArrayList<>());
+         assertTrue(sender.isLastPostTimedOut());
+      }
+      assertEquals(3000, sender.getReadTimeoutMillis(webhook));
+
+      ///////////////////////////////////////////////////////////////////
+      // and keeps growing while posts time out - up to the max (5000) //
+      ///////////////////////////////////////////////////////////////////
+      for(int i = 0; i < 2; i++)
+      {
+         sender.handleEvent(event, webhook, new ArrayList<>());
+      }
+      assertEquals(5000, sender.getReadTimeoutMillis(webhook));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testLastPostLatencyExcludesRateLimitWait() throws QException
+   {
+      Integer webhookId      = insert(newWebhook("Test").withMaxRequestsPerSecond(1));
+      Integer subscriptionId = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      Integer eventId        = insert(newWebhookEvent(new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId)), WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME));
+
+      WebhookEvent event = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId));
+      event.setContent(List.of(new WebhookEventContent().withWebhookEventId(eventId).withPostBody("{}")));
+      Webhook webhook = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      ///////////////////////////////////////////////////////////////////////////
+      // at 1 request per second, the 2nd post waits ~1 second for its token - //
+      // which should not count as latency, only the (mocked) http round-trip. //
+      ///////////////////////////////////////////////////////////////////////////
+      WebhookEventSender sender = new WebhookEventSenderThatMocksHttp(200, "OK");
+      assertEquals(WebhookSendOutcome.DELIVERED, sender.sendEvent(event, webhook, new ArrayList<>()));
+      assertEquals(WebhookSendOutcome.DELIVERED, sender.sendEvent(event, webhook, new ArrayList<>()));
+      assertThat(sender.getLastPostLatencyMillis()).isNotNull().isLessThan(500);
+
+      /////////////////////////////////////////////////
+      // a post that gets no response has no latency //
+      /////////////////////////////////////////////////
+      WebhookEventSender failingSender = new WebhookEventSenderThatMocksHttp(new IOException("Connection refused"));
+      failingSender.sendEvent(event, webhook, new ArrayList<>());
+      assertNull(failingSender.getLastPostLatencyMillis());
    }
 
 
@@ -513,7 +932,7 @@ public class WebhookEventSenderTest extends BaseTest
       protected String      responseBody;
       private   IOException e;
 
-      public static final Integer BACKOFF_MILLIS = 3;
+      public static final Integer BACKOFF_MILLIS = 100;
 
 
 
@@ -22,12 +22,11 @@
 package com.kingsrook.qbits.webhooks.actions;
 
 
-import java.util.Stack;
 import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
 import com.kingsrook.qbits.webhooks.model.Webhook;
-import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
-import com.kingsrook.qbits.webhooks.processes.SendWebhookEventLoadStep;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -48,61 +47,130 @@ class WebhookHealthManagerTest extends BaseTest
       Webhook webhook = newWebhook("test");
       webhook.setId(insert(webhook));
 
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeStack(1));
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeStack(1, 1));
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeStack(0, 1, 1));
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeStack(0, 0, 0, 0, 0, 0, 0, 0, 0, 1));
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeWindow(1));
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeWindow(1, 1));
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeWindow(0, 1, 1));
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeWindow(0, 0, 0, 0, 0, 0, 0, 0, 0, 1));
 
-      Stack<WebhookEventSendLog> tenFails = makeStack(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+      WebhookHealthWindow tenFails = makeWindow(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
       assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, tenFails);
 
-      ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-      // make sure that pushing another event onto a stack that was full of fails, that it then lets a success go out of probation //
-      ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-      tenFails.push(new WebhookEventSendLog().withSuccessful(true));
+      ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+      // make sure that recording another event in a window that was full of fails, that it then lets a success go out of probation //
+      ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+      tenFails.record(true);
       webhook.setHealthStatusId(WebhookHealthStatus.PROBATION.getId());
       assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, tenFails);
 
       webhook.setHealthStatusId(WebhookHealthStatus.PROBATION.getId());
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeStack(0, 1, 1, 1));
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, makeWindow(0, 1, 1, 1));
 
-      ///////////////////////////////////////////////////////////////////
-      // start webhook HEALTHy, and stack with 5 success, then 8 fails //
-      ///////////////////////////////////////////////////////////////////
+      ////////////////////////////////////////////////////////////////////
+      // start webhook HEALTHy, and window with 5 success, then 8 fails //
+      ////////////////////////////////////////////////////////////////////
       webhook.setHealthStatusId(WebhookHealthStatus.HEALTHY.getId());
-      Stack<WebhookEventSendLog> stack = makeStack(1);
+      WebhookHealthWindow window = makeWindow(1);
       for(int i = 0; i < 4; i++)
       {
-         stack.push(new WebhookEventSendLog().withSuccessful(true));
+         window.record(true);
       }
       for(int i = 0; i < 8; i++)
       {
-         stack.push(new WebhookEventSendLog().withSuccessful(false));
+         window.record(false);
       }
 
       //////////////////
       // stay healthy //
       //////////////////
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, stack);
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
 
       /////////////////////////////////////////
       // another fail (now 9), stays healthy //
       /////////////////////////////////////////
-      stack.push(new WebhookEventSendLog().withSuccessful(false));
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, stack);
+      window.record(false);
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
 
       ///////////////////////////////////////////
       // another fail (now 10), goes unhealthy //
       ///////////////////////////////////////////
-      stack.push(new WebhookEventSendLog().withSuccessful(false));
-      assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, stack);
+      window.record(false);
+      assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, window);
 
       /////////////////////////////////////////////////////////////////////
       // now if we got to probation, then a success, and we'd go healthy //
       /////////////////////////////////////////////////////////////////////
       webhook.setHealthStatusId(WebhookHealthStatus.PROBATION.getId());
-      stack.push(new WebhookEventSendLog().withSuccessful(true));
-      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, stack);
+      window.record(true);
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
+   }
+
+
+
+   /*******************************************************************************
+    ** failure rate, timeout rate, and p95 latency thresholds, over the window
+    *******************************************************************************/
+   @Test
+   void testWindowThresholds() throws QException
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.withHealthWindowMinSamples(10).withUnhealthyFailureRatePercent(50);
+
+      Webhook webhook = newWebhook("test");
+      webhook.setId(insert(webhook));
+
+      //////////////////////////////////////////////////////////////////////
+      // half failing - but not in-a-row - stays healthy until the window //
+      // has the min number of samples, then goes unhealthy               //
+      //////////////////////////////////////////////////////////////////////
+      WebhookHealthWindow window = new WebhookHealthWindow(100);
+      for(int i = 0; i < 4; i++)
+      {
+         window.record(true);
+         window.record(false);
+      }
+      window.record(true);
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
+      window.record(false);
+      assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, window);
+
+      ////////////////////////////////////////////////////////////////////////////
+      // a success from probation goes healthy - and starts the window over, so //
+      // the earlier failures don't put it right back to unhealthy              //
+      ////////////////////////////////////////////////////////////////////////////
+      webhook.setHealthStatusId(WebhookHealthStatus.PROBATION.getId());
+      window.record(true);
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
+      assertEquals(0, window.getSize());
+
+      ///////////////////////////////////////////////////////
+      // timeouts - 3 of 10 (with a 30% limit) is too many //
+      ///////////////////////////////////////////////////////
+      config.withUnhealthyFailureRatePercent(null).withUnhealthyTimeoutRatePercent(30);
+      webhook.setHealthStatusId(WebhookHealthStatus.HEALTHY.getId());
+      window = new WebhookHealthWindow(100);
+      for(int i = 0; i < 3; i++)
+      {
+         window.record(true, false, 100L);
+         window.record(true, false, 100L);
+         window.record(false, true, 5000L);
+      }
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
+      window.record(true, false, 100L);
+      assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, window);
+
+      ////////////////////////////////////////////////////////////////////////
+      // latency - all successful, but slow enough at p95 to breach the SLO //
+      ////////////////////////////////////////////////////////////////////////
+      config.withUnhealthyTimeoutRatePercent(null).withUnhealthyP95LatencyMillis(1000);
+      webhook.setHealthStatusId(WebhookHealthStatus.HEALTHY.getId());
+      window = new WebhookHealthWindow(100);
+      for(int i = 0; i < 10; i++)
+      {
+         window.record(true, false, 100L);
+      }
+      assertHealthStatus(WebhookHealthStatus.HEALTHY, webhook, window);
+      window.record(true, false, 2000L);
+      assertHealthStatus(WebhookHealthStatus.UNHEALTHY, webhook, window);
    }
 
 
@@ -110,9 +178,9 @@ class WebhookHealthManagerTest extends BaseTest
    /***************************************************************************
     **
     ***************************************************************************/
-   private void assertHealthStatus(WebhookHealthStatus expected, Webhook webhook, Stack<WebhookEventSendLog> recentSendLogs) throws QException
+   private void assertHealthStatus(WebhookHealthStatus expected, Webhook webhook, WebhookHealthWindow healthWindow) throws QException
    {
-      Webhook updatedWebhook = new WebhookHealthManager().updateWebhookHealth(recentSendLogs, webhook);
+      Webhook updatedWebhook = new WebhookHealthManager().updateWebhookHealth(healthWindow, webhook);
       assertEquals(expected.getId(), updatedWebhook.getHealthStatusId());
    }
 
@@ -121,12 +189,12 @@ class WebhookHealthManagerTest extends BaseTest
    /***************************************************************************
     **
     ***************************************************************************/
-   private static Stack<WebhookEventSendLog> makeStack(int... values)
+   private static WebhookHealthWindow makeWindow(int... values)
    {
-      Stack<WebhookEventSendLog> rs = new SendWebhookEventLoadStep().newSendLogStack(10);
+      WebhookHealthWindow rs = new WebhookHealthWindow(10);
       for(int value : values)
       {
-         rs.add(new WebhookEventSendLog().withId(rs.size() + 1).withSuccessful(value == 1));
+         rs.record(value == 1);
       }
       return (rs);
    }
@@ -0,0 +1,147 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookHealthWindow
+ *******************************************************************************/
+class WebhookHealthWindowTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRecord()
+   {
+      WebhookHealthWindow window = new WebhookHealthWindow(3);
+      assertEquals(0, window.getSize());
+      assertFalse(window.isLastSuccessful());
+
+      window.record(false);
+      window.record(false);
+      assertEquals(2, window.getSize());
+      assertEquals(2, window.getFailureCount());
+      assertEquals(2, window.getConsecutiveFailCount());
+      assertFalse(window.isLastSuccessful());
+
+      window.record(true);
+      assertEquals(3, window.getSize());
+      assertEquals(2, window.getFailureCount());
+      assertEquals(0, window.getConsecutiveFailCount());
+      assertTrue(window.isLastSuccessful());
+
+      ////////////////////////////////////////////////////////////
+      // once full, the oldest outcomes are evicted as new come //
+      ////////////////////////////////////////////////////////////
+      window.record(true);
+      assertEquals(3, window.getSize());
+      assertEquals(1, window.getFailureCount());
+
+      window.record(false);
+      window.record(false);
+      window.record(false);
+      window.record(false);
+      assertEquals(3, window.getSize());
+      assertEquals(3, window.getFailureCount());
+      assertEquals(4, window.getConsecutiveFailCount());
+      assertFalse(window.isLastSuccessful());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testSeeded()
+   {
+      WebhookHealthWindow window = WebhookHealthWindow.seeded(10, null);
+      assertEquals(0, window.getSize());
+      assertEquals(0, window.getConsecutiveFailCount());
+
+      window = WebhookHealthWindow.seeded(10, 4);
+      assertEquals(4, window.getSize());
+      assertEquals(4, window.getFailureCount());
+      assertEquals(4, window.getConsecutiveFailCount());
+
+      /////////////////////////////////////////////////////////////////
+      // a run of fails longer than the window keeps its full length //
+      /////////////////////////////////////////////////////////////////
+      window = WebhookHealthWindow.seeded(10, 25);
+      assertEquals(10, window.getSize());
+      assertEquals(10, window.getFailureCount());
+      assertEquals(25, window.getConsecutiveFailCount());
+
+      window.record(true);
+      assertEquals(9, window.getFailureCount());
+      assertEquals(0, window.getConsecutiveFailCount());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testRatesAndLatency()
+   {
+      WebhookHealthWindow window = new WebhookHealthWindow(4);
+      assertEquals(0, window.getFailureRatePercent());
+      assertNull(window.getPercentileLatencyMillis(95));
+
+      window.record(true, false, 100L);
+      window.record(false, true, 3000L);
+      window.record(true, false, 200L);
+      window.record(false, false, null);
+      assertEquals(50, window.getFailureRatePercent());
+      assertEquals(25, window.getTimeoutRatePercent());
+      assertEquals(3, window.getLatencyCount());
+      assertEquals(200, window.getPercentileLatencyMillis(50));
+      assertEquals(3000, window.getPercentileLatencyMillis(95));
+
+      ///////////////////////////////////////////////////////////////////
+      // evicting the oldest outcomes takes their timeouts & latencies //
+      ///////////////////////////////////////////////////////////////////
+      window.record(true, false, 100L);
+      window.record(true, false, 100L);
+      assertEquals(25, window.getFailureRatePercent());
+      assertEquals(0, window.getTimeoutRatePercent());
+      assertEquals(3, window.getLatencyCount());
+      assertEquals(200, window.getPercentileLatencyMillis(95));
+
+      window.reset();
+      assertEquals(0, window.getSize());
+      assertEquals(0, window.getLatencyCount());
+      assertFalse(window.isLastSuccessful());
+   }
+
+}
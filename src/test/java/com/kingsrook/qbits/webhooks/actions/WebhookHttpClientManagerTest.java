@@ -0,0 +1,202 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qqq.backend.core.actions.tables.DeleteAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookHttpClientManager (and CloseWebhookHttpClientTableCustomizer)
+ *******************************************************************************/
+class WebhookHttpClientManagerTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testClientIsReused()
+   {
+      CloseableHttpClient client1 = WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient());
+      CloseableHttpClient client2 = WebhookHttpClientManager.getHttpClient(2, () -> new WebhookEventSender().buildHttpClient());
+
+      assertSame(client1, WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient()));
+      assertSame(client2, WebhookHttpClientManager.getHttpClient(2, () -> new WebhookEventSender().buildHttpClient()));
+      assertNotSame(client1, client2);
+
+      WebhookHttpClientManager.close(1);
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactly(2);
+      assertNotSame(client1, WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testQInstanceChangeClosesAll()
+   {
+      WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient());
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactly(1);
+
+      QInstance originalInstance = QContext.getQInstance();
+      try
+      {
+         QContext.init(new QInstance(), QContext.getQSession());
+         WebhookHttpClientManager.getHttpClient(2, () -> new WebhookEventSender().buildHttpClient());
+         assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactly(2);
+      }
+      finally
+      {
+         QContext.init(originalInstance, QContext.getQSession());
+      }
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testNoQInstanceKeepsClients()
+   {
+      CloseableHttpClient client1 = WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient());
+
+      QInstance qInstance = QContext.getQInstance();
+      QSession  qSession  = QContext.getQSession();
+      try
+      {
+         ///////////////////////////////////////////////////////////////////
+         // e.g., a thread without a context - shouldn't close everything //
+         ///////////////////////////////////////////////////////////////////
+         QContext.clear();
+         assertSame(client1, WebhookHttpClientManager.getHttpClient(1, () -> HttpClients.createDefault()));
+      }
+      finally
+      {
+         QContext.init(qInstance, qSession);
+      }
+
+      assertSame(client1, WebhookHttpClientManager.getHttpClient(1, () -> new WebhookEventSender().buildHttpClient()));
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactly(1);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testOneEvictionThreadForAllClients()
+   {
+      for(int i = 1; i <= 10; i++)
+      {
+         WebhookHttpClientManager.getHttpClient(i, () -> new WebhookEventSender().buildHttpClient());
+      }
+
+      List<String> threadNames = Thread.getAllStackTraces().keySet().stream().map(t -> t.getName()).toList();
+      assertThat(threadNames).contains("webhook-http-connection-evictor");
+      assertThat(threadNames).filteredOn(name -> name.startsWith("Connection evictor")).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testCloseAllShutsDownCompletionExecutor()
+   {
+      ExecutorService completionExecutor = WebhookHttpClientManager.getAsyncCompletionExecutor();
+      assertSame(completionExecutor, WebhookHttpClientManager.getAsyncCompletionExecutor());
+
+      WebhookHttpClientManager.closeAll();
+      assertTrue(completionExecutor.isShutdown());
+
+      ExecutorService newCompletionExecutor = WebhookHttpClientManager.getAsyncCompletionExecutor();
+      assertNotSame(completionExecutor, newCompletionExecutor);
+      assertFalse(newCompletionExecutor.isShutdown());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testTableCustomizer() throws QException
+   {
+      Integer webhookId1 = insert(newWebhook("one"));
+      Integer webhookId2 = insert(newWebhook("two"));
+      Integer webhookId3 = insert(newWebhook("three"));
+      List.of(webhookId1, webhookId2, webhookId3).forEach(id -> WebhookHttpClientManager.getHttpClient(id, () -> new WebhookEventSender().buildHttpClient()));
+
+      //////////////////////////////////////////////////////////
+      // updating something other than url or status keeps it //
+      //////////////////////////////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId1).withValue("description", "new description")));
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactlyInAnyOrder(webhookId1, webhookId2, webhookId3);
+
+      ////////////////////////////////////////
+      // changing the url closes the client //
+      ////////////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId1).withValue("url", "https://new.url/")));
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactlyInAnyOrder(webhookId2, webhookId3);
+
+      /////////////////////////////////
+      // disabling closes the client //
+      /////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId2).withValue("activeStatusId", WebhookActiveStatus.DISABLED.getId())));
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).containsExactlyInAnyOrder(webhookId3);
+
+      ////////////////////////////////
+      // deleting closes the client //
+      ////////////////////////////////
+      new DeleteAction().execute(new DeleteInput(Webhook.TABLE_NAME).withPrimaryKeys(List.of(webhookId3)));
+      assertThat(WebhookHttpClientManager.getWebhookIdsWithClients()).isEmpty();
+   }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.model.WebhookLock;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookLockManager
+ *******************************************************************************/
+class WebhookLockManagerTest extends BaseTest
+{
+
+   /*******************************************************************************
+    ** a lock can only be held by one holder at a time - until it's released by
+    ** that holder, or it expires.
+    *******************************************************************************/
+   @Test
+   void testTryLockAndUnlock() throws QException
+   {
+      assertTrue(WebhookLockManager.tryLock("test", "a", 60));
+      assertFalse(WebhookLockManager.tryLock("test", "b", 60));
+      assertTrue(WebhookLockManager.tryLock("other", "b", 60));
+
+      ////////////////////////////////////////////////
+      // only the holder's unlock releases the lock //
+      ////////////////////////////////////////////////
+      WebhookLockManager.unlock("test", "b");
+      assertFalse(WebhookLockManager.tryLock("test", "b", 60));
+      WebhookLockManager.unlock("test", "a");
+      assertTrue(WebhookLockManager.tryLock("test", "b", 60));
+
+      //////////////////////////////////////////////////
+      // an expired lock can be taken by someone else //
+      //////////////////////////////////////////////////
+      QRecord lock = QueryAction.execute(WebhookLock.TABLE_NAME, new QQueryFilter()).stream().filter(r -> "test".equals(r.getValueString("name"))).findFirst().orElseThrow();
+      new UpdateAction().execute(new UpdateInput(WebhookLock.TABLE_NAME).withRecord(new QRecord()
+         .withValue("id", lock.getValue("id"))
+         .withValue("expiresTimestamp", Instant.now().minusSeconds(1))));
+      assertTrue(WebhookLockManager.tryLock("test", "a", 60));
+      assertEquals(2, QueryAction.execute(WebhookLock.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookOutboundRate;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookOutboundRateLimiter
+ *******************************************************************************/
+class WebhookOutboundRateLimiterTest extends BaseTest
+{
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testNoLimit() throws QException
+   {
+      Webhook webhook = newWebhook("test");
+
+      long start = System.currentTimeMillis();
+      for(int i = 0; i < 100; i++)
+      {
+         WebhookOutboundRateLimiter.acquire(webhook);
+      }
+      assertThat(System.currentTimeMillis() - start).isLessThan(500);
+      assertNull(WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testLimit() throws QException
+   {
+      Webhook webhook = newWebhook("test").withMaxRequestsPerSecond(5);
+      webhook.setId(insert(webhook));
+
+      /////////////////////////////////////////////////////////////////////////
+      // first 5 can burst; next 5 must be spaced out, 200ms each, so ~1 sec //
+      /////////////////////////////////////////////////////////////////////////
+      long start = System.currentTimeMillis();
+      for(int i = 0; i < 10; i++)
+      {
+         WebhookOutboundRateLimiter.acquire(webhook);
+      }
+      assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(800);
+      assertEquals(5.0, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testOtherNodesSendsReduceLocalRate() throws QException
+   {
+      Webhook webhook = newWebhook("test").withMaxRequestsPerSecond(5);
+      webhook.setId(insert(webhook));
+
+      //////////////////////////////////////////////////////////////////////////
+      // simulate 2 other nodes sending a total of 3 requests per second, and //
+      // one that stopped sending a while ago (so shouldn't count).           //
+      //////////////////////////////////////////////////////////////////////////
+      insertRate(webhook, "node-a", 1, Instant.now());
+      insertRate(webhook, "node-b", 2, Instant.now());
+      insertRate(webhook, "node-c", 5, Instant.now().minusSeconds(60));
+
+      WebhookOutboundRateLimiter.acquire(webhook);
+      assertEquals(2.0, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+
+      //////////////////////////////////////////////////////////
+      // our own node's rate should have been stored, as well //
+      //////////////////////////////////////////////////////////
+      assertEquals(4, QueryAction.execute(WebhookOutboundRate.TABLE_NAME, new QQueryFilter()).size());
+
+      /////////////////////////////////////////////////////////////////////////
+      // even if others use the full limit, we still get our fair share (the //
+      // limit split over the 4 nodes now sending).                          //
+      /////////////////////////////////////////////////////////////////////////
+      WebhookOutboundRateLimiter.clearAll();
+      insertRate(webhook, "node-d", 10, Instant.now());
+      WebhookOutboundRateLimiter.acquire(webhook);
+      assertEquals(1.25, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+
+      ////////////////////////////////////////////////////////////////////
+      // our node's row should have been updated (not another inserted) //
+      ////////////////////////////////////////////////////////////////////
+      assertEquals(5, QueryAction.execute(WebhookOutboundRate.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testTwoBackloggedNodesShareLimit() throws QException
+   {
+      ///////////////////////////////////////////////////////////////////////////
+      // another node, backlogged, has been sending at the whole limit - we    //
+      // (also backlogged) should get half, not the 1 request/second left over //
+      ///////////////////////////////////////////////////////////////////////////
+      Webhook webhook = newWebhook("test").withMaxRequestsPerSecond(10);
+      webhook.setId(insert(webhook));
+      insertRate(webhook, "node-a", 10, Instant.now());
+
+      WebhookOutboundRateLimiter.acquire(webhook);
+      assertEquals(5.0, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+
+      ///////////////////////////////////////////////////////////////////////////
+      // if the other node sends less than its half, we can use what it leaves //
+      ///////////////////////////////////////////////////////////////////////////
+      Webhook otherWebhook = newWebhook("other").withMaxRequestsPerSecond(10);
+      otherWebhook.setId(insert(otherWebhook));
+      insertRate(otherWebhook, "node-a", 3, Instant.now());
+
+      WebhookOutboundRateLimiter.acquire(otherWebhook);
+      assertEquals(7.0, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(otherWebhook.getId()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testStaleRatesAreDeleted() throws QException
+   {
+      Webhook webhook = newWebhook("test").withMaxRequestsPerSecond(5);
+      webhook.setId(insert(webhook));
+
+      insertRate(webhook, "shut-down-node", 3, Instant.now().minusMillis(WebhookOutboundRateLimiter.STALE_RATE_MILLIS + 1000));
+      WebhookOutboundRateLimiter.acquire(webhook);
+
+      List<QRecord> rates = QueryAction.execute(WebhookOutboundRate.TABLE_NAME, new QQueryFilter());
+      assertEquals(1, rates.size());
+      assertNotEquals("shut-down-node", rates.get(0).getValueString("nodeId"));
+      assertEquals(5.0, WebhookOutboundRateLimiter.getCurrentPermitsPerSecond(webhook.getId()));
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   private static void insertRate(Webhook webhook, String nodeId, int requestsPerSecond, Instant periodEndTimestamp) throws QException
+   {
+      new InsertAction().execute(new InsertInput(WebhookOutboundRate.TABLE_NAME).withRecordEntity(new WebhookOutboundRate()
+         .withWebhookId(webhook.getId())
+         .withNodeId(nodeId)
+         .withRequestsPerSecond(requestsPerSecond)
+         .withPeriodEndTimestamp(periodEndTimestamp)));
+   }
+
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testBucketMaxWait()
+   {
+      WebhookTokenBucket bucket = new WebhookTokenBucket(2);
+      assertEquals(0, bucket.reserve(1000));
+      assertEquals(0, bucket.reserve(1000));
+      assertThat(bucket.reserve(1000)).isBetween(400L, 500L);
+      assertThat(bucket.reserve(1000)).isBetween(900L, 1000L);
+
+      //////////////////////////////////////////////////////////////////
+      // next would be ~1.5 seconds - so isn't reserved (thus, asking //
+      // again gives about the same wait, rather than a longer one).  //
+      //////////////////////////////////////////////////////////////////
+      long waitMillis = bucket.reserve(1000);
+      assertThat(waitMillis).isGreaterThan(1000);
+      assertThat(bucket.reserve(1000)).isGreaterThan(1000).isLessThanOrEqualTo(waitMillis);
+   }
+
+
+
+   /*******************************************************************************
+    **
+    *******************************************************************************/
+   @Test
+   void testLongWaitThrowsInsteadOfSleeping() throws Exception
+   {
+      Webhook webhook = newWebhook("test").withMaxRequestsPerSecond(1);
+      webhook.setId(insert(webhook));
+
+      ////////////////////////////////////////////////////////////////////////
+      // use the 1 token, then have another thread reserve the next one (so //
+      // it sleeps ~1 second) - leaving a wait of ~2 seconds, over the max. //
+      ////////////////////////////////////////////////////////////////////////
+      WebhookOutboundRateLimiter.acquire(webhook);
+
+      AtomicReference<Exception> waiterException = new AtomicReference<>();
+      Thread waiter = new Thread(() ->
+      {
+         try
+         {
+            WebhookOutboundRateLimiter.acquire(webhook);
+         }
+         catch(Exception e)
+         {
+            waiterException.set(e);
+         }
+      });
+      waiter.start();
+      Thread.sleep(200);
+
+      long                      start = System.currentTimeMillis();
+      WebhookRateLimitException e     = assertThrows(WebhookRateLimitException.class, () -> WebhookOutboundRateLimiter.acquire(webhook));
+      assertThat(System.currentTimeMillis() - start).isLessThan(500);
+      assertThat(e.getResumeAt()).isAfter(Instant.now().plusMillis(WebhookOutboundRateLimiter.MAX_WAIT_MILLIS));
+
+      waiter.join();
+      assertNull(waiterException.get());
+   }
+
+}
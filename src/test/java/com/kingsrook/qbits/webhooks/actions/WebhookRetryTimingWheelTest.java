@@ -0,0 +1,218 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.actions;
+
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.utils.ListingHash;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for WebhookRetryTimingWheel
+ *******************************************************************************/
+class WebhookRetryTimingWheelTest extends BaseTest
+{
+
+   /*******************************************************************************
+    ** events come out of the wheel once their tick has passed - including ones
+    ** due more than a revolution of the wheel out - and not if cancelled.
+    *******************************************************************************/
+   @Test
+   void testScheduleAndPoll() throws QException
+   {
+      WebhookRetryTimingWheel.load();
+
+      Instant now = Instant.now();
+      WebhookRetryTimingWheel.schedule(1, 10, now.plusSeconds(5));
+      WebhookRetryTimingWheel.schedule(2, 10, now.plusSeconds(30));
+      WebhookRetryTimingWheel.schedule(3, 11, now.plus(20, ChronoUnit.MINUTES));
+      assertEquals(3, WebhookRetryTimingWheel.size());
+
+      assertTrue(WebhookRetryTimingWheel.pollDue(now.plusSeconds(1)).isEmpty());
+
+      ListingHash<Integer, Integer> due = WebhookRetryTimingWheel.pollDue(now.plusSeconds(7));
+      assertEquals(List.of(1), due.get(10));
+      assertEquals(1, due.size());
+
+      WebhookRetryTimingWheel.cancel(2);
+      assertTrue(WebhookRetryTimingWheel.pollDue(now.plusSeconds(60)).isEmpty());
+
+      //////////////////////////////////////////////////////////////////////
+      // more than a revolution (512 1-second ticks) later, all slots get //
+      // visited, but event 3 isn't due until its own tick comes around.  //
+      //////////////////////////////////////////////////////////////////////
+      assertTrue(WebhookRetryTimingWheel.pollDue(now.plus(10, ChronoUnit.MINUTES)).isEmpty());
+      assertEquals(List.of(3), WebhookRetryTimingWheel.pollDue(now.plus(21, ChronoUnit.MINUTES)).get(11));
+      assertEquals(0, WebhookRetryTimingWheel.size());
+   }
+
+
+
+   /*******************************************************************************
+    ** the wheel is loaded with events awaiting retry (due within a revolution),
+    ** and fed by flushes of the outcome buffer.
+    *******************************************************************************/
+   @Test
+   void testLoadAndFeedFromOutcomes() throws QException
+   {
+      String              eventTypeName       = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+      Integer             webhookId           = insert(newWebhook("test"));
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Instant now      = Instant.now();
+      Integer eventId0 = insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(now.plusSeconds(60)));
+      Integer eventId1 = insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(now.plusSeconds(60)));
+      insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(now.plus(2, ChronoUnit.HOURS)));
+      insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.DELIVERED.getId()));
+      insert(newWebhookEvent(webhookSubscription, eventTypeName));
+
+      WebhookRetryTimingWheel.load();
+      assertEquals(2, WebhookRetryTimingWheel.size());
+
+      ///////////////////////////////////////////////////////////////////////
+      // a delivered event leaves the wheel; one to retry moves to its new //
+      // next attempt time.                                                //
+      ///////////////////////////////////////////////////////////////////////
+      WebhookEventOutcomeBuffer buffer = new WebhookEventOutcomeBuffer();
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventId0).withSuccessful(true), WebhookEventStatus.DELIVERED, null);
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventId1).withSuccessful(false), WebhookEventStatus.AWAITING_RETRY, now.plusSeconds(300));
+      buffer.flush();
+      assertEquals(1, WebhookRetryTimingWheel.size());
+
+      assertTrue(WebhookRetryTimingWheel.pollDue(now.plusSeconds(120)).isEmpty());
+      assertEquals(List.of(eventId1), WebhookRetryTimingWheel.pollDue(now.plusSeconds(302)).get(webhookId));
+   }
+
+
+
+   /*******************************************************************************
+    ** starting the wheel (when enabled) loads it - once.
+    *******************************************************************************/
+   @Test
+   void testStartIfEnabled() throws QException
+   {
+      String              eventTypeName       = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+      Integer             webhookId           = insert(newWebhook("test"));
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+      insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(Instant.now().plusSeconds(60)));
+
+      ///////////////////////////////////
+      // not enabled - nothing happens //
+      ///////////////////////////////////
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertEquals(0, WebhookRetryTimingWheel.size());
+
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setUseRetryTimingWheel(true);
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertEquals(1, WebhookRetryTimingWheel.size());
+
+      /////////////////////////////////////////////////////////////////
+      // starting again is a no-op - it doesn't load the wheel again //
+      /////////////////////////////////////////////////////////////////
+      insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(Instant.now().plusSeconds(60)));
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertEquals(1, WebhookRetryTimingWheel.size());
+   }
+
+
+
+   /*******************************************************************************
+    ** a webhook that comes due while its process is running is run once more when
+    ** that run finishes - however many times it came due meanwhile.
+    *******************************************************************************/
+   @Test
+   void testRerunWhenDueWhileRunning()
+   {
+      assertTrue(WebhookRetryTimingWheel.startRun(10));
+      assertTrue(WebhookRetryTimingWheel.startRun(11));
+      assertFalse(WebhookRetryTimingWheel.startRun(10));
+      assertFalse(WebhookRetryTimingWheel.startRun(10));
+
+      assertTrue(WebhookRetryTimingWheel.finishRun(10));
+      assertFalse(WebhookRetryTimingWheel.finishRun(10));
+      assertFalse(WebhookRetryTimingWheel.finishRun(11));
+
+      //////////////////////////////////////////////
+      // once finished, the next due starts a run //
+      //////////////////////////////////////////////
+      assertTrue(WebhookRetryTimingWheel.startRun(10));
+   }
+
+
+
+   /*******************************************************************************
+    ** processes run by the wheel use the session of the process that started it
+    ** - until it's started in a new instance, with that one's session.
+    *******************************************************************************/
+   @Test
+   void testStartingSession() throws Exception
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setUseRetryTimingWheel(true);
+
+      QSession startingSession = QContext.getQSession();
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertSame(startingSession, WebhookRetryTimingWheel.getQSession());
+
+      ////////////////////////////////////////////////////////////////
+      // another session in the same instance doesn't replace it... //
+      ////////////////////////////////////////////////////////////////
+      QInstance qInstance = QContext.getQInstance();
+      QContext.init(qInstance, new QSession());
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertSame(startingSession, WebhookRetryTimingWheel.getQSession());
+
+      ////////////////////////////////////////////////////
+      // ... but one starting it in a new instance does //
+      ////////////////////////////////////////////////////
+      QInstance newQInstance = new WebhooksTestApplication().defineQInstance();
+      ((WebhooksQBitConfig) newQInstance.getTable(Webhook.TABLE_NAME).getSourceQBitConfig()).setUseRetryTimingWheel(true);
+      QSession newSession = new QSession();
+      QContext.init(newQInstance, newSession);
+      WebhookRetryTimingWheel.startIfEnabled();
+      assertSame(newSession, WebhookRetryTimingWheel.getQSession());
+   }
+
+}
@@ -22,14 +22,44 @@
 package com.kingsrook.qbits.webhooks.actions;
 
 
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookCacheVersion;
 import com.kingsrook.qbits.webhooks.model.WebhookEventCategory;
 import com.kingsrook.qbits.webhooks.model.WebhookEventCategory.Kind;
+import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qbits.webhooks.registry.WebhookEventType;
+import com.kingsrook.qbits.webhooks.registry.WebhooksRegistry;
+import com.kingsrook.qqq.backend.core.actions.QBackendTransaction;
+import com.kingsrook.qqq.backend.core.actions.tables.DeleteAction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.delete.DeleteInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /*******************************************************************************
@@ -88,6 +118,222 @@ class WebhookSubscriptionsHelperTest extends BaseTest
 
 
 
+   /*******************************************************************************
+    ** changes to subscriptions & webhooks are applied to the subscription
+    ** snapshot as they're stored - with webhook updates merged in, rather than
+    ** making the subscriptions be re-read.
+    *******************************************************************************/
+   @Test
+   void testSubscriptionSnapshotChanges() throws QException
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setSubscriptionVersionCheckSeconds(5);
+
+      String eventTypeName = "inserted-person";
+      registerEventType(eventTypeName, WebhookEventCategory.INSERT, "person");
+      WebhookEventType eventType = WebhooksRegistry.ofOrWithNew(QContext.getQInstance()).getWebhookEventType(eventTypeName);
+
+      Integer webhookId       = insert(newWebhook("test"));
+      Integer subscriptionId0 = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+
+      List<WebhookSubscription> subscriptions = WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType);
+      assertThat(subscriptions).hasSize(1);
+
+      String version = WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS);
+      assertNotNull(version);
+
+      ///////////////////////////////////////////////////////////////////////
+      // a health status update is merged in, without changing the version //
+      ///////////////////////////////////////////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId).withValue("healthStatusId", WebhookHealthStatus.PROBATION.getId())));
+      assertSame(subscriptions, WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType));
+      assertEquals(version, WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS));
+      QRecord webhook = WebhookSubscriptionsHelper.getWebhookForSubscription(subscriptions.get(0));
+      assertEquals(WebhookHealthStatus.PROBATION.getId(), webhook.getValue("healthStatusId"));
+      assertEquals("test", webhook.getValue("name"));
+
+      Integer webhookId1      = insert(newWebhook("test1"));
+      Integer subscriptionId1 = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId1));
+      assertNotEquals(version, WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS));
+      assertThat(WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType).stream().map(s -> s.getId()).toList()).containsExactly(subscriptionId0, subscriptionId1);
+
+      new UpdateAction().execute(new UpdateInput(WebhookSubscription.TABLE_NAME).withRecord(new QRecord().withValue("id", subscriptionId0).withValue("activeStatusId", WebhookActiveStatus.DISABLED.getId())));
+      assertThat(WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType).stream().map(s -> s.getId()).toList()).containsExactly(subscriptionId1);
+
+      //////////////////////////////////////////////////////////////////////////////////
+      // once its last subscription is gone, the webhook is dropped from the snapshot //
+      //////////////////////////////////////////////////////////////////////////////////
+      assertNull(WebhookSubscriptionsHelper.getSubscriptionSnapshot().getWebhook(webhookId));
+      assertNotNull(WebhookSubscriptionsHelper.getSubscriptionSnapshot().getWebhook(webhookId1));
+
+      new DeleteAction().execute(new DeleteInput(WebhookSubscription.TABLE_NAME).withPrimaryKeys(List.of(subscriptionId1)));
+      assertThat(WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType)).isEmpty();
+      assertNull(WebhookSubscriptionsHelper.getSubscriptionSnapshot().getWebhook(webhookId1));
+   }
+
+
+
+   /*******************************************************************************
+    ** a subscription stored without a transaction is re-read into the snapshot -
+    ** but one stored in a transaction (which may yet be rolled back) makes the
+    ** snapshot be discarded, and reloaded upon next use, rather than patched.
+    *******************************************************************************/
+   @Test
+   void testSubscriptionStoredInTransaction() throws QException
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setSubscriptionVersionCheckSeconds(5);
+
+      String eventTypeName = "inserted-person";
+      registerEventType(eventTypeName, WebhookEventCategory.INSERT, "person");
+
+      Integer webhookId0      = insert(newWebhook("test0"));
+      Integer subscriptionId0 = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId0));
+      String  loadedVersion   = WebhookSubscriptionsHelper.getSubscriptionSnapshot().getVersion();
+
+      ///////////////////////////////////////////////////////////////////////////
+      // without a transaction, the snapshot is patched - so keeps its version //
+      ///////////////////////////////////////////////////////////////////////////
+      Integer webhookId1      = insert(newWebhook("test1"));
+      Integer subscriptionId1 = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId1));
+      assertEquals(loadedVersion, WebhookSubscriptionsHelper.getSubscriptionSnapshot().getVersion());
+      assertThat(WebhookSubscriptionsHelper.getSubscriptionSnapshot().getSubscriptionsForEventType(eventTypeName).stream().map(s -> s.getId()).toList()).containsExactly(subscriptionId0, subscriptionId1);
+
+      ////////////////////////////////////////////////////////////////////
+      // in a transaction, the snapshot is discarded - so the next use  //
+      // reloads it, with the version changed in that same transaction. //
+      ////////////////////////////////////////////////////////////////////
+      Integer webhookId2 = insert(newWebhook("test2"));
+      Integer subscriptionId2;
+      try(QBackendTransaction transaction = QBackendTransaction.openFor(new InsertInput(WebhookSubscription.TABLE_NAME)))
+      {
+         subscriptionId2 = new InsertAction().execute(new InsertInput(WebhookSubscription.TABLE_NAME)
+               .withRecordEntity(newWebhookSubscription(eventTypeName).withWebhookId(webhookId2))
+               .withTransaction(transaction))
+            .getRecords().get(0).getValueInteger("id");
+         transaction.commit();
+      }
+
+      WebhookSubscriptionSnapshot reloadedSnapshot = WebhookSubscriptionsHelper.getSubscriptionSnapshot();
+      assertNotEquals(loadedVersion, reloadedSnapshot.getVersion());
+      assertEquals(WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS), reloadedSnapshot.getVersion());
+      assertThat(reloadedSnapshot.getSubscriptionsForEventType(eventTypeName).stream().map(s -> s.getId()).toList()).containsExactly(subscriptionId0, subscriptionId1, subscriptionId2);
+      assertNotNull(reloadedSnapshot.getWebhook(webhookId2));
+   }
+
+
+
+   /*******************************************************************************
+    ** the snapshot is reloaded once the cache version is changed (e.g., by another
+    ** node) - but only when it's time to check the version.
+    *******************************************************************************/
+   @Test
+   void testVersionCheck() throws QException
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setSubscriptionVersionCheckSeconds(1);
+
+      String eventTypeName = "inserted-person";
+      registerEventType(eventTypeName, WebhookEventCategory.INSERT, "person");
+      WebhookEventType eventType = WebhooksRegistry.ofOrWithNew(QContext.getQInstance()).getWebhookEventType(eventTypeName);
+
+      Integer webhookId      = insert(newWebhook("test"));
+      Integer subscriptionId = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+
+      ///////////////////////////////////////////////////////////////////
+      // once it's time to check, an unchanged version means no reload //
+      ///////////////////////////////////////////////////////////////////
+      List<WebhookSubscription> subscriptions = WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType);
+      SleepUtils.sleep(1100, TimeUnit.MILLISECONDS);
+      assertSame(subscriptions, WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType));
+
+      //////////////////////////////////////////////////////////////////////////
+      // change the version, as another node would - the snapshot is reloaded //
+      // once it's time to check again.                                       //
+      //////////////////////////////////////////////////////////////////////////
+      WebhookCacheVersionManager.changeVersion(WebhookCacheVersion.SUBSCRIPTIONS, null);
+      assertSame(subscriptions, WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType));
+
+      SleepUtils.sleep(1100, TimeUnit.MILLISECONDS);
+      List<WebhookSubscription> reloadedSubscriptions = WebhookSubscriptionsHelper.getSubscriptionsForEventType(eventType);
+      assertNotSame(subscriptions, reloadedSubscriptions);
+      assertEquals(List.of(subscriptionId), reloadedSubscriptions.stream().map(s -> s.getId()).toList());
+   }
+
+
+
+   /*******************************************************************************
+    ** version checks are off by default - so writes don't need the version table.
+    *******************************************************************************/
+   @Test
+   void testVersionCheckOffByDefault() throws QException
+   {
+      String eventTypeName = "inserted-person";
+      registerEventType(eventTypeName, WebhookEventCategory.INSERT, "person");
+
+      Integer webhookId = insert(newWebhook("test"));
+      insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId).withValue("name", "new name")));
+
+      assertNull(WebhookCacheVersionManager.getVersion(WebhookCacheVersion.SUBSCRIPTIONS));
+      assertThat(QueryAction.execute(WebhookCacheVersion.TABLE_NAME, new QQueryFilter())).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** a list of records is filtered by the webhook's security locks, using one
+    ** pseudo-session per webhook - kept in the snapshot until the webhook's security lock fields change.
+    *******************************************************************************/
+   @Test
+   void testFilterRecordsForSubscription() throws QException
+   {
+      String eventTypeName = "inserted-order";
+      registerEventType(eventTypeName, WebhookEventCategory.INSERT, WebhooksTestApplication.TABLE_NAME_ORDER);
+
+      Integer             webhookId      = new InsertAction().execute(new InsertInput(Webhook.TABLE_NAME).withRecord(newWebhook("test").toQRecord().withValue("storeId", 1))).getRecords().get(0).getValueInteger("id");
+      Integer             subscriptionId = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription subscription   = WebhookSubscriptionsHelper.getSubscriptionSnapshot().getSubscriptionsForEventType(eventTypeName).get(0);
+      assertEquals(subscriptionId, subscription.getId());
+
+      List<QRecord> orders = List.of(
+         new QRecord().withValue("id", 1).withValue("storeId", 1),
+         new QRecord().withValue("id", 2).withValue("storeId", 2),
+         new QRecord().withValue("id", 3).withValue("storeId", 1));
+
+      List<QRecord> allowedOrders = WebhookSubscriptionsHelper.filterRecordsForSubscription(WebhooksTestApplication.TABLE_NAME_ORDER, subscription, orders, null);
+      assertEquals(List.of(1, 3), allowedOrders.stream().map(r -> r.getValueInteger("id")).toList());
+
+      ////////////////////////////////////////////////////////
+      // the same pseudo-session is used until it's changed //
+      ////////////////////////////////////////////////////////
+      QSession pseudoSession = WebhookSubscriptionsHelper.getPseudoSession(subscription).orElseThrow();
+      assertSame(pseudoSession, WebhookSubscriptionsHelper.getPseudoSession(subscription).orElseThrow());
+      assertTrue(WebhookSubscriptionsHelper.doesRecordMatchSubscription(null, subscription, orders.get(0).withTableName(WebhooksTestApplication.TABLE_NAME_ORDER), null));
+
+      ////////////////////////////////////////////////////////////////////////
+      // updates that don't touch the security lock fields keep the session //
+      ////////////////////////////////////////////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId).withValue("consecutiveFailCount", 1).withValue("lastAttemptTimestamp", Instant.now())));
+      assertSame(pseudoSession, WebhookSubscriptionsHelper.getPseudoSession(subscription).orElseThrow());
+
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId).withValue("storeId", 1)));
+      assertSame(pseudoSession, WebhookSubscriptionsHelper.getPseudoSession(subscription).orElseThrow());
+
+      new UpdateAction().execute(new UpdateInput(Webhook.TABLE_NAME).withRecord(new QRecord().withValue("id", webhookId).withValue("storeId", 2)));
+      assertNotSame(pseudoSession, WebhookSubscriptionsHelper.getPseudoSession(subscription).orElseThrow());
+
+      allowedOrders = WebhookSubscriptionsHelper.filterRecordsForSubscription(WebhooksTestApplication.TABLE_NAME_ORDER, subscription, orders, null);
+      assertEquals(List.of(2), allowedOrders.stream().map(r -> r.getValueInteger("id")).toList());
+
+      //////////////////////////////////////////////////////
+      // tables without security locks don't get filtered //
+      //////////////////////////////////////////////////////
+      assertSame(orders, WebhookSubscriptionsHelper.filterRecordsForSubscription(WebhooksTestApplication.TABLE_NAME_PERSON, subscription, orders, null));
+   }
+
+
+
    /***************************************************************************
     **
     ***************************************************************************/
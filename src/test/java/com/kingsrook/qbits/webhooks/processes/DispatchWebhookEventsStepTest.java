@@ -0,0 +1,245 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.kingsrook.qbits.webhooks.processes;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.WebhooksQBitConfig;
+import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.model.Webhook;
+import com.kingsrook.qbits.webhooks.model.WebhookActiveStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/*******************************************************************************
+ ** Unit test for DispatchWebhookEventsStep
+ *******************************************************************************/
+class DispatchWebhookEventsStepTest extends BaseTest
+{
+
+   /*******************************************************************************
+    ** only webhooks that have due events, and that can be sent to, should have
+    ** the send process run for them.
+    *******************************************************************************/
+   @Test
+   void testDispatch() throws Exception
+   {
+      setDispatchMode(WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER);
+
+      Integer activeWithDueEvents = insertWebhookWithEvent(newWebhook("a"), WebhookEventStatus.NEW);
+      Integer otherActiveWithDue  = insertWebhookWithEvent(newWebhook("b"), WebhookEventStatus.NEW);
+      insertWebhookWithEvent(newWebhook("c"), WebhookEventStatus.DELIVERED);
+      insertWebhookWithEvent(newWebhook("d").withActiveStatusId(WebhookActiveStatus.PAUSED.getId()), WebhookEventStatus.NEW);
+      insertWebhookWithEvent(newWebhook("e").withHealthStatusId(WebhookHealthStatus.UNHEALTHY.getId()), WebhookEventStatus.NEW);
+      insert(newWebhook("f"));
+
+      List<Integer>  dispatchedWebhookIds = new ArrayList<>();
+      CountDownLatch sendsRun             = new CountDownLatch(2);
+      DispatchWebhookEventsStep step = new DispatchWebhookEventsStep()
+      {
+         @Override
+         protected void runSendProcess(Integer webhookId)
+         {
+            synchronized(dispatchedWebhookIds)
+            {
+               dispatchedWebhookIds.add(webhookId);
+            }
+            sendsRun.countDown();
+         }
+      };
+
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      step.run(new RunBackendStepInput(), output);
+
+      assertEquals(2, output.getValueInteger("noWebhooksDispatched"));
+      assertTrue(sendsRun.await(5, TimeUnit.SECONDS));
+      assertEquals(List.of(activeWithDueEvents, otherActiveWithDue).stream().sorted().toList(), dispatchedWebhookIds.stream().sorted().toList());
+   }
+
+
+
+   /*******************************************************************************
+    ** no due events - nothing dispatched
+    *******************************************************************************/
+   @Test
+   void testNothingDue() throws QException
+   {
+      setDispatchMode(WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER);
+      insert(newWebhook("a"));
+
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      new DispatchWebhookEventsStep().run(new RunBackendStepInput(), output);
+      assertEquals(0, output.getValueInteger("noWebhooksDispatched"));
+   }
+
+
+
+   /*******************************************************************************
+    ** a dispatch doesn't wait for the sends it submits - and a webhook that's still
+    ** being sent to isn't dispatched again until its send finishes.
+    *******************************************************************************/
+   @Test
+   void testSlowWebhookIsNotWaitedFor() throws Exception
+   {
+      setDispatchMode(WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER);
+      insertWebhookWithEvent(newWebhook("slow"), WebhookEventStatus.NEW);
+
+      CountDownLatch release  = new CountDownLatch(1);
+      CountDownLatch finished = new CountDownLatch(1);
+      DispatchWebhookEventsStep step = new DispatchWebhookEventsStep()
+      {
+         @Override
+         protected void runSendProcess(Integer webhookId) throws QException
+         {
+            try
+            {
+               release.await(5, TimeUnit.SECONDS);
+               finished.countDown();
+            }
+            catch(InterruptedException e)
+            {
+               throw (new QException("Interrupted", e));
+            }
+         }
+      };
+
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      step.run(new RunBackendStepInput(), output);
+      assertEquals(1, output.getValueInteger("noWebhooksDispatched"));
+
+      step.run(new RunBackendStepInput(), output);
+      assertEquals(0, output.getValueInteger("noWebhooksDispatched"));
+
+      release.countDown();
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+   }
+
+
+
+   /*******************************************************************************
+    ** once the pool's threads are busy and its queue is full, further webhooks are
+    ** left for a later dispatch, rather than queued without bound.
+    *******************************************************************************/
+   @Test
+   void testFullQueueLeavesWebhooksForLater() throws Exception
+   {
+      setDispatchMode(WebhooksQBitConfig.DispatchMode.SINGLE_DISPATCHER);
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setDispatcherMaxConcurrentWebhooks(1);
+
+      Integer running = insertWebhookWithEvent(newWebhook("a"), WebhookEventStatus.NEW);
+      Integer queued  = insertWebhookWithEvent(newWebhook("b"), WebhookEventStatus.NEW);
+      Integer skipped = insertWebhookWithEvent(newWebhook("c"), WebhookEventStatus.NEW);
+
+      List<Integer>  dispatchedWebhookIds = new ArrayList<>();
+      CountDownLatch release              = new CountDownLatch(1);
+      CountDownLatch finished             = new CountDownLatch(2);
+      DispatchWebhookEventsStep step = new DispatchWebhookEventsStep()
+      {
+         @Override
+         protected void runSendProcess(Integer webhookId) throws QException
+         {
+            try
+            {
+               synchronized(dispatchedWebhookIds)
+               {
+                  dispatchedWebhookIds.add(webhookId);
+               }
+               release.await(5, TimeUnit.SECONDS);
+               finished.countDown();
+            }
+            catch(InterruptedException e)
+            {
+               throw (new QException("Interrupted", e));
+            }
+         }
+      };
+
+      //////////////////////////////////////////////////////////////////////
+      // 1 thread, 1 queue slot - so the 3rd webhook is skipped this time //
+      //////////////////////////////////////////////////////////////////////
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      step.run(new RunBackendStepInput(), output);
+      assertEquals(2, output.getValueInteger("noWebhooksDispatched"));
+
+      release.countDown();
+      assertTrue(finished.await(5, TimeUnit.SECONDS));
+      assertEquals(List.of(running, queued), dispatchedWebhookIds);
+      assertFalse(dispatchedWebhookIds.contains(skipped));
+   }
+
+
+
+   /*******************************************************************************
+    ** in per-webhook-job mode, the (still scheduled) dispatcher doesn't send.
+    *******************************************************************************/
+   @Test
+   void testPerWebhookJobModeDoesNotDispatch() throws QException
+   {
+      insertWebhookWithEvent(newWebhook("a"), WebhookEventStatus.NEW);
+
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      new DispatchWebhookEventsStep().run(new RunBackendStepInput(), output);
+      assertEquals(0, output.getValueInteger("noWebhooksDispatched"));
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private void setDispatchMode(WebhooksQBitConfig.DispatchMode dispatchMode)
+   {
+      WebhooksQBitConfig config = (WebhooksQBitConfig) QContext.getQInstance().getTable(Webhook.TABLE_NAME).getSourceQBitConfig();
+      config.setDispatchMode(dispatchMode);
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private Integer insertWebhookWithEvent(Webhook webhook, WebhookEventStatus eventStatus) throws QException
+   {
+      String  eventTypeName  = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+      Integer webhookId      = insert(webhook);
+      Integer subscriptionId = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      insert(newWebhookEvent(new WebhookSubscription().withId(subscriptionId).withWebhookId(webhookId).withWebhookEventTypeName(eventTypeName), eventTypeName).withEventStatusId(eventStatus.getId()));
+      return (webhookId);
+   }
+
+}
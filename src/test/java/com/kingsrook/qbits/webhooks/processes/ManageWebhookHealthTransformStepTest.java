@@ -96,6 +96,38 @@ class ManageWebhookHealthTransformStepTest extends BaseTest
 
 
 
+   /*******************************************************************************
+    ** webhooks with lastAttemptTimestamp or healthStatusChangedTimestamp are
+    ** decided by those (rather than by their send logs).
+    *******************************************************************************/
+   @Test
+   void testTimestampsOnWebhook() throws QException
+   {
+      Instant longAgo = Instant.now().minus(1, ChronoUnit.DAYS);
+
+      Integer attemptedLongAgoId = insert(newWebhook("attemptedLongAgo").withHealthStatusId(WebhookHealthStatus.UNHEALTHY.getId()).withLastAttemptTimestamp(longAgo));
+      Integer attemptedJustNowId = insert(newWebhook("attemptedJustNow").withHealthStatusId(WebhookHealthStatus.UNHEALTHY.getId()).withLastAttemptTimestamp(Instant.now()).withHealthStatusChangedTimestamp(longAgo));
+      Integer changedLongAgoId   = insert(newWebhook("changedLongAgo").withHealthStatusId(WebhookHealthStatus.UNHEALTHY.getId()).withHealthStatusChangedTimestamp(longAgo));
+      Integer changedJustNowId   = insert(newWebhook("changedJustNow").withHealthStatusId(WebhookHealthStatus.UNHEALTHY.getId()).withHealthStatusChangedTimestamp(Instant.now()));
+
+      ///////////////////////////////////////////////////////////////////////
+      // a recent send log is ignored, given the timestamps on the webhook //
+      ///////////////////////////////////////////////////////////////////////
+      new InsertAction().execute(new InsertInput(WebhookEventSendLog.TABLE_NAME).withRecordEntities(List.of(
+         new WebhookEventSendLog().withWebhookId(attemptedLongAgoId).withStartTimestamp(Instant.now())
+      )));
+
+      RunBackendStepInput  input  = new RunBackendStepInput();
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      input.withRecords(QueryAction.execute(Webhook.TABLE_NAME, new QQueryFilter()));
+      new ManageWebhookHealthTransformStep().runOnePage(input, output);
+
+      assertEquals(List.of(attemptedLongAgoId, changedLongAgoId), output.getRecords().stream().map(r -> r.getValueInteger("id")).toList());
+      assertThat(output.getRecords()).allMatch(r -> r.getValueInstant("healthStatusChangedTimestamp") != null);
+   }
+
+
+
    /*******************************************************************************
     **
     *******************************************************************************/
@@ -22,22 +22,40 @@
 package com.kingsrook.qbits.webhooks.processes;
 
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.kingsrook.qbits.webhooks.BaseTest;
 import com.kingsrook.qbits.webhooks.WebhooksTestApplication;
+import com.kingsrook.qbits.webhooks.actions.AsyncWebhookEventSender;
+import com.kingsrook.qbits.webhooks.actions.AsyncWebhookEventSenderTest;
+import com.kingsrook.qbits.webhooks.actions.WebhookEventOutcomeBuffer;
 import com.kingsrook.qbits.webhooks.actions.WebhookEventSender;
 import com.kingsrook.qbits.webhooks.actions.WebhookEventSenderTest;
+import com.kingsrook.qbits.webhooks.actions.WebhookLockManager;
+import com.kingsrook.qbits.webhooks.actions.WebhookSendOutcome;
 import com.kingsrook.qbits.webhooks.model.Webhook;
 import com.kingsrook.qbits.webhooks.model.WebhookEvent;
 import com.kingsrook.qbits.webhooks.model.WebhookEventSendLog;
 import com.kingsrook.qbits.webhooks.model.WebhookEventStatus;
 import com.kingsrook.qbits.webhooks.model.WebhookHealthStatus;
+import com.kingsrook.qbits.webhooks.model.WebhookLock;
 import com.kingsrook.qbits.webhooks.model.WebhookSubscription;
 import com.kingsrook.qqq.backend.core.actions.tables.GetAction;
 import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
 import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLine;
 import com.kingsrook.qqq.backend.core.model.actions.processes.ProcessSummaryLineInterface;
@@ -49,9 +67,20 @@ import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperat
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
 import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.utils.SleepUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /*******************************************************************************
@@ -138,6 +167,7 @@ class SendWebhookEventLoadStepTest extends BaseTest
       // make sure webhook became healthy //
       //////////////////////////////////////
       assertEquals(WebhookHealthStatus.HEALTHY.getId(), GetAction.execute(Webhook.TABLE_NAME, webhookId).getValue("healthStatusId"));
+      assertEquals(0, GetAction.execute(Webhook.TABLE_NAME, webhookId).getValueInteger("consecutiveFailCount"));
 
       ///////////////////////////////////////////////////////////////////////////////////////////////////////
       // only the first event should have been processed, because the webhook became unhealthy after that. //
@@ -180,10 +210,11 @@ class SendWebhookEventLoadStepTest extends BaseTest
 
       ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhook, new WebhookEventSenderTest.WebhookEventSenderThatFails(), eventId0, eventId1, eventId2);
 
-      ////////////////////////////////////////
-      // make sure webhook is still healthy //
-      ////////////////////////////////////////
+      ///////////////////////////////////////////////////////////////////////////
+      // make sure webhook is still healthy - with its 9 fails in-a-row stored //
+      ///////////////////////////////////////////////////////////////////////////
       assertEquals(WebhookHealthStatus.HEALTHY.getId(), GetAction.execute(Webhook.TABLE_NAME, webhookId).getValue("healthStatusId"));
+      assertEquals(9, GetAction.execute(Webhook.TABLE_NAME, webhookId).getValueInteger("consecutiveFailCount"));
 
       //////////////////////////////////////////
       // all 3 should still be awaiting retry //
@@ -201,6 +232,629 @@ class SendWebhookEventLoadStepTest extends BaseTest
 
 
 
+   /*******************************************************************************
+    * the webhook's stored consecutiveFailCount (rather than its send logs, of which
+    * there are none) is what seeds its health - so one more fail goes unhealthy.
+    *******************************************************************************/
+   @Test
+   void testHealthSeededFromConsecutiveFailCount() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test").withConsecutiveFailCount(9));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+
+      runProcess(webhook, new WebhookEventSenderTest.WebhookEventSenderThatFails(), eventId0, eventId1);
+
+      QRecord webhookRecord = GetAction.execute(Webhook.TABLE_NAME, webhookId);
+      assertEquals(WebhookHealthStatus.UNHEALTHY.getId(), webhookRecord.getValue("healthStatusId"));
+      assertEquals(10, webhookRecord.getValueInteger("consecutiveFailCount"));
+      assertNotNull(webhookRecord.getValueInstant("lastAttemptTimestamp"));
+      assertNotNull(webhookRecord.getValueInstant("healthStatusChangedTimestamp"));
+      assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId1);
+   }
+
+
+
+   /*******************************************************************************
+    * events' attempt counts are kept on the events themselves - so an event that's
+    * had 4 attempts (but has no send logs) fails upon its 5th, and sends update
+    * the events' counts & timestamps.
+    *******************************************************************************/
+   @Test
+   void testAttemptCountOnEvent() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test"));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Instant lastAttemptTimestamp = Instant.now().minus(1, ChronoUnit.HOURS);
+      Integer eventId0 = insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(Instant.now().minusSeconds(1)).withAttemptCount(4).withLastAttemptTimestamp(lastAttemptTimestamp));
+      Integer eventId1 = insert(newWebhookEvent(webhookSubscription, eventTypeName).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(Instant.now().minusSeconds(1)).withAttemptCount(0));
+
+      runProcess(webhook, new WebhookEventSenderTest.WebhookEventSenderThatFails(), eventId0, eventId1);
+
+      WebhookEvent event0 = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId0));
+      assertEquals(WebhookEventStatus.FAILED.getId(), event0.getEventStatusId());
+      assertEquals(5, event0.getAttemptCount());
+      assertThat(event0.getLastAttemptTimestamp()).isAfter(lastAttemptTimestamp);
+
+      WebhookEvent event1 = new WebhookEvent(GetAction.execute(WebhookEvent.TABLE_NAME, eventId1));
+      assertEquals(WebhookEventStatus.AWAITING_RETRY.getId(), event1.getEventStatusId());
+      assertEquals(1, event1.getAttemptCount());
+      assertNotNull(event1.getLastAttemptTimestamp());
+
+      List<WebhookEventSendLog> sendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, WebhookEventSendLog.class, new QQueryFilter(new QFilterCriteria("webhookEventId", QCriteriaOperator.EQUALS, eventId0)));
+      assertEquals(1, sendLogs.size());
+      assertEquals(5, sendLogs.get(0).getAttemptNo());
+   }
+
+
+
+   /*******************************************************************************
+    * the webhook rate-limits the first event - so the rest of the page should be
+    * rescheduled, rather than attempted.
+    *******************************************************************************/
+   @Test
+   void testRateLimited() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test"));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId2 = insertEventAwaitingRetry(webhookSubscription);
+
+      WebhookEventSender rateLimitedSender = new WebhookEventSenderTest.WebhookEventSenderThatMocksHttp(429, "Slow down")
+      {
+         @Override
+         protected String getPostBody(WebhookEvent webhookEvent)
+         {
+            return ("{}");
+         }
+      };
+
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhook, rateLimitedSender, eventId0, eventId1, eventId2);
+
+      ////////////////////////////////////////////////////////////////////////////
+      // all events rescheduled - none counted as attempts; health not affected //
+      ////////////////////////////////////////////////////////////////////////////
+      for(Integer eventId : List.of(eventId0, eventId1, eventId2))
+      {
+         assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId);
+         assertNotNull(GetAction.execute(WebhookEvent.TABLE_NAME, eventId).getValueInstant("nextAttemptTimestamp"));
+      }
+      assertEquals(0, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+      assertEquals(WebhookHealthStatus.HEALTHY.getId(), GetAction.execute(Webhook.TABLE_NAME, webhookId).getValue("healthStatusId"));
+
+      assertEquals(1, processSummaryLines.size());
+      assertEquals(Status.WARNING, processSummaryLines.get(0).getStatus());
+      assertEquals(3, ((ProcessSummaryLine) processSummaryLines.get(0)).getCount());
+      assertThat(processSummaryLines.get(0).getMessage()).contains("rate-limiting");
+   }
+
+
+
+   /*******************************************************************************
+    * webhook allows 4 concurrent sends - make sure sends overlap (but not more
+    * than 4 at once), and that all outcomes are recorded.
+    *******************************************************************************/
+   @Test
+   void testConcurrentSends() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test").withMaxConcurrentSends(4));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      List<Integer> eventIds = new ArrayList<>();
+      for(int i = 0; i < 8; i++)
+      {
+         eventIds.add(insertEventAwaitingRetry(webhookSubscription));
+      }
+
+      AtomicInteger inFlight    = new AtomicInteger(0);
+      AtomicInteger maxInFlight = new AtomicInteger(0);
+      WebhookEventSender slowSender = new WebhookEventSenderTest.WebhookEventSenderThatMocksHttp(200, "OK")
+      {
+         @Override
+         protected String getPostBody(WebhookEvent webhookEvent)
+         {
+            return ("{}");
+         }
+
+
+
+         @Override
+         protected CloseableHttpResponse executeHttpRequest(CloseableHttpClient httpClient, HttpPost request) throws IOException
+         {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            SleepUtils.sleep(100, TimeUnit.MILLISECONDS);
+            inFlight.decrementAndGet();
+            return (super.executeHttpRequest(httpClient, request));
+         }
+      };
+
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhook, slowSender, eventIds.toArray(new Integer[0]));
+
+      assertThat(maxInFlight.get()).isGreaterThan(1).isLessThanOrEqualTo(4);
+      for(Integer eventId : eventIds)
+      {
+         assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId);
+      }
+      assertEquals(8, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+
+      assertEquals(1, processSummaryLines.size());
+      assertEquals(Status.OK, processSummaryLines.get(0).getStatus());
+      assertEquals(8, ((ProcessSummaryLine) processSummaryLines.get(0)).getCount());
+   }
+
+
+
+   /*******************************************************************************
+    * with an async sender (and concurrent sends), outcomes are recorded on the
+    * sender's completion threads - where they must still update the webhook's
+    * health:  12 fails on the books, then one more, makes it unhealthy.
+    *******************************************************************************/
+   @Test
+   void testAsyncSendsUpdateHealth() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test").withMaxConcurrentSends(2));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId2 = insertEventAwaitingRetry(webhookSubscription);
+      insertNFailLogsPerEvent(webhookId, 4, eventId0, eventId1, eventId2);
+
+      WebhookEventSender asyncSender = new AsyncWebhookEventSenderTest.AsyncSenderThatMocksHttp(new ArrayList<>(), CompletableFuture.completedFuture(new AsyncWebhookEventSenderTest.MockResponse(500, "Oops", Map.of())));
+      runProcess(webhook, asyncSender, eventId0, eventId1, eventId2);
+
+      assertEquals(WebhookHealthStatus.UNHEALTHY.getId(), GetAction.execute(Webhook.TABLE_NAME, webhookId).getValue("healthStatusId"));
+      assertThat(QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter(new QFilterCriteria("successful", QCriteriaOperator.EQUALS, false))).size()).isGreaterThan(12);
+   }
+
+
+
+   /*******************************************************************************
+    * an async sender that throws (rather than returning a failed future) when
+    * starting a send mustn't leak its concurrency permit - else the wait for all
+    * sends to finish would hang.
+    *******************************************************************************/
+   @Test
+   void testAsyncSendThrowingReleasesPermit() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test").withMaxConcurrentSends(2));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId2 = insertEventAwaitingRetry(webhookSubscription);
+
+      AtomicInteger      noCalls        = new AtomicInteger(0);
+      WebhookEventSender throwingSender = new AsyncWebhookEventSender()
+      {
+         @Override
+         public CompletableFuture<WebhookSendOutcome> sendEventAsync(WebhookEvent webhookEvent, Webhook webhook, List<WebhookEventSendLog> sendLogs)
+         {
+            noCalls.incrementAndGet();
+            throw (new IllegalStateException("Couldn't start send"));
+         }
+      };
+
+      runProcess(webhook, throwingSender, eventId0, eventId1, eventId2);
+      assertEquals(3, noCalls.get());
+      assertEquals(0, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    * webhook takes batches of up to 3 events - so 7 events should go in 3 posts,
+    * with a send log per event; and a failed batch should fail all its events.
+    *******************************************************************************/
+   @Test
+   void testBatchedSends() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test").withMaxEventsPerBatch(3));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      List<Integer> eventIds = new ArrayList<>();
+      for(int i = 0; i < 7; i++)
+      {
+         eventIds.add(insertEventAwaitingRetry(webhookSubscription));
+      }
+
+      List<String> postBodies = new ArrayList<>();
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhook, new BatchCapturingSender(200, postBodies), eventIds.toArray(new Integer[0]));
+
+      assertEquals(List.of("[{},{},{}]", "[{},{},{}]", "[{}]"), postBodies);
+      for(Integer eventId : eventIds)
+      {
+         assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId);
+      }
+      assertEquals(7, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+      assertEquals(7, ((ProcessSummaryLine) processSummaryLines.get(0)).getCount());
+
+      /////////////////////////////////////////////////////////////
+      // now a batch that fails - all of its events should retry //
+      /////////////////////////////////////////////////////////////
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      postBodies.clear();
+      runProcess(webhook, new BatchCapturingSender(500, postBodies), eventId0, eventId1);
+
+      assertEquals(List.of("[{},{}]"), postBodies);
+      for(Integer eventId : List.of(eventId0, eventId1))
+      {
+         assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId);
+         List<QRecord> sendLogs = QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter(new QFilterCriteria("webhookEventId", QCriteriaOperator.EQUALS, eventId)));
+         assertEquals(1, sendLogs.size());
+         assertEquals(false, sendLogs.get(0).getValueBoolean("successful"));
+         assertEquals(500, sendLogs.get(0).getValueInteger("httpStatusCode"));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    * events are claimed (leased) up front - so one that's currently leased by
+    * another process shouldn't be sent, and the rest should end up with their
+    * leases released.
+    *******************************************************************************/
+   @Test
+   void testClaimEvents() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test"));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insert(newWebhookEvent(webhookSubscription, eventTypeName)
+         .withEventStatusId(WebhookEventStatus.SENDING.getId())
+         .withNextAttemptTimestamp(Instant.now().plus(5, ChronoUnit.MINUTES))
+         .withLeaseOwner("some-other-node"));
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId2 = insertEventAwaitingRetry(webhookSubscription);
+
+      List<String> postBodies = new ArrayList<>();
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhook, new BatchCapturingSender(200, postBodies), eventId0, eventId1, eventId2);
+      assertEquals(2, postBodies.size());
+
+      QRecord event0 = GetAction.execute(WebhookEvent.TABLE_NAME, eventId0);
+      assertEquals(WebhookEventStatus.SENDING.getId(), event0.getValueInteger("eventStatusId"));
+      assertEquals("some-other-node", event0.getValueString("leaseOwner"));
+
+      for(Integer eventId : List.of(eventId1, eventId2))
+      {
+         assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId);
+         assertNull(GetAction.execute(WebhookEvent.TABLE_NAME, eventId).getValueString("leaseOwner"));
+      }
+
+      assertThat(processSummaryLines).anyMatch(psl -> psl.getMessage().contains("another process") && ((ProcessSummaryLine) psl).getCount() == 1);
+
+      ///////////////////////////////////////////////////////////////////////////
+      // once the other node's lease has expired (e.g., it died), we can claim //
+      ///////////////////////////////////////////////////////////////////////////
+      new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecord(new QRecord()
+         .withValue("id", eventId0)
+         .withValue("nextAttemptTimestamp", Instant.now().minus(1, ChronoUnit.MINUTES))));
+      postBodies.clear();
+      runProcess(webhook, new BatchCapturingSender(200, postBodies), eventId0);
+      assertEquals(1, postBodies.size());
+      assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId0);
+      assertNull(GetAction.execute(WebhookEvent.TABLE_NAME, eventId0).getValueString("leaseOwner"));
+
+      ////////////////////////////////////////////////////////////////////////////
+      // while another node holds the claim lock, nothing is claimed (nor sent) //
+      ////////////////////////////////////////////////////////////////////////////
+      Integer eventId3 = insertEventAwaitingRetry(webhookSubscription);
+      assertTrue(WebhookLockManager.tryLock(WebhookLock.CLAIM_EVENTS, "some-other-node", 60));
+      postBodies.clear();
+      runProcess(webhook, new BatchCapturingSender(200, postBodies), eventId3);
+      assertEquals(0, postBodies.size());
+      assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId3);
+      assertNull(GetAction.execute(WebhookEvent.TABLE_NAME, eventId3).getValueString("leaseOwner"));
+
+      WebhookLockManager.unlock(WebhookLock.CLAIM_EVENTS, "some-other-node");
+      runProcess(webhook, new BatchCapturingSender(200, postBodies), eventId3);
+      assertEquals(1, postBodies.size());
+   }
+
+
+
+   /*******************************************************************************
+    * a page extracted before another run finished its events (delivered them, or
+    * rescheduled them for later) must not claim & send those events again.
+    *******************************************************************************/
+   @Test
+   void testFinishedEventsAreNotReclaimed() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test"));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+
+      //////////////////////////////////////////////////////////////////////////////
+      // this run's page is extracted while the events are due - but then another //
+      // run delivers one, and reschedules the other for later, before we claim.  //
+      //////////////////////////////////////////////////////////////////////////////
+      List<QRecord> page = QueryAction.execute(WebhookEvent.TABLE_NAME, new QQueryFilter(new QFilterCriteria("id", QCriteriaOperator.IN, List.of(eventId0, eventId1))).withOrderBy(new QFilterOrderBy("id")));
+      runProcess(webhook, new BatchCapturingSender(200, new ArrayList<>()), eventId0);
+      new UpdateAction().execute(new UpdateInput(WebhookEvent.TABLE_NAME).withRecord(new QRecord()
+         .withValue("id", eventId1)
+         .withValue("nextAttemptTimestamp", Instant.now().plus(5, ChronoUnit.MINUTES))));
+      assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId0);
+
+      List<String>                           postBodies          = new ArrayList<>();
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runPage(List.of(webhook), new BatchCapturingSender(200, postBodies), page);
+      assertEquals(0, postBodies.size());
+      assertEquals(1, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+      assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId0);
+      assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId1);
+      assertThat(processSummaryLines).anyMatch(psl -> psl.getMessage().contains("another process") && ((ProcessSummaryLine) psl).getCount() == 2);
+   }
+
+
+
+   /*******************************************************************************
+    * send logs & event statuses should be buffered while a page is sent, and
+    * written together after - or sooner, once the buffer is full.
+    *******************************************************************************/
+   @Test
+   void testBufferedOutcomes() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      Integer webhookId = insert(newWebhook("test"));
+      Webhook webhook   = new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId));
+
+      Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      Integer eventId0 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId1 = insertEventAwaitingRetry(webhookSubscription);
+      Integer eventId2 = insertEventAwaitingRetry(webhookSubscription);
+
+      /////////////////////////////////////////////////////////////////////////
+      // at the time of each post, no send logs should have been written yet //
+      /////////////////////////////////////////////////////////////////////////
+      List<Integer> sendLogCountsAtPostTime = new ArrayList<>();
+      WebhookEventSender sender = new BatchCapturingSender(200, new ArrayList<>())
+      {
+         @Override
+         protected CloseableHttpResponse executeHttpRequest(CloseableHttpClient httpClient, HttpPost request) throws IOException
+         {
+            try
+            {
+               sendLogCountsAtPostTime.add(QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+            }
+            catch(QException e)
+            {
+               throw (new IOException(e));
+            }
+            return (super.executeHttpRequest(httpClient, request));
+         }
+      };
+
+      runProcess(webhook, sender, eventId0, eventId1, eventId2);
+      assertEquals(List.of(0, 0, 0), sendLogCountsAtPostTime);
+      assertEquals(3, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+      for(Integer eventId : List.of(eventId0, eventId1, eventId2))
+      {
+         assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId);
+      }
+
+      ////////////////////////////////////////////////////////////
+      // a buffer with a max of 2 outcomes flushes upon the 2nd //
+      ////////////////////////////////////////////////////////////
+      Integer                   eventId3 = insertEventAwaitingRetry(webhookSubscription);
+      Integer                   eventId4 = insertEventAwaitingRetry(webhookSubscription);
+      WebhookEventOutcomeBuffer buffer   = new WebhookEventOutcomeBuffer(2, Long.MAX_VALUE);
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventId3).withSuccessful(true), WebhookEventStatus.DELIVERED, null);
+      assertEquals(1, buffer.size());
+      assertWebhookEventStatus(WebhookEventStatus.AWAITING_RETRY, eventId3);
+
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventId4).withSuccessful(false), WebhookEventStatus.FAILED, null);
+      assertEquals(0, buffer.size());
+      assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId3);
+      assertWebhookEventStatus(WebhookEventStatus.FAILED, eventId4);
+      assertEquals(5, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    * a flushed buffer sets each group of events' shared status & (truncated)
+    * next attempt timestamp - and each event's own attempt count & last attempt
+    * timestamp, from its send log.
+    *******************************************************************************/
+   @Test
+   void testBufferedOutcomeUpdates() throws QException
+   {
+      Integer             webhookId           = insert(newWebhook("test"));
+      Integer             subscriptionId      = insert(newWebhookSubscription(WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME).withWebhookId(webhookId));
+      WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+
+      List<Integer> eventIds = new ArrayList<>();
+      for(int i = 0; i < 3; i++)
+      {
+         eventIds.add(insert(newWebhookEvent(webhookSubscription, webhookSubscription.getWebhookEventTypeName())
+            .withEventStatusId(WebhookEventStatus.SENDING.getId())
+            .withLeaseOwner("test-node")));
+      }
+
+      ///////////////////////////////////////////////////////////////////////
+      // the first 2 events' next attempts are in the same second, so they //
+      // share one status update; the 3rd is delivered.                    //
+      ///////////////////////////////////////////////////////////////////////
+      Instant                   startTimestamp = Instant.now().minusSeconds(10);
+      Instant                   nextAttempt    = Instant.now().plusSeconds(60).truncatedTo(ChronoUnit.SECONDS);
+      WebhookEventOutcomeBuffer buffer         = new WebhookEventOutcomeBuffer(10, Long.MAX_VALUE);
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventIds.get(0)).withAttemptNo(1).withStartTimestamp(startTimestamp).withSuccessful(false), WebhookEventStatus.AWAITING_RETRY, nextAttempt.plusMillis(100));
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventIds.get(1)).withAttemptNo(3).withStartTimestamp(startTimestamp.plusSeconds(1)).withSuccessful(false), WebhookEventStatus.AWAITING_RETRY, nextAttempt.plusMillis(700));
+      buffer.add(new WebhookEventSendLog().withWebhookId(webhookId).withWebhookEventId(eventIds.get(2)).withAttemptNo(2).withStartTimestamp(startTimestamp.plusSeconds(2)).withSuccessful(true), WebhookEventStatus.DELIVERED, null);
+      buffer.flush();
+
+      List<WebhookEvent> events = QueryAction.execute(WebhookEvent.TABLE_NAME, WebhookEvent.class, new QQueryFilter(new QFilterCriteria("id", QCriteriaOperator.IN, eventIds)).withOrderBy(new QFilterOrderBy("id")));
+      assertEquals(List.of(WebhookEventStatus.AWAITING_RETRY.getId(), WebhookEventStatus.AWAITING_RETRY.getId(), WebhookEventStatus.DELIVERED.getId()), events.stream().map(e -> e.getEventStatusId()).toList());
+      assertEquals(nextAttempt, events.get(0).getNextAttemptTimestamp());
+      assertEquals(nextAttempt, events.get(1).getNextAttemptTimestamp());
+      assertNull(events.get(2).getNextAttemptTimestamp());
+      assertEquals(List.of(1, 3, 2), events.stream().map(e -> e.getAttemptCount()).toList());
+      assertEquals(List.of(startTimestamp, startTimestamp.plusSeconds(1), startTimestamp.plusSeconds(2)), events.stream().map(e -> e.getLastAttemptTimestamp()).toList());
+      assertThat(events).allMatch(e -> e.getLeaseOwner() == null);
+      assertEquals(3, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter()).size());
+   }
+
+
+
+   /*******************************************************************************
+    * a page with events for 2 webhooks (each allowing only 1 send at a time) -
+    * make sure both webhooks' events are all delivered, with the 2 webhooks
+    * being sent to in parallel, on the shared send pool.
+    *******************************************************************************/
+   @Test
+   void testMultipleWebhooks() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      List<Webhook> webhooks = new ArrayList<>();
+      List<Integer> eventIds = new ArrayList<>();
+      for(String name : List.of("a", "b"))
+      {
+         Integer webhookId = insert(newWebhook(name).withMaxConcurrentSends(1));
+         webhooks.add(new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId)));
+
+         Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+         WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+         for(int i = 0; i < 3; i++)
+         {
+            eventIds.add(insertEventAwaitingRetry(webhookSubscription));
+         }
+      }
+
+      AtomicInteger inFlight    = new AtomicInteger(0);
+      AtomicInteger maxInFlight = new AtomicInteger(0);
+      Set<String>   threadNames = ConcurrentHashMap.newKeySet();
+      WebhookEventSender slowSender = new WebhookEventSenderTest.WebhookEventSenderThatMocksHttp(200, "OK")
+      {
+         @Override
+         protected String getPostBody(WebhookEvent webhookEvent)
+         {
+            return ("{}");
+         }
+
+
+
+         @Override
+         protected CloseableHttpResponse executeHttpRequest(CloseableHttpClient httpClient, HttpPost request) throws IOException
+         {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            threadNames.add(Thread.currentThread().getName());
+            SleepUtils.sleep(100, TimeUnit.MILLISECONDS);
+            inFlight.decrementAndGet();
+            return (super.executeHttpRequest(httpClient, request));
+         }
+      };
+
+      ArrayList<ProcessSummaryLineInterface> processSummaryLines = runProcess(webhooks, slowSender, eventIds.toArray(new Integer[0]));
+
+      assertEquals(2, maxInFlight.get());
+      assertThat(threadNames).allMatch(name -> name.startsWith("webhook-send-"));
+      for(Integer eventId : eventIds)
+      {
+         assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventId);
+      }
+
+      assertEquals(1, processSummaryLines.size());
+      assertEquals(Status.OK, processSummaryLines.get(0).getStatus());
+      assertEquals(6, ((ProcessSummaryLine) processSummaryLines.get(0)).getCount());
+   }
+
+
+
+   /*******************************************************************************
+    * when sending to one webhook in a page fails, the outcomes of the other
+    * webhook's sends (which were already posted) must still be written - and
+    * then the failure is thrown.
+    *******************************************************************************/
+   @Test
+   void testOneWebhookFailingStillStoresOthersOutcomes() throws QException
+   {
+      String eventTypeName = WebhooksTestApplication.PERSON_INSERTED_EVENT_TYPE_NAME;
+
+      List<Webhook>        webhooks      = new ArrayList<>();
+      Map<String, Integer> eventIdByName = new HashMap<>();
+      for(Webhook newWebhook : List.of(newWebhook("ok"), newWebhook("broken").withMaxEventsPerBatch(2)))
+      {
+         Integer webhookId = insert(newWebhook);
+         webhooks.add(new Webhook(GetAction.execute(Webhook.TABLE_NAME, webhookId)));
+
+         Integer             subscriptionId      = insert(newWebhookSubscription(eventTypeName).withWebhookId(webhookId));
+         WebhookSubscription webhookSubscription = new WebhookSubscription(GetAction.execute(WebhookSubscription.TABLE_NAME, subscriptionId));
+         eventIdByName.put(newWebhook.getName(), insertEventAwaitingRetry(webhookSubscription));
+      }
+
+      WebhookEventSender sender = new BatchCapturingSender(200, new ArrayList<>())
+      {
+         @Override
+         public List<List<WebhookEvent>> partitionIntoBatches(List<WebhookEvent> webhookEvents, Webhook webhook)
+         {
+            throw (new IllegalStateException("could not partition"));
+         }
+      };
+
+      assertThrows(QException.class, () -> runProcess(webhooks, sender, eventIdByName.get("ok"), eventIdByName.get("broken")));
+
+      assertWebhookEventStatus(WebhookEventStatus.DELIVERED, eventIdByName.get("ok"));
+      assertEquals(1, QueryAction.execute(WebhookEventSendLog.TABLE_NAME, new QQueryFilter(new QFilterCriteria("webhookEventId", QCriteriaOperator.EQUALS, eventIdByName.get("ok")))).size());
+   }
+
+
+
    /***************************************************************************
     *
     ***************************************************************************/
@@ -216,16 +870,38 @@ class SendWebhookEventLoadStepTest extends BaseTest
     ***************************************************************************/
    private static ArrayList<ProcessSummaryLineInterface> runProcess(Webhook webhook, WebhookEventSender webhookEventSender, Integer... eventIds) throws QException
    {
-      SendWebhookEventLoadStep                           loadStep           = getSendWebhookEventLoadStep(webhookEventSender);
-      loadStep.setTransformStep(new SendWebhookEventTransformStep().withWebhook(webhook));
+      return (runProcess(List.of(webhook), webhookEventSender, eventIds));
+   }
+
 
+
+   /***************************************************************************
+    *
+    ***************************************************************************/
+   private static ArrayList<ProcessSummaryLineInterface> runProcess(List<Webhook> webhooks, WebhookEventSender webhookEventSender, Integer... eventIds) throws QException
+   {
       //////////////////////////////////
       // run process for these events //
       //////////////////////////////////
-      RunBackendStepInput input = new RunBackendStepInput();
-      input.withRecords(QueryAction.execute(WebhookEvent.TABLE_NAME, new QQueryFilter()
+      return (runPage(webhooks, webhookEventSender, QueryAction.execute(WebhookEvent.TABLE_NAME, new QQueryFilter()
          .withCriteria(new QFilterCriteria("id", QCriteriaOperator.IN, Arrays.stream(eventIds).toList()))
-         .withOrderBy(new QFilterOrderBy("id"))));
+         .withOrderBy(new QFilterOrderBy("id")))));
+   }
+
+
+
+   /***************************************************************************
+    * run the load step for a page of event records (as extracted earlier)
+    ***************************************************************************/
+   private static ArrayList<ProcessSummaryLineInterface> runPage(List<Webhook> webhooks, WebhookEventSender webhookEventSender, List<QRecord> page) throws QException
+   {
+      SendWebhookEventLoadStep      loadStep      = getSendWebhookEventLoadStep(webhookEventSender);
+      SendWebhookEventTransformStep transformStep = new SendWebhookEventTransformStep();
+      webhooks.forEach(webhook -> transformStep.withWebhook(webhook));
+      loadStep.setTransformStep(transformStep);
+
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.withRecords(page);
       RunBackendStepOutput output = new RunBackendStepOutput();
       loadStep.preRun(input, output);
       loadStep.runOnePage(input, output);
@@ -254,7 +930,52 @@ class SendWebhookEventLoadStepTest extends BaseTest
     ***************************************************************************/
    private static Integer insertEventAwaitingRetry(WebhookSubscription webhookSubscription) throws QException
    {
-      return insert(newWebhookEvent(webhookSubscription, webhookSubscription.getWebhookEventTypeName()).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()));
+      return insert(newWebhookEvent(webhookSubscription, webhookSubscription.getWebhookEventTypeName()).withEventStatusId(WebhookEventStatus.AWAITING_RETRY.getId()).withNextAttemptTimestamp(Instant.now().minusSeconds(1)));
+   }
+
+
+
+   /***************************************************************************
+    * mock-http sender, with events that all have "{}" as their body, that
+    * captures the bodies it posts.
+    ***************************************************************************/
+   private static class BatchCapturingSender extends WebhookEventSenderTest.WebhookEventSenderThatMocksHttp
+   {
+      private final List<String> postBodies;
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      BatchCapturingSender(int statusCode, List<String> postBodies)
+      {
+         super(statusCode, "");
+         this.postBodies = postBodies;
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      protected String getPostBody(WebhookEvent webhookEvent)
+      {
+         return ("{}");
+      }
+
+
+
+      /***************************************************************************
+       *
+       ***************************************************************************/
+      @Override
+      protected CloseableHttpResponse executeHttpRequest(CloseableHttpClient httpClient, HttpPost request) throws IOException
+      {
+         postBodies.add(EntityUtils.toString(request.getEntity()));
+         return (super.executeHttpRequest(httpClient, request));
+      }
    }
 
 
@@ -0,0 +1,90 @@
+/*
+ * QQQ - Low-code Application Framework for Engineers.
+ * Copyright (C) 2021-2025.  Kingsrook, LLC
+ * 651 N Broad St Ste 205 # 6917 | Middletown DE 19709 | United States
+ * contact@kingsrook.com
+ * https://github.com/Kingsrook/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.kingsrook.qbits.webhooks.registry;
+
+
+import java.util.List;
+import com.kingsrook.qbits.webhooks.BaseTest;
+import com.kingsrook.qbits.webhooks.model.WebhookEventCategory;
+import com.kingsrook.qbits.webhooks.model.WebhookEventCategory.Kind;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/*******************************************************************************
+ ** Unit test for WebhooksRegistry
+ *******************************************************************************/
+class WebhooksRegistryTest extends BaseTest
+{
+
+   /*******************************************************************************
+    ** event types by kind & table - including types for any table, in the order
+    ** they were registered, and with the index rebuilt upon registering more.
+    *******************************************************************************/
+   @Test
+   void testGetWebhookEventTypes()
+   {
+      WebhooksRegistry registry = WebhooksRegistry.ofOrWithNew(new QInstance());
+      assertThat(registry.getWebhookEventTypes(Kind.INSERT, "person")).isEmpty();
+
+      registry.registerWebhookEventType(new WebhookEventType().withName("insertedPerson").withCategory(WebhookEventCategory.INSERT).withTableName("person"));
+      registry.registerWebhookEventType(new WebhookEventType().withName("adHoc").withCategory(WebhookEventCategory.AD_HOC));
+      registry.registerWebhookEventType(new WebhookEventType().withName("insertedPersonFirstName").withCategory(WebhookEventCategory.INSERT_WITH_FIELD).withTableName("person").withFieldName("firstName"));
+      registry.registerWebhookEventType(new WebhookEventType().withName("storedPlace").withCategory(WebhookEventCategory.STORE).withTableName("place"));
+
+      assertThat(names(registry.getWebhookEventTypes(Kind.INSERT, "person"))).containsExactly("insertedPerson", "insertedPersonFirstName");
+      assertThat(names(registry.getWebhookEventTypes(Kind.STORE, "place"))).containsExactly("storedPlace");
+      assertThat(names(registry.getWebhookEventTypes(Kind.AD_HOC, "person"))).containsExactly("adHoc");
+      assertThat(names(registry.getWebhookEventTypes(Kind.AD_HOC, null))).containsExactly("adHoc");
+      assertThat(registry.getWebhookEventTypes(Kind.INSERT, "place")).isEmpty();
+      assertThat(registry.getWebhookEventTypes(Kind.UPDATE, "person")).isEmpty();
+
+      //////////////////////////////////////////////////////
+      // tables without types all get the same empty list //
+      //////////////////////////////////////////////////////
+      assertSame(registry.getWebhookEventTypes(Kind.STORE, "noSuchTable"), registry.getWebhookEventTypes(Kind.STORE, "otherTable"));
+
+      ///////////////////////////////////////////////////////////////////////////
+      // a type for any table (of its kind) applies to tables that have types, //
+      // and to those that don't.                                              //
+      ///////////////////////////////////////////////////////////////////////////
+      registry.registerWebhookEventType(new WebhookEventType().withName("storedAnything").withCategory(WebhookEventCategory.STORE));
+      assertThat(names(registry.getWebhookEventTypes(Kind.STORE, "place"))).containsExactly("storedPlace", "storedAnything");
+      assertThat(names(registry.getWebhookEventTypes(Kind.STORE, "noSuchTable"))).containsExactly("storedAnything");
+
+      registry.clear();
+      assertThat(registry.getWebhookEventTypes(Kind.STORE, "place")).isEmpty();
+   }
+
+
+
+   /***************************************************************************
+    **
+    ***************************************************************************/
+   private static List<String> names(List<WebhookEventType> eventTypes)
+   {
+      return (eventTypes.stream().map(t -> t.getName()).toList());
+   }
+
+}